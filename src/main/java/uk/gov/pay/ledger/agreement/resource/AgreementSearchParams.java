@@ -11,6 +11,7 @@ import jakarta.validation.constraints.NotNull;
 import jakarta.ws.rs.DefaultValue;
 import jakarta.ws.rs.QueryParam;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -41,7 +42,7 @@ public class AgreementSearchParams extends SearchParams {
     private String reference;
     private Long pageNumber = 1L;
     private Long displaySize = DEFAULT_DISPLAY_SIZE;
-    private Map<String, Object> queryMap;
+    private volatile Map<String, Object> queryMap;
 
     @AssertTrue(message = "One of field [" + SERVICE_ID_FIELD + "] or field [" + GATEWAY_ACCOUNT_ID_FIELD + "] are required")
     private boolean isServiceIdsOrGatewayAccountIds() {
@@ -135,6 +136,7 @@ public class AgreementSearchParams extends SearchParams {
     }
 
     public Map<String, Object> getQueryMap() {
+        Map<String, Object> queryMap = this.queryMap;
         if (queryMap == null) {
             queryMap = new HashMap<>();
 
@@ -161,8 +163,9 @@ public class AgreementSearchParams extends SearchParams {
             if (live != null) {
                 queryMap.put(LIVE_FIELD, live);
             }
+            this.queryMap = queryMap = Collections.unmodifiableMap(queryMap);
         }
-        return Map.copyOf(queryMap);
+        return queryMap;
     }
 
     public Boolean getLive() {
@@ -9,6 +9,7 @@ import uk.gov.pay.ledger.agreement.entity.AgreementsFactory;
 import uk.gov.pay.ledger.agreement.model.Agreement;
 import uk.gov.pay.ledger.agreement.model.AgreementSearchResponse;
 import uk.gov.pay.ledger.agreement.resource.AgreementSearchParams;
+import uk.gov.pay.ledger.common.search.SearchQueryExecutor;
 import uk.gov.pay.ledger.event.model.Event;
 import uk.gov.pay.ledger.event.model.EventDigest;
 import uk.gov.pay.ledger.event.service.EventService;
@@ -33,18 +34,21 @@ public class AgreementService {
     private final AgreementsFactory agreementEntityFactory;
     private final EventService eventService;
     private final ObjectMapper objectMapper;
+    private final SearchQueryExecutor searchQueryExecutor;
 
     @Inject
     public AgreementService(AgreementDao agreementDao,
                             PaymentInstrumentDao paymentInstrumentDao,
                             AgreementsFactory agreementsFactory,
                             EventService eventService,
-                            ObjectMapper objectMapper) {
+                            ObjectMapper objectMapper,
+                            SearchQueryExecutor searchQueryExecutor) {
         this.agreementDao = agreementDao;
         this.paymentInstrumentDao = paymentInstrumentDao;
         this.agreementEntityFactory = agreementsFactory;
         this.eventService = eventService;
         this.objectMapper = objectMapper;
+        this.searchQueryExecutor = searchQueryExecutor;
     }
 
     public Optional<Agreement> findAgreement(String externalId) {
@@ -100,11 +104,14 @@ public class AgreementService {
     }
 
     public AgreementSearchResponse searchAgreements(AgreementSearchParams searchParams, UriInfo uriInfo) {
-        var agreements = agreementDao.searchAgreements(searchParams)
+        var searchResult = searchQueryExecutor.execute(
+                () -> agreementDao.searchAgreements(searchParams),
+                () -> agreementDao.getTotalForSearch(searchParams));
+        var agreements = searchResult.getPage()
                 .stream()
                 .map(Agreement::from)
                 .collect(Collectors.toUnmodifiableList());
-        var total = agreementDao.getTotalForSearch(searchParams);
+        var total = searchResult.getTotal();
 
         long size = searchParams.getDisplaySize();
         if (total > 0 && searchParams.getDisplaySize() > 0) {
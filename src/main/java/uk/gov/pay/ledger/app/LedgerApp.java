@@ -13,6 +13,7 @@ import io.dropwizard.jdbi3.bundles.JdbiExceptionsBundle;
 import io.dropwizard.migrations.MigrationsBundle;
 import io.prometheus.client.CollectorRegistry;
 import io.prometheus.client.dropwizard.DropwizardExports;
+import io.prometheus.client.dropwizard.samplebuilder.CustomMappingSampleBuilder;
 import io.prometheus.client.servlet.jakarta.exporter.MetricsServlet;
 import org.dhatim.dropwizard.sentry.logging.SentryAppenderFactory;
 import org.jdbi.v3.core.Jdbi;
@@ -20,23 +21,32 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.gov.pay.ledger.agreement.resource.AgreementResource;
 import uk.gov.pay.ledger.event.resource.EventResource;
+import uk.gov.pay.ledger.eventpublisher.EventOutboxDrainer;
 import uk.gov.pay.ledger.exception.BadRequestExceptionMapper;
 import uk.gov.pay.ledger.exception.JerseyViolationExceptionMapper;
+import uk.gov.pay.ledger.exportjob.resource.CsvExportJobResource;
+import uk.gov.pay.ledger.exportjob.service.CsvExportJobService;
 import uk.gov.pay.ledger.expungeorredact.resource.ExpungeOrRedactResource;
 import uk.gov.pay.ledger.filters.LoggingMDCRequestFilter;
 import uk.gov.pay.ledger.filters.LoggingMDCResponseFilter;
+import uk.gov.pay.ledger.filters.ResponseBytesOutHandler;
+import uk.gov.pay.ledger.filters.ResponseSizeFilter;
 import uk.gov.pay.ledger.healthcheck.DependentResourceWaitCommand;
 import uk.gov.pay.ledger.healthcheck.HealthCheckResource;
 import uk.gov.pay.ledger.healthcheck.SQSHealthCheck;
 import uk.gov.pay.ledger.payout.resource.PayoutResource;
+import uk.gov.pay.ledger.queue.IngestStageMetrics;
 import uk.gov.pay.ledger.queue.managed.QueueMessageReceiver;
 import uk.gov.pay.ledger.report.resource.PerformanceReportResource;
 import uk.gov.pay.ledger.report.resource.ReportResource;
 import uk.gov.pay.ledger.transaction.resource.TransactionResource;
+import uk.gov.pay.ledger.transactionsummary.service.TransactionSummaryDeltaDrainer;
 import uk.gov.service.payments.logging.GovUkPayDropwizardRequestJsonLogLayoutFactory;
 import uk.gov.service.payments.logging.LoggingFilter;
 import uk.gov.service.payments.logging.LogstashConsoleAppenderFactory;
 
+import java.util.List;
+
 import static java.util.EnumSet.of;
 import static jakarta.servlet.DispatcherType.REQUEST;
 
@@ -72,7 +82,8 @@ public class LedgerApp extends Application<LedgerConfig> {
     @Override
     public void run(LedgerConfig config, Environment environment) {
         CollectorRegistry collectorRegistry = CollectorRegistry.defaultRegistry;
-        collectorRegistry.register(new DropwizardExports(environment.metrics()));
+        collectorRegistry.register(new DropwizardExports(environment.metrics(),
+                new CustomMappingSampleBuilder(List.of(IngestStageMetrics.PROMETHEUS_MAPPER_CONFIG))));
         environment.admin().addServlet("prometheusMetrics", new MetricsServlet(collectorRegistry)).addMapping("/metrics");
 
         JdbiFactory jdbiFactory = new JdbiFactory();
@@ -87,11 +98,14 @@ public class LedgerApp extends Application<LedgerConfig> {
         environment.jersey().register(injector.getInstance(AgreementResource.class));
         environment.jersey().register(injector.getInstance(HealthCheckResource.class));
         environment.jersey().register(injector.getInstance(ExpungeOrRedactResource.class));
+        environment.jersey().register(injector.getInstance(CsvExportJobResource.class));
 
         environment.servlets().addFilter("LoggingFilter", new LoggingFilter())
                 .addMappingForUrlPatterns(of(REQUEST), true, "/v1/*");
         environment.jersey().register(injector.getInstance(LoggingMDCRequestFilter.class));
         environment.jersey().register(injector.getInstance(LoggingMDCResponseFilter.class));
+        environment.jersey().register(injector.getInstance(ResponseSizeFilter.class));
+        environment.lifecycle().addLifeCycleListener(ResponseBytesOutHandler.wrapServerHandler(environment.metrics()));
 
         environment.jersey().register(new BadRequestExceptionMapper());
         environment.jersey().register(new JerseyViolationExceptionMapper());
@@ -101,6 +115,13 @@ public class LedgerApp extends Application<LedgerConfig> {
             environment.lifecycle().manage(injector.getInstance(QueueMessageReceiver.class));
         }
 
+        if (config.getSnsConfig().isSnsEnabled()) {
+            environment.lifecycle().manage(injector.getInstance(EventOutboxDrainer.class));
+        }
+
+        environment.lifecycle().manage(injector.getInstance(TransactionSummaryDeltaDrainer.class));
+        environment.lifecycle().manage(injector.getInstance(CsvExportJobService.class));
+
         environment.jersey().register(injector.getInstance(PayoutResource.class));
     }
 }
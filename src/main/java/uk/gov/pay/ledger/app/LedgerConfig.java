@@ -1,13 +1,17 @@
 package uk.gov.pay.ledger.app;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.dropwizard.core.Configuration;
 import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.validation.ValidationMethod;
 import uk.gov.pay.ledger.app.config.ExpungeOrRedactHistoricalDataConfig;
 import uk.gov.pay.ledger.app.config.QueueMessageReceiverConfig;
+import uk.gov.pay.ledger.app.config.ReferenceDataCacheConfig;
 import uk.gov.pay.ledger.app.config.ReportingConfig;
 import uk.gov.pay.ledger.app.config.SnsConfig;
 import uk.gov.pay.ledger.app.config.SqsConfig;
+import uk.gov.pay.ledger.app.config.TransactionSummaryConfig;
 
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
@@ -37,6 +41,7 @@ public class LedgerConfig extends Configuration {
     @JsonProperty("snsConfig")
     private SnsConfig snsConfig;
 
+    @Valid
     @NotNull
     @JsonProperty("queueMessageReceiverConfig")
     private QueueMessageReceiverConfig queueMessageReceiverConfig;
@@ -45,6 +50,14 @@ public class LedgerConfig extends Configuration {
     @JsonProperty("reportingConfig")
     private ReportingConfig reportingConfig;
 
+    @NotNull
+    @JsonProperty("transactionSummaryConfig")
+    private TransactionSummaryConfig transactionSummaryConfig;
+
+    @NotNull
+    @JsonProperty("referenceDataCacheConfig")
+    private ReferenceDataCacheConfig referenceDataCacheConfig;
+
     @JsonProperty("ecsContainerMetadataUriV4")
     private URI ecsContainerMetadataUriV4;
 
@@ -67,6 +80,14 @@ public class LedgerConfig extends Configuration {
         return reportingConfig;
     }
 
+    public TransactionSummaryConfig getTransactionSummaryConfig() {
+        return transactionSummaryConfig;
+    }
+
+    public ReferenceDataCacheConfig getReferenceDataCacheConfig() {
+        return referenceDataCacheConfig;
+    }
+
     public Optional<URI> getEcsContainerMetadataUriV4() {
         return Optional.ofNullable(ecsContainerMetadataUriV4);
     }
@@ -74,4 +95,18 @@ public class LedgerConfig extends Configuration {
     public ExpungeOrRedactHistoricalDataConfig getExpungeOrRedactHistoricalDataConfig() {
         return expungeOrRedactHistoricalDataConfig;
     }
+
+    /**
+     * Ingest shares the database pool with API requests and CSV exports, so it must not be able to hold every
+     * connection at once.
+     */
+    @JsonIgnore
+    @ValidationMethod(message = "queueMessageReceiverConfig.virtualThreadsMaximumConcurrentBatches must be at least 1 and less than the database pool's maxSize when virtual threads are enabled")
+    public boolean isVirtualThreadsConcurrencyBelowDatabasePoolSize() {
+        if (queueMessageReceiverConfig == null || !queueMessageReceiverConfig.isVirtualThreadsEnabled()) {
+            return true;
+        }
+        int maximumConcurrentBatches = queueMessageReceiverConfig.getVirtualThreadsMaximumConcurrentBatches();
+        return maximumConcurrentBatches >= 1 && maximumConcurrentBatches < database.getMaxSize();
+    }
 }
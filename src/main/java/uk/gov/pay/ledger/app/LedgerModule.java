@@ -15,17 +15,27 @@ import software.amazon.awssdk.services.sqs.SqsClient;
 import software.amazon.awssdk.services.sqs.SqsClientBuilder;
 import uk.gov.pay.ledger.agreement.dao.AgreementDao;
 import uk.gov.pay.ledger.agreement.dao.PaymentInstrumentDao;
+import uk.gov.pay.ledger.common.search.SearchQueryExecutor;
 import uk.gov.pay.ledger.event.dao.EventDao;
+import uk.gov.pay.ledger.event.dao.EventDigestSnapshotDao;
 import uk.gov.pay.ledger.event.dao.ResourceTypeDao;
+import uk.gov.pay.ledger.eventpublisher.dao.EventOutboxDao;
+import uk.gov.pay.ledger.exportjob.dao.CsvExportJobDao;
+import uk.gov.pay.ledger.exportjob.service.CsvExportJobService;
 import uk.gov.pay.ledger.expungeorredact.dao.TransactionRedactionInfoDao;
 import uk.gov.pay.ledger.gatewayaccountmetadata.dao.GatewayAccountMetadataDao;
 import uk.gov.pay.ledger.metadatakey.dao.MetadataKeyDao;
 import uk.gov.pay.ledger.payout.dao.PayoutDao;
+import uk.gov.pay.ledger.referencedata.ReferenceDataCache;
 import uk.gov.pay.ledger.report.dao.PerformanceReportDao;
 import uk.gov.pay.ledger.report.dao.ReportDao;
 import uk.gov.pay.ledger.transaction.dao.TransactionDao;
+import uk.gov.pay.ledger.transaction.service.TimeSlicedTransactionStreamer;
+import uk.gov.pay.ledger.transaction.service.TransactionMetadataService;
+import uk.gov.pay.ledger.transaction.service.TransactionSearchTotals;
 import uk.gov.pay.ledger.transactionmetadata.dao.TransactionMetadataDao;
 import uk.gov.pay.ledger.transactionsummary.dao.TransactionSummaryDao;
+import uk.gov.pay.ledger.transactionsummary.dao.TransactionSummaryDeltaDao;
 import uk.gov.service.payments.commons.queue.sqs.SqsQueueService;
 
 import java.net.URI;
@@ -52,6 +62,12 @@ public class LedgerModule extends AbstractModule {
         bind(Environment.class).toInstance(environment);
         bind(Jdbi.class).toInstance(jdbi);
         bind(InstantSource.class).toInstance(InstantSource.system());
+        bind(TransactionMetadataService.class).in(Singleton.class);
+        bind(ReferenceDataCache.class).in(Singleton.class);
+        bind(SearchQueryExecutor.class).in(Singleton.class);
+        bind(TransactionSearchTotals.class).in(Singleton.class);
+        bind(TimeSlicedTransactionStreamer.class).in(Singleton.class);
+        bind(CsvExportJobService.class).in(Singleton.class);
     }
 
     @Provides
@@ -69,6 +85,24 @@ public class LedgerModule extends AbstractModule {
         return jdbi.onDemand(EventDao.class);
     }
 
+    @Provides
+    @Singleton
+    public EventDigestSnapshotDao provideEventDigestSnapshotDao() {
+        return jdbi.onDemand(EventDigestSnapshotDao.class);
+    }
+
+    @Provides
+    @Singleton
+    public EventOutboxDao provideEventOutboxDao() {
+        return jdbi.onDemand(EventOutboxDao.class);
+    }
+
+    @Provides
+    @Singleton
+    public CsvExportJobDao provideCsvExportJobDao() {
+        return jdbi.onDemand(CsvExportJobDao.class);
+    }
+
     @Provides
     @Singleton
     public ResourceTypeDao provideResourceTypeDao() {
@@ -129,6 +163,12 @@ public class LedgerModule extends AbstractModule {
         return new TransactionSummaryDao(jdbi);
     }
 
+    @Provides
+    @Singleton
+    public TransactionSummaryDeltaDao provideTransactionSummaryDeltaDao() {
+        return jdbi.onDemand(TransactionSummaryDeltaDao.class);
+    }
+
     @Provides
     @Singleton
     public AgreementDao provideAgreementDao() {
@@ -142,6 +182,7 @@ public class LedgerModule extends AbstractModule {
     }
 
     @Provides
+    @Singleton
     public SqsClient sqsClient(LedgerConfig ledgerConfig) {
         SqsClientBuilder clientBuilder = SqsClient.builder();
 
@@ -164,6 +205,7 @@ public class LedgerModule extends AbstractModule {
     }
 
     @Provides
+    @Singleton
     public SnsClient snsClient(LedgerConfig ledgerConfig) {
         SnsClientBuilder clientBuilder = SnsClient
                 .builder()
@@ -186,6 +228,7 @@ public class LedgerModule extends AbstractModule {
     }
 
     @Provides
+    @Singleton
     public SqsQueueService provideSqsQueueService(SqsClient amazonSQS, LedgerConfig ledgerConfig) {
         return new SqsQueueService(
                 amazonSQS,
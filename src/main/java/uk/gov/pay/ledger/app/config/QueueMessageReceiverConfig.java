@@ -1,7 +1,9 @@
 package uk.gov.pay.ledger.app.config;
 
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.dropwizard.core.Configuration;
+import io.dropwizard.validation.ValidationMethod;
 
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
@@ -23,6 +25,33 @@ public class QueueMessageReceiverConfig extends Configuration {
     @NotNull
     private int messageRetryDelayInSeconds;
 
+    @Valid
+    @NotNull
+    private int eventProcessingThreads;
+
+    @Valid
+    @NotNull
+    private int prefetchBufferSize;
+
+    @Valid
+    @NotNull
+    private int prefetchThreads;
+
+    @Valid
+    @NotNull
+    private int prefetchMaximumAgeInSeconds;
+
+    @Valid
+    @NotNull
+    private int messageVisibilityTimeoutInSeconds;
+
+    @Valid
+    private boolean virtualThreadsEnabled;
+
+    @Valid
+    @NotNull
+    private int virtualThreadsMaximumConcurrentBatches;
+
     public int getThreadDelayInMilliseconds() {
         return threadDelayInMilliseconds;
     }
@@ -35,6 +64,59 @@ public class QueueMessageReceiverConfig extends Configuration {
         return messageRetryDelayInSeconds;
     }
 
+    public int getEventProcessingThreads() {
+        return eventProcessingThreads;
+    }
+
+    public int getPrefetchBufferSize() {
+        return prefetchBufferSize;
+    }
+
+    public int getPrefetchThreads() {
+        return prefetchThreads;
+    }
+
+    public int getPrefetchMaximumAgeInSeconds() {
+        return prefetchMaximumAgeInSeconds;
+    }
+
+    public int getMessageVisibilityTimeoutInSeconds() {
+        return messageVisibilityTimeoutInSeconds;
+    }
+
+    /**
+     * A prefetched batch must be processed before its messages become visible on the queue again, or they would be
+     * delivered to another consumer while still being processed here.
+     */
+    @JsonIgnore
+    @ValidationMethod(message = "prefetchMaximumAgeInSeconds must be less than messageVisibilityTimeoutInSeconds when the prefetch buffer is enabled")
+    public boolean isPrefetchMaximumAgeWithinVisibilityTimeout() {
+        return prefetchBufferSize <= 0 || prefetchMaximumAgeInSeconds < messageVisibilityTimeoutInSeconds;
+    }
+
+    /**
+     * With virtual threads each batch is processed on its consumer thread, one resource partition after another, while
+     * holding a single database permit. Processing the partitions of a batch in parallel would need a connection for
+     * each of them, so concurrency is raised with virtualThreadsMaximumConcurrentBatches instead.
+     */
+    @JsonIgnore
+    @ValidationMethod(message = "eventProcessingThreads must be 1 when virtualThreadsEnabled is true")
+    public boolean isEventProcessingThreadsCompatibleWithVirtualThreads() {
+        return !virtualThreadsEnabled || eventProcessingThreads <= 1;
+    }
+
     public boolean isBackgroundProcessingEnabled() { return backgroundProcessingEnabled; }
 
+    /**
+     * Whether consumers run on virtual threads, processing at most virtualThreadsMaximumConcurrentBatches batches at
+     * once. Cannot be combined with more than one event processing thread.
+     */
+    public boolean isVirtualThreadsEnabled() {
+        return virtualThreadsEnabled;
+    }
+
+    public int getVirtualThreadsMaximumConcurrentBatches() {
+        return virtualThreadsMaximumConcurrentBatches;
+    }
+
 }
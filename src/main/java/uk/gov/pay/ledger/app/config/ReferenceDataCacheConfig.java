@@ -0,0 +1,28 @@
+package uk.gov.pay.ledger.app.config;
+
+
+import io.dropwizard.core.Configuration;
+import jakarta.validation.constraints.NotNull;
+
+
+public class ReferenceDataCacheConfig extends Configuration {
+
+    @NotNull
+    private int refreshIntervalInSeconds;
+    @NotNull
+    private int gatewayAccountMetadataKeysExpiryInSeconds;
+    @NotNull
+    private int gatewayAccountMetadataKeysMaximumSize;
+
+    public int getRefreshIntervalInSeconds() {
+        return refreshIntervalInSeconds;
+    }
+
+    public int getGatewayAccountMetadataKeysExpiryInSeconds() {
+        return gatewayAccountMetadataKeysExpiryInSeconds;
+    }
+
+    public int getGatewayAccountMetadataKeysMaximumSize() {
+        return gatewayAccountMetadataKeysMaximumSize;
+    }
+}
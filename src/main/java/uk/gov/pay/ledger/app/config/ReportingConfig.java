@@ -10,14 +10,147 @@ public class ReportingConfig extends Configuration {
     @Valid
     private int streamingCsvPageSize;
 
+    @Valid
+    private int streamingCsvFlushIntervalInBytes;
+
     @Valid
     private int searchQueryTimeoutInSeconds;
 
+    @Valid
+    private int searchQueryThreads;
+
+    @Valid
+    private int searchQueryQueueSize;
+
+    @Valid
+    private int searchTotalCacheExpiryInSeconds;
+
+    @Valid
+    private int searchTotalCacheMaximumSize;
+
+    @Valid
+    private long searchTotalEstimateThreshold;
+
+    @Valid
+    private int csvExportSliceDurationInDays;
+
+    @Valid
+    private int csvExportSliceThreads;
+
+    @Valid
+    private int csvExportSlicesPerRequest;
+
+    @Valid
+    private int csvExportSliceReadAheadSize;
+
+    @Valid
+    private String csvExportJobDirectory;
+
+    @Valid
+    private int csvExportJobThreads;
+
+    @Valid
+    private int csvExportJobCheckpointInterval;
+
+    @Valid
+    private int csvExportJobMaximumAttempts;
+
+    @Valid
+    private int csvExportJobExpiryInMinutes;
+
+    @Valid
+    private int csvExportJobQueueSize;
+
+    @Valid
+    private int csvExportJobLeaseInSeconds;
+
+    @Valid
+    private int csvExportJobMaximumUnfinishedJobsPerAccount;
+
+    @Valid
+    private long csvExportJobMaximumTotalSizeInMegabytes;
+
     public int getStreamingCsvPageSize() {
         return streamingCsvPageSize;
     }
 
+    public int getStreamingCsvFlushIntervalInBytes() {
+        return streamingCsvFlushIntervalInBytes;
+    }
+
     public int getSearchQueryTimeoutInSeconds() {
         return searchQueryTimeoutInSeconds;
     }
-}
\ No newline at end of file
+
+    public int getSearchQueryThreads() {
+        return searchQueryThreads;
+    }
+
+    public int getSearchQueryQueueSize() {
+        return searchQueryQueueSize;
+    }
+
+    public int getSearchTotalCacheExpiryInSeconds() {
+        return searchTotalCacheExpiryInSeconds;
+    }
+
+    public int getSearchTotalCacheMaximumSize() {
+        return searchTotalCacheMaximumSize;
+    }
+
+    public long getSearchTotalEstimateThreshold() {
+        return searchTotalEstimateThreshold;
+    }
+
+    public int getCsvExportSliceDurationInDays() {
+        return csvExportSliceDurationInDays;
+    }
+
+    public int getCsvExportSliceThreads() {
+        return csvExportSliceThreads;
+    }
+
+    public int getCsvExportSlicesPerRequest() {
+        return csvExportSlicesPerRequest;
+    }
+
+    public int getCsvExportSliceReadAheadSize() {
+        return csvExportSliceReadAheadSize;
+    }
+
+    public String getCsvExportJobDirectory() {
+        return csvExportJobDirectory;
+    }
+
+    public int getCsvExportJobThreads() {
+        return csvExportJobThreads;
+    }
+
+    public int getCsvExportJobCheckpointInterval() {
+        return csvExportJobCheckpointInterval;
+    }
+
+    public int getCsvExportJobMaximumAttempts() {
+        return csvExportJobMaximumAttempts;
+    }
+
+    public int getCsvExportJobExpiryInMinutes() {
+        return csvExportJobExpiryInMinutes;
+    }
+
+    public int getCsvExportJobQueueSize() {
+        return csvExportJobQueueSize;
+    }
+
+    public int getCsvExportJobLeaseInSeconds() {
+        return csvExportJobLeaseInSeconds;
+    }
+
+    public int getCsvExportJobMaximumUnfinishedJobsPerAccount() {
+        return csvExportJobMaximumUnfinishedJobsPerAccount;
+    }
+
+    public long getCsvExportJobMaximumTotalSizeInMegabytes() {
+        return csvExportJobMaximumTotalSizeInMegabytes;
+    }
+}
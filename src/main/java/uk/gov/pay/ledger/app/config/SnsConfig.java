@@ -25,6 +25,15 @@ public class SnsConfig extends Configuration {
     private boolean nonStandardServiceEndpoint;
     private URI endpoint;
 
+    @NotNull
+    private int outboxDrainIntervalInMilliseconds;
+    @NotNull
+    private int outboxBatchSize;
+    @NotNull
+    private int outboxMaximumRetryDelayInSeconds;
+    @NotNull
+    private int outboxClaimLeaseInSeconds;
+
     public boolean isSnsEnabled() {
         return snsEnabled;
     }
@@ -64,4 +73,20 @@ public class SnsConfig extends Configuration {
     public boolean isPublishCardPaymentDisputeEventsToSns() {
         return publishCardPaymentDisputeEventsToSns;
     }
+
+    public int getOutboxDrainIntervalInMilliseconds() {
+        return outboxDrainIntervalInMilliseconds;
+    }
+
+    public int getOutboxBatchSize() {
+        return outboxBatchSize;
+    }
+
+    public int getOutboxMaximumRetryDelayInSeconds() {
+        return outboxMaximumRetryDelayInSeconds;
+    }
+
+    public int getOutboxClaimLeaseInSeconds() {
+        return outboxClaimLeaseInSeconds;
+    }
 }
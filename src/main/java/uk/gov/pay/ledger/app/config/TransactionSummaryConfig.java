@@ -0,0 +1,28 @@
+package uk.gov.pay.ledger.app.config;
+
+
+import io.dropwizard.core.Configuration;
+import jakarta.validation.constraints.NotNull;
+
+
+public class TransactionSummaryConfig extends Configuration {
+
+    @NotNull
+    private boolean writeBehindEnabled;
+    @NotNull
+    private int deltaDrainIntervalInMilliseconds;
+    @NotNull
+    private int deltaBatchSize;
+
+    public boolean isWriteBehindEnabled() {
+        return writeBehindEnabled;
+    }
+
+    public int getDeltaDrainIntervalInMilliseconds() {
+        return deltaDrainIntervalInMilliseconds;
+    }
+
+    public int getDeltaBatchSize() {
+        return deltaBatchSize;
+    }
+}
@@ -0,0 +1,9 @@
+package uk.gov.pay.ledger.common.search;
+
+/**
+ * Search parameters of a search that can be paged through with cursors as well as page numbers.
+ */
+public interface CursorSearchParams {
+
+    String buildQueryParamStringForCursor(String forCursor);
+}
@@ -0,0 +1,202 @@
+package uk.gov.pay.ledger.common.search;
+
+import com.google.inject.Inject;
+import io.dropwizard.core.setup.Environment;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.statement.StatementContext;
+import org.jdbi.v3.core.statement.StatementCustomizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.ledger.app.LedgerConfig;
+import uk.gov.pay.ledger.app.config.ReportingConfig;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Runs the page query and the total count query of a search at the same time, so a search takes as long as the
+ * slower of the two rather than both.
+ * <p>
+ * Both queries share one timeout. If either fails or the timeout passes, the other is cancelled: a query still waiting
+ * for a thread is not started, and one already running has its statement cancelled on the database. The pool is
+ * bounded, and when its queue is full the queries run on the request thread instead, one after the other as before.
+ * This class is bound as a singleton, as it registers a statement customizer with Jdbi.
+ */
+public class SearchQueryExecutor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SearchQueryExecutor.class);
+    private static final String SEARCH_QUERY_THREAD_NAME = "search-query-%d";
+    private static final ThreadLocal<CancellableQuery> CURRENT_QUERY = new ThreadLocal<>();
+
+    private final ExecutorService executorService;
+    private final Duration timeout;
+
+    @Inject
+    public SearchQueryExecutor(Environment environment, LedgerConfig configuration, Jdbi jdbi) {
+        this(buildExecutorService(environment, configuration.getReportingConfig()),
+                Duration.ofSeconds(configuration.getReportingConfig().getSearchQueryTimeoutInSeconds()));
+        jdbi.addCustomizer(new StatementCustomizer() {
+            @Override
+            public void beforeExecution(PreparedStatement statement, StatementContext context) throws SQLException {
+                CancellableQuery query = CURRENT_QUERY.get();
+                if (query != null) {
+                    query.executing(statement);
+                }
+            }
+
+            @Override
+            public void afterExecution(PreparedStatement statement, StatementContext context) {
+                CancellableQuery query = CURRENT_QUERY.get();
+                if (query != null) {
+                    query.executed();
+                }
+            }
+        });
+    }
+
+    public SearchQueryExecutor(ExecutorService executorService, Duration timeout) {
+        this.executorService = executorService;
+        this.timeout = timeout;
+    }
+
+    public <T, C> SearchResult<T, C> execute(Supplier<List<T>> pageQuery, Supplier<C> totalQuery) {
+        CancellableQuery pageCancellation = new CancellableQuery();
+        CancellableQuery totalCancellation = new CancellableQuery();
+        CompletableFuture<List<T>> page = CompletableFuture.supplyAsync(() -> run(pageQuery, pageCancellation), executorService);
+        CompletableFuture<C> total = CompletableFuture.supplyAsync(() -> run(totalQuery, totalCancellation), executorService);
+        AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+        page.whenComplete((result, e) -> {
+            if (e != null) {
+                firstFailure.compareAndSet(null, e);
+                totalCancellation.cancel();
+            }
+        });
+        total.whenComplete((result, e) -> {
+            if (e != null) {
+                firstFailure.compareAndSet(null, e);
+                pageCancellation.cancel();
+            }
+        });
+
+        try {
+            CompletableFuture.allOf(page, total).get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            return new SearchResult<>(page.join(), total.join());
+        } catch (ExecutionException e) {
+            pageCancellation.cancel();
+            totalCancellation.cancel();
+            Throwable cause = unwrap(Optional.ofNullable(firstFailure.get()).orElse(e.getCause()));
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException(cause);
+        } catch (TimeoutException e) {
+            pageCancellation.cancel();
+            totalCancellation.cancel();
+            LOGGER.warn("Search queries did not complete within {} seconds", timeout.toSeconds());
+            throw new WebApplicationException("Search timed out", Response.Status.SERVICE_UNAVAILABLE);
+        } catch (InterruptedException e) {
+            pageCancellation.cancel();
+            totalCancellation.cancel();
+            Thread.currentThread().interrupt();
+            throw new WebApplicationException("Search interrupted", Response.Status.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    private static <T> T run(Supplier<T> query, CancellableQuery cancellation) {
+        if (cancellation.isCancelled()) {
+            throw new SearchQueryCancelledException();
+        }
+        CancellableQuery previous = CURRENT_QUERY.get();
+        CURRENT_QUERY.set(cancellation);
+        try {
+            return query.get();
+        } finally {
+            CURRENT_QUERY.set(previous);
+        }
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        return throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+    }
+
+    private static ExecutorService buildExecutorService(Environment environment, ReportingConfig reportingConfig) {
+        return environment.lifecycle()
+                .executorService(SEARCH_QUERY_THREAD_NAME)
+                .minThreads(reportingConfig.getSearchQueryThreads())
+                .maxThreads(reportingConfig.getSearchQueryThreads())
+                .workQueue(new ArrayBlockingQueue<>(reportingConfig.getSearchQueryQueueSize()))
+                .rejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy())
+                .build();
+    }
+
+    public static class SearchResult<T, C> {
+        private final List<T> page;
+        private final C total;
+
+        SearchResult(List<T> page, C total) {
+            this.page = page;
+            this.total = total;
+        }
+
+        public List<T> getPage() {
+            return page;
+        }
+
+        public C getTotal() {
+            return total;
+        }
+    }
+
+    private static class SearchQueryCancelledException extends RuntimeException {
+        SearchQueryCancelledException() {
+            super("Search query cancelled", null, false, false);
+        }
+    }
+
+    private static class CancellableQuery {
+        private Statement statement;
+        private boolean cancelled;
+
+        synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        synchronized void executing(Statement statement) throws SQLException {
+            if (cancelled) {
+                throw new SQLException("Search query cancelled");
+            }
+            this.statement = statement;
+        }
+
+        synchronized void executed() {
+            statement = null;
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            if (statement != null) {
+                try {
+                    statement.cancel();
+                } catch (SQLException e) {
+                    LOGGER.warn("Failed to cancel search query: {}", e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -7,6 +7,7 @@ import org.jdbi.v3.sqlobject.customizer.BindBean;
 import org.jdbi.v3.sqlobject.customizer.BindList;
 import org.jdbi.v3.sqlobject.customizer.Define;
 import org.jdbi.v3.sqlobject.statement.GetGeneratedKeys;
+import org.jdbi.v3.sqlobject.statement.SqlBatch;
 import org.jdbi.v3.sqlobject.statement.SqlQuery;
 import org.jdbi.v3.sqlobject.statement.SqlUpdate;
 import org.jdbi.v3.sqlobject.transaction.Transaction;
@@ -15,9 +16,16 @@ import uk.gov.pay.ledger.event.dao.mapper.EventMapper;
 import uk.gov.pay.ledger.event.dao.mapper.EventTickerMapper;
 import uk.gov.pay.ledger.event.entity.EventEntity;
 import uk.gov.pay.ledger.event.model.EventTicker;
+import uk.gov.pay.ledger.event.model.ResourceType;
+import uk.gov.pay.ledger.eventpublisher.dao.EventOutboxDao;
+import uk.gov.pay.ledger.eventpublisher.entity.EventOutboxEntity;
 
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
@@ -29,6 +37,12 @@ public interface EventDao {
     @CreateSqlObject
     ResourceTypeDao getResourceTypeDao();
 
+    @CreateSqlObject
+    EventDigestSnapshotDao getEventDigestSnapshotDao();
+
+    @CreateSqlObject
+    EventOutboxDao getEventOutboxDao();
+
     @SqlQuery("SELECT e.id, e.sqs_message_id, e.service_id, e.live, rt.name AS resource_type_name, e.resource_external_id, e.parent_resource_external_id," +
             " e.event_date, e.event_type, e.event_data" +
             " FROM event e, resource_type rt WHERE e.id = :eventId AND e.resource_type_id = rt.id")
@@ -55,6 +69,19 @@ public interface EventDao {
     @GetGeneratedKeys
     Optional<Long> insertIfDoesNotExist(@BindBean EventEntity event, @Bind("resourceTypeId") int resourceTypeId);
 
+    @SqlBatch("INSERT INTO event(sqs_message_id, service_id, live, resource_type_id, resource_external_id, parent_resource_external_id, " +
+            "event_date, event_type, event_data) " +
+            "SELECT :sqsMessageId, :serviceId, :live, :resourceTypeId, :resourceExternalId, :parentResourceExternalId, " +
+            "       :eventDate, :eventType, CAST(:eventData as jsonb) " +
+            "WHERE NOT EXISTS ( " +
+            "    SELECT 1 " +
+            "    FROM event " +
+            "    WHERE resource_type_id = :resourceTypeId AND " +
+            "          resource_external_id = :resourceExternalId AND  " +
+            "          event_date = :eventDate AND   " +
+            "          event_type = :eventType) ")
+    int[] insertIfDoNotExist(@BindBean List<EventEntity> events, @Bind("resourceTypeId") List<Integer> resourceTypeIds);
+
     @Transaction
     default Long insertEventWithResourceTypeId(EventEntity event) {
         int resourceTypeId = getResourceTypeDao().getResourceTypeIdByName(event.getResourceType().name());
@@ -63,8 +90,73 @@ public interface EventDao {
 
     @Transaction
     default Optional<Long> insertEventIfDoesNotExistWithResourceTypeId(EventEntity event) {
+        return insertEventIfDoesNotExistWithResourceTypeId(event, null);
+    }
+
+    /**
+     * Inserts the event and, only if it was not already stored, the given outbox entry (if any) in the same
+     * transaction.
+     */
+    @Transaction
+    default Optional<Long> insertEventIfDoesNotExistWithResourceTypeId(EventEntity event, EventOutboxEntity outboxEntry) {
         int resourceTypeId = getResourceTypeDao().getResourceTypeIdByName(event.getResourceType().name());
-        return insertIfDoesNotExist(event, resourceTypeId);
+        return insertEventIfDoesNotExist(event, resourceTypeId, outboxEntry);
+    }
+
+    /**
+     * As insertEventIfDoesNotExistWithResourceTypeId, for callers that have already looked up the id of the event's
+     * resource type.
+     */
+    @Transaction
+    default Optional<Long> insertEventIfDoesNotExist(EventEntity event, int resourceTypeId, EventOutboxEntity outboxEntry) {
+        Optional<Long> eventId = insertIfDoesNotExist(event, resourceTypeId);
+        if (eventId.isPresent() && outboxEntry != null) {
+            getEventOutboxDao().insert(List.of(outboxEntry));
+        }
+        return eventId;
+    }
+
+    @Transaction
+    default int[] insertEventsIfDoNotExistWithResourceTypeId(List<EventEntity> events) {
+        return insertEventsIfDoNotExistWithResourceTypeId(events, Collections.nCopies(events.size(), null));
+    }
+
+    /**
+     * Inserts the events in a single batch, returning the number of rows inserted for each event in the order given:
+     * 1 for a new event and 0 for a duplicate of an event already stored (including one earlier in the same batch).
+     * <p>
+     * The outbox entries are given in the same order as the events, null for an event with nothing to publish. The
+     * entries for newly inserted events are written in the same transaction, so a message is published for every
+     * stored event exactly once however many times the event is delivered.
+     */
+    @Transaction
+    default int[] insertEventsIfDoNotExistWithResourceTypeId(List<EventEntity> events, List<EventOutboxEntity> outboxEntries) {
+        Map<ResourceType, Integer> resourceTypeIds = new EnumMap<>(ResourceType.class);
+        List<Integer> eventResourceTypeIds = events.stream()
+                .map(event -> resourceTypeIds.computeIfAbsent(event.getResourceType(),
+                        resourceType -> getResourceTypeDao().getResourceTypeIdByName(resourceType.name())))
+                .toList();
+        return insertEventsIfDoNotExist(events, eventResourceTypeIds, outboxEntries);
+    }
+
+    /**
+     * As insertEventsIfDoNotExistWithResourceTypeId, for callers that have already looked up the ids of the events'
+     * resource types, given in the same order as the events.
+     */
+    @Transaction
+    default int[] insertEventsIfDoNotExist(List<EventEntity> events, List<Integer> resourceTypeIds, List<EventOutboxEntity> outboxEntries) {
+        int[] insertedCounts = insertIfDoNotExist(events, resourceTypeIds);
+
+        List<EventOutboxEntity> entriesForInsertedEvents = new ArrayList<>();
+        for (int i = 0; i < insertedCounts.length; i++) {
+            if (insertedCounts[i] > 0 && outboxEntries.get(i) != null) {
+                entriesForInsertedEvents.add(outboxEntries.get(i));
+            }
+        }
+        if (!entriesForInsertedEvents.isEmpty()) {
+            getEventOutboxDao().insert(entriesForInsertedEvents);
+        }
+        return insertedCounts;
     }
 
     @SqlQuery("SELECT  e.id, e.sqs_message_id, e.service_id, e.live, rt.name AS resource_type_name, e.resource_external_id, " +
@@ -103,8 +195,25 @@ public interface EventDao {
 
     @SqlUpdate("UPDATE event SET event_data = jsonb_set(event_data, '{reference}', '\"" + REDACTED_REFERENCE_NUMBER + "\"', false) " +
             "WHERE resource_external_id = :resourceExternalId")
-    void redactReference(@Bind("resourceExternalId") String resourceExternalId);
+    void redactReferenceInEvents(@Bind("resourceExternalId") String resourceExternalId);
 
     @SqlUpdate("DELETE from event WHERE resource_external_id IN (<transactionIds>)")
-    int deleteEventsForTransactions(@BindList("transactionIds") List<String> transactionIds);
+    int deleteEvents(@BindList("transactionIds") List<String> transactionIds);
+
+    /**
+     * Digest snapshots hold a copy of the event data, so they are removed along with the events they were built from
+     * and rebuilt from the redacted events when the resource is next projected.
+     */
+    @Transaction
+    default void redactReference(String resourceExternalId) {
+        redactReferenceInEvents(resourceExternalId);
+        getEventDigestSnapshotDao().deleteForResources(List.of(resourceExternalId));
+    }
+
+    @Transaction
+    default int deleteEventsForTransactions(List<String> transactionIds) {
+        int noOfEventsDeleted = deleteEvents(transactionIds);
+        getEventDigestSnapshotDao().deleteForResources(transactionIds);
+        return noOfEventsDeleted;
+    }
 }
@@ -0,0 +1,62 @@
+package uk.gov.pay.ledger.event.dao;
+
+import org.jdbi.v3.sqlobject.config.RegisterRowMapper;
+import org.jdbi.v3.sqlobject.customizer.Bind;
+import org.jdbi.v3.sqlobject.customizer.BindBean;
+import org.jdbi.v3.sqlobject.customizer.BindList;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+import org.jdbi.v3.sqlobject.statement.SqlUpdate;
+import uk.gov.pay.ledger.event.dao.mapper.EventDigestSnapshotMapper;
+import uk.gov.pay.ledger.event.entity.EventDigestSnapshotEntity;
+
+import java.util.List;
+import java.util.Optional;
+
+@RegisterRowMapper(EventDigestSnapshotMapper.class)
+public interface EventDigestSnapshotDao {
+
+    @SqlQuery("SELECT * FROM event_digest_snapshot" +
+            " WHERE resource_external_id = :resourceExternalId AND resource_type = :resourceType")
+    Optional<EventDigestSnapshotEntity> findByResourceExternalIdAndType(@Bind("resourceExternalId") String resourceExternalId,
+                                                                       @Bind("resourceType") String resourceType);
+
+    @SqlUpdate("INSERT INTO event_digest_snapshot(resource_external_id, resource_type, parent_resource_external_id, " +
+            "service_id, live, event_count, event_aggregate, salient_event_types, latest_salient_event_type, " +
+            "most_recent_event_date, earliest_event_date) " +
+            "VALUES (:resourceExternalId, :resourceType, :parentResourceExternalId, :serviceId, :live, :eventCount, " +
+            "CAST(:eventAggregate as jsonb), CAST(:salientEventTypes as jsonb), :latestSalientEventType, " +
+            ":mostRecentEventDate, :earliestEventDate) " +
+            "ON CONFLICT (resource_external_id, resource_type) DO UPDATE SET " +
+            "parent_resource_external_id = EXCLUDED.parent_resource_external_id, " +
+            "service_id = EXCLUDED.service_id, " +
+            "live = EXCLUDED.live, " +
+            "event_count = EXCLUDED.event_count, " +
+            "event_aggregate = EXCLUDED.event_aggregate, " +
+            "salient_event_types = EXCLUDED.salient_event_types, " +
+            "latest_salient_event_type = EXCLUDED.latest_salient_event_type, " +
+            "most_recent_event_date = EXCLUDED.most_recent_event_date, " +
+            "earliest_event_date = EXCLUDED.earliest_event_date " +
+            "WHERE EXCLUDED.event_count >= event_digest_snapshot.event_count")
+    void upsert(@BindBean EventDigestSnapshotEntity snapshot);
+
+    /**
+     * Only replaces the snapshot if nothing else has written to it since it was read, identified by the event count
+     * being unchanged. Returns the number of rows updated so callers can fall back to a full rebuild.
+     */
+    @SqlUpdate("UPDATE event_digest_snapshot SET " +
+            "parent_resource_external_id = :parentResourceExternalId, " +
+            "service_id = :serviceId, " +
+            "live = :live, " +
+            "event_count = :eventCount, " +
+            "event_aggregate = CAST(:eventAggregate as jsonb), " +
+            "salient_event_types = CAST(:salientEventTypes as jsonb), " +
+            "latest_salient_event_type = :latestSalientEventType, " +
+            "most_recent_event_date = :mostRecentEventDate, " +
+            "earliest_event_date = :earliestEventDate " +
+            "WHERE resource_external_id = :resourceExternalId AND resource_type = :resourceType " +
+            "AND event_count = :previousEventCount")
+    int updateIfEventCountIs(@BindBean EventDigestSnapshotEntity snapshot, @Bind("previousEventCount") int previousEventCount);
+
+    @SqlUpdate("DELETE FROM event_digest_snapshot WHERE resource_external_id IN (<resourceExternalIds>)")
+    int deleteForResources(@BindList("resourceExternalIds") List<String> resourceExternalIds);
+}
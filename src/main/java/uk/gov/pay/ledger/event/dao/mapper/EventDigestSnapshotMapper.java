@@ -0,0 +1,32 @@
+package uk.gov.pay.ledger.event.dao.mapper;
+
+import org.jdbi.v3.core.mapper.RowMapper;
+import org.jdbi.v3.core.statement.StatementContext;
+import uk.gov.pay.ledger.event.entity.EventDigestSnapshotEntity;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+import static uk.gov.pay.ledger.util.dao.MapperUtils.getBooleanWithNullCheck;
+
+public class EventDigestSnapshotMapper implements RowMapper<EventDigestSnapshotEntity> {
+
+    @Override
+    public EventDigestSnapshotEntity map(ResultSet resultSet, StatementContext statementContext) throws SQLException {
+        return new EventDigestSnapshotEntity(
+                resultSet.getString("resource_external_id"),
+                resultSet.getString("resource_type"),
+                resultSet.getString("parent_resource_external_id"),
+                resultSet.getString("service_id"),
+                getBooleanWithNullCheck(resultSet, "live"),
+                resultSet.getInt("event_count"),
+                resultSet.getString("event_aggregate"),
+                resultSet.getString("salient_event_types"),
+                resultSet.getString("latest_salient_event_type"),
+                ZonedDateTime.ofInstant(resultSet.getTimestamp("most_recent_event_date").toInstant(), ZoneOffset.UTC),
+                ZonedDateTime.ofInstant(resultSet.getTimestamp("earliest_event_date").toInstant(), ZoneOffset.UTC)
+        );
+    }
+}
@@ -0,0 +1,142 @@
+package uk.gov.pay.ledger.event.entity;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import uk.gov.pay.ledger.event.model.EventDigest;
+import uk.gov.pay.ledger.event.model.ResourceType;
+import uk.gov.pay.ledger.event.model.SalientEventType;
+import uk.gov.pay.ledger.util.JsonParser;
+
+import java.time.ZonedDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+public class EventDigestSnapshotEntity {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private String resourceExternalId;
+    private String resourceType;
+    private String parentResourceExternalId;
+    private String serviceId;
+    private Boolean live;
+    private Integer eventCount;
+    private String eventAggregate;
+    private String salientEventTypes;
+    private String latestSalientEventType;
+    private ZonedDateTime mostRecentEventDate;
+    private ZonedDateTime earliestEventDate;
+
+    public EventDigestSnapshotEntity(String resourceExternalId,
+                                     String resourceType,
+                                     String parentResourceExternalId,
+                                     String serviceId,
+                                     Boolean live,
+                                     Integer eventCount,
+                                     String eventAggregate,
+                                     String salientEventTypes,
+                                     String latestSalientEventType,
+                                     ZonedDateTime mostRecentEventDate,
+                                     ZonedDateTime earliestEventDate) {
+        this.resourceExternalId = resourceExternalId;
+        this.resourceType = resourceType;
+        this.parentResourceExternalId = parentResourceExternalId;
+        this.serviceId = serviceId;
+        this.live = live;
+        this.eventCount = eventCount;
+        this.eventAggregate = eventAggregate;
+        this.salientEventTypes = salientEventTypes;
+        this.latestSalientEventType = latestSalientEventType;
+        this.mostRecentEventDate = mostRecentEventDate;
+        this.earliestEventDate = earliestEventDate;
+    }
+
+    public static EventDigestSnapshotEntity from(EventDigest eventDigest) {
+        try {
+            return new EventDigestSnapshotEntity(
+                    eventDigest.getResourceExternalId(),
+                    eventDigest.getResourceType().name(),
+                    eventDigest.getParentResourceExternalId(),
+                    eventDigest.getServiceId(),
+                    eventDigest.isLive(),
+                    eventDigest.getEventCount(),
+                    objectMapper.writeValueAsString(eventDigest.getEventAggregate()),
+                    objectMapper.writeValueAsString(eventDigest.getSalientEventTypes()),
+                    eventDigest.getLatestSalientEventType().map(Enum::name).orElse(null),
+                    eventDigest.getMostRecentEventTimestamp(),
+                    eventDigest.getEventCreatedDate());
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Error converting event digest to snapshot", e);
+        }
+    }
+
+    public EventDigest toEventDigest() {
+        return EventDigest.fromSnapshot(
+                serviceId,
+                live,
+                mostRecentEventDate,
+                SalientEventType.from(latestSalientEventType).orElse(null),
+                ResourceType.valueOf(resourceType.toUpperCase()),
+                resourceExternalId,
+                parentResourceExternalId,
+                eventCount,
+                JsonParser.jsonStringToMap(eventAggregate),
+                earliestEventDate,
+                parseSalientEventTypes());
+    }
+
+    private Set<SalientEventType> parseSalientEventTypes() {
+        try {
+            List<SalientEventType> types = objectMapper.readValue(salientEventTypes, new TypeReference<>() {});
+            return types.isEmpty() ? EnumSet.noneOf(SalientEventType.class) : EnumSet.copyOf(types);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Error converting snapshot salient event types", e);
+        }
+    }
+
+    public String getResourceExternalId() {
+        return resourceExternalId;
+    }
+
+    public String getResourceType() {
+        return resourceType;
+    }
+
+    public String getParentResourceExternalId() {
+        return parentResourceExternalId;
+    }
+
+    public String getServiceId() {
+        return serviceId;
+    }
+
+    public Boolean getLive() {
+        return live;
+    }
+
+    public Integer getEventCount() {
+        return eventCount;
+    }
+
+    public String getEventAggregate() {
+        return eventAggregate;
+    }
+
+    public String getSalientEventTypes() {
+        return salientEventTypes;
+    }
+
+    public String getLatestSalientEventType() {
+        return latestSalientEventType;
+    }
+
+    public ZonedDateTime getMostRecentEventDate() {
+        return mostRecentEventDate;
+    }
+
+    public ZonedDateTime getEarliestEventDate() {
+        return earliestEventDate;
+    }
+}
@@ -1,16 +1,22 @@
 package uk.gov.pay.ledger.event.entity;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import com.fasterxml.jackson.databind.annotation.JsonNaming;
 import uk.gov.pay.ledger.event.model.ResourceType;
 
+import java.io.UncheckedIOException;
 import java.time.ZonedDateTime;
 import java.util.Objects;
 
 @JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
 public class EventEntity {
 
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
     @JsonIgnore
     private Long id;
     private String sqsMessageId;
@@ -23,6 +29,8 @@ public class EventEntity {
     private String eventType;
     private String eventData;
     private boolean reprojectDomainObject;
+    @JsonIgnore
+    private JsonNode eventDataNode;
 
     public EventEntity() {
     }
@@ -65,6 +73,24 @@ public class EventEntity {
                 eventData, reprojectDomainObject);
     }
 
+    /**
+     * Creates an event from a payload that has already been parsed, so that it is not parsed again.
+     */
+    public EventEntity(String sqsMessageId,
+                       String serviceId,
+                       Boolean live,
+                       ResourceType resourceType,
+                       String resourceExternalId,
+                       String parentResourceExternalId,
+                       ZonedDateTime eventDate,
+                       String eventType,
+                       JsonNode eventDataNode,
+                       boolean reprojectDomainObject) {
+        this(sqsMessageId, serviceId, live, resourceType, resourceExternalId, parentResourceExternalId, eventDate, eventType,
+                eventDataNode.toString(), reprojectDomainObject);
+        this.eventDataNode = eventDataNode;
+    }
+
     public Long getId() {
         return id;
     }
@@ -105,6 +131,22 @@ public class EventEntity {
         return eventData;
     }
 
+    /**
+     * Returns the event data parsed as JSON. The data is parsed the first time it is needed and the parsed payload
+     * is then shared by everything that reads the event, so it must not be modified.
+     */
+    @JsonIgnore
+    public JsonNode getEventDataNode() {
+        if (eventDataNode == null) {
+            try {
+                eventDataNode = objectMapper.readTree(eventData);
+            } catch (JsonProcessingException e) {
+                throw new UncheckedIOException("Unable to parse event data", e);
+            }
+        }
+        return eventDataNode;
+    }
+
     public boolean isReprojectDomainObject() {
         return reprojectDomainObject;
     }
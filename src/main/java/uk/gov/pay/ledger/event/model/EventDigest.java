@@ -1,15 +1,20 @@
 package uk.gov.pay.ledger.event.model;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import uk.gov.pay.ledger.event.entity.EventEntity;
 import uk.gov.pay.ledger.exception.EmptyEventsException;
-import uk.gov.pay.ledger.util.JsonParser;
 
 import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 import static org.apache.commons.lang3.StringUtils.isNotEmpty;
 
@@ -26,6 +31,7 @@ public class EventDigest {
     private Map<String, Object> eventAggregate;
     private final ZonedDateTime eventCreatedDate;
     private final SalientEventType latestSalientEventType;
+    private final Set<SalientEventType> salientEventTypes;
 
     private EventDigest(
             String serviceId,
@@ -38,7 +44,8 @@ public class EventDigest {
             Integer eventCount,
             Map<String, Object> eventAggregate,
             ZonedDateTime eventCreatedDate,
-            SalientEventType latestSalientEventType) {
+            SalientEventType latestSalientEventType,
+            Set<SalientEventType> salientEventTypes) {
         this.serviceId = serviceId;
         this.live = live;
         this.mostRecentEventTimestamp = mostRecentEventTimestamp;
@@ -50,35 +57,54 @@ public class EventDigest {
         this.eventAggregate = eventAggregate;
         this.eventCreatedDate = eventCreatedDate;
         this.latestSalientEventType = latestSalientEventType;
+        this.salientEventTypes = salientEventTypes;
     }
 
+    /**
+     * Builds the digest from the events for a resource, most recent first, in a single pass. Where events disagree
+     * the most recent value wins, so a field of an event's data is only converted if no more recent event has set it.
+     */
     public static EventDigest fromEventList(List<EventEntity> events) {
-        var eventPayload = buildEventAggregate(events);
-
-        var latestEvent = events.stream()
-                .findFirst()
-                .orElseThrow(() -> new EmptyEventsException("No events found"));
-
-        var latestSalientEventType = events.stream()
-                .map(EventEntity::getEventType)
-                .map(SalientEventType::from)
-                .flatMap(Optional::stream)
-                .findFirst()
-                .orElse(null);
-
-        var earliestDate = events.stream()
-                .map(EventEntity::getEventDate)
-                .min(ZonedDateTime::compareTo)
-                .orElseThrow();
-
-        String parentResourceExternalId = deriveParentResourceExternalId(events);
-        String serviceId = deriveServiceId(events);
-
-        Boolean isLive = events.stream()
-                .filter(event -> event.getLive() != null)
-                .map(EventEntity::getLive)
-                .findFirst()
-                .orElse(null);
+        if (events.isEmpty()) {
+            throw new EmptyEventsException("No events found");
+        }
+        var latestEvent = events.get(0);
+
+        Map<String, Object> eventAggregate = new HashMap<>();
+        Set<SalientEventType> salientEventTypes = EnumSet.noneOf(SalientEventType.class);
+        SalientEventType latestSalientEventType = null;
+        ZonedDateTime earliestDate = latestEvent.getEventDate();
+        String parentResourceExternalId = null;
+        String serviceId = null;
+        Boolean isLive = null;
+
+        for (EventEntity event : events) {
+            eventDataFieldsOf(event).forEachRemaining(field -> {
+                if (!eventAggregate.containsKey(field.getKey())) {
+                    eventAggregate.put(field.getKey(), toValue(field.getValue()));
+                }
+            });
+
+            SalientEventType salientEventType = SalientEventType.fromName(event.getEventType());
+            if (salientEventType != null) {
+                salientEventTypes.add(salientEventType);
+                if (latestSalientEventType == null) {
+                    latestSalientEventType = salientEventType;
+                }
+            }
+            if (event.getEventDate().isBefore(earliestDate)) {
+                earliestDate = event.getEventDate();
+            }
+            if (parentResourceExternalId == null && isNotEmpty(event.getParentResourceExternalId())) {
+                parentResourceExternalId = event.getParentResourceExternalId();
+            }
+            if (serviceId == null && isNotEmpty(event.getServiceId())) {
+                serviceId = event.getServiceId();
+            }
+            if (isLive == null) {
+                isLive = event.getLive();
+            }
+        }
 
         return new EventDigest(
                 serviceId,
@@ -89,34 +115,83 @@ public class EventDigest {
                 latestEvent.getResourceExternalId(),
                 parentResourceExternalId,
                 events.size(),
-                eventPayload,
+                eventAggregate,
                 earliestDate,
-                latestSalientEventType
+                latestSalientEventType,
+                salientEventTypes
         );
     }
 
-    private static String deriveServiceId(List<EventEntity> events) {
-        return events.stream()
-                .filter(event -> isNotEmpty(event.getServiceId()))
-                .map(EventEntity::getServiceId)
-                .findFirst()
-                .orElse(null);
+    public static EventDigest fromSnapshot(String serviceId,
+                                           Boolean live,
+                                           ZonedDateTime mostRecentEventTimestamp,
+                                           SalientEventType latestSalientEventType,
+                                           ResourceType resourceType,
+                                           String resourceExternalId,
+                                           String parentResourceExternalId,
+                                           Integer eventCount,
+                                           Map<String, Object> eventAggregate,
+                                           ZonedDateTime eventCreatedDate,
+                                           Set<SalientEventType> salientEventTypes) {
+        return new EventDigest(serviceId, live, mostRecentEventTimestamp, latestSalientEventType, resourceType,
+                resourceExternalId, parentResourceExternalId, eventCount, eventAggregate, eventCreatedDate,
+                latestSalientEventType, salientEventTypes);
+    }
+
+    /**
+     * An event can only be folded into an existing digest if it is more recent than every event already in it,
+     * otherwise the "most recent value wins" rules used to build the digest would be applied in the wrong order and
+     * the digest has to be rebuilt from the full event history.
+     */
+    public boolean canFold(EventEntity event) {
+        return event.getEventDate().isAfter(mostRecentEventTimestamp);
+    }
+
+    /**
+     * Returns a new digest with the given event applied as the most recent event for the resource, giving the same
+     * result as {@link #fromEventList(List)} over the full event history. This digest is left unchanged.
+     */
+    public EventDigest fold(EventEntity event) {
+        Map<String, Object> foldedEventAggregate = new HashMap<>(eventAggregate);
+        eventDataFieldsOf(event).forEachRemaining(field -> foldedEventAggregate.put(field.getKey(), toValue(field.getValue())));
+
+        Optional<SalientEventType> eventSalientEventType = SalientEventType.from(event.getEventType());
+        SalientEventType foldedLatestSalientEventType = eventSalientEventType.orElse(latestSalientEventType);
+
+        Set<SalientEventType> foldedSalientEventTypes = EnumSet.noneOf(SalientEventType.class);
+        foldedSalientEventTypes.addAll(salientEventTypes);
+        eventSalientEventType.ifPresent(foldedSalientEventTypes::add);
+
+        return new EventDigest(
+                isNotEmpty(event.getServiceId()) ? event.getServiceId() : serviceId,
+                event.getLive() != null ? event.getLive() : live,
+                event.getEventDate(),
+                foldedLatestSalientEventType,
+                event.getResourceType(),
+                event.getResourceExternalId(),
+                isNotEmpty(event.getParentResourceExternalId()) ? event.getParentResourceExternalId() : parentResourceExternalId,
+                eventCount + 1,
+                foldedEventAggregate,
+                eventCreatedDate,
+                foldedLatestSalientEventType,
+                foldedSalientEventTypes
+        );
     }
 
-    private static String deriveParentResourceExternalId(List<EventEntity> events) {
-        return events.stream()
-                .filter(event -> isNotEmpty(event.getParentResourceExternalId()))
-                .map(EventEntity::getParentResourceExternalId)
-                .findFirst()
-                .orElse(null);
+    private static Iterator<Map.Entry<String, JsonNode>> eventDataFieldsOf(EventEntity event) {
+        JsonNode eventData = event.getEventDataNode();
+        if (!eventData.isObject()) {
+            throw new RuntimeException("Error converting event Json to Map");
+        }
+        return eventData.fields();
     }
 
-    private static Map<String, Object> buildEventAggregate(List<EventEntity> events) {
-        return events.stream()
-                .map(EventEntity::getEventData)
-                .map(JsonParser::jsonStringToMap)
-                .flatMap(m -> m.entrySet().stream())
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (later, earlier) -> later));
+    private static Object toValue(JsonNode value) {
+        try {
+            return objectMapper.treeToValue(value, Object.class);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Error converting event Json to Map");
+        }
     }
 
     public String getServiceId() {
@@ -162,4 +237,8 @@ public class EventDigest {
     public Optional<SalientEventType> getLatestSalientEventType() {
         return Optional.ofNullable(latestSalientEventType);
     }
+
+    public Set<SalientEventType> getSalientEventTypes() {
+        return Collections.unmodifiableSet(salientEventTypes);
+    }
 }
@@ -1,7 +1,10 @@
 package uk.gov.pay.ledger.event.model;
 
 import java.util.Arrays;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 public enum SalientEventType {
     PAYMENT_CREATED,
@@ -62,9 +65,17 @@ public enum SalientEventType {
     AGREEMENT_CANCELLED_BY_USER,
     AGREEMENT_INACTIVATED;
 
+    private static final Map<String, SalientEventType> BY_NAME = Arrays.stream(values())
+            .collect(Collectors.toUnmodifiableMap(SalientEventType::name, Function.identity()));
+
     public static Optional<SalientEventType> from(String eventName) {
-        return Arrays.stream(SalientEventType.values())
-                .filter(v -> v.name().equals(eventName))
-                .findFirst();
+        return Optional.ofNullable(fromName(eventName));
+    }
+
+    /**
+     * Looks up the salient event type with the given name, returning null if the event type is not salient.
+     */
+    public static SalientEventType fromName(String eventName) {
+        return eventName == null ? null : BY_NAME.get(eventName);
     }
 }
@@ -29,6 +29,10 @@ public class CreateEventResponse {
         this.state = state;
     }
 
+    public static CreateEventResponse insertedEventResponse() {
+        return new CreateEventResponse(CreateEventState.INSERTED);
+    }
+
     public static CreateEventResponse ignoredEventResponse() {
         return new CreateEventResponse(CreateEventState.IGNORED);
     }
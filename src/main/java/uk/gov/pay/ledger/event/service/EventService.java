@@ -1,22 +1,47 @@
 package uk.gov.pay.ledger.event.service;
 
 import com.google.inject.Inject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import uk.gov.pay.ledger.event.dao.EventDao;
+import uk.gov.pay.ledger.event.dao.EventDigestSnapshotDao;
+import uk.gov.pay.ledger.event.entity.EventDigestSnapshotEntity;
 import uk.gov.pay.ledger.event.entity.EventEntity;
 import uk.gov.pay.ledger.event.model.EventDigest;
 import uk.gov.pay.ledger.event.model.ResourceType;
 import uk.gov.pay.ledger.event.model.response.CreateEventResponse;
+import uk.gov.pay.ledger.eventpublisher.entity.EventOutboxEntity;
+import uk.gov.pay.ledger.referencedata.ReferenceDataCache;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+import static uk.gov.pay.ledger.event.model.response.CreateEventResponse.ignoredEventResponse;
+import static uk.gov.pay.ledger.event.model.response.CreateEventResponse.insertedEventResponse;
 
 public class EventService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventService.class);
+
     private EventDao eventDao;
+    private EventDigestSnapshotDao eventDigestSnapshotDao;
+    private ReferenceDataCache referenceDataCache;
 
     @Inject
-    public EventService(EventDao eventDao) {
+    public EventService(EventDao eventDao, EventDigestSnapshotDao eventDigestSnapshotDao, ReferenceDataCache referenceDataCache) {
         this.eventDao = eventDao;
+        this.eventDigestSnapshotDao = eventDigestSnapshotDao;
+        this.referenceDataCache = referenceDataCache;
     }
 
     public EventDigest getEventDigestForResourceAndType(String resourceExternalId, ResourceType resourceType) {
@@ -31,20 +56,137 @@ public class EventService {
         return EventDigest.fromEventList(events);
     }
 
+    /**
+     * Builds the digest of each of the resources from their events, loaded in a single query. Resources without any
+     * events are left out.
+     */
+    public Map<String, EventDigest> getEventDigestsForResources(Set<String> resourceExternalIds) {
+        if (resourceExternalIds.isEmpty()) {
+            return Map.of();
+        }
+
+        Map<String, List<EventEntity>> eventsByResource = new HashMap<>();
+        for (EventEntity event : eventDao.findEventsForExternalIds(resourceExternalIds)) {
+            eventsByResource.computeIfAbsent(event.getResourceExternalId(), resourceExternalId -> new ArrayList<>()).add(event);
+        }
+
+        Map<String, EventDigest> eventDigests = new HashMap<>();
+        eventsByResource.forEach((resourceExternalId, events) -> {
+            // the events are loaded oldest first, but a digest is built from the latest event first
+            Collections.reverse(events);
+            eventDigests.put(resourceExternalId, EventDigest.fromEventList(events));
+        });
+        return eventDigests;
+    }
+
     public List<EventEntity> getEventsForResource(String resourceExternalId) {
         return eventDao.getEventsByResourceExternalId(resourceExternalId);
     }
 
     public CreateEventResponse createIfDoesNotExist(EventEntity event) {
+        return createIfDoesNotExist(event, null);
+    }
+
+    private CreateEventResponse createIfDoesNotExist(EventEntity event, EventOutboxEntity outboxEntry) {
         try {
-            Optional<Long> status = eventDao.insertEventIfDoesNotExistWithResourceTypeId(event);
+            int resourceTypeId = referenceDataCache.getResourceTypeId(event.getResourceType());
+            Optional<Long> status = eventDao.insertEventIfDoesNotExist(event, resourceTypeId, outboxEntry);
             return new CreateEventResponse(status);
         } catch (Exception e) {
             return new CreateEventResponse(e);
         }
     }
 
+    public List<CreateEventResponse> createAllIfDoNotExist(List<EventEntity> events) {
+        return createAllIfDoNotExist(events, Collections.nCopies(events.size(), null));
+    }
+
+    /**
+     * Stores the events in one round trip, returning a response for each event in the order given. If the batch
+     * fails as a whole the events are stored one at a time, so that a single bad event is reported against that
+     * event rather than failing the others.
+     * <p>
+     * The outbox entries are given in the same order as the events, null for an event with nothing to publish, and
+     * are stored along with the events that are newly inserted.
+     */
+    public List<CreateEventResponse> createAllIfDoNotExist(List<EventEntity> events, List<EventOutboxEntity> outboxEntries) {
+        if (events.isEmpty()) {
+            return List.of();
+        }
+
+        try {
+            List<Integer> resourceTypeIds = events.stream()
+                    .map(event -> referenceDataCache.getResourceTypeId(event.getResourceType()))
+                    .toList();
+            int[] insertedCounts = eventDao.insertEventsIfDoNotExist(events, resourceTypeIds, outboxEntries);
+            return Arrays.stream(insertedCounts)
+                    .mapToObj(insertedCount -> insertedCount > 0 ? insertedEventResponse() : ignoredEventResponse())
+                    .toList();
+        } catch (Exception e) {
+            LOGGER.warn("Failed to store batch of events, storing events individually",
+                    kv("batch_size", events.size()),
+                    kv("error", e.getMessage()));
+            return IntStream.range(0, events.size())
+                    .mapToObj(i -> createIfDoesNotExist(events.get(i), outboxEntries.get(i)))
+                    .toList();
+        }
+    }
+
     public EventDigest getEventDigestForResource(EventEntity event) {
         return getEventDigestForResource(event.getResourceExternalId());
     }
+
+    /**
+     * Returns the digest for the resource some events belong to, including those events, and stores it as the
+     * snapshot for the resource. All events must belong to the same resource.
+     *
+     * Newly inserted events that are more recent than the stored snapshot are folded into it, so the cost of
+     * ingesting an event does not grow with the number of events the resource already has. Everything else falls
+     * back to rebuilding the digest from the full event history: events arriving out of order, events that were
+     * already stored (the snapshot may not have been written if processing failed part way through), reprojections
+     * and resources without a snapshot. Losing a race to update the snapshot also falls back to a rebuild.
+     */
+    public EventDigest getEventDigestIncludingEvents(List<EventEntity> events, boolean areNewEvents) {
+        EventEntity firstEvent = events.get(0);
+
+        if (areNewEvents && events.stream().noneMatch(EventEntity::isReprojectDomainObject)) {
+            Optional<EventDigest> mayBeSnapshotDigest = findSnapshotDigest(firstEvent.getResourceExternalId(), firstEvent.getResourceType());
+            if (mayBeSnapshotDigest.isPresent()) {
+                EventDigest snapshotDigest = mayBeSnapshotDigest.get();
+                Optional<EventDigest> mayBeFoldedDigest = fold(snapshotDigest, events);
+                if (mayBeFoldedDigest.isPresent() && eventDigestSnapshotDao.updateIfEventCountIs(
+                        EventDigestSnapshotEntity.from(mayBeFoldedDigest.get()), snapshotDigest.getEventCount()) == 1) {
+                    return mayBeFoldedDigest.get();
+                }
+            }
+        }
+
+        EventDigest eventDigest = getEventDigestForResourceAndType(firstEvent.getResourceExternalId(), firstEvent.getResourceType());
+        eventDigestSnapshotDao.upsert(EventDigestSnapshotEntity.from(eventDigest));
+        return eventDigest;
+    }
+
+    private Optional<EventDigest> fold(EventDigest snapshotDigest, List<EventEntity> events) {
+        EventDigest eventDigest = snapshotDigest;
+        for (EventEntity event : events.stream().sorted(Comparator.comparing(EventEntity::getEventDate)).toList()) {
+            if (!eventDigest.canFold(event)) {
+                return Optional.empty();
+            }
+            eventDigest = eventDigest.fold(event);
+        }
+        return Optional.of(eventDigest);
+    }
+
+    /**
+     * Returns the stored snapshot for a resource, rebuilding it from the full event history only if there is none.
+     */
+    public EventDigest getLatestEventDigestForResource(String resourceExternalId, ResourceType resourceType) {
+        return findSnapshotDigest(resourceExternalId, resourceType)
+                .orElseGet(() -> getEventDigestForResourceAndType(resourceExternalId, resourceType));
+    }
+
+    private Optional<EventDigest> findSnapshotDigest(String resourceExternalId, ResourceType resourceType) {
+        return eventDigestSnapshotDao.findByResourceExternalIdAndType(resourceExternalId, resourceType.name())
+                .map(EventDigestSnapshotEntity::toEventDigest);
+    }
 }
@@ -0,0 +1,187 @@
+package uk.gov.pay.ledger.eventpublisher;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.inject.Inject;
+import io.dropwizard.core.setup.Environment;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.ledger.app.LedgerConfig;
+import uk.gov.pay.ledger.app.config.SnsConfig;
+import uk.gov.pay.ledger.eventpublisher.dao.EventOutboxDao;
+import uk.gov.pay.ledger.eventpublisher.entity.EventOutboxEntity;
+import uk.gov.pay.ledger.queue.IngestStageMetrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+import static uk.gov.pay.ledger.queue.IngestStageMetrics.Stage.SNS_PUBLISH;
+import static uk.gov.service.payments.logging.LoggingKeys.LEDGER_EVENT_TYPE;
+import static uk.gov.service.payments.logging.LoggingKeys.RESOURCE_EXTERNAL_ID;
+import static uk.gov.service.payments.logging.LoggingKeys.SQS_MESSAGE_ID;
+
+/**
+ * Publishes the messages stored in the event outbox to SNS in the background, so that ingesting an event does not
+ * wait on SNS and a message is not lost if SNS is unavailable or the application restarts before it is published.
+ * <p>
+ * Each run publishes batches of due entries until the outbox has no more. A batch is claimed for the lease in a short
+ * statement of its own and published without holding any locks or connection, and then the entries that were
+ * published are deleted and those that were not are backed off.
+ */
+public class EventOutboxDrainer implements Managed {
+
+    private static final String EVENT_OUTBOX_DRAINER_THREAD_NAME = "event-outbox-drainer-%d";
+    private static final String UNKNOWN_RESOURCE_TYPE = "unknown";
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventOutboxDrainer.class);
+
+    private final ScheduledExecutorService scheduledExecutorService;
+    private final MetricRegistry metricRegistry;
+    private final SnsConfig snsConfig;
+    private final EventOutboxDao eventOutboxDao;
+    private final EventPublisher eventPublisher;
+    private final IngestStageMetrics ingestStageMetrics;
+    private final AtomicLong backlog = new AtomicLong();
+    private final AtomicLong lagInSeconds = new AtomicLong();
+    private volatile boolean running;
+
+    @Inject
+    public EventOutboxDrainer(Environment environment,
+                              LedgerConfig configuration,
+                              EventOutboxDao eventOutboxDao,
+                              EventPublisher eventPublisher,
+                              IngestStageMetrics ingestStageMetrics) {
+        this(environment.lifecycle().scheduledExecutorService(EVENT_OUTBOX_DRAINER_THREAD_NAME).threads(1).build(),
+                environment.metrics(), configuration.getSnsConfig(), eventOutboxDao, eventPublisher, ingestStageMetrics);
+    }
+
+    EventOutboxDrainer(ScheduledExecutorService scheduledExecutorService,
+                       MetricRegistry metricRegistry,
+                       SnsConfig snsConfig,
+                       EventOutboxDao eventOutboxDao,
+                       EventPublisher eventPublisher,
+                       IngestStageMetrics ingestStageMetrics) {
+        this.scheduledExecutorService = scheduledExecutorService;
+        this.metricRegistry = metricRegistry;
+        this.snsConfig = snsConfig;
+        this.eventOutboxDao = eventOutboxDao;
+        this.eventPublisher = eventPublisher;
+        this.ingestStageMetrics = ingestStageMetrics;
+        metricRegistry.register("event-outbox.backlog", (Gauge<Long>) backlog::get);
+        metricRegistry.register("event-outbox.lag-seconds", (Gauge<Long>) lagInSeconds::get);
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        scheduledExecutorService.scheduleWithFixedDelay(
+                this::drain,
+                snsConfig.getOutboxDrainIntervalInMilliseconds(),
+                snsConfig.getOutboxDrainIntervalInMilliseconds(),
+                TimeUnit.MILLISECONDS
+        );
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        scheduledExecutorService.shutdown();
+    }
+
+    private void drain() {
+        try (Timer.Context ignored = metricRegistry.timer("event-outbox.drain-time").time()) {
+            int drainedEntries;
+            do {
+                drainedEntries = publishBatch();
+            } while (running && drainedEntries == snsConfig.getOutboxBatchSize());
+        } catch (Exception e) {
+            LOGGER.error("Event outbox drainer exception", e);
+        }
+
+        try {
+            updateBacklogMetrics();
+        } catch (Exception e) {
+            LOGGER.warn("Failed to measure event outbox backlog", kv("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Claims and publishes a batch of due entries, returning the number of entries that were claimed.
+     */
+    int publishBatch() {
+        List<EventOutboxEntity> entries = new ArrayList<>(eventOutboxDao.claimDueForPublishing(
+                snsConfig.getOutboxBatchSize(), snsConfig.getOutboxClaimLeaseInSeconds()));
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        entries.sort(Comparator.comparing(EventOutboxEntity::getId));
+
+        Map<TopicName, Map<String, EventOutboxEntity>> entriesByTopic = new EnumMap<>(TopicName.class);
+        for (EventOutboxEntity entry : entries) {
+            entriesByTopic.computeIfAbsent(entry.getTopicName(), topicName -> new LinkedHashMap<>())
+                    .put(String.valueOf(entry.getId()), entry);
+        }
+
+        List<Long> publishedIds = new ArrayList<>();
+        List<Long> failedIds = new ArrayList<>();
+        entriesByTopic.forEach((topicName, entriesById) -> {
+            Map<String, String> messagesById = new LinkedHashMap<>();
+            entriesById.forEach((id, entry) -> messagesById.put(id, entry.getMessage()));
+
+            long startedAt = System.nanoTime();
+            Map<String, String> failures = eventPublisher.publishMessagesToTopic(messagesById, topicName);
+            long durationPerEntryInNanos = (System.nanoTime() - startedAt) / entriesById.size();
+
+            entriesById.forEach((id, entry) -> {
+                if (failures.containsKey(id)) {
+                    failedIds.add(entry.getId());
+                    logFailedEntry(entry, topicName, failures.get(id));
+                } else {
+                    publishedIds.add(entry.getId());
+                }
+                ingestStageMetrics.record(SNS_PUBLISH, Objects.requireNonNullElse(entry.getResourceType(), UNKNOWN_RESOURCE_TYPE),
+                        durationPerEntryInNanos);
+            });
+            LOGGER.info("Published messages to SNS topic",
+                    kv("sns_topic", topicName),
+                    kv("number_of_messages", entriesById.size() - failures.size()),
+                    kv("number_of_failed_messages", failures.size()));
+        });
+
+        if (!publishedIds.isEmpty()) {
+            eventOutboxDao.delete(publishedIds);
+        }
+        if (!failedIds.isEmpty()) {
+            eventOutboxDao.scheduleRetry(failedIds, snsConfig.getOutboxMaximumRetryDelayInSeconds());
+        }
+        metricRegistry.meter("event-outbox.published-messages").mark(publishedIds.size());
+        metricRegistry.meter("event-outbox.failed-messages").mark(failedIds.size());
+
+        return entries.size();
+    }
+
+    private void logFailedEntry(EventOutboxEntity entry, TopicName topicName, String error) {
+        LOGGER.warn("Failed to publish event for message, it will be retried",
+                kv("sns_topic", topicName),
+                kv(SQS_MESSAGE_ID, entry.getSqsMessageId()),
+                kv(RESOURCE_EXTERNAL_ID, entry.getResourceExternalId()),
+                kv(LEDGER_EVENT_TYPE, entry.getEventType()),
+                kv("attempts", entry.getAttempts() + 1),
+                kv("error", error));
+    }
+
+    private void updateBacklogMetrics() {
+        backlog.set(eventOutboxDao.countEntries());
+        lagInSeconds.set(eventOutboxDao.getAgeOfOldestEntryInSeconds());
+    }
+}
@@ -1,11 +1,25 @@
 package uk.gov.pay.ledger.eventpublisher;
 
 import software.amazon.awssdk.services.sns.SnsClient;
-import software.amazon.awssdk.services.sns.model.PublishRequest;
+import software.amazon.awssdk.services.sns.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequest;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequestEntry;
+import software.amazon.awssdk.services.sns.model.PublishBatchResponse;
 
 import jakarta.inject.Inject;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 public class EventPublisher {
+
+    static final int MAXIMUM_BATCH_SIZE = 10;
+    static final int MAXIMUM_BATCH_SIZE_IN_BYTES = 262_144;
+
     private final SnsClient snsClient;
     private final TopicNameArnMapper topicNameArnMapper;
 
@@ -15,17 +29,53 @@ public class EventPublisher {
         this.topicNameArnMapper = topicNameArnMapper;
     }
 
-    public void publishMessageToTopic(String message, TopicName topicName) throws EventPublisherException {
+    /**
+     * Publishes the messages, keyed by an id unique within the call, with as few requests as SNS allows: at most ten
+     * messages and 256 KiB per request. Returns the ids of the messages that could not be published along with the
+     * reason, so that callers can retry just those.
+     */
+    public Map<String, String> publishMessagesToTopic(Map<String, String> messagesById, TopicName topicName) {
         var topicArn = topicNameArnMapper.getArnForTopicName(topicName);
-        try {
-            PublishRequest request = PublishRequest.builder()
-                    .message(message)
-                    .topicArn(topicArn)
-                    .build();
-            snsClient.publish(request);
-        } catch (Exception e) {
-            var errorMessage = String.format("Failed to publish message to SNS: %s", e.getMessage());
-            throw new EventPublisherException(errorMessage, e);
+        Map<String, String> failures = new HashMap<>();
+
+        for (List<PublishBatchRequestEntry> entries : batchesOf(messagesById)) {
+            try {
+                PublishBatchResponse response = snsClient.publishBatch(PublishBatchRequest.builder()
+                        .topicArn(topicArn)
+                        .publishBatchRequestEntries(entries)
+                        .build());
+                for (BatchResultErrorEntry failed : response.failed()) {
+                    failures.put(failed.id(), String.format("%s: %s", failed.code(), failed.message()));
+                }
+            } catch (Exception e) {
+                var errorMessage = String.format("Failed to publish messages to SNS: %s", e.getMessage());
+                entries.forEach(entry -> failures.put(entry.id(), errorMessage));
+            }
+        }
+
+        return failures;
+    }
+
+    private List<List<PublishBatchRequestEntry>> batchesOf(Map<String, String> messagesById) {
+        List<List<PublishBatchRequestEntry>> batches = new ArrayList<>();
+        List<PublishBatchRequestEntry> batch = new ArrayList<>();
+        int batchSizeInBytes = 0;
+
+        for (Map.Entry<String, String> message : messagesById.entrySet()) {
+            int messageSizeInBytes = message.getValue().getBytes(UTF_8).length;
+            if (!batch.isEmpty() && (batch.size() == MAXIMUM_BATCH_SIZE
+                    || batchSizeInBytes + messageSizeInBytes > MAXIMUM_BATCH_SIZE_IN_BYTES)) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                batchSizeInBytes = 0;
+            }
+            batch.add(PublishBatchRequestEntry.builder().id(message.getKey()).message(message.getValue()).build());
+            batchSizeInBytes += messageSizeInBytes;
+        }
+
+        if (!batch.isEmpty()) {
+            batches.add(batch);
         }
+        return batches;
     }
 }
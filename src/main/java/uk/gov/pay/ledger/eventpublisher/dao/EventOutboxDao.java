@@ -0,0 +1,50 @@
+package uk.gov.pay.ledger.eventpublisher.dao;
+
+import org.jdbi.v3.sqlobject.config.RegisterRowMapper;
+import org.jdbi.v3.sqlobject.customizer.Bind;
+import org.jdbi.v3.sqlobject.customizer.BindBean;
+import org.jdbi.v3.sqlobject.customizer.BindList;
+import org.jdbi.v3.sqlobject.statement.SqlBatch;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+import org.jdbi.v3.sqlobject.statement.SqlUpdate;
+import uk.gov.pay.ledger.eventpublisher.dao.mapper.EventOutboxMapper;
+import uk.gov.pay.ledger.eventpublisher.entity.EventOutboxEntity;
+
+import java.util.List;
+
+@RegisterRowMapper(EventOutboxMapper.class)
+public interface EventOutboxDao {
+
+    @SqlBatch("INSERT INTO event_outbox(topic, message, sqs_message_id, resource_type, resource_external_id, event_type) " +
+            "VALUES (:topic, :message, :sqsMessageId, :resourceType, :resourceExternalId, :eventType)")
+    void insert(@BindBean List<EventOutboxEntity> entries);
+
+    /**
+     * Claims the oldest entries that are due to be published by moving their next attempt date forward by the lease,
+     * so the claim is committed straight away and the entries are not held locked while they are published. Entries
+     * being claimed by another drainer are skipped rather than waited for, so several instances can drain the outbox
+     * at once without publishing the same message twice. An entry that is neither deleted nor backed off, because its
+     * drainer stopped part way through, becomes due again once the lease expires.
+     */
+    @SqlQuery("UPDATE event_outbox SET next_attempt_date = now() + :leaseInSeconds * INTERVAL '1 second' " +
+            "WHERE id IN (SELECT id FROM event_outbox WHERE next_attempt_date <= now() ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED) " +
+            "RETURNING *")
+    List<EventOutboxEntity> claimDueForPublishing(@Bind("limit") int limit, @Bind("leaseInSeconds") int leaseInSeconds);
+
+    @SqlUpdate("DELETE FROM event_outbox WHERE id IN (<ids>)")
+    int delete(@BindList("ids") List<Long> ids);
+
+    /**
+     * Backs off exponentially from one second, doubling with each failed attempt up to the maximum delay.
+     */
+    @SqlUpdate("UPDATE event_outbox SET attempts = attempts + 1, " +
+            "next_attempt_date = now() + LEAST(power(2, LEAST(attempts, 30)), :maximumRetryDelayInSeconds) * INTERVAL '1 second' " +
+            "WHERE id IN (<ids>)")
+    int scheduleRetry(@BindList("ids") List<Long> ids, @Bind("maximumRetryDelayInSeconds") int maximumRetryDelayInSeconds);
+
+    @SqlQuery("SELECT count(*) FROM event_outbox")
+    long countEntries();
+
+    @SqlQuery("SELECT COALESCE(EXTRACT(EPOCH FROM now() - min(created_date)), 0)::bigint FROM event_outbox")
+    long getAgeOfOldestEntryInSeconds();
+}
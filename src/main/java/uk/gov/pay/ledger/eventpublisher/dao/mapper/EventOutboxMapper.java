@@ -0,0 +1,28 @@
+package uk.gov.pay.ledger.eventpublisher.dao.mapper;
+
+import org.jdbi.v3.core.mapper.RowMapper;
+import org.jdbi.v3.core.statement.StatementContext;
+import uk.gov.pay.ledger.eventpublisher.entity.EventOutboxEntity;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+public class EventOutboxMapper implements RowMapper<EventOutboxEntity> {
+
+    @Override
+    public EventOutboxEntity map(ResultSet resultSet, StatementContext statementContext) throws SQLException {
+        return new EventOutboxEntity(
+                resultSet.getLong("id"),
+                resultSet.getString("topic"),
+                resultSet.getString("message"),
+                resultSet.getString("sqs_message_id"),
+                resultSet.getString("resource_type"),
+                resultSet.getString("resource_external_id"),
+                resultSet.getString("event_type"),
+                ZonedDateTime.ofInstant(resultSet.getTimestamp("created_date").toInstant(), ZoneOffset.UTC),
+                resultSet.getInt("attempts")
+        );
+    }
+}
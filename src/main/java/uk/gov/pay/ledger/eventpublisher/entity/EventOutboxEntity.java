@@ -0,0 +1,88 @@
+package uk.gov.pay.ledger.eventpublisher.entity;
+
+import uk.gov.pay.ledger.event.entity.EventEntity;
+import uk.gov.pay.ledger.eventpublisher.TopicName;
+
+import java.time.ZonedDateTime;
+
+/**
+ * A message waiting in the outbox to be published to an SNS topic. Entries are written in the same transaction as
+ * the event they were created for and removed once the message has been published.
+ */
+public class EventOutboxEntity {
+
+    private Long id;
+    private String topic;
+    private String message;
+    private String sqsMessageId;
+    private String resourceType;
+    private String resourceExternalId;
+    private String eventType;
+    private ZonedDateTime createdDate;
+    private int attempts;
+
+    public EventOutboxEntity(Long id,
+                             String topic,
+                             String message,
+                             String sqsMessageId,
+                             String resourceType,
+                             String resourceExternalId,
+                             String eventType,
+                             ZonedDateTime createdDate,
+                             int attempts) {
+        this.id = id;
+        this.topic = topic;
+        this.message = message;
+        this.sqsMessageId = sqsMessageId;
+        this.resourceType = resourceType;
+        this.resourceExternalId = resourceExternalId;
+        this.eventType = eventType;
+        this.createdDate = createdDate;
+        this.attempts = attempts;
+    }
+
+    public static EventOutboxEntity from(EventEntity event, String message, TopicName topicName) {
+        return new EventOutboxEntity(null, topicName.name(), message, event.getSqsMessageId(),
+                event.getResourceType().name(), event.getResourceExternalId(), event.getEventType(), null, 0);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public TopicName getTopicName() {
+        return TopicName.valueOf(topic);
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public String getSqsMessageId() {
+        return sqsMessageId;
+    }
+
+    public String getResourceType() {
+        return resourceType;
+    }
+
+    public String getResourceExternalId() {
+        return resourceExternalId;
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public ZonedDateTime getCreatedDate() {
+        return createdDate;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+}
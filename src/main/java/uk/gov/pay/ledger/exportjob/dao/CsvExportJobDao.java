@@ -0,0 +1,114 @@
+package uk.gov.pay.ledger.exportjob.dao;
+
+import org.jdbi.v3.sqlobject.config.RegisterRowMapper;
+import org.jdbi.v3.sqlobject.customizer.Bind;
+import org.jdbi.v3.sqlobject.customizer.BindList;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+import org.jdbi.v3.sqlobject.statement.SqlUpdate;
+import uk.gov.pay.ledger.exportjob.dao.mapper.CsvExportJobMapper;
+import uk.gov.pay.ledger.exportjob.model.CsvExportJob;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Stores CSV export jobs. The node running a job holds a lease on it, and the updates made while running a job only
+ * apply while that node still holds the lease, so a job that another node has taken over is not written to by both.
+ */
+@RegisterRowMapper(CsvExportJobMapper.class)
+public interface CsvExportJobDao {
+
+    String UNFINISHED = "status IN ('PENDING', 'RUNNING')";
+
+    /**
+     * Inserts a pending job leased to the owner, unless an unfinished job for the same request already exists.
+     */
+    @SqlQuery("INSERT INTO csv_export_job(id, request_digest, query_string, gateway_account_ids, include_fee_headers, " +
+            "include_moto_header, status, lease_owner, lease_expiry_date) " +
+            "VALUES (:id, :requestDigest, :queryString, ARRAY[<gatewayAccountIds>]::varchar[], :includeFeeHeaders, " +
+            ":includeMotoHeader, 'PENDING', :leaseOwner, now() + :leaseInSeconds * INTERVAL '1 second') " +
+            "ON CONFLICT (request_digest) WHERE " + UNFINISHED + " DO NOTHING " +
+            "RETURNING *")
+    Optional<CsvExportJob> insert(@Bind("id") String id,
+                                  @Bind("requestDigest") String requestDigest,
+                                  @Bind("queryString") String queryString,
+                                  @BindList("gatewayAccountIds") List<String> gatewayAccountIds,
+                                  @Bind("includeFeeHeaders") boolean includeFeeHeaders,
+                                  @Bind("includeMotoHeader") boolean includeMotoHeader,
+                                  @Bind("leaseOwner") String leaseOwner,
+                                  @Bind("leaseInSeconds") int leaseInSeconds);
+
+    @SqlQuery("SELECT * FROM csv_export_job WHERE id = :id")
+    Optional<CsvExportJob> findById(@Bind("id") String id);
+
+    @SqlQuery("SELECT * FROM csv_export_job WHERE request_digest = :requestDigest AND " + UNFINISHED)
+    Optional<CsvExportJob> findUnfinishedByRequestDigest(@Bind("requestDigest") String requestDigest);
+
+    @SqlQuery("SELECT count(*) FROM csv_export_job WHERE " + UNFINISHED +
+            " AND gateway_account_ids && ARRAY[<gatewayAccountIds>]::varchar[]")
+    long countUnfinishedForGatewayAccounts(@BindList("gatewayAccountIds") List<String> gatewayAccountIds);
+
+    @SqlQuery("SELECT COALESCE(sum(size_in_bytes), 0) FROM csv_export_job")
+    long getTotalSizeInBytes();
+
+    @SqlQuery("SELECT id FROM csv_export_job WHERE id IN (<ids>)")
+    List<String> findIds(@BindList("ids") List<String> ids);
+
+    @SqlUpdate("UPDATE csv_export_job SET status = 'RUNNING', attempts = attempts + 1 " +
+            "WHERE id = :id AND lease_owner = :leaseOwner AND " + UNFINISHED)
+    int startAttempt(@Bind("id") String id, @Bind("leaseOwner") String leaseOwner);
+
+    @SqlUpdate("UPDATE csv_export_job SET checkpoint_cursor = :checkpointCursor, size_in_bytes = :sizeInBytes, " +
+            "row_count = :rowCount, lease_expiry_date = now() + :leaseInSeconds * INTERVAL '1 second' " +
+            "WHERE id = :id AND lease_owner = :leaseOwner AND " + UNFINISHED)
+    int checkpoint(@Bind("id") String id,
+                   @Bind("leaseOwner") String leaseOwner,
+                   @Bind("checkpointCursor") String checkpointCursor,
+                   @Bind("sizeInBytes") long sizeInBytes,
+                   @Bind("rowCount") long rowCount,
+                   @Bind("leaseInSeconds") int leaseInSeconds);
+
+    @SqlUpdate("UPDATE csv_export_job SET status = 'COMPLETED', checkpoint_cursor = :checkpointCursor, " +
+            "size_in_bytes = :sizeInBytes, row_count = :rowCount, finished_date = now(), lease_owner = NULL, " +
+            "lease_expiry_date = NULL WHERE id = :id AND lease_owner = :leaseOwner AND " + UNFINISHED)
+    int complete(@Bind("id") String id,
+                 @Bind("leaseOwner") String leaseOwner,
+                 @Bind("checkpointCursor") String checkpointCursor,
+                 @Bind("sizeInBytes") long sizeInBytes,
+                 @Bind("rowCount") long rowCount);
+
+    @SqlUpdate("UPDATE csv_export_job SET status = 'FAILED', finished_date = now(), lease_owner = NULL, " +
+            "lease_expiry_date = NULL WHERE id = :id AND lease_owner = :leaseOwner AND " + UNFINISHED)
+    int fail(@Bind("id") String id, @Bind("leaseOwner") String leaseOwner);
+
+    @SqlUpdate("DELETE FROM csv_export_job WHERE id = :id")
+    int delete(@Bind("id") String id);
+
+    @SqlUpdate("UPDATE csv_export_job SET lease_expiry_date = now() + :leaseInSeconds * INTERVAL '1 second' " +
+            "WHERE lease_owner = :leaseOwner AND " + UNFINISHED)
+    int renewLeases(@Bind("leaseOwner") String leaseOwner, @Bind("leaseInSeconds") int leaseInSeconds);
+
+    /**
+     * Lets the unfinished jobs of the owner be claimed by another node straight away rather than once their leases
+     * expire.
+     */
+    @SqlUpdate("UPDATE csv_export_job SET lease_expiry_date = now() WHERE lease_owner = :leaseOwner AND " + UNFINISHED)
+    int releaseLeases(@Bind("leaseOwner") String leaseOwner);
+
+    @SqlUpdate("UPDATE csv_export_job SET lease_expiry_date = now() WHERE id = :id AND lease_owner = :leaseOwner")
+    int releaseLease(@Bind("id") String id, @Bind("leaseOwner") String leaseOwner);
+
+    /**
+     * Claims the oldest unfinished job whose lease has expired, because the node running it stopped. Jobs being claimed
+     * by another node are skipped rather than waited for.
+     */
+    @SqlQuery("UPDATE csv_export_job SET lease_owner = :leaseOwner, " +
+            "lease_expiry_date = now() + :leaseInSeconds * INTERVAL '1 second' " +
+            "WHERE id = (SELECT id FROM csv_export_job WHERE " + UNFINISHED + " AND lease_expiry_date <= now() " +
+            "ORDER BY created_date LIMIT 1 FOR UPDATE SKIP LOCKED) " +
+            "RETURNING *")
+    Optional<CsvExportJob> claimAbandoned(@Bind("leaseOwner") String leaseOwner, @Bind("leaseInSeconds") int leaseInSeconds);
+
+    @SqlQuery("DELETE FROM csv_export_job WHERE finished_date < now() - :expiryInMinutes * INTERVAL '1 minute' RETURNING id")
+    List<String> deleteExpired(@Bind("expiryInMinutes") int expiryInMinutes);
+}
@@ -0,0 +1,43 @@
+package uk.gov.pay.ledger.exportjob.dao.mapper;
+
+import org.jdbi.v3.core.mapper.RowMapper;
+import org.jdbi.v3.core.statement.StatementContext;
+import uk.gov.pay.ledger.exportjob.model.CsvExportJob;
+import uk.gov.pay.ledger.transaction.search.common.TransactionSearchCursor;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Optional;
+
+public class CsvExportJobMapper implements RowMapper<CsvExportJob> {
+
+    @Override
+    public CsvExportJob map(ResultSet resultSet, StatementContext statementContext) throws SQLException {
+        CsvExportJob.Checkpoint checkpoint = new CsvExportJob.Checkpoint(
+                Optional.ofNullable(resultSet.getString("checkpoint_cursor")).map(TransactionSearchCursor::decode).orElse(null),
+                resultSet.getLong("size_in_bytes"),
+                resultSet.getLong("row_count"));
+        return new CsvExportJob(
+                resultSet.getString("id"),
+                resultSet.getString("request_digest"),
+                resultSet.getString("query_string"),
+                new HashSet<>(Arrays.asList((String[]) resultSet.getArray("gateway_account_ids").getArray())),
+                resultSet.getBoolean("include_fee_headers"),
+                resultSet.getBoolean("include_moto_header"),
+                toZonedDateTime(resultSet.getTimestamp("created_date")),
+                CsvExportJob.Status.valueOf(resultSet.getString("status")),
+                checkpoint,
+                resultSet.getInt("attempts"),
+                toZonedDateTime(resultSet.getTimestamp("finished_date"))
+        );
+    }
+
+    private static ZonedDateTime toZonedDateTime(Timestamp timestamp) {
+        return timestamp == null ? null : ZonedDateTime.ofInstant(timestamp.toInstant(), ZoneOffset.UTC);
+    }
+}
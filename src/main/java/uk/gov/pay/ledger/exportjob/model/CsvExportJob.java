@@ -0,0 +1,144 @@
+package uk.gov.pay.ledger.exportjob.model;
+
+import uk.gov.pay.ledger.transaction.search.common.TransactionSearchCursor;
+
+import java.time.ZonedDateTime;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * A CSV export generated in the background. The job records a checkpoint as it goes: the cursor of the last
+ * transaction written and the size of the file up to and including it, so an attempt that is interrupted can be
+ * carried on by the next one rather than started again.
+ * <p>
+ * Jobs are stored in the database along with the query string of the request that created them, so any node can
+ * report on or download a job and a job left unfinished by a node that stopped can be carried on by another.
+ */
+public class CsvExportJob {
+
+    public enum Status {
+        PENDING, RUNNING, COMPLETED, FAILED
+    }
+
+    private final String id;
+    private final String requestDigest;
+    private final String queryString;
+    private final Set<String> gatewayAccountIds;
+    private final boolean includeFeeHeaders;
+    private final boolean includeMotoHeader;
+    private final ZonedDateTime createdDate;
+    private Status status;
+    private Checkpoint checkpoint;
+    private int attempts;
+    private ZonedDateTime finishedDate;
+
+    public CsvExportJob(String id, String requestDigest, String queryString, Set<String> gatewayAccountIds,
+                        boolean includeFeeHeaders, boolean includeMotoHeader, ZonedDateTime createdDate, Status status,
+                        Checkpoint checkpoint, int attempts, ZonedDateTime finishedDate) {
+        this.id = id;
+        this.requestDigest = requestDigest;
+        this.queryString = queryString;
+        this.gatewayAccountIds = Set.copyOf(gatewayAccountIds);
+        this.includeFeeHeaders = includeFeeHeaders;
+        this.includeMotoHeader = includeMotoHeader;
+        this.createdDate = createdDate;
+        this.status = status;
+        this.checkpoint = checkpoint;
+        this.attempts = attempts;
+        this.finishedDate = finishedDate;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getRequestDigest() {
+        return requestDigest;
+    }
+
+    public String getQueryString() {
+        return queryString;
+    }
+
+    public Set<String> getGatewayAccountIds() {
+        return gatewayAccountIds;
+    }
+
+    public boolean isIncludeFeeHeaders() {
+        return includeFeeHeaders;
+    }
+
+    public boolean isIncludeMotoHeader() {
+        return includeMotoHeader;
+    }
+
+    public ZonedDateTime getCreatedDate() {
+        return createdDate;
+    }
+
+    public synchronized Status getStatus() {
+        return status;
+    }
+
+    public synchronized Checkpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    public synchronized int getAttempts() {
+        return attempts;
+    }
+
+    public synchronized Optional<ZonedDateTime> getFinishedDate() {
+        return Optional.ofNullable(finishedDate);
+    }
+
+    public synchronized boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+
+    public synchronized void startAttempt() {
+        status = Status.RUNNING;
+        attempts++;
+    }
+
+    public synchronized void checkpoint(Checkpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    public synchronized void completed(Checkpoint checkpoint, ZonedDateTime finishedDate) {
+        this.checkpoint = checkpoint;
+        this.status = Status.COMPLETED;
+        this.finishedDate = finishedDate;
+    }
+
+    public synchronized void failed(ZonedDateTime finishedDate) {
+        this.status = Status.FAILED;
+        this.finishedDate = finishedDate;
+    }
+
+    public static class Checkpoint {
+        public static final Checkpoint START = new Checkpoint(null, 0, 0);
+
+        private final TransactionSearchCursor cursor;
+        private final long sizeInBytes;
+        private final long rowCount;
+
+        public Checkpoint(TransactionSearchCursor cursor, long sizeInBytes, long rowCount) {
+            this.cursor = cursor;
+            this.sizeInBytes = sizeInBytes;
+            this.rowCount = rowCount;
+        }
+
+        public Optional<TransactionSearchCursor> getCursor() {
+            return Optional.ofNullable(cursor);
+        }
+
+        public long getSizeInBytes() {
+            return sizeInBytes;
+        }
+
+        public long getRowCount() {
+            return rowCount;
+        }
+    }
+}
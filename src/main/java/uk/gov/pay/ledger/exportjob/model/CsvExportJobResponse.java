@@ -0,0 +1,65 @@
+package uk.gov.pay.ledger.exportjob.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import static uk.gov.service.payments.commons.model.CommonDateTimeFormatters.ISO_INSTANT_MILLISECOND_PRECISION;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CsvExportJobResponse {
+
+    @JsonProperty("job_id")
+    @Schema(example = "6f1d8a1e-8a3c-4c52-9a4e-2b7f0c3e5d11")
+    private final String jobId;
+    @JsonProperty("status")
+    @Schema(example = "running", allowableValues = {"pending", "running", "completed", "failed"})
+    private final String status;
+    @JsonProperty("row_count")
+    @Schema(description = "Number of transactions written so far", example = "120000")
+    private final long rowCount;
+    @JsonProperty("size_in_bytes")
+    @Schema(description = "Size of the CSV file. Only present when the job has completed", example = "52428800")
+    private final Long sizeInBytes;
+    @JsonProperty("created_date")
+    @Schema(example = "2022-03-14T10:35:00.000Z")
+    private final String createdDate;
+
+    private CsvExportJobResponse(String jobId, String status, long rowCount, Long sizeInBytes, String createdDate) {
+        this.jobId = jobId;
+        this.status = status;
+        this.rowCount = rowCount;
+        this.sizeInBytes = sizeInBytes;
+        this.createdDate = createdDate;
+    }
+
+    public static CsvExportJobResponse from(CsvExportJob job) {
+        CsvExportJob.Status status = job.getStatus();
+        CsvExportJob.Checkpoint checkpoint = job.getCheckpoint();
+        return new CsvExportJobResponse(job.getId(),
+                status.name().toLowerCase(),
+                checkpoint.getRowCount(),
+                status == CsvExportJob.Status.COMPLETED ? checkpoint.getSizeInBytes() : null,
+                ISO_INSTANT_MILLISECOND_PRECISION.format(job.getCreatedDate()));
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public Long getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    public String getCreatedDate() {
+        return createdDate;
+    }
+}
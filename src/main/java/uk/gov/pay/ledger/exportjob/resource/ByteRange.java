@@ -0,0 +1,78 @@
+package uk.gov.pay.ledger.exportjob.resource;
+
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response;
+
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A single range of bytes requested with a {@code Range} header. Headers that cannot be parsed or ask for more than
+ * one range are ignored, as they are allowed to be, and the whole file is returned instead.
+ */
+public class ByteRange {
+
+    private static final Pattern SINGLE_BYTE_RANGE = Pattern.compile("^bytes=(\\d*)-(\\d*)$");
+
+    private final long first;
+    private final long last;
+
+    private ByteRange(long first, long last) {
+        this.first = first;
+        this.last = last;
+    }
+
+    public static Optional<ByteRange> fromHeader(String rangeHeader, long size) {
+        if (rangeHeader == null) {
+            return Optional.empty();
+        }
+        Matcher matcher = SINGLE_BYTE_RANGE.matcher(rangeHeader.trim());
+        if (!matcher.matches() || (matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+            return Optional.empty();
+        }
+
+        try {
+            if (matcher.group(1).isEmpty()) {
+                long suffixLength = Long.parseLong(matcher.group(2));
+                if (suffixLength == 0 || size == 0) {
+                    throw notSatisfiable(size);
+                }
+                return Optional.of(new ByteRange(Math.max(0, size - suffixLength), size - 1));
+            }
+            long first = Long.parseLong(matcher.group(1));
+            long last = matcher.group(2).isEmpty() ? Long.MAX_VALUE : Long.parseLong(matcher.group(2));
+            if (last < first) {
+                return Optional.empty();
+            }
+            if (first >= size) {
+                throw notSatisfiable(size);
+            }
+            return Optional.of(new ByteRange(first, Math.min(last, size - 1)));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    public long getFirst() {
+        return first;
+    }
+
+    public long getLast() {
+        return last;
+    }
+
+    public long getLength() {
+        return last - first + 1;
+    }
+
+    public String contentRange(long size) {
+        return "bytes " + first + "-" + last + "/" + size;
+    }
+
+    private static WebApplicationException notSatisfiable(long size) {
+        return new WebApplicationException(Response.status(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE)
+                .header("Content-Range", "bytes */" + size)
+                .build());
+    }
+}
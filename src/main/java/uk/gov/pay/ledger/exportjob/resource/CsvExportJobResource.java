@@ -0,0 +1,157 @@
+package uk.gov.pay.ledger.exportjob.resource;
+
+import com.codahale.metrics.annotation.Timed;
+import com.google.common.io.ByteStreams;
+import com.google.inject.Inject;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import jakarta.ws.rs.BeanParam;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import jakarta.ws.rs.core.UriInfo;
+import uk.gov.pay.ledger.exception.ErrorResponse;
+import uk.gov.pay.ledger.exportjob.model.CsvExportJob;
+import uk.gov.pay.ledger.exportjob.model.CsvExportJobResponse;
+import uk.gov.pay.ledger.exportjob.service.CsvExportJobService;
+import uk.gov.pay.ledger.transaction.search.common.TransactionSearchParams;
+import uk.gov.pay.ledger.util.CommaDelimitedSetParameter;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Optional;
+
+import static jakarta.ws.rs.core.MediaType.APPLICATION_JSON;
+import static uk.gov.pay.ledger.transaction.search.common.TransactionSearchParamsValidator.validateSearchParamsForCsv;
+
+@Path("/v1/csv-export-job")
+@Produces(APPLICATION_JSON)
+@Tag(name = "CSV export jobs")
+public class CsvExportJobResource {
+
+    private static final String CSV_MEDIA_TYPE = "text/csv";
+
+    private final CsvExportJobService csvExportJobService;
+
+    @Inject
+    public CsvExportJobResource(CsvExportJobService csvExportJobService) {
+        this.csvExportJobService = csvExportJobService;
+    }
+
+    @Path("/")
+    @POST
+    @Timed
+    @Operation(
+            summary = "Create a job generating a CSV export of the transactions matching the search in the background. " +
+                    "A pending or running job exporting the same transactions is returned instead of creating another.",
+            responses = {
+                    @ApiResponse(responseCode = "202", description = "Accepted", content = @Content(schema = @Schema(implementation = CsvExportJobResponse.class))),
+                    @ApiResponse(responseCode = "400", description = "Invalid search parameters", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+                    @ApiResponse(responseCode = "429", description = "Too many jobs are unfinished for the gateway accounts"),
+                    @ApiResponse(responseCode = "503", description = "Too many jobs are waiting to run or their files take up too much space")
+            }
+    )
+    public Response createJob(@Valid @BeanParam TransactionSearchParams searchParams,
+                              @Parameter(description = "Comma delimited gateway account IDs", example = "1,2", schema = @Schema(type = "string", implementation = String.class))
+                              @QueryParam("account_id") CommaDelimitedSetParameter gatewayAccountIds,
+                              @Parameter(description = "Set to true to include fee columns") @QueryParam("fee_headers") boolean includeFeeHeaders,
+                              @Parameter(description = "Set to true to include the MOTO column") @QueryParam("moto_header") boolean includeMotoHeader,
+                              @Context UriInfo uriInfo) {
+        TransactionSearchParams csvSearchParams = Optional.ofNullable(searchParams).orElse(new TransactionSearchParams());
+        validateSearchParamsForCsv(csvSearchParams, gatewayAccountIds);
+        csvSearchParams.setAccountIds(gatewayAccountIds.getParameters());
+
+        CsvExportJob job = csvExportJobService.createJob(uriInfo.getRequestUri().getRawQuery(), csvSearchParams,
+                includeFeeHeaders, includeMotoHeader);
+        return Response.accepted(CsvExportJobResponse.from(job))
+                .location(uriInfo.getBaseUriBuilder()
+                        .path(CsvExportJobResource.class)
+                        .path(job.getId())
+                        .queryParam("account_id", String.join(",", gatewayAccountIds.getParameters()))
+                        .build())
+                .build();
+    }
+
+    @Path("/{jobId}")
+    @GET
+    @Timed
+    @Operation(
+            summary = "Get the status of a CSV export job",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "OK", content = @Content(schema = @Schema(implementation = CsvExportJobResponse.class))),
+                    @ApiResponse(responseCode = "404", description = "Not found")
+            }
+    )
+    public CsvExportJobResponse getJob(@Parameter(example = "6f1d8a1e-8a3c-4c52-9a4e-2b7f0c3e5d11") @PathParam("jobId") String jobId,
+                                       @Parameter(description = "Comma delimited gateway account IDs the job was created for", example = "1,2", schema = @Schema(type = "string", implementation = String.class))
+                                       @QueryParam("account_id") CommaDelimitedSetParameter gatewayAccountIds) {
+        return CsvExportJobResponse.from(findJob(jobId, gatewayAccountIds));
+    }
+
+    @Path("/{jobId}/download")
+    @GET
+    @Produces(CSV_MEDIA_TYPE)
+    @Timed
+    @Operation(
+            summary = "Download the CSV file of a completed CSV export job. A single byte range may be requested with a Range header.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "OK"),
+                    @ApiResponse(responseCode = "206", description = "Partial content"),
+                    @ApiResponse(responseCode = "404", description = "Not found"),
+                    @ApiResponse(responseCode = "409", description = "Job has not completed"),
+                    @ApiResponse(responseCode = "416", description = "Range not satisfiable")
+            }
+    )
+    public Response download(@Parameter(example = "6f1d8a1e-8a3c-4c52-9a4e-2b7f0c3e5d11") @PathParam("jobId") String jobId,
+                             @Parameter(description = "Comma delimited gateway account IDs the job was created for", example = "1,2", schema = @Schema(type = "string", implementation = String.class))
+                             @QueryParam("account_id") CommaDelimitedSetParameter gatewayAccountIds,
+                             @Parameter(example = "bytes=1048576-") @HeaderParam("Range") String rangeHeader) {
+        CsvExportJob job = findJob(jobId, gatewayAccountIds);
+        if (job.getStatus() != CsvExportJob.Status.COMPLETED) {
+            throw new WebApplicationException("CSV export job has not completed", Response.Status.CONFLICT);
+        }
+
+        Path file = csvExportJobService.fileOf(job);
+        long size = job.getCheckpoint().getSizeInBytes();
+        Optional<ByteRange> range = ByteRange.fromHeader(rangeHeader, size);
+        long first = range.map(ByteRange::getFirst).orElse(0L);
+        long length = range.map(ByteRange::getLength).orElse(size);
+
+        StreamingOutput stream = outputStream -> {
+            try (InputStream inputStream = Files.newInputStream(file)) {
+                inputStream.skipNBytes(first);
+                ByteStreams.limit(inputStream, length).transferTo(outputStream);
+            }
+        };
+        Response.ResponseBuilder response = range
+                .map(byteRange -> Response.status(Response.Status.PARTIAL_CONTENT).header("Content-Range", byteRange.contentRange(size)))
+                .orElseGet(Response::ok);
+        return response.entity(stream)
+                .type(CSV_MEDIA_TYPE)
+                .header("Accept-Ranges", "bytes")
+                .header(HttpHeaders.CONTENT_LENGTH, length)
+                .build();
+    }
+
+    private CsvExportJob findJob(String jobId, CommaDelimitedSetParameter gatewayAccountIds) {
+        return csvExportJobService.getJob(jobId)
+                .filter(job -> gatewayAccountIds != null && job.getGatewayAccountIds().equals(new HashSet<>(gatewayAccountIds.getParameters())))
+                .orElseThrow(() -> new WebApplicationException(Response.Status.NOT_FOUND));
+    }
+}
@@ -0,0 +1,431 @@
+package uk.gov.pay.ledger.exportjob.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.hash.Hashing;
+import com.google.inject.Inject;
+import io.dropwizard.core.setup.Environment;
+import io.dropwizard.lifecycle.Managed;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.ledger.app.LedgerConfig;
+import uk.gov.pay.ledger.app.config.ReportingConfig;
+import uk.gov.pay.ledger.exportjob.dao.CsvExportJobDao;
+import uk.gov.pay.ledger.exportjob.model.CsvExportJob;
+import uk.gov.pay.ledger.transaction.dao.TransactionDao;
+import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
+import uk.gov.pay.ledger.transaction.model.CsvRowEncoder;
+import uk.gov.pay.ledger.transaction.search.common.TransactionSearchCursor;
+import uk.gov.pay.ledger.transaction.search.common.TransactionSearchParams;
+import uk.gov.pay.ledger.transaction.service.CsvService;
+import uk.gov.pay.ledger.util.QueryParamBinder;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * Generates CSV exports in the background, writing each to a file in the job directory that can be downloaded once
+ * the job has completed.
+ * <p>
+ * Jobs are stored in the database and their files are written to a directory shared by every node, so any node can
+ * report on or download a job. The node running a job holds a lease on it that is renewed as it goes. If the node
+ * stops, another node claims the job once the lease expires, rebuilds the search from the job's query string and
+ * carries on from the job's last checkpoint. A job writes a checkpoint every so many transactions, and if an attempt
+ * fails, the file is truncated back to the last checkpoint and the next attempt carries on streaming from the
+ * checkpoint's cursor, so the transactions already written are not read again.
+ * <p>
+ * Requests for the same export while a job for it is pending or running share that job. Jobs wait for a thread in a
+ * bounded queue, and a new job is refused while the queue is full, while too many jobs are unfinished for any of its
+ * gateway accounts or while the files of the jobs kept take up too much space. Finished jobs are removed after the
+ * configured expiry.
+ */
+public class CsvExportJobService implements Managed {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CsvExportJobService.class);
+    private static final String CSV_EXPORT_JOB_THREAD_NAME = "csv-export-job-%d";
+    private static final String CSV_EXPORT_JOB_SWEEPER_THREAD_NAME = "csv-export-job-sweeper-%d";
+    private static final String FILE_NAME_PREFIX = "csv-export-job-";
+    private static final String FILE_NAME_SUFFIX = ".csv";
+    private static final long BYTES_PER_MEGABYTE = 1024L * 1024L;
+
+    private final ExecutorService executorService;
+    private final ScheduledExecutorService scheduledExecutorService;
+    private final CsvExportJobDao csvExportJobDao;
+    private final TransactionDao transactionDao;
+    private final CsvService csvService;
+    private final Clock clock;
+    private final Path directory;
+    private final int fetchSize;
+    private final int checkpointInterval;
+    private final int maximumAttempts;
+    private final int expiryInMinutes;
+    private final int leaseInSeconds;
+    private final int maximumUnfinishedJobsPerAccount;
+    private final long maximumTotalSizeInBytes;
+    private final String leaseOwner = UUID.randomUUID().toString();
+    private volatile boolean running = true;
+
+    @Inject
+    public CsvExportJobService(Environment environment, LedgerConfig configuration, CsvExportJobDao csvExportJobDao,
+                               TransactionDao transactionDao, CsvService csvService) {
+        this(buildExecutorService(environment, configuration.getReportingConfig()),
+                environment.lifecycle().scheduledExecutorService(CSV_EXPORT_JOB_SWEEPER_THREAD_NAME).threads(1).build(),
+                configuration.getReportingConfig(), Clock.systemUTC(), csvExportJobDao, transactionDao, csvService);
+    }
+
+    CsvExportJobService(ExecutorService executorService, ScheduledExecutorService scheduledExecutorService,
+                        ReportingConfig reportingConfig, Clock clock, CsvExportJobDao csvExportJobDao,
+                        TransactionDao transactionDao, CsvService csvService) {
+        this.executorService = executorService;
+        this.scheduledExecutorService = scheduledExecutorService;
+        this.csvExportJobDao = csvExportJobDao;
+        this.transactionDao = transactionDao;
+        this.csvService = csvService;
+        this.clock = clock;
+        this.directory = Path.of(reportingConfig.getCsvExportJobDirectory());
+        this.fetchSize = reportingConfig.getStreamingCsvPageSize();
+        this.checkpointInterval = reportingConfig.getCsvExportJobCheckpointInterval();
+        this.maximumAttempts = reportingConfig.getCsvExportJobMaximumAttempts();
+        this.expiryInMinutes = reportingConfig.getCsvExportJobExpiryInMinutes();
+        this.leaseInSeconds = reportingConfig.getCsvExportJobLeaseInSeconds();
+        this.maximumUnfinishedJobsPerAccount = reportingConfig.getCsvExportJobMaximumUnfinishedJobsPerAccount();
+        this.maximumTotalSizeInBytes = reportingConfig.getCsvExportJobMaximumTotalSizeInMegabytes() * BYTES_PER_MEGABYTE;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not prepare CSV export job directory " + directory, e);
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        removeFilesWithoutJobs();
+        // Renews the leases of this node's jobs well before they expire
+        long sweepIntervalInSeconds = Math.max(1, leaseInSeconds / 3);
+        scheduledExecutorService.scheduleWithFixedDelay(this::sweep, sweepIntervalInSeconds, sweepIntervalInSeconds,
+                TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        scheduledExecutorService.shutdown();
+        csvExportJobDao.releaseLeases(leaseOwner);
+    }
+
+    /**
+     * Returns the unfinished job for the same export if there is one, and otherwise creates a job for the search. The
+     * query string is kept with the job so that the search can be rebuilt by whichever node carries the job on.
+     */
+    public CsvExportJob createJob(String queryString, TransactionSearchParams searchParams, boolean includeFeeHeaders,
+                                  boolean includeMotoHeader) {
+        String requestDigest = requestDigestOf(searchParams, includeFeeHeaders, includeMotoHeader);
+        while (true) {
+            Optional<CsvExportJob> existingJob = csvExportJobDao.findUnfinishedByRequestDigest(requestDigest);
+            if (existingJob.isPresent()) {
+                return existingJob.get();
+            }
+
+            checkCapacityFor(searchParams.getAccountIds());
+            Optional<CsvExportJob> createdJob = csvExportJobDao.insert(UUID.randomUUID().toString(), requestDigest,
+                    Optional.ofNullable(queryString).orElse(""), searchParams.getAccountIds(), includeFeeHeaders,
+                    includeMotoHeader, leaseOwner, leaseInSeconds);
+            if (createdJob.isPresent()) {
+                CsvExportJob job = createdJob.get();
+                if (!submit(job)) {
+                    csvExportJobDao.delete(job.getId());
+                    throw new WebApplicationException("Too many CSV export jobs are waiting to run",
+                            Response.Status.SERVICE_UNAVAILABLE);
+                }
+                LOGGER.info("Created CSV export job", kv("csv_export_job_id", job.getId()));
+                return job;
+            }
+            // Another request created a job for the same export in the meantime, so that job is returned instead
+        }
+    }
+
+    public Optional<CsvExportJob> getJob(String jobId) {
+        return csvExportJobDao.findById(jobId);
+    }
+
+    public Path fileOf(CsvExportJob job) {
+        return fileOf(job.getId());
+    }
+
+    void run(CsvExportJob job) {
+        if (job.getAttempts() >= maximumAttempts) {
+            LOGGER.error("CSV export job failed after {} attempts", job.getAttempts(), kv("csv_export_job_id", job.getId()));
+            csvExportJobDao.fail(job.getId(), leaseOwner);
+            job.failed(ZonedDateTime.now(clock));
+            return;
+        }
+
+        TransactionSearchParams searchParams = searchParamsOf(job);
+        Map<String, Object> headers = null;
+        while (true) {
+            if (csvExportJobDao.startAttempt(job.getId(), leaseOwner) == 0) {
+                LOGGER.warn("CSV export job was claimed by another node", kv("csv_export_job_id", job.getId()));
+                return;
+            }
+            job.startAttempt();
+            try {
+                if (headers == null) {
+                    // Kept for every attempt, so columns cannot change part way through the file
+                    headers = csvService.csvHeaderFrom(searchParams, job.isIncludeFeeHeaders(), job.isIncludeMotoHeader());
+                }
+                CsvExportJob.Checkpoint checkpoint = export(job, searchParams, headers);
+                if (csvExportJobDao.complete(job.getId(), leaseOwner, encode(checkpoint), checkpoint.getSizeInBytes(),
+                        checkpoint.getRowCount()) == 0) {
+                    throw new LeaseLostException();
+                }
+                job.completed(checkpoint, ZonedDateTime.now(clock));
+                LOGGER.info("Completed CSV export job",
+                        kv("csv_export_job_id", job.getId()),
+                        kv("number_of_transactions_streamed", checkpoint.getRowCount()),
+                        kv("attempts", job.getAttempts()));
+                return;
+            } catch (LeaseLostException e) {
+                LOGGER.warn("CSV export job was claimed by another node", kv("csv_export_job_id", job.getId()));
+                return;
+            } catch (IOException | RuntimeException e) {
+                if (!running) {
+                    // The lease has been released, so another node carries the job on from its last checkpoint
+                    LOGGER.info("CSV export job stopped: {}", e.getMessage(), kv("csv_export_job_id", job.getId()));
+                    return;
+                }
+                if (job.getAttempts() >= maximumAttempts) {
+                    LOGGER.error("CSV export job failed after {} attempts: {}", job.getAttempts(), e.getMessage(),
+                            kv("csv_export_job_id", job.getId()));
+                    csvExportJobDao.fail(job.getId(), leaseOwner);
+                    job.failed(ZonedDateTime.now(clock));
+                    return;
+                }
+                LOGGER.warn("CSV export job attempt failed, carrying on from the last checkpoint: {}", e.getMessage(),
+                        kv("csv_export_job_id", job.getId()),
+                        kv("number_of_transactions_streamed", job.getCheckpoint().getRowCount()));
+            }
+        }
+    }
+
+    void sweep() {
+        try {
+            csvExportJobDao.renewLeases(leaseOwner, leaseInSeconds);
+            resumeAbandonedJobs();
+            csvExportJobDao.deleteExpired(expiryInMinutes).forEach(jobId -> deleteFile(fileOf(jobId)));
+        } catch (Exception e) {
+            LOGGER.error("CSV export job sweeper exception", e);
+        }
+    }
+
+    private void resumeAbandonedJobs() {
+        while (running) {
+            Optional<CsvExportJob> abandonedJob = csvExportJobDao.claimAbandoned(leaseOwner, leaseInSeconds);
+            if (abandonedJob.isEmpty()) {
+                return;
+            }
+            CsvExportJob job = abandonedJob.get();
+            if (!submit(job)) {
+                // Left for a node with room in its queue
+                csvExportJobDao.releaseLease(job.getId(), leaseOwner);
+                return;
+            }
+            LOGGER.info("Resumed CSV export job",
+                    kv("csv_export_job_id", job.getId()),
+                    kv("number_of_transactions_streamed", job.getCheckpoint().getRowCount()));
+        }
+    }
+
+    private boolean submit(CsvExportJob job) {
+        try {
+            executorService.execute(() -> run(job));
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private void checkCapacityFor(List<String> gatewayAccountIds) {
+        if (csvExportJobDao.countUnfinishedForGatewayAccounts(gatewayAccountIds) >= maximumUnfinishedJobsPerAccount) {
+            throw new WebApplicationException("Too many CSV export jobs are unfinished for the gateway accounts",
+                    Response.Status.TOO_MANY_REQUESTS);
+        }
+        if (csvExportJobDao.getTotalSizeInBytes() >= maximumTotalSizeInBytes) {
+            throw new WebApplicationException("CSV export job files have reached their maximum total size",
+                    Response.Status.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    private CsvExportJob.Checkpoint export(CsvExportJob job, TransactionSearchParams searchParams,
+                                           Map<String, Object> headers) throws IOException {
+        CsvExportJob.Checkpoint checkpoint = job.getCheckpoint();
+        ObjectWriter writer = csvService.writerFrom(headers);
+        try (FileChannel channel = FileChannel.open(fileOf(job), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            if (channel.size() < checkpoint.getSizeInBytes()) {
+                LOGGER.warn("CSV export job file is shorter than its last checkpoint, starting again",
+                        kv("csv_export_job_id", job.getId()));
+                checkpoint = CsvExportJob.Checkpoint.START;
+                job.checkpoint(checkpoint);
+            }
+            // Anything after the checkpoint was written by an attempt that failed and is written again
+            channel.truncate(checkpoint.getSizeInBytes());
+            channel.position(checkpoint.getSizeInBytes());
+            OutputStream outputStream = new BufferedOutputStream(Channels.newOutputStream(channel));
+            if (checkpoint.getSizeInBytes() == 0) {
+                outputStream.write(csvService.csvStringFrom(headers, writer).getBytes(StandardCharsets.UTF_8));
+            }
+            try (JsonGenerator rowWriter = csvService.rowWriterFrom(writer, outputStream)) {
+                CheckpointingRowWriter checkpointingRowWriter = new CheckpointingRowWriter(job, rowWriter,
+                        csvService.rowEncoderFrom(headers), channel);
+                Optional<TransactionSearchCursor> cursor = checkpoint.getCursor();
+                if (cursor.isPresent()) {
+                    transactionDao.streamTransactions(searchParams, cursor.get(), fetchSize, checkpointingRowWriter);
+                } else {
+                    transactionDao.streamTransactions(searchParams, fetchSize, checkpointingRowWriter);
+                }
+                return checkpointingRowWriter.checkpoint();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private void removeFilesWithoutJobs() {
+        Map<String, Path> filesByJobId = new HashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, FILE_NAME_PREFIX + "*" + FILE_NAME_SUFFIX)) {
+            files.forEach(file -> {
+                String fileName = file.getFileName().toString();
+                filesByJobId.put(fileName.substring(FILE_NAME_PREFIX.length(), fileName.length() - FILE_NAME_SUFFIX.length()), file);
+            });
+        } catch (IOException e) {
+            LOGGER.warn("Could not list CSV export job directory {}: {}", directory, e.getMessage());
+            return;
+        }
+        if (!filesByJobId.isEmpty()) {
+            // Files are only created for jobs that have been stored, so a file without a job is left from an expired one
+            csvExportJobDao.findIds(new ArrayList<>(filesByJobId.keySet())).forEach(filesByJobId::remove);
+            filesByJobId.values().forEach(CsvExportJobService::deleteFile);
+        }
+    }
+
+    private Path fileOf(String jobId) {
+        return directory.resolve(FILE_NAME_PREFIX + jobId + FILE_NAME_SUFFIX);
+    }
+
+    private static void deleteFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOGGER.warn("Could not delete CSV export job file {}: {}", file, e.getMessage());
+        }
+    }
+
+    private static TransactionSearchParams searchParamsOf(CsvExportJob job) {
+        TransactionSearchParams searchParams = QueryParamBinder.bind(new TransactionSearchParams(), job.getQueryString());
+        searchParams.setAccountIds(List.copyOf(job.getGatewayAccountIds()));
+        return searchParams;
+    }
+
+    private static String requestDigestOf(TransactionSearchParams searchParams, boolean includeFeeHeaders,
+                                          boolean includeMotoHeader) {
+        Map<String, Object> boundValues = new TreeMap<>();
+        searchParams.getQueryMap().forEach((name, value) -> boundValues.put(name, value instanceof Collection<?> values
+                ? values.stream().map(String::valueOf).sorted().toList()
+                : String.valueOf(value)));
+        String request = List.of(searchParams.getFilterTemplates(), boundValues, includeFeeHeaders, includeMotoHeader).toString();
+        return Hashing.sha256().hashString(request, StandardCharsets.UTF_8).toString();
+    }
+
+    private static String encode(CsvExportJob.Checkpoint checkpoint) {
+        return checkpoint.getCursor().map(TransactionSearchCursor::encode).orElse(null);
+    }
+
+    private static ExecutorService buildExecutorService(Environment environment, ReportingConfig reportingConfig) {
+        return environment.lifecycle()
+                .executorService(CSV_EXPORT_JOB_THREAD_NAME)
+                .minThreads(reportingConfig.getCsvExportJobThreads())
+                .maxThreads(reportingConfig.getCsvExportJobThreads())
+                .workQueue(new ArrayBlockingQueue<>(reportingConfig.getCsvExportJobQueueSize()))
+                .build();
+    }
+
+    private static class LeaseLostException extends RuntimeException {
+    }
+
+    private class CheckpointingRowWriter implements Consumer<TransactionEntity> {
+        private final CsvExportJob job;
+        private final JsonGenerator rowWriter;
+        private final CsvRowEncoder rowEncoder;
+        private final FileChannel channel;
+        private long rowCount;
+        private long rowsSinceCheckpoint;
+        private TransactionEntity lastTransaction;
+
+        private CheckpointingRowWriter(CsvExportJob job, JsonGenerator rowWriter, CsvRowEncoder rowEncoder,
+                                       FileChannel channel) {
+            this.job = job;
+            this.rowWriter = rowWriter;
+            this.rowEncoder = rowEncoder;
+            this.channel = channel;
+            this.rowCount = job.getCheckpoint().getRowCount();
+        }
+
+        @Override
+        public void accept(TransactionEntity transaction) {
+            csvService.writeCsvRow(rowWriter, rowEncoder, transaction);
+            lastTransaction = transaction;
+            rowCount++;
+            if (++rowsSinceCheckpoint == checkpointInterval) {
+                rowsSinceCheckpoint = 0;
+                CsvExportJob.Checkpoint checkpoint = checkpoint();
+                // Also renews the lease, and stops the attempt if another node has claimed the job
+                if (csvExportJobDao.checkpoint(job.getId(), leaseOwner, encode(checkpoint), checkpoint.getSizeInBytes(),
+                        checkpoint.getRowCount(), leaseInSeconds) == 0) {
+                    throw new LeaseLostException();
+                }
+                job.checkpoint(checkpoint);
+            }
+        }
+
+        private CsvExportJob.Checkpoint checkpoint() {
+            try {
+                rowWriter.flush();
+                if (lastTransaction == null) {
+                    return new CsvExportJob.Checkpoint(job.getCheckpoint().getCursor().orElse(null), channel.position(), rowCount);
+                }
+                return new CsvExportJob.Checkpoint(TransactionSearchCursor.after(lastTransaction), channel.position(), rowCount);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -10,6 +10,7 @@ import uk.gov.pay.ledger.event.dao.EventDao;
 import uk.gov.pay.ledger.expungeorredact.dao.TransactionRedactionInfoDao;
 import uk.gov.pay.ledger.transaction.dao.TransactionDao;
 import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
+import uk.gov.pay.ledger.transaction.service.TransactionSearchTotals;
 
 import jakarta.inject.Inject;
 import java.time.InstantSource;
@@ -32,6 +33,7 @@ public class ExpungeOrRedactService {
     private final InstantSource instantSource;
     private final TransactionDao transactionDao;
     private final EventDao eventDao;
+    private final TransactionSearchTotals transactionSearchTotals;
 
     private static final int PAGE_SIZE = 500;
 
@@ -55,12 +57,14 @@ public class ExpungeOrRedactService {
     public ExpungeOrRedactService(TransactionDao transactionDao, EventDao eventDao,
                                   TransactionRedactionInfoDao transactionRedactionInfoDao,
                                   LedgerConfig ledgerConfig,
-                                  InstantSource instantSource) {
+                                  InstantSource instantSource,
+                                  TransactionSearchTotals transactionSearchTotals) {
         this.transactionDao = transactionDao;
         this.eventDao = eventDao;
         this.transactionRedactionInfoDao = transactionRedactionInfoDao;
         this.expungeOrRedactHistoricalDataConfig = ledgerConfig.getExpungeOrRedactHistoricalDataConfig();
         this.instantSource = instantSource;
+        this.transactionSearchTotals = transactionSearchTotals;
     }
 
     public void redactOrDeleteData() {
@@ -97,6 +101,7 @@ public class ExpungeOrRedactService {
 
             transactionsForRedaction.forEach(transactionEntity -> {
                 transactionDao.redactPIIFromTransaction(transactionEntity.getExternalId());
+                transactionSearchTotals.invalidate(transactionEntity.getGatewayAccountId());
                 LOGGER.info("Redacted PII from transaction", kv(RESOURCE_EXTERNAL_ID, transactionEntity.getExternalId()));
             });
 
@@ -0,0 +1,18 @@
+package uk.gov.pay.ledger.filters;
+
+import jakarta.ws.rs.NameBinding;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks resource methods whose response sizes before and after compression are counted, so the saving made by
+ * Dropwizard's {@code server.gzip} handler on large responses can be seen. See {@link ResponseSizeFilter} and
+ * {@link ResponseBytesOutHandler}.
+ */
+@NameBinding
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface MeteredResponseSize {
+}
@@ -0,0 +1,70 @@
+package uk.gov.pay.ledger.filters;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.component.LifeCycle;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Counts the bytes Jetty writes for the responses of {@link MeteredResponseSize} resource methods as
+ * {@code response-compression.bytes-out}.
+ *
+ * <p>It wraps the whole of the server's handler chain, so it sits outside Dropwizard's {@code server.gzip} handler
+ * and sees responses as they are sent, after compression. Only requests marked by {@link ResponseSizeFilter} are
+ * counted, so {@code response-compression.bytes-in} and {@code response-compression.bytes-out} cover the same
+ * responses and the difference between them is the saving.</p>
+ */
+public class ResponseBytesOutHandler extends Handler.Wrapper {
+
+    static final String BYTES_IN = "response-compression.bytes-in";
+    static final String BYTES_OUT = "response-compression.bytes-out";
+    static final String METERED_ATTRIBUTE = ResponseBytesOutHandler.class.getName() + ".metered";
+
+    private final Counter bytesOut;
+
+    ResponseBytesOutHandler(Handler handler, MetricRegistry metricRegistry) {
+        super(handler);
+        this.bytesOut = metricRegistry.counter(BYTES_OUT);
+    }
+
+    /**
+     * A listener that wraps the server's handler as it starts, once Dropwizard has built the handler chain but
+     * before any of it has been started. Register it with {@code environment.lifecycle().addLifeCycleListener}.
+     */
+    public static LifeCycle.Listener wrapServerHandler(MetricRegistry metricRegistry) {
+        return new LifeCycle.Listener() {
+            @Override
+            public void lifeCycleStarting(LifeCycle event) {
+                if (event instanceof Server server) {
+                    server.setHandler(new ResponseBytesOutHandler(server.getHandler(), metricRegistry));
+                }
+            }
+        };
+    }
+
+    @Override
+    public boolean handle(Request request, Response response, Callback callback) throws Exception {
+        return super.handle(request, new CountingResponse(request, response), callback);
+    }
+
+    private class CountingResponse extends Response.Wrapper {
+
+        private CountingResponse(Request request, Response response) {
+            super(request, response);
+        }
+
+        @Override
+        public void write(boolean last, ByteBuffer byteBuffer, Callback callback) {
+            if (byteBuffer != null && getRequest().getAttribute(METERED_ATTRIBUTE) != null) {
+                bytesOut.inc(byteBuffer.remaining());
+            }
+            super.write(last, byteBuffer, callback);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package uk.gov.pay.ledger.filters;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.io.CountingOutputStream;
+import com.google.inject.Inject;
+import io.dropwizard.core.setup.Environment;
+
+import jakarta.ws.rs.ext.WriterInterceptor;
+import jakarta.ws.rs.ext.WriterInterceptorContext;
+import java.io.IOException;
+
+/**
+ * Counts the bytes written by {@link MeteredResponseSize} resource methods as {@code response-compression.bytes-in}
+ * and marks the request so {@link ResponseBytesOutHandler} counts the same response once it has been compressed.
+ *
+ * <p>The responses themselves are compressed by Dropwizard's {@code server.gzip} handler, which sits outside Jersey,
+ * so the bytes counted here are those before compression.</p>
+ */
+@MeteredResponseSize
+public class ResponseSizeFilter implements WriterInterceptor {
+
+    private final Counter bytesIn;
+
+    @Inject
+    public ResponseSizeFilter(Environment environment) {
+        this(environment.metrics());
+    }
+
+    ResponseSizeFilter(MetricRegistry metricRegistry) {
+        this.bytesIn = metricRegistry.counter(ResponseBytesOutHandler.BYTES_IN);
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        // properties are servlet request attributes, which Jetty's handlers see as request attributes
+        context.setProperty(ResponseBytesOutHandler.METERED_ATTRIBUTE, Boolean.TRUE);
+        CountingOutputStream entityStream = new CountingOutputStream(context.getOutputStream());
+        context.setOutputStream(entityStream);
+        try {
+            context.proceed();
+        } finally {
+            bytesIn.inc(entityStream.getCount());
+        }
+    }
+}
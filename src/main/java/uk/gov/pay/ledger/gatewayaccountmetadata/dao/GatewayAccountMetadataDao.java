@@ -4,6 +4,7 @@ import com.google.inject.Inject;
 import org.jdbi.v3.core.Jdbi;
 import org.jdbi.v3.core.statement.Query;
 
+import java.util.Collection;
 import java.util.List;
 
 public class GatewayAccountMetadataDao {
@@ -12,8 +13,8 @@ public class GatewayAccountMetadataDao {
             " WHERE gam.metadata_key_id = mk.id" +
             " AND gateway_account_id in (<gatewayAccountIDs>) ";
 
-    private static final String UPSERT_STRING = "INSERT INTO gateway_account_metadata(gateway_account_id, metadata_key_id) " +
-            "VALUES(:gatewayAccountId, (select id from metadata_key where key = :key )) " +
+    private static final String UPSERT_ALL_STRING = "INSERT INTO gateway_account_metadata(gateway_account_id, metadata_key_id) " +
+            "SELECT :gatewayAccountId, id FROM metadata_key WHERE key IN (<keys>) " +
             "ON CONFLICT ON CONSTRAINT gateway_account_id_and_metadata_key_id_key " +
             "DO NOTHING ";
 
@@ -24,11 +25,11 @@ public class GatewayAccountMetadataDao {
         this.jdbi = jdbi;
     }
 
-    public void upsert(String gatewayAccountId, String key) {
+    public void upsert(String gatewayAccountId, Collection<String> keys) {
         jdbi.withHandle(handle ->
-                handle.createUpdate(UPSERT_STRING)
+                handle.createUpdate(UPSERT_ALL_STRING)
                         .bind("gatewayAccountId", gatewayAccountId)
-                        .bind("key", key)
+                        .bindList("keys", keys)
                         .execute()
         );
     }
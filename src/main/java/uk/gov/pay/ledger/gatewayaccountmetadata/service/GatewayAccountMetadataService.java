@@ -2,25 +2,31 @@ package uk.gov.pay.ledger.gatewayaccountmetadata.service;
 
 import com.google.inject.Inject;
 import uk.gov.pay.ledger.gatewayaccountmetadata.dao.GatewayAccountMetadataDao;
+import uk.gov.pay.ledger.referencedata.ReferenceDataCache;
 
+import java.util.Collection;
 import java.util.List;
 
 
 public class GatewayAccountMetadataService {
 
     private final GatewayAccountMetadataDao gatewayAccountMetadataDao;
+    private final ReferenceDataCache referenceDataCache;
 
     @Inject
-    public GatewayAccountMetadataService(GatewayAccountMetadataDao gatewayAccountMetadataDao) {
+    public GatewayAccountMetadataService(GatewayAccountMetadataDao gatewayAccountMetadataDao,
+                                         ReferenceDataCache referenceDataCache) {
         this.gatewayAccountMetadataDao = gatewayAccountMetadataDao;
+        this.referenceDataCache = referenceDataCache;
     }
 
-    public void upsertMetadataKeyForGatewayAccount(String gatewayAcctId, String metadataKey) {
-        gatewayAccountMetadataDao.upsert(gatewayAcctId, metadataKey);
+    public void upsertMetadataKeysForGatewayAccount(String gatewayAcctId, Collection<String> metadataKeys) {
+        gatewayAccountMetadataDao.upsert(gatewayAcctId, metadataKeys);
+        referenceDataCache.invalidateMetadataKeysForGatewayAccount(gatewayAcctId);
     }
 
     public List<String> getKeysForGatewayAccounts(List<String> gatewayAcctIds) {
-        return gatewayAccountMetadataDao.findMetadataKeysForGatewayAccounts(gatewayAcctIds);
+        return referenceDataCache.getMetadataKeysForGatewayAccounts(gatewayAcctIds);
     }
 
 }
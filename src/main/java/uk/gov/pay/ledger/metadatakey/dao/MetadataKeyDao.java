@@ -1,19 +1,14 @@
 package uk.gov.pay.ledger.metadatakey.dao;
 
-import org.jdbi.v3.sqlobject.customizer.Bind;
-import org.jdbi.v3.sqlobject.statement.GetGeneratedKeys;
+import org.jdbi.v3.sqlobject.customizer.BindList;
 import org.jdbi.v3.sqlobject.statement.SqlUpdate;
 
-import java.util.Optional;
+import java.util.Collection;
 
 public interface MetadataKeyDao {
 
     @SqlUpdate("INSERT INTO metadata_key(key) " +
-            "SELECT :key " +
-            "WHERE NOT EXISTS ( " +
-            "    SELECT 1 " +
-            "    FROM metadata_key " +
-            "    WHERE key = :key )")
-    @GetGeneratedKeys
-    Optional<Long> insertIfNotExist(@Bind("key") String key);
-}
\ No newline at end of file
+            "SELECT unnest(ARRAY[<keys>]::varchar[]) " +
+            "ON CONFLICT ON CONSTRAINT metadata_key_unique_key DO NOTHING")
+    void insertAllIfNotExist(@BindList("keys") Collection<String> keys);
+}
@@ -7,6 +7,7 @@ import uk.gov.pay.ledger.payout.state.PayoutState;
 import jakarta.ws.rs.DefaultValue;
 import jakarta.ws.rs.QueryParam;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -31,7 +32,7 @@ public class PayoutSearchParams extends SearchParams {
     @DefaultValue("true")
     private Long pageNumber = 1L;
     private Long displaySize = DEFAULT_DISPLAY_SIZE;
-    private Map<String, Object> queryMap;
+    private volatile Map<String, Object> queryMap;
 
     public void setGatewayAccountIds(List<String> gatewayAccountIds) {
         this.gatewayAccountIds = List.copyOf(gatewayAccountIds);
@@ -68,6 +69,7 @@ public class PayoutSearchParams extends SearchParams {
     }
 
     public Map<String, Object> getQueryMap() {
+        Map<String, Object> queryMap = this.queryMap;
         if (queryMap == null) {
             queryMap = new HashMap<>();
 
@@ -79,6 +81,7 @@ public class PayoutSearchParams extends SearchParams {
                 queryMap.put(STATE_FIELD,
                         PayoutState.fromState(state).name());
             }
+            this.queryMap = queryMap = Collections.unmodifiableMap(queryMap);
         }
         return queryMap;
     }
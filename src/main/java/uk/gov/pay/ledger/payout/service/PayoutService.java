@@ -1,6 +1,7 @@
 package uk.gov.pay.ledger.payout.service;
 
 import com.google.inject.Inject;
+import uk.gov.pay.ledger.common.search.SearchQueryExecutor;
 import uk.gov.pay.ledger.event.model.EventDigest;
 import uk.gov.pay.ledger.payout.dao.PayoutDao;
 import uk.gov.pay.ledger.payout.entity.PayoutEntity;
@@ -8,6 +9,7 @@ import uk.gov.pay.ledger.payout.model.PayoutEntityFactory;
 import uk.gov.pay.ledger.payout.model.PayoutSearchResponse;
 import uk.gov.pay.ledger.payout.model.PayoutView;
 import uk.gov.pay.ledger.payout.search.PayoutSearchParams;
+import uk.gov.pay.ledger.transaction.service.TransactionSearchTotals;
 import uk.gov.pay.ledger.util.pagination.PaginationBuilder;
 
 import jakarta.ws.rs.WebApplicationException;
@@ -20,16 +22,22 @@ public class PayoutService {
 
     private final PayoutDao payoutDao;
     private final PayoutEntityFactory payoutEntityFactory;
+    private final SearchQueryExecutor searchQueryExecutor;
+    private final TransactionSearchTotals transactionSearchTotals;
 
     @Inject
-    public PayoutService(PayoutDao payoutDao, PayoutEntityFactory payoutEntityFactory) {
+    public PayoutService(PayoutDao payoutDao, PayoutEntityFactory payoutEntityFactory, SearchQueryExecutor searchQueryExecutor,
+                         TransactionSearchTotals transactionSearchTotals) {
         this.payoutDao = payoutDao;
         this.payoutEntityFactory = payoutEntityFactory;
+        this.searchQueryExecutor = searchQueryExecutor;
+        this.transactionSearchTotals = transactionSearchTotals;
     }
 
     public void upsertPayoutFor(EventDigest eventDigest) {
         PayoutEntity payoutEntity = payoutEntityFactory.create(eventDigest);
         payoutDao.upsert(payoutEntity);
+        transactionSearchTotals.invalidate(payoutEntity.getGatewayAccountId());
     }
 
     public PayoutSearchResponse searchPayouts(List<String> gatewayAccountIds, PayoutSearchParams searchParams, UriInfo uriInfo) {
@@ -37,12 +45,15 @@ public class PayoutService {
             searchParams.setGatewayAccountIds(gatewayAccountIds);
         }
 
-        List<PayoutView> payoutViewList = payoutDao.searchPayouts(searchParams)
+        SearchQueryExecutor.SearchResult<PayoutEntity, Long> searchResult = searchQueryExecutor.execute(
+                () -> payoutDao.searchPayouts(searchParams),
+                () -> payoutDao.getTotalForSearch(searchParams));
+        List<PayoutView> payoutViewList = searchResult.getPage()
                 .stream()
                 .map(PayoutView::from)
                 .collect(Collectors.toList());
 
-        Long total = payoutDao.getTotalForSearch(searchParams);
+        Long total = searchResult.getTotal();
 
         long size = searchParams.getDisplaySize();
         if (total > 0 && searchParams.getDisplaySize() > 0) {
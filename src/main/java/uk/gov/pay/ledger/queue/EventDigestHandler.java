@@ -7,10 +7,13 @@ import uk.gov.pay.ledger.event.entity.EventEntity;
 import uk.gov.pay.ledger.queue.eventprocessor.AgreementEventProcessor;
 import uk.gov.pay.ledger.queue.eventprocessor.ChildTransactionEventProcessor;
 import uk.gov.pay.ledger.queue.eventprocessor.EventProcessor;
+import uk.gov.pay.ledger.queue.eventprocessor.IngestedEvent;
 import uk.gov.pay.ledger.queue.eventprocessor.PaymentEventProcessor;
 import uk.gov.pay.ledger.queue.eventprocessor.PaymentInstrumentEventProcessor;
 import uk.gov.pay.ledger.queue.eventprocessor.PayoutEventProcessor;
 
+import java.util.List;
+
 public class EventDigestHandler {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(EventDigestHandler.class);
@@ -61,4 +64,12 @@ public class EventDigestHandler {
     public void processEvent(EventEntity event, boolean isANewEvent) {
         processorFor(event).process(event, isANewEvent);
     }
+
+    /**
+     * Projects a resource once for several of its events stored from the same batch. All events must belong to the
+     * same resource.
+     */
+    public void processEvents(List<IngestedEvent> ingestedEvents) {
+        processorFor(ingestedEvents.get(0).getEvent()).process(ingestedEvents);
+    }
 }
@@ -8,6 +8,7 @@ import java.util.Optional;
 public class EventMessage {
     private EventMessageDto eventDto;
     private QueueMessage queueMessage;
+    private EventEntity event;
 
     public EventMessage(EventMessageDto eventDto, QueueMessage queueMessage) {
         this.eventDto = eventDto;
@@ -26,7 +27,18 @@ public class EventMessage {
         return queueMessage.getMessageBody();
     }
 
+    /**
+     * Returns the event carried by the message. The event is created once, from the payload already parsed with the
+     * message, and shared by every caller.
+     */
     public EventEntity getEvent() {
+        if (event == null) {
+            event = createEvent();
+        }
+        return event;
+    }
+
+    private EventEntity createEvent() {
         return new EventEntity(
                 getQueueMessageId().orElse(null),
                 eventDto.getServiceId(),
@@ -36,7 +48,7 @@ public class EventMessage {
                 eventDto.getParentExternalId(),
                 eventDto.getTimestamp(),
                 eventDto.getEventType(),
-                eventDto.getEventData(),
+                eventDto.getEventDataNode(),
                 eventDto.isReprojectDomainObject()
         );
     }
@@ -1,5 +1,6 @@
 package uk.gov.pay.ledger.queue;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -69,6 +70,11 @@ public class EventMessageDto {
         return eventData.toString();
     }
 
+    @JsonIgnore
+    public JsonNode getEventDataNode() {
+        return eventData;
+    }
+
     public String getExternalId() {
         return externalId;
     }
@@ -11,15 +11,28 @@ import uk.gov.pay.ledger.event.entity.EventEntity;
 import uk.gov.pay.ledger.event.model.ResourceType;
 import uk.gov.pay.ledger.event.model.response.CreateEventResponse;
 import uk.gov.pay.ledger.event.service.EventService;
-import uk.gov.pay.ledger.eventpublisher.EventPublisher;
+import uk.gov.pay.ledger.eventpublisher.entity.EventOutboxEntity;
+import uk.gov.pay.ledger.queue.eventprocessor.IngestedEvent;
 import uk.gov.service.payments.commons.queue.exception.QueueException;
 
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static net.logstash.logback.argument.StructuredArguments.kv;
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
 import static uk.gov.pay.ledger.event.model.ResourceType.DISPUTE;
 import static uk.gov.pay.ledger.event.model.ResourceType.PAYMENT;
 import static uk.gov.pay.ledger.event.model.ResourceType.REFUND;
@@ -27,6 +40,8 @@ import static uk.gov.pay.ledger.event.model.response.CreateEventResponse.CreateE
 import static uk.gov.pay.ledger.event.model.response.CreateEventResponse.ignoredEventResponse;
 import static uk.gov.pay.ledger.eventpublisher.TopicName.CARD_PAYMENT_DISPUTE_EVENTS;
 import static uk.gov.pay.ledger.eventpublisher.TopicName.CARD_PAYMENT_EVENTS;
+import static uk.gov.pay.ledger.queue.IngestStageMetrics.Stage.EVENT_INSERT;
+import static uk.gov.pay.ledger.queue.IngestStageMetrics.Stage.SQS_ACK;
 import static uk.gov.service.payments.logging.LoggingKeys.LEDGER_EVENT_TYPE;
 import static uk.gov.service.payments.logging.LoggingKeys.RESOURCE_EXTERNAL_ID;
 import static uk.gov.service.payments.logging.LoggingKeys.SQS_MESSAGE_ID;
@@ -38,8 +53,8 @@ public class EventMessageHandler {
     private final EventQueue eventQueue;
     private final EventService eventService;
     private final EventDigestHandler eventDigestHandler;
-    private final EventPublisher eventPublisher;
     private final MetricRegistry metricRegistry;
+    private final IngestStageMetrics ingestStageMetrics;
     private final LedgerConfig ledgerConfig;
     private final Jdbi jdbi;
 
@@ -47,132 +62,303 @@ public class EventMessageHandler {
     public EventMessageHandler(EventQueue eventQueue,
                                EventService eventService,
                                EventDigestHandler eventDigestHandler,
-                               EventPublisher eventPublisher,
                                MetricRegistry metricRegistry,
+                               IngestStageMetrics ingestStageMetrics,
                                LedgerConfig ledgerConfig,
                                Jdbi jdbi) {
         this.eventQueue = eventQueue;
         this.eventService = eventService;
         this.eventDigestHandler = eventDigestHandler;
-        this.eventPublisher = eventPublisher;
         this.metricRegistry = metricRegistry;
+        this.ingestStageMetrics = ingestStageMetrics;
         this.ledgerConfig = ledgerConfig;
         this.jdbi = jdbi;
     }
 
     public void handle() throws QueueException {
-        List<EventMessage> eventMessages = eventQueue.retrieveEvents();
+        handle(Runnable::run);
+    }
+
+    /**
+     * Processes a batch of messages using the given executor. All events in the batch are stored in one round trip
+     * and then partitioned by the resource they belong to (refunds and disputes by their parent payment). Each
+     * partition is projected in order as a single task, so events for one resource are never processed concurrently
+     * within a batch while unrelated resources are. Once every partition has finished, the messages are deleted from
+     * or deferred on the queue with batch requests.
+     */
+    public void handle(Executor executor) throws QueueException {
+        process(eventQueue.retrieveEvents(), executor);
+    }
+
+    /**
+     * Processes a batch of messages that has already been received from the queue, as {@link #handle(Executor)} does.
+     */
+    public void process(List<EventMessage> eventMessages, Executor executor) {
+        List<StoredEventMessage> storedMessages = storeEvents(eventMessages);
+        PendingAcknowledgements acknowledgements = new PendingAcknowledgements();
+
+        List<CompletableFuture<Void>> partitions = partitionByResource(storedMessages).values().stream()
+                .map(partition -> submitPartition(partition, acknowledgements, executor))
+                .toList();
+
+        CompletableFuture.allOf(partitions.toArray(CompletableFuture[]::new)).join();
+        acknowledge(acknowledgements);
+    }
+
+    private Map<String, List<StoredEventMessage>> partitionByResource(List<StoredEventMessage> storedMessages) {
+        Map<String, List<StoredEventMessage>> partitions = new LinkedHashMap<>();
+        for (StoredEventMessage storedMessage : storedMessages) {
+            partitions.computeIfAbsent(partitionKeyFor(storedMessage.event), key -> new ArrayList<>()).add(storedMessage);
+        }
+        return partitions;
+    }
+
+    private String partitionKeyFor(EventEntity event) {
+        if ((event.getResourceType() == REFUND || event.getResourceType() == DISPUTE)
+                && isNotBlank(event.getParentResourceExternalId())) {
+            return event.getParentResourceExternalId();
+        }
+        return event.getResourceExternalId();
+    }
+
+    private CompletableFuture<Void> submitPartition(List<StoredEventMessage> partition, PendingAcknowledgements acknowledgements,
+                                                    Executor executor) {
+        metricRegistry.histogram("event-message-handler.partition-queue-depth").update(partition.size());
+        long submittedAt = System.nanoTime();
+
+        return CompletableFuture.runAsync(() -> {
+            long startedAt = System.nanoTime();
+            metricRegistry.timer("event-message-handler.partition-wait-time").update(startedAt - submittedAt, NANOSECONDS);
+            processPartition(partition, acknowledgements);
+            metricRegistry.timer("event-message-handler.partition-processing-time").update(System.nanoTime() - startedAt, NANOSECONDS);
+        }, executor);
+    }
+
+    /**
+     * A resource receiving several events in the same batch is projected once for all of them rather than once per
+     * event.
+     */
+    private void processPartition(List<StoredEventMessage> partition, PendingAcknowledgements acknowledgements) {
+        List<StoredEventMessage> successfullyStoredMessages = new ArrayList<>();
+        for (StoredEventMessage storedMessage : partition) {
+            if (storedMessage.response.isSuccessful()) {
+                successfullyStoredMessages.add(storedMessage);
+                continue;
+            }
+            try {
+                handleUnsuccessfulStore(storedMessage, acknowledgements);
+            } catch (Exception e) {
+                logErrorHandlingMessage(storedMessage.message, e);
+            }
+        }
+
+        groupByResource(successfullyStoredMessages).forEach(resource -> projectResource(resource, acknowledgements));
+    }
+
+    private Collection<List<StoredEventMessage>> groupByResource(List<StoredEventMessage> storedMessages) {
+        Map<String, List<StoredEventMessage>> resources = new LinkedHashMap<>();
+        for (StoredEventMessage storedMessage : storedMessages) {
+            String resourceKey = storedMessage.event.getResourceType() + ":" + storedMessage.event.getResourceExternalId();
+            resources.computeIfAbsent(resourceKey, key -> new ArrayList<>()).add(storedMessage);
+        }
+        return resources.values();
+    }
+
+    private void projectResource(List<StoredEventMessage> storedMessages, PendingAcknowledgements acknowledgements) {
+        try {
+            eventDigestHandler.processEvents(storedMessages.stream().map(StoredEventMessage::toIngestedEvent).toList());
+        } catch (Exception e) {
+            storedMessages.forEach(storedMessage -> logErrorHandlingMessage(storedMessage.message, e));
+            return;
+        }
 
-        for (EventMessage message : eventMessages) {
+        for (StoredEventMessage storedMessage : storedMessages) {
             try {
-                processSingleMessage(message);
+                markAsProcessed(storedMessage, acknowledgements);
             } catch (Exception e) {
-                Sentry.captureException(e);
-                LOGGER.warn("Error during handling the event message",
-                        kv(SQS_MESSAGE_ID, message.getQueueMessageId()),
-                        kv(RESOURCE_EXTERNAL_ID, message.getEvent().getResourceExternalId()),
-                        kv(LEDGER_EVENT_TYPE, message.getEvent().getEventType()),
-                        kv("error", e.getMessage())
-                );
+                logErrorHandlingMessage(storedMessage.message, e);
             }
         }
     }
 
+    private void logErrorHandlingMessage(EventMessage message, Exception e) {
+        Sentry.captureException(e);
+        LOGGER.warn("Error during handling the event message",
+                kv(SQS_MESSAGE_ID, message.getQueueMessageId()),
+                kv(RESOURCE_EXTERNAL_ID, message.getEvent().getResourceExternalId()),
+                kv(LEDGER_EVENT_TYPE, message.getEvent().getEventType()),
+                kv("error", e.getMessage())
+        );
+    }
+
     // provides a transactional guarantee, if any of the events fail to process, none of the events will be persisted
     public void processEventBatch(List<EventMessage> messages) throws QueueException {
+        PendingAcknowledgements acknowledgements = new PendingAcknowledgements();
         jdbi.useTransaction(handle -> {
-            for (EventMessage message : messages) {
-                processSingleMessage(message);
+            List<StoredEventMessage> successfullyStoredMessages = new ArrayList<>();
+            for (StoredEventMessage storedMessage : storeEvents(messages)) {
+                if (storedMessage.response.isSuccessful()) {
+                    successfullyStoredMessages.add(storedMessage);
+                } else {
+                    handleUnsuccessfulStore(storedMessage, acknowledgements);
+                }
+            }
+
+            // every event of the batch is already stored, so each resource is projected once over all of its events
+            // rather than once per event over events that are projected again
+            for (List<StoredEventMessage> resource : groupByResource(successfullyStoredMessages)) {
+                eventDigestHandler.processEvents(resource.stream().map(StoredEventMessage::toIngestedEvent).toList());
+                resource.forEach(storedMessage -> markAsProcessed(storedMessage, acknowledgements));
             }
         });
+        acknowledge(acknowledgements);
     }
 
-    private void processSingleMessage(EventMessage message) throws QueueException {
-        EventEntity event = message.getEvent();
-
-        CreateEventResponse response;
+    private List<StoredEventMessage> storeEvents(List<EventMessage> messages) {
+        List<EventEntity> events = messages.stream().map(EventMessage::getEvent).toList();
 
         // We don't persist events created by internal admins for re-projecting domain objects so as to not pollute
         // the event feed. This also means that any event data on the event will be ignored when processing, and only
         // previous events will be used when re-projecting the domain object.
+        List<EventMessage> messagesToStore = messages.stream()
+                .filter(message -> !message.getEvent().isReprojectDomainObject())
+                .toList();
+        List<EventEntity> eventsToStore = messagesToStore.stream().map(EventMessage::getEvent).toList();
+        long startedAt = System.nanoTime();
+        Iterator<CreateEventResponse> responses = eventService.createAllIfDoNotExist(
+                eventsToStore, messagesToStore.stream().map(this::outboxEntryFor).toList()).iterator();
+        ingestStageMetrics.recordSince(EVENT_INSERT, eventsToStore, startedAt);
+
+        List<StoredEventMessage> storedMessages = new ArrayList<>();
+        for (int i = 0; i < messages.size(); i++) {
+            EventEntity event = events.get(i);
+            CreateEventResponse response = event.isReprojectDomainObject() ? ignoredEventResponse() : responses.next();
+            final long ingestLag = event.getEventDate().until(ZonedDateTime.now(), ChronoUnit.MICROS);
+            storedMessages.add(new StoredEventMessage(messages.get(i), event, response, ingestLag));
+        }
+        return storedMessages;
+    }
+
+    private void acknowledge(PendingAcknowledgements acknowledgements) {
+        List<EventMessage> processedMessages = List.copyOf(acknowledgements.processedMessages);
+        List<EventMessage> messagesToRetry = List.copyOf(acknowledgements.messagesToRetry);
+        long startedAt = System.nanoTime();
+
+        if (!processedMessages.isEmpty()) {
+            sendWithRetry("delete", processedMessages, eventQueue::markMessagesAsProcessed);
+        }
+        if (!messagesToRetry.isEmpty()) {
+            sendWithRetry("change visibility", messagesToRetry, eventQueue::scheduleMessagesForRetry);
+        }
+
+        ingestStageMetrics.recordSince(SQS_ACK, Stream.concat(processedMessages.stream(), messagesToRetry.stream())
+                .map(EventMessage::getEvent)
+                .toList(), startedAt);
+    }
+
+    /**
+     * Sends the messages that failed in a batch request once more. Messages that fail again are received again once
+     * their visibility timeout expires, which is safe as their events are only stored once.
+     */
+    private void sendWithRetry(String operation, List<EventMessage> messages,
+                               Function<List<EventMessage>, List<EventMessage>> send) {
+        List<EventMessage> failedMessages = send.apply(messages);
+        if (!failedMessages.isEmpty()) {
+            failedMessages = send.apply(failedMessages);
+        }
+        if (!failedMessages.isEmpty()) {
+            LOGGER.warn("SQS batch request failed for messages after retrying, they will be received again",
+                    kv("operation", operation),
+                    kv("number_of_messages", failedMessages.size()));
+        }
+    }
+
+    private void markAsProcessed(StoredEventMessage storedMessage, PendingAcknowledgements acknowledgements) {
+        EventMessage message = storedMessage.message;
+        EventEntity event = storedMessage.event;
+
+        if (message.getQueueMessageReceiptHandle().isPresent()) {
+            acknowledgements.processedMessages.add(message);
+        }
+        metricRegistry.histogram("event-message-handler.ingest-lag-microseconds").update(storedMessage.ingestLag);
+        var loggingArgs = new ArrayList<>(List.of(
+                kv(SQS_MESSAGE_ID, message.getQueueMessageId()),
+                kv(RESOURCE_EXTERNAL_ID, event.getResourceExternalId()),
+                kv(LEDGER_EVENT_TYPE, event.getEventType()),
+                kv("state", storedMessage.response.getState()),
+                kv("ingest_lag_micro_seconds", storedMessage.ingestLag)));
+
         if (event.isReprojectDomainObject()) {
-            response = ignoredEventResponse();
-        } else {
-            response = eventService.createIfDoesNotExist(event);
+            loggingArgs.add(kv("reproject_domain_object_event", event.isReprojectDomainObject()));
         }
 
-        final long ingestLag = event.getEventDate().until(ZonedDateTime.now(), ChronoUnit.MICROS);
+        LOGGER.info("The event message has been processed.", loggingArgs.toArray());
+    }
 
-        if (response.isSuccessful()) {
-            eventDigestHandler.processEvent(event, response.getState() == INSERTED);
-            if (message.getQueueMessageReceiptHandle().isPresent()) {
-                eventQueue.markMessageAsProcessed(message);
-            }
-            metricRegistry.histogram("event-message-handler.ingest-lag-microseconds").update(ingestLag);
-            var loggingArgs = new ArrayList<>(List.of(
+    private void handleUnsuccessfulStore(StoredEventMessage storedMessage, PendingAcknowledgements acknowledgements) {
+        EventMessage message = storedMessage.message;
+        EventEntity event = storedMessage.event;
+        CreateEventResponse response = storedMessage.response;
+
+        if (message.getQueueMessageId().isPresent()) {
+            acknowledgements.messagesToRetry.add(message);
+            LOGGER.warn("The event message has been scheduled for retry.",
                     kv(SQS_MESSAGE_ID, message.getQueueMessageId()),
                     kv(RESOURCE_EXTERNAL_ID, event.getResourceExternalId()),
                     kv(LEDGER_EVENT_TYPE, event.getEventType()),
                     kv("state", response.getState()),
-                    kv("ingest_lag_micro_seconds", ingestLag)));
+                    kv("error", response.getErrorMessage()));
+        } else {
+            LOGGER.warn("Create event response was unsuccessful.",
+                    kv(RESOURCE_EXTERNAL_ID, event.getResourceExternalId()),
+                    kv("state", response.getState()),
+                    kv("error", response.getErrorMessage()));
+        }
+    }
 
-            if (event.isReprojectDomainObject()) {
-                loggingArgs.add(kv("reproject_domain_object_event", event.isReprojectDomainObject()));
-            }
+    /**
+     * Returns the entry to store in the outbox for publishing the message to SNS along with its event, or null if
+     * the message is not published. Only messages received from the queue are published, as they are forwarded
+     * unchanged.
+     */
+    private EventOutboxEntity outboxEntryFor(EventMessage message) {
+        if (!ledgerConfig.getSnsConfig().isSnsEnabled() || message.getRawMessageBody() == null) {
+            return null;
+        }
 
-            LOGGER.info("The event message has been processed.", loggingArgs.toArray());
-        } else {
-            if (message.getQueueMessageId().isPresent()) {
-                eventQueue.scheduleMessageForRetry(message);
-                LOGGER.warn("The event message has been scheduled for retry.",
-                        kv(SQS_MESSAGE_ID, message.getQueueMessageId()),
-                        kv(RESOURCE_EXTERNAL_ID, event.getResourceExternalId()),
-                        kv(LEDGER_EVENT_TYPE, event.getEventType()),
-                        kv("state", response.getState()),
-                        kv("error", response.getErrorMessage()));
-            } else {
-                LOGGER.warn("Create event response was unsuccessful.",
-                        kv(RESOURCE_EXTERNAL_ID, event.getResourceExternalId()),
-                        kv("state", response.getState()),
-                        kv("error", response.getErrorMessage()));
+        EventEntity event = message.getEvent();
+        ResourceType resourceType = event.getResourceType();
+        if (resourceType == DISPUTE) {
+            if (ledgerConfig.getSnsConfig().isPublishCardPaymentDisputeEventsToSns()) {
+                return EventOutboxEntity.from(event, message.getRawMessageBody(), CARD_PAYMENT_DISPUTE_EVENTS);
             }
+        } else if ((resourceType == PAYMENT || resourceType == REFUND)
+                && ledgerConfig.getSnsConfig().isPublishCardPaymentEventsToSns()) {
+            return EventOutboxEntity.from(event, message.getRawMessageBody(), CARD_PAYMENT_EVENTS);
         }
+        return null;
+    }
 
-        publishEventToSNS(message, event);
+    private static class PendingAcknowledgements {
+        private final Queue<EventMessage> processedMessages = new ConcurrentLinkedQueue<>();
+        private final Queue<EventMessage> messagesToRetry = new ConcurrentLinkedQueue<>();
     }
 
-    private void publishEventToSNS(EventMessage message, EventEntity event) {
-        if (ledgerConfig.getSnsConfig().isSnsEnabled()) {
-            try {
-                ResourceType resourceType = message.getEvent().getResourceType();
-                if (resourceType == DISPUTE) {
-                    if (ledgerConfig.getSnsConfig().isPublishCardPaymentDisputeEventsToSns()) {
-                        eventPublisher.publishMessageToTopic(message.getRawMessageBody(), CARD_PAYMENT_DISPUTE_EVENTS);
-                        LOGGER.info("Published message to SNS topic",
-                                kv("sns_topic", CARD_PAYMENT_DISPUTE_EVENTS),
-                                kv(SQS_MESSAGE_ID, message.getQueueMessageId()),
-                                kv(RESOURCE_EXTERNAL_ID, event.getResourceExternalId()),
-                                kv(LEDGER_EVENT_TYPE, event.getEventType()));
-                    }
-                } else {
-                    if ((resourceType == PAYMENT || resourceType == REFUND)
-                            && ledgerConfig.getSnsConfig().isPublishCardPaymentEventsToSns()) {
-
-                        eventPublisher.publishMessageToTopic(message.getRawMessageBody(), CARD_PAYMENT_EVENTS);
-                        LOGGER.info("Published message to SNS topic",
-                                kv("sns_topic", CARD_PAYMENT_EVENTS),
-                                kv(SQS_MESSAGE_ID, message.getQueueMessageId()),
-                                kv(RESOURCE_EXTERNAL_ID, event.getResourceExternalId()),
-                                kv(LEDGER_EVENT_TYPE, event.getEventType()));
-                    }
-                }
-            } catch (Exception e) {
-                LOGGER.warn("Failed to publish event for message",
-                        kv(SQS_MESSAGE_ID, message.getQueueMessageId()),
-                        kv(RESOURCE_EXTERNAL_ID, event.getResourceExternalId()),
-                        kv(LEDGER_EVENT_TYPE, event.getEventType()),
-                        kv("error", e.getMessage()));
-            }
+    private static class StoredEventMessage {
+        private final EventMessage message;
+        private final EventEntity event;
+        private final CreateEventResponse response;
+        private final long ingestLag;
+
+        private StoredEventMessage(EventMessage message, EventEntity event, CreateEventResponse response, long ingestLag) {
+            this.message = message;
+            this.event = event;
+            this.response = response;
+            this.ingestLag = ingestLag;
+        }
+
+        private IngestedEvent toIngestedEvent() {
+            return new IngestedEvent(event, response.getState() == INSERTED);
         }
     }
 }
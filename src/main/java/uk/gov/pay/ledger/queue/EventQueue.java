@@ -1,32 +1,55 @@
 package uk.gov.pay.ledger.queue;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchRequest;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequestEntry;
 import uk.gov.pay.ledger.app.LedgerConfig;
 import uk.gov.service.payments.commons.queue.exception.QueueException;
 import uk.gov.service.payments.commons.queue.model.QueueMessage;
 import uk.gov.service.payments.commons.queue.sqs.SqsQueueService;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static java.lang.String.format;
+import static net.logstash.logback.argument.StructuredArguments.kv;
+import static uk.gov.service.payments.logging.LoggingKeys.SQS_MESSAGE_ID;
 
 public class EventQueue {
 
     private static final String EVENT_MESSAGE_ATTRIBUTE_NAME = "All";
     private static final Logger LOGGER = LoggerFactory.getLogger(EventQueue.class);
+    // the most entries SQS accepts in a single batch request
+    private static final int MAXIMUM_BATCH_SIZE = 10;
 
     private SqsQueueService sqsQueueService;
+    private final SqsClient sqsClient;
+    private final MetricRegistry metricRegistry;
     private final String eventQueueUrl;
     private ObjectMapper objectMapper;
     private int retryDelayInSeconds;
 
     @Inject
-    public EventQueue(SqsQueueService sqsQueueService, LedgerConfig configuration, ObjectMapper objectMapper) {
+    public EventQueue(SqsQueueService sqsQueueService, SqsClient sqsClient, LedgerConfig configuration,
+                      ObjectMapper objectMapper, MetricRegistry metricRegistry) {
         this.sqsQueueService = sqsQueueService;
+        this.sqsClient = sqsClient;
+        this.metricRegistry = metricRegistry;
         this.eventQueueUrl = configuration.getSqsConfig().getEventQueueUrl();
         this.objectMapper = objectMapper;
         this.retryDelayInSeconds = configuration.getQueueMessageReceiverConfig().getMessageRetryDelayInSeconds();
@@ -43,12 +66,80 @@ public class EventQueue {
                 .collect(Collectors.toList());
     }
 
-    public void markMessageAsProcessed(EventMessage message) throws QueueException {
-        sqsQueueService.deleteMessage(this.eventQueueUrl, message.getQueueMessageReceiptHandle().orElse(null));
+    /**
+     * Deletes the messages from the queue using as few batch requests as possible, returning the messages that could
+     * not be deleted. Those messages will be received again once their visibility timeout expires.
+     */
+    public List<EventMessage> markMessagesAsProcessed(List<EventMessage> messages) {
+        return sendInBatches("delete-message-batch", messages, batch -> sqsClient.deleteMessageBatch(
+                DeleteMessageBatchRequest.builder()
+                        .queueUrl(eventQueueUrl)
+                        .entries(IntStream.range(0, batch.size())
+                                .mapToObj(i -> DeleteMessageBatchRequestEntry.builder()
+                                        .id(String.valueOf(i))
+                                        .receiptHandle(receiptHandleOf(batch.get(i)))
+                                        .build())
+                                .toList())
+                        .build()).failed());
+    }
+
+    /**
+     * Defers the messages for the configured retry delay using as few batch requests as possible, returning the
+     * messages that could not be deferred. Those messages will be received again once their current visibility
+     * timeout expires.
+     */
+    public List<EventMessage> scheduleMessagesForRetry(List<EventMessage> messages) {
+        return sendInBatches("change-message-visibility-batch", messages, batch -> sqsClient.changeMessageVisibilityBatch(
+                ChangeMessageVisibilityBatchRequest.builder()
+                        .queueUrl(eventQueueUrl)
+                        .entries(IntStream.range(0, batch.size())
+                                .mapToObj(i -> ChangeMessageVisibilityBatchRequestEntry.builder()
+                                        .id(String.valueOf(i))
+                                        .receiptHandle(receiptHandleOf(batch.get(i)))
+                                        .visibilityTimeout(retryDelayInSeconds)
+                                        .build())
+                                .toList())
+                        .build()).failed());
+    }
+
+    private List<EventMessage> sendInBatches(String operation, List<EventMessage> messages,
+                                             Function<List<EventMessage>, List<BatchResultErrorEntry>> sendBatch) {
+        List<EventMessage> failedMessages = new ArrayList<>();
+
+        for (int from = 0; from < messages.size(); from += MAXIMUM_BATCH_SIZE) {
+            List<EventMessage> batch = messages.subList(from, Math.min(from + MAXIMUM_BATCH_SIZE, messages.size()));
+            metricRegistry.histogram(format("event-queue.%s.size", operation)).update(batch.size());
+
+            List<BatchResultErrorEntry> failedEntries;
+            try (Timer.Context ignored = metricRegistry.timer(format("event-queue.%s.duration", operation)).time()) {
+                failedEntries = sendBatch.apply(batch);
+            } catch (SdkException e) {
+                LOGGER.warn("SQS batch request failed",
+                        kv("operation", operation),
+                        kv("batch_size", batch.size()),
+                        kv("error", e.getMessage()));
+                metricRegistry.counter(format("event-queue.%s.failed-entries", operation)).inc(batch.size());
+                failedMessages.addAll(batch);
+                continue;
+            }
+
+            for (BatchResultErrorEntry failedEntry : failedEntries) {
+                EventMessage message = batch.get(Integer.parseInt(failedEntry.id()));
+                LOGGER.warn("SQS batch request failed for message",
+                        kv("operation", operation),
+                        kv(SQS_MESSAGE_ID, message.getQueueMessageId()),
+                        kv("code", failedEntry.code()),
+                        kv("error", failedEntry.message()));
+                failedMessages.add(message);
+            }
+            metricRegistry.counter(format("event-queue.%s.failed-entries", operation)).inc(failedEntries.size());
+        }
+
+        return failedMessages;
     }
 
-    public void scheduleMessageForRetry(EventMessage message) throws QueueException {
-        sqsQueueService.deferMessage(this.eventQueueUrl, message.getQueueMessageReceiptHandle().orElse(null), retryDelayInSeconds);
+    private String receiptHandleOf(EventMessage message) {
+        return message.getQueueMessageReceiptHandle().orElse(null);
     }
 
     private EventMessage getMessage(QueueMessage queueMessage) {
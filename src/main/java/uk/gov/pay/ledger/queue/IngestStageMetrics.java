@@ -0,0 +1,106 @@
+package uk.gov.pay.ledger.queue;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.google.inject.Inject;
+import io.dropwizard.core.setup.Environment;
+import io.prometheus.client.dropwizard.samplebuilder.MapperConfig;
+import uk.gov.pay.ledger.event.entity.EventEntity;
+import uk.gov.pay.ledger.transaction.dao.TransactionUpsertOutcome;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Times each stage of ingesting an event, from storing it to acknowledging its message, tagged by the resource type.
+ * The tags are encoded in the metric name, {@code ingest-stage.<stage>.<resource type>}, and turned into labels when
+ * exported to Prometheus. Event types are not tagged, as they come from the messages and are not a fixed set.
+ * <p>
+ * Events are stored, projected and acknowledged in groups, so the time a stage takes for a group is shared equally
+ * between its events. The timers then add up to the time spent on each stage however the events were grouped.
+ * <p>
+ * The outcome of each transaction upsert is also counted, with the share of upserts over the last minute that did
+ * not need to rewrite the transaction reported as {@code transaction-upsert.skip-ratio}.
+ */
+public class IngestStageMetrics {
+
+    public enum Stage {
+        EVENT_INSERT("event-insert"),
+        DIGEST_BUILD("digest-build"),
+        ENTITY_FACTORY("entity-factory"),
+        TRANSACTION_UPSERT("transaction-upsert"),
+        METADATA_UPSERT("metadata-upsert"),
+        REFUND_REPROJECTION("refund-reprojection"),
+        TRANSACTION_SUMMARY_PROJECTION("transaction-summary-projection"),
+        SQS_ACK("sqs-ack"),
+        SNS_PUBLISH("sns-publish");
+
+        private final String metricName;
+
+        Stage(String metricName) {
+            this.metricName = metricName;
+        }
+    }
+
+    private static final String METRIC_NAME_PREFIX = "ingest-stage";
+    private static final String TRANSACTION_UPSERT_METRIC_NAME_PREFIX = "transaction-upsert";
+
+    public static final MapperConfig PROMETHEUS_MAPPER_CONFIG = new MapperConfig(
+            METRIC_NAME_PREFIX + ".*.*",
+            "ledger_ingest_stage_duration_seconds",
+            Map.of("stage", "${0}", "resource_type", "${1}"));
+
+    private final MetricRegistry metricRegistry;
+
+    @Inject
+    public IngestStageMetrics(Environment environment) {
+        this(environment.metrics());
+    }
+
+    public IngestStageMetrics(MetricRegistry metricRegistry) {
+        this.metricRegistry = metricRegistry;
+        metricRegistry.gauge(MetricRegistry.name(TRANSACTION_UPSERT_METRIC_NAME_PREFIX, "skip-ratio"), () -> new RatioGauge() {
+            @Override
+            protected Ratio getRatio() {
+                double written = transactionUpsertMeterRate(TransactionUpsertOutcome.WRITTEN);
+                double skipped = transactionUpsertMeterRate(TransactionUpsertOutcome.EVENT_COUNT_UPDATED)
+                        + transactionUpsertMeterRate(TransactionUpsertOutcome.UNCHANGED);
+                return Ratio.of(skipped, written + skipped);
+            }
+        });
+    }
+
+    /**
+     * Records the time elapsed since the given {@link System#nanoTime()} against the stage for the events.
+     */
+    public void recordSince(Stage stage, List<EventEntity> events, long startedAtNanos) {
+        long durationInNanos = System.nanoTime() - startedAtNanos;
+        if (events.isEmpty()) {
+            return;
+        }
+        long durationPerEventInNanos = durationInNanos / events.size();
+        events.forEach(event -> record(stage, event.getResourceType().name(), durationPerEventInNanos));
+    }
+
+    public void record(Stage stage, String resourceType, long durationInNanos) {
+        metricRegistry.timer(MetricRegistry.name(METRIC_NAME_PREFIX, stage.metricName,
+                        resourceType.toLowerCase(Locale.ENGLISH)))
+                .update(durationInNanos, NANOSECONDS);
+    }
+
+    public void markTransactionUpsert(TransactionUpsertOutcome outcome) {
+        metricRegistry.meter(transactionUpsertMeterName(outcome)).mark();
+    }
+
+    private double transactionUpsertMeterRate(TransactionUpsertOutcome outcome) {
+        return metricRegistry.meter(transactionUpsertMeterName(outcome)).getOneMinuteRate();
+    }
+
+    private static String transactionUpsertMeterName(TransactionUpsertOutcome outcome) {
+        return MetricRegistry.name(TRANSACTION_UPSERT_METRIC_NAME_PREFIX,
+                outcome.name().toLowerCase(Locale.ENGLISH).replace('_', '-'));
+    }
+}
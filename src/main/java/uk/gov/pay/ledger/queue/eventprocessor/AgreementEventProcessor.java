@@ -5,6 +5,8 @@ import uk.gov.pay.ledger.agreement.service.AgreementService;
 import uk.gov.pay.ledger.event.entity.EventEntity;
 import uk.gov.pay.ledger.event.service.EventService;
 
+import java.util.List;
+
 public class AgreementEventProcessor extends EventProcessor {
     private final EventService eventService;
     private final AgreementService agreementService;
@@ -17,6 +19,12 @@ public class AgreementEventProcessor extends EventProcessor {
 
     @Override
     public void process(EventEntity event, boolean isNewEvent) {
-        agreementService.upsertAgreementFor(eventService.getEventDigestForResource(event));
+        process(List.of(new IngestedEvent(event, isNewEvent)));
+    }
+
+    @Override
+    public void process(List<IngestedEvent> ingestedEvents) {
+        agreementService.upsertAgreementFor(eventService.getEventDigestIncludingEvents(
+                IngestedEvent.eventsOf(ingestedEvents), IngestedEvent.areAllNewEvents(ingestedEvents)));
     }
 }
@@ -6,14 +6,20 @@ import uk.gov.pay.ledger.event.model.EventDigest;
 import uk.gov.pay.ledger.event.model.TransactionEntityFactory;
 import uk.gov.pay.ledger.event.service.EventService;
 import uk.gov.pay.ledger.exception.EmptyEventsException;
+import uk.gov.pay.ledger.queue.IngestStageMetrics;
 import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
 import uk.gov.pay.ledger.transaction.service.TransactionService;
 
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static java.util.stream.Collectors.toMap;
+import static uk.gov.pay.ledger.event.model.ResourceType.PAYMENT;
+import static uk.gov.pay.ledger.queue.IngestStageMetrics.Stage.DIGEST_BUILD;
+import static uk.gov.pay.ledger.queue.IngestStageMetrics.Stage.ENTITY_FACTORY;
+import static uk.gov.pay.ledger.queue.IngestStageMetrics.Stage.TRANSACTION_UPSERT;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 public class ChildTransactionEventProcessor extends EventProcessor {
@@ -21,38 +27,83 @@ public class ChildTransactionEventProcessor extends EventProcessor {
     private final EventService eventService;
     private final TransactionService transactionService;
     private final TransactionEntityFactory transactionEntityFactory;
+    private final IngestStageMetrics ingestStageMetrics;
 
     @Inject
     public ChildTransactionEventProcessor(EventService eventService,
                                           TransactionService transactionService,
-                                          TransactionEntityFactory transactionEntityFactory) {
+                                          TransactionEntityFactory transactionEntityFactory,
+                                          IngestStageMetrics ingestStageMetrics) {
 
         this.eventService = eventService;
         this.transactionService = transactionService;
         this.transactionEntityFactory = transactionEntityFactory;
+        this.ingestStageMetrics = ingestStageMetrics;
     }
 
     @Override
     public void process(EventEntity event, boolean isANewEvent) {
-        EventDigest childTransactionEventDigest = eventService.getEventDigestForResource(event);
+        process(List.of(new IngestedEvent(event, isANewEvent)));
+    }
+
+    @Override
+    public void process(List<IngestedEvent> ingestedEvents) {
+        List<EventEntity> events = IngestedEvent.eventsOf(ingestedEvents);
+
+        long startedAt = System.nanoTime();
+        EventDigest childTransactionEventDigest = eventService.getEventDigestIncludingEvents(
+                events, IngestedEvent.areAllNewEvents(ingestedEvents));
 
         Optional<EventDigest> mayBePaymentEventDigest = Optional.empty();
 
         if (isNotBlank(childTransactionEventDigest.getParentResourceExternalId())) {
             mayBePaymentEventDigest = getPaymentEventDigest(childTransactionEventDigest.getParentResourceExternalId());
         }
+        ingestStageMetrics.recordSince(DIGEST_BUILD, events, startedAt);
+
+        startedAt = System.nanoTime();
+        TransactionEntity childTransactionEntity = mayBePaymentEventDigest
+                .map(paymentEventDigest -> createChildTransactionWithPaymentDetails(childTransactionEventDigest, paymentEventDigest))
+                .orElseGet(() -> transactionEntityFactory.create(childTransactionEventDigest));
+        ingestStageMetrics.recordSince(ENTITY_FACTORY, events, startedAt);
+
+        startedAt = System.nanoTime();
+        ingestStageMetrics.markTransactionUpsert(transactionService.upsertTransaction(childTransactionEntity));
+        ingestStageMetrics.recordSince(TRANSACTION_UPSERT, events, startedAt);
+    }
+
+    /**
+     * Re-projects the child transactions of a payment with the payment's current details. The events of all the
+     * children are loaded in one query and the children are upserted in one batch.
+     */
+    public void reprojectChildTransactions(Set<String> childTransactionExternalIds, EventDigest paymentEventDigest) {
+        if (childTransactionExternalIds.isEmpty()) {
+            return;
+        }
+
+        Map<String, Object> fieldsFromPayment = getPaymentFieldsToProjectOnToChildTransaction(paymentEventDigest);
+        TransactionEntity paymentTransactionEntity = transactionEntityFactory.create(paymentEventDigest);
 
-        mayBePaymentEventDigest.ifPresentOrElse(
-                paymentEventDigest -> projectChildTransactionWithPaymentDetails(childTransactionEventDigest, paymentEventDigest),
-                () -> transactionService.upsertTransactionFor(childTransactionEventDigest));
+        List<TransactionEntity> childTransactionEntities = eventService.getEventDigestsForResources(childTransactionExternalIds)
+                .values()
+                .stream()
+                .map(childTransactionEventDigest -> createChildTransactionWithPaymentDetails(
+                        childTransactionEventDigest, fieldsFromPayment, paymentTransactionEntity))
+                .toList();
+
+        transactionService.upsertTransactions(childTransactionEntities)
+                .forEach(ingestStageMetrics::markTransactionUpsert);
     }
 
-    public void reprojectChildTransaction(String childTransactionExternalId, EventDigest paymentEventDigest) {
-        EventDigest childTransactionEventDigest = eventService.getEventDigestForResource(childTransactionExternalId);
-        projectChildTransactionWithPaymentDetails(childTransactionEventDigest, paymentEventDigest);
+    private TransactionEntity createChildTransactionWithPaymentDetails(EventDigest childTransactionEventDigest, EventDigest paymentEventDigest) {
+        return createChildTransactionWithPaymentDetails(childTransactionEventDigest,
+                getPaymentFieldsToProjectOnToChildTransaction(paymentEventDigest),
+                transactionEntityFactory.create(paymentEventDigest));
     }
 
-    private void projectChildTransactionWithPaymentDetails(EventDigest childTransactionEventDigest, EventDigest paymentEventDigest) {
+    private TransactionEntity createChildTransactionWithPaymentDetails(EventDigest childTransactionEventDigest,
+                                                                       Map<String, Object> fieldsFromPayment,
+                                                                       TransactionEntity paymentTransactionEntity) {
         /**
          * Apply shared payment attributes to the refund/dispute digest
          *
@@ -63,20 +114,17 @@ public class ChildTransactionEventProcessor extends EventProcessor {
          * If there is no longer a frontend requirement to display payment information on a refund/dispute, this shared data
          * for the digest can be removed.
          */
-        Map<String, Object> fieldsFromPayment = getPaymentFieldsToProjectOnToChildTransaction(paymentEventDigest);
         childTransactionEventDigest.getEventAggregate().put("payment_details", fieldsFromPayment);
 
         TransactionEntity childTransactionEntity = transactionEntityFactory.create(childTransactionEventDigest);
-        TransactionEntity paymentTransactionEntity = transactionEntityFactory.create(paymentEventDigest);
         childTransactionEntity.setEntityFieldsFromOriginalPayment(paymentTransactionEntity);
-
-        transactionService.upsertTransaction(childTransactionEntity);
+        return childTransactionEntity;
     }
 
     private Optional<EventDigest> getPaymentEventDigest(String paymentExternalId) {
         EventDigest paymentEventDigest = null;
         try {
-            paymentEventDigest = eventService.getEventDigestForResource(paymentExternalId);
+            paymentEventDigest = eventService.getLatestEventDigestForResource(paymentExternalId, PAYMENT);
         } catch (EmptyEventsException ignored) {
             // no valid refund/digest projection is possible without payment events, allow upstream to handle this
         }
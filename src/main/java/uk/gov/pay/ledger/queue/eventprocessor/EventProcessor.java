@@ -2,6 +2,17 @@ package uk.gov.pay.ledger.queue.eventprocessor;
 
 import uk.gov.pay.ledger.event.entity.EventEntity;
 
+import java.util.List;
+
 public abstract class EventProcessor {
     public abstract void process(EventEntity event, boolean isANewEvent);
+
+    /**
+     * Processes events for a single resource that were stored from the same batch, in the order they were received.
+     * By default each event is processed in turn. Processors that can project the resource once for all of the events
+     * override this.
+     */
+    public void process(List<IngestedEvent> ingestedEvents) {
+        ingestedEvents.forEach(ingestedEvent -> process(ingestedEvent.getEvent(), ingestedEvent.isANewEvent()));
+    }
 }
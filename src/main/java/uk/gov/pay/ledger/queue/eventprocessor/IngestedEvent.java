@@ -0,0 +1,46 @@
+package uk.gov.pay.ledger.queue.eventprocessor;
+
+import uk.gov.pay.ledger.event.entity.EventEntity;
+
+import java.util.List;
+import java.util.Objects;
+
+public class IngestedEvent {
+
+    private final EventEntity event;
+    private final boolean isANewEvent;
+
+    public IngestedEvent(EventEntity event, boolean isANewEvent) {
+        this.event = event;
+        this.isANewEvent = isANewEvent;
+    }
+
+    public static List<EventEntity> eventsOf(List<IngestedEvent> ingestedEvents) {
+        return ingestedEvents.stream().map(IngestedEvent::getEvent).toList();
+    }
+
+    public static boolean areAllNewEvents(List<IngestedEvent> ingestedEvents) {
+        return ingestedEvents.stream().allMatch(IngestedEvent::isANewEvent);
+    }
+
+    public EventEntity getEvent() {
+        return event;
+    }
+
+    public boolean isANewEvent() {
+        return isANewEvent;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        IngestedEvent that = (IngestedEvent) o;
+        return isANewEvent == that.isANewEvent && Objects.equals(event, that.event);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(event, isANewEvent);
+    }
+}
@@ -3,19 +3,26 @@ package uk.gov.pay.ledger.queue.eventprocessor;
 import com.google.inject.Inject;
 import uk.gov.pay.ledger.event.entity.EventEntity;
 import uk.gov.pay.ledger.event.model.EventDigest;
-import uk.gov.pay.ledger.event.model.SalientEventType;
+import uk.gov.pay.ledger.event.model.TransactionEntityFactory;
 import uk.gov.pay.ledger.event.service.EventService;
+import uk.gov.pay.ledger.queue.IngestStageMetrics;
 import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
 import uk.gov.pay.ledger.transaction.service.TransactionMetadataService;
 import uk.gov.pay.ledger.transaction.service.TransactionService;
 import uk.gov.pay.ledger.transaction.state.TransactionState;
 import uk.gov.pay.ledger.transactionsummary.service.TransactionSummaryService;
-import uk.gov.pay.ledger.util.JsonParser;
 
+import java.time.Duration;
 import java.util.List;
-import java.util.Map;
-import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
+import static uk.gov.pay.ledger.queue.IngestStageMetrics.Stage.DIGEST_BUILD;
+import static uk.gov.pay.ledger.queue.IngestStageMetrics.Stage.ENTITY_FACTORY;
+import static uk.gov.pay.ledger.queue.IngestStageMetrics.Stage.METADATA_UPSERT;
+import static uk.gov.pay.ledger.queue.IngestStageMetrics.Stage.REFUND_REPROJECTION;
+import static uk.gov.pay.ledger.queue.IngestStageMetrics.Stage.TRANSACTION_SUMMARY_PROJECTION;
+import static uk.gov.pay.ledger.queue.IngestStageMetrics.Stage.TRANSACTION_UPSERT;
 import static uk.gov.pay.ledger.transaction.state.TransactionState.fromEventType;
 
 public class PaymentEventProcessor extends EventProcessor {
@@ -25,59 +32,129 @@ public class PaymentEventProcessor extends EventProcessor {
     private final TransactionMetadataService transactionMetadataService;
     private final ChildTransactionEventProcessor childTransactionEventProcessor;
     private final TransactionSummaryService transactionSummaryService;
+    private final TransactionEntityFactory transactionEntityFactory;
+    private final IngestStageMetrics ingestStageMetrics;
 
     @Inject
     public PaymentEventProcessor(EventService eventService,
                                  TransactionService transactionService,
                                  TransactionMetadataService transactionMetadataService,
                                  ChildTransactionEventProcessor childTransactionEventProcessor,
-                                 TransactionSummaryService transactionSummaryService) {
+                                 TransactionSummaryService transactionSummaryService,
+                                 TransactionEntityFactory transactionEntityFactory,
+                                 IngestStageMetrics ingestStageMetrics) {
         this.eventService = eventService;
         this.transactionService = transactionService;
         this.transactionMetadataService = transactionMetadataService;
         this.childTransactionEventProcessor = childTransactionEventProcessor;
         this.transactionSummaryService = transactionSummaryService;
+        this.transactionEntityFactory = transactionEntityFactory;
+        this.ingestStageMetrics = ingestStageMetrics;
     }
 
 
     @Override
     public void process(EventEntity event, boolean isANewEvent) {
-        List<EventEntity> events = eventService.getEventsForResource(event.getResourceExternalId());
-        EventDigest paymentEventDigest = EventDigest.fromEventList(events);
+        process(List.of(new IngestedEvent(event, isANewEvent)));
+    }
+
+    @Override
+    public void process(List<IngestedEvent> ingestedEvents) {
+        List<EventEntity> events = IngestedEvent.eventsOf(ingestedEvents);
+        String paymentExternalId = events.get(0).getResourceExternalId();
+
+        long startedAt = System.nanoTime();
+        EventDigest paymentEventDigest = eventService.getEventDigestIncludingEvents(events, IngestedEvent.areAllNewEvents(ingestedEvents));
+        ingestStageMetrics.recordSince(DIGEST_BUILD, events, startedAt);
 
-        TransactionEntity transactionEntity = transactionService.upsertTransactionFor(paymentEventDigest);
+        startedAt = System.nanoTime();
+        TransactionEntity transactionEntity = transactionEntityFactory.create(paymentEventDigest);
+        ingestStageMetrics.recordSince(ENTITY_FACTORY, events, startedAt);
 
-        if (event.isReprojectDomainObject()) {
-            transactionMetadataService.reprojectFromEventDigest(paymentEventDigest);
-        } else {
-            transactionMetadataService.upsertMetadataFor(event);
+        startedAt = System.nanoTime();
+        ingestStageMetrics.markTransactionUpsert(transactionService.upsertTransaction(transactionEntity));
+        ingestStageMetrics.recordSince(TRANSACTION_UPSERT, events, startedAt);
+
+        startedAt = System.nanoTime();
+        if (events.stream().anyMatch(EventEntity::isReprojectDomainObject)) {
+            transactionMetadataService.reprojectFromEventDigest(transactionEntity, paymentEventDigest);
         }
+        events.stream()
+                .filter(event -> !event.isReprojectDomainObject())
+                .forEach(event -> transactionMetadataService.upsertMetadataFor(transactionEntity, event));
+        ingestStageMetrics.recordSince(METADATA_UPSERT, events, startedAt);
 
         /**
          * If the payment has associated refunds, we want to update the payment details that we also store on refunds to
          * keep these in sync with the payment.
          * We avoid a database query to get refunds when the payment has not been in a success state, as it is not
-         * possible for refunds to exist in this case. We also avoid this query when the current event contains no data
+         * possible for refunds to exist in this case. We also avoid this query when none of the events contain data
          * that needs to be updated on the refund.
          */
-        Map<String, Object> eventDataMap = JsonParser.jsonStringToMap(event.getEventData());
-        boolean shouldCheckForRefundsToUpdate = !event.getEventType().equals("REFUND_AVAILABILITY_UPDATED") &&
-                !(eventDataMap == null || eventDataMap.isEmpty()) &&
-                hasSuccessEvent(events);
+        boolean shouldCheckForRefundsToUpdate = events.stream().anyMatch(this::hasDataToUpdateOnRefunds) &&
+                hasSuccessEvent(paymentEventDigest);
 
         if (shouldCheckForRefundsToUpdate) {
-            transactionService.getChildTransactions(event.getResourceExternalId())
-                    .forEach(refundTransactionEntity -> childTransactionEventProcessor.reprojectChildTransaction(refundTransactionEntity.getExternalId(), paymentEventDigest));
+            startedAt = System.nanoTime();
+            Set<String> childTransactionExternalIds = transactionService.getChildTransactions(paymentExternalId)
+                    .stream()
+                    .map(TransactionEntity::getExternalId)
+                    .collect(Collectors.toSet());
+            childTransactionEventProcessor.reprojectChildTransactions(childTransactionExternalIds, paymentEventDigest);
+            ingestStageMetrics.recordSince(REFUND_REPROJECTION, events, startedAt);
+        }
+
+        List<EventEntity> newEvents = ingestedEvents.stream()
+                .filter(ingestedEvent -> ingestedEvent.isANewEvent() && !ingestedEvent.getEvent().isReprojectDomainObject())
+                .map(IngestedEvent::getEvent)
+                .toList();
+
+        if (newEvents.stream().anyMatch(transactionSummaryService::mayProjectTransactionSummaryFor)) {
+            startedAt = System.nanoTime();
+            projectTransactionSummaries(transactionEntity, newEvents, eventService.getEventsForResource(paymentExternalId));
+            ingestStageMetrics.recordSince(TRANSACTION_SUMMARY_PROJECTION, newEvents, startedAt);
         }
+    }
 
-        if (!event.isReprojectDomainObject() && isANewEvent) {
-            transactionSummaryService.projectTransactionSummary(transactionEntity, event, events);
+    /**
+     * The transaction summary is projected for each new event in turn, seeing the payment as it was when that event
+     * was stored, exactly as if the events had been processed one at a time. For all but the last new event this
+     * means leaving out the events stored after it and re-deriving the transaction from the remaining events.
+     */
+    private void projectTransactionSummaries(TransactionEntity transactionEntity, List<EventEntity> newEvents,
+                                             List<EventEntity> eventHistory) {
+        for (int i = 0; i < newEvents.size(); i++) {
+            EventEntity event = newEvents.get(i);
+            if (!transactionSummaryService.mayProjectTransactionSummaryFor(event)) {
+                continue;
+            }
+
+            List<EventEntity> eventsStoredAfter = newEvents.subList(i + 1, newEvents.size());
+            if (eventsStoredAfter.isEmpty()) {
+                transactionSummaryService.projectTransactionSummary(transactionEntity, event, eventHistory);
+            } else {
+                List<EventEntity> eventHistoryAtEvent = eventHistory.stream()
+                        .filter(storedEvent -> eventsStoredAfter.stream().noneMatch(laterEvent -> isSameEvent(storedEvent, laterEvent)))
+                        .toList();
+                TransactionEntity transactionAtEvent = transactionEntityFactory.create(EventDigest.fromEventList(eventHistoryAtEvent));
+                transactionSummaryService.projectTransactionSummary(transactionAtEvent, event, eventHistoryAtEvent);
+            }
         }
     }
 
-    private boolean hasSuccessEvent(List<EventEntity> events) {
-        return events.stream().map(event -> SalientEventType.from(event.getEventType()))
-                .flatMap(Optional::stream)
+    // events are unique by type and date for a resource, dates are stored with microsecond precision
+    private boolean isSameEvent(EventEntity storedEvent, EventEntity event) {
+        return storedEvent.getEventType().equals(event.getEventType()) &&
+                Duration.between(storedEvent.getEventDate(), event.getEventDate()).abs().toNanos() < 1000;
+    }
+
+    private boolean hasDataToUpdateOnRefunds(EventEntity event) {
+        return !event.getEventType().equals("REFUND_AVAILABILITY_UPDATED") &&
+                !event.getEventDataNode().isEmpty();
+    }
+
+    private boolean hasSuccessEvent(EventDigest paymentEventDigest) {
+        return paymentEventDigest.getSalientEventTypes().stream()
                 .anyMatch(salientEventType -> fromEventType(salientEventType) == TransactionState.SUCCESS);
     }
 }
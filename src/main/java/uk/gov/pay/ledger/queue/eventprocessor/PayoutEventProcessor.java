@@ -5,6 +5,8 @@ import uk.gov.pay.ledger.event.entity.EventEntity;
 import uk.gov.pay.ledger.event.service.EventService;
 import uk.gov.pay.ledger.payout.service.PayoutService;
 
+import java.util.List;
+
 public class PayoutEventProcessor extends EventProcessor {
     private EventService eventService;
     private PayoutService payoutService;
@@ -17,6 +19,12 @@ public class PayoutEventProcessor extends EventProcessor {
 
     @Override
     public void process(EventEntity event, boolean isANewEvent) {
-        payoutService.upsertPayoutFor(eventService.getEventDigestForResource(event));
+        process(List.of(new IngestedEvent(event, isANewEvent)));
+    }
+
+    @Override
+    public void process(List<IngestedEvent> ingestedEvents) {
+        payoutService.upsertPayoutFor(eventService.getEventDigestIncludingEvents(
+                IngestedEvent.eventsOf(ingestedEvents), IngestedEvent.areAllNewEvents(ingestedEvents)));
     }
 }
@@ -0,0 +1,92 @@
+package uk.gov.pay.ledger.queue.managed;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.ledger.queue.EventMessage;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * Bounded hand-off between the threads receiving batches from the queue and the threads processing them.
+ * <p>
+ * A message received from SQS stays invisible to other consumers only for the queue's visibility timeout, after
+ * which SQS will deliver it again. A batch that has waited in the buffer for longer than the maximum age is therefore
+ * evicted rather than processed, leaving SQS to redeliver its messages, so that the same message is never processed
+ * here after another consumer may have received it.
+ */
+public class PrefetchedMessageBuffer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PrefetchedMessageBuffer.class);
+
+    private final BlockingQueue<PrefetchedBatch> batches;
+    private final long maximumAgeInNanos;
+    private final LongSupplier nanoClock;
+    private final Meter evictedMessages;
+
+    public PrefetchedMessageBuffer(int capacity, Duration maximumAge, MetricRegistry metricRegistry) {
+        this(capacity, maximumAge, metricRegistry, System::nanoTime);
+    }
+
+    PrefetchedMessageBuffer(int capacity, Duration maximumAge, MetricRegistry metricRegistry, LongSupplier nanoClock) {
+        this.batches = new ArrayBlockingQueue<>(capacity);
+        this.maximumAgeInNanos = maximumAge.toNanos();
+        this.nanoClock = nanoClock;
+        this.evictedMessages = metricRegistry.meter("queue-message-receiver.prefetch-buffer.evicted-messages");
+        metricRegistry.register("queue-message-receiver.prefetch-buffer.occupancy", (Gauge<Integer>) batches::size);
+    }
+
+    /**
+     * Adds a batch that has just been received from the queue, waiting for space if the buffer is full.
+     */
+    public void put(List<EventMessage> messages) throws InterruptedException {
+        batches.put(new PrefetchedBatch(messages, nanoClock.getAsLong()));
+    }
+
+    /**
+     * Takes the oldest batch that can still safely be processed, waiting up to the given timeout for one to arrive.
+     */
+    public Optional<List<EventMessage>> poll(long timeout, TimeUnit unit) throws InterruptedException {
+        PrefetchedBatch batch = batches.poll(timeout, unit);
+        while (batch != null) {
+            long ageInNanos = nanoClock.getAsLong() - batch.receivedAtNanos;
+            if (ageInNanos <= maximumAgeInNanos) {
+                return Optional.of(batch.messages);
+            }
+            evict(batch, ageInNanos);
+            batch = batches.poll();
+        }
+        return Optional.empty();
+    }
+
+    public int size() {
+        return batches.size();
+    }
+
+    private void evict(PrefetchedBatch batch, long ageInNanos) {
+        evictedMessages.mark(batch.messages.size());
+        LOGGER.warn("Evicted prefetched messages that were buffered for too long, they will be redelivered by the queue",
+                kv("number_of_messages", batch.messages.size()),
+                kv("buffered_for_milliseconds", TimeUnit.NANOSECONDS.toMillis(ageInNanos)));
+    }
+
+    private static class PrefetchedBatch {
+        private final List<EventMessage> messages;
+        private final long receivedAtNanos;
+
+        private PrefetchedBatch(List<EventMessage> messages, long receivedAtNanos) {
+            this.messages = messages;
+            this.receivedAtNanos = receivedAtNanos;
+        }
+    }
+}
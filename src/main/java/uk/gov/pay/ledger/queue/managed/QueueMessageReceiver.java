@@ -1,5 +1,8 @@
 package uk.gov.pay.ledger.queue.managed;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.google.inject.Inject;
 import io.dropwizard.core.setup.Environment;
 import io.dropwizard.lifecycle.Managed;
@@ -7,46 +10,130 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.gov.pay.ledger.app.LedgerConfig;
 import uk.gov.pay.ledger.app.config.QueueMessageReceiverConfig;
+import uk.gov.pay.ledger.queue.EventMessage;
 import uk.gov.pay.ledger.queue.EventMessageHandler;
+import uk.gov.pay.ledger.queue.EventQueue;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
 public class QueueMessageReceiver implements Managed {
 
     private static final String QUEUE_MESSAGE_RECEIVER_THREAD_NAME = "queue-message-receiver-%d";
+    private static final String QUEUE_MESSAGE_PREFETCHER_THREAD_NAME = "queue-message-prefetcher-%d";
+    private static final String EVENT_PROCESSING_THREAD_NAME = "event-message-processor-%d";
+    private static final String VIRTUAL_QUEUE_MESSAGE_RECEIVER_THREAD_NAME = "queue-message-receiver-virtual-";
+    private static final String VIRTUAL_QUEUE_MESSAGE_PREFETCHER_THREAD_NAME = "queue-message-prefetcher-virtual-";
+    private static final long PREFETCH_BUFFER_POLL_TIMEOUT_IN_SECONDS = 1;
     private static final Logger LOGGER = LoggerFactory.getLogger(QueueMessageReceiver.class);
     private final QueueMessageReceiverConfig config;
 
     private final int queueReadScheduleNumberOfThreads;
 
     private ScheduledExecutorService scheduledExecutorService;
+    private ScheduledExecutorService prefetchExecutorService;
+    private ExecutorService eventProcessingExecutorService;
+    private PrefetchedMessageBuffer prefetchedMessageBuffer;
+    private Semaphore databasePermits;
+    private final List<Thread> virtualThreads = new ArrayList<>();
+    private volatile boolean running;
     private EventMessageHandler eventMessageHandler;
+    private EventQueue eventQueue;
+    private MetricRegistry metricRegistry;
 
     @Inject
     public QueueMessageReceiver(
             Environment environment,
             LedgerConfig configuration,
-            EventMessageHandler eventMessageHandler) {
+            EventMessageHandler eventMessageHandler,
+            EventQueue eventQueue) {
         this.eventMessageHandler = eventMessageHandler;
+        this.eventQueue = eventQueue;
+        this.metricRegistry = environment.metrics();
         this.config = configuration.getQueueMessageReceiverConfig();
         this.queueReadScheduleNumberOfThreads = config.getNumberOfThreads();
 
+        if (config.getPrefetchBufferSize() > 0) {
+            prefetchedMessageBuffer = new PrefetchedMessageBuffer(config.getPrefetchBufferSize(),
+                    Duration.ofSeconds(config.getPrefetchMaximumAgeInSeconds()), metricRegistry);
+        }
+
+        // A consumer waiting on SQS holds no permit. eventProcessingThreads is validated to be 1 in this mode, so
+        // no event processing executor is needed
+        if (config.isVirtualThreadsEnabled()) {
+            databasePermits = new Semaphore(config.getVirtualThreadsMaximumConcurrentBatches());
+            metricRegistry.register("queue-message-receiver.virtual-threads.available-database-permits",
+                    (Gauge<Integer>) databasePermits::availablePermits);
+            return;
+        }
+
         scheduledExecutorService = environment
                 .lifecycle()
                 .scheduledExecutorService(QUEUE_MESSAGE_RECEIVER_THREAD_NAME)
                 .threads(queueReadScheduleNumberOfThreads)
                 .build();
+
+        int eventProcessingThreads = config.getEventProcessingThreads();
+        if (eventProcessingThreads > 1) {
+            eventProcessingExecutorService = environment
+                    .lifecycle()
+                    .executorService(EVENT_PROCESSING_THREAD_NAME)
+                    .minThreads(eventProcessingThreads)
+                    .maxThreads(eventProcessingThreads)
+                    .build();
+        }
+
+        if (prefetchedMessageBuffer != null) {
+            prefetchExecutorService = environment
+                    .lifecycle()
+                    .scheduledExecutorService(QUEUE_MESSAGE_PREFETCHER_THREAD_NAME)
+                    .threads(config.getPrefetchThreads())
+                    .build();
+        }
     }
 
+    /**
+     * Without a prefetch buffer each receiver thread polls the queue and processes what it received in turn. With one,
+     * dedicated prefetcher threads keep polling the queue into the buffer while the receiver threads process batches
+     * from it, so waiting on SQS and processing events overlap.
+     */
     @Override
     public void start() {
+        running = true;
+        Runnable receiverTask = prefetchedMessageBuffer != null ? this::processPrefetched : this::receive;
+
+        if (config.isVirtualThreadsEnabled()) {
+            if (prefetchedMessageBuffer != null) {
+                startVirtualThreads(VIRTUAL_QUEUE_MESSAGE_PREFETCHER_THREAD_NAME, config.getPrefetchThreads(), this::prefetch);
+            }
+            startVirtualThreads(VIRTUAL_QUEUE_MESSAGE_RECEIVER_THREAD_NAME, queueReadScheduleNumberOfThreads, receiverTask);
+            return;
+        }
+
         long initialDelay = config.getThreadDelayInMilliseconds();
         long delay = config.getThreadDelayInMilliseconds();
 
+        if (prefetchedMessageBuffer != null) {
+            for (int i = 0; i < config.getPrefetchThreads(); i++) {
+                prefetchExecutorService.scheduleWithFixedDelay(
+                        this::prefetch,
+                        initialDelay,
+                        delay,
+                        TimeUnit.MILLISECONDS
+                );
+            }
+        }
+
         for(int i = 0; i < queueReadScheduleNumberOfThreads; i++) {
             scheduledExecutorService.scheduleWithFixedDelay(
-                    this::receive,
+                    receiverTask,
                     initialDelay,
                     delay,
                     TimeUnit.MILLISECONDS
@@ -54,17 +141,100 @@ public class QueueMessageReceiver implements Managed {
         }
     }
 
+    private void startVirtualThreads(String name, int numberOfThreads, Runnable task) {
+        Thread.Builder builder = Thread.ofVirtual().name(name, 0);
+        for (int i = 0; i < numberOfThreads; i++) {
+            virtualThreads.add(builder.start(() -> runUntilStopped(task)));
+        }
+    }
+
+    private void runUntilStopped(Runnable task) {
+        try {
+            Thread.sleep(config.getThreadDelayInMilliseconds());
+            while (running && !Thread.currentThread().isInterrupted()) {
+                task.run();
+                Thread.sleep(config.getThreadDelayInMilliseconds());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     private void receive() {
         LOGGER.info("Queue message receiver thread polling queue");
         try {
-            eventMessageHandler.handle();
+            if (databasePermits != null) {
+                processBatch(eventQueue.retrieveEvents());
+            } else if (eventProcessingExecutorService != null) {
+                eventMessageHandler.handle(eventProcessingExecutorService);
+            } else {
+                eventMessageHandler.handle();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (Exception e) {
             LOGGER.error("Queue message receiver thread exception", e);
         }
     }
 
+    private void prefetch() {
+        try {
+            List<EventMessage> messages;
+            try (Timer.Context ignored = metricRegistry.timer("queue-message-receiver.prefetch.fetch-wait-time").time()) {
+                messages = eventQueue.retrieveEvents();
+            }
+            if (!messages.isEmpty()) {
+                prefetchedMessageBuffer.put(messages);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOGGER.error("Queue message prefetcher thread exception", e);
+        }
+    }
+
+    private void processPrefetched() {
+        try {
+            Optional<List<EventMessage>> messages = prefetchedMessageBuffer.poll(PREFETCH_BUFFER_POLL_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS);
+            if (messages.isPresent()) {
+                try (Timer.Context ignored = metricRegistry.timer("queue-message-receiver.prefetch.processing-time").time()) {
+                    processBatch(messages.get());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOGGER.error("Queue message receiver thread exception", e);
+        }
+    }
+
+    private void processBatch(List<EventMessage> messages) throws InterruptedException {
+        Executor executor = eventProcessingExecutorService != null ? eventProcessingExecutorService : Runnable::run;
+        if (databasePermits == null) {
+            eventMessageHandler.process(messages, executor);
+            return;
+        }
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        databasePermits.acquire();
+        try {
+            eventMessageHandler.process(messages, executor);
+        } finally {
+            databasePermits.release();
+        }
+    }
+
     @Override
     public void stop() {
-        scheduledExecutorService.shutdown();
+        running = false;
+        virtualThreads.forEach(Thread::interrupt);
+        if (prefetchExecutorService != null) {
+            prefetchExecutorService.shutdownNow();
+        }
+        if (scheduledExecutorService != null) {
+            scheduledExecutorService.shutdown();
+        }
     }
 }
@@ -0,0 +1,100 @@
+package uk.gov.pay.ledger.referencedata;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.inject.Inject;
+import io.dropwizard.core.setup.Environment;
+import uk.gov.pay.ledger.app.LedgerConfig;
+import uk.gov.pay.ledger.app.config.ReferenceDataCacheConfig;
+import uk.gov.pay.ledger.event.dao.ResourceTypeDao;
+import uk.gov.pay.ledger.event.model.ResourceType;
+import uk.gov.pay.ledger.gatewayaccountmetadata.dao.GatewayAccountMetadataDao;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Holds the small, rarely changing lookups that are otherwise read from the database on every event or export.
+ * <p>
+ * Resource type ids only change with a migration, so they are refreshed periodically rather than expired, and a
+ * failed refresh leaves the previous value in place. The metadata keys used
+ * by gateway accounts grow as payments are ingested: they expire, and are invalidated when ingestion records a new key
+ * for an account, so an export on the node that ingested the payment sees the key straight away and other nodes see
+ * it within the expiry.
+ * <p>
+ * Hit, miss and eviction counts of each cache are published as gauges named {@code reference-data-cache.<cache>.*}.
+ * This class is bound as a singleton, as the gauges can only be registered once.
+ */
+public class ReferenceDataCache {
+
+    private final LoadingCache<ResourceType, Integer> resourceTypeIds;
+    private final LoadingCache<Set<String>, List<String>> gatewayAccountMetadataKeys;
+
+    @Inject
+    public ReferenceDataCache(Environment environment,
+                              LedgerConfig configuration,
+                              ResourceTypeDao resourceTypeDao,
+                              GatewayAccountMetadataDao gatewayAccountMetadataDao) {
+        this(environment.metrics(), configuration.getReferenceDataCacheConfig(), Ticker.systemTicker(),
+                resourceTypeDao, gatewayAccountMetadataDao);
+    }
+
+    ReferenceDataCache(MetricRegistry metricRegistry,
+                       ReferenceDataCacheConfig referenceDataCacheConfig,
+                       Ticker ticker,
+                       ResourceTypeDao resourceTypeDao,
+                       GatewayAccountMetadataDao gatewayAccountMetadataDao) {
+        Duration refreshInterval = Duration.ofSeconds(referenceDataCacheConfig.getRefreshIntervalInSeconds());
+
+        resourceTypeIds = CacheBuilder.newBuilder()
+                .refreshAfterWrite(refreshInterval)
+                .ticker(ticker)
+                .recordStats()
+                .build(CacheLoader.from(resourceType -> resourceTypeDao.getResourceTypeIdByName(resourceType.name())));
+        gatewayAccountMetadataKeys = CacheBuilder.newBuilder()
+                .expireAfterWrite(Duration.ofSeconds(referenceDataCacheConfig.getGatewayAccountMetadataKeysExpiryInSeconds()))
+                .maximumSize(referenceDataCacheConfig.getGatewayAccountMetadataKeysMaximumSize())
+                .ticker(ticker)
+                .recordStats()
+                .build(CacheLoader.from(gatewayAccountIds ->
+                        List.copyOf(gatewayAccountMetadataDao.findMetadataKeysForGatewayAccounts(gatewayAccountIds.stream().sorted().toList()))));
+
+        registerMetrics(metricRegistry, "resource-type-ids", resourceTypeIds);
+        registerMetrics(metricRegistry, "gateway-account-metadata-keys", gatewayAccountMetadataKeys);
+    }
+
+    public int getResourceTypeId(ResourceType resourceType) {
+        return resourceTypeIds.getUnchecked(resourceType);
+    }
+
+    /**
+     * Returns the distinct metadata keys recorded against any of the gateway accounts.
+     */
+    public List<String> getMetadataKeysForGatewayAccounts(Collection<String> gatewayAccountIds) {
+        return gatewayAccountMetadataKeys.getUnchecked(Set.copyOf(gatewayAccountIds));
+    }
+
+    /**
+     * Drops the cached metadata keys of every set of gateway accounts including the given one. Called after a new
+     * metadata key has been recorded for the gateway account.
+     */
+    public void invalidateMetadataKeysForGatewayAccount(String gatewayAccountId) {
+        gatewayAccountMetadataKeys.asMap().keySet().removeIf(gatewayAccountIds -> gatewayAccountIds.contains(gatewayAccountId));
+    }
+
+    private static void registerMetrics(MetricRegistry metricRegistry, String cacheName, Cache<?, ?> cache) {
+        String prefix = "reference-data-cache." + cacheName;
+        metricRegistry.register(prefix + ".hits", (Gauge<Long>) () -> cache.stats().hitCount());
+        metricRegistry.register(prefix + ".misses", (Gauge<Long>) () -> cache.stats().missCount());
+        metricRegistry.register(prefix + ".load-failures", (Gauge<Long>) () -> cache.stats().loadExceptionCount());
+        metricRegistry.register(prefix + ".evictions", (Gauge<Long>) () -> cache.stats().evictionCount());
+        metricRegistry.register(prefix + ".size", (Gauge<Long>) cache::size);
+    }
+}
@@ -0,0 +1,64 @@
+package uk.gov.pay.ledger.transaction.dao;
+
+import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Hashes the columns of a transaction that are written by an upsert, other than the event count, so that an upsert
+ * which would not change the row can be detected without reading it.
+ */
+class TransactionContentHash {
+
+    private static final char FIELD_SEPARATOR = '\u001F';
+    private static final String NULL_FIELD = "\u0000";
+
+    private TransactionContentHash() {
+    }
+
+    static String of(TransactionEntity transaction) {
+        StringBuilder content = new StringBuilder();
+        Stream.of(
+                transaction.getExternalId(),
+                transaction.getParentExternalId(),
+                transaction.getServiceId(),
+                transaction.isLive(),
+                transaction.getGatewayAccountId(),
+                transaction.getAmount(),
+                transaction.getDescription(),
+                transaction.getReference(),
+                transaction.getState(),
+                transaction.getEmail(),
+                transaction.getCardholderName(),
+                transaction.getCreatedDate() == null ? null : transaction.getCreatedDate().toInstant(),
+                transaction.getTransactionDetails(),
+                transaction.getCardBrand(),
+                transaction.getLastDigitsCardNumber(),
+                transaction.getFirstDigitsCardNumber(),
+                transaction.getNetAmount(),
+                transaction.getTotalAmount(),
+                transaction.getFee(),
+                transaction.getTransactionType(),
+                transaction.getRefundAmountAvailable(),
+                transaction.getRefundAmountRefunded(),
+                transaction.getRefundStatus(),
+                transaction.isMoto(),
+                transaction.getGatewayTransactionId(),
+                transaction.getSource(),
+                transaction.getGatewayPayoutId(),
+                transaction.getAgreementId()
+        ).forEach(field -> content.append(Objects.toString(field, NULL_FIELD)).append(FIELD_SEPARATOR));
+
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(content.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
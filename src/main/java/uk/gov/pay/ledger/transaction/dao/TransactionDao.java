@@ -3,17 +3,25 @@ package uk.gov.pay.ledger.transaction.dao;
 import com.google.inject.Inject;
 import org.apache.commons.lang3.StringUtils;
 import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.result.ResultIterator;
+import org.jdbi.v3.core.statement.PreparedBatch;
 import org.jdbi.v3.core.statement.Query;
 import uk.gov.pay.ledger.app.LedgerConfig;
 import uk.gov.pay.ledger.transaction.dao.mapper.TransactionMapper;
 import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
 import uk.gov.pay.ledger.transaction.model.TransactionType;
+import uk.gov.pay.ledger.transaction.search.common.TransactionSearchCursor;
 import uk.gov.pay.ledger.transaction.search.common.TransactionSearchParams;
 
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
@@ -72,7 +80,7 @@ public class TransactionDao {
                     "t.gateway_payout_id = po.gateway_payout_id " +
                     ":payoutJoinOnGatewayIdField " +
                     ":searchExtraFields " +
-                    "ORDER BY t.created_date DESC OFFSET :offset LIMIT :limit";
+                    "ORDER BY t.created_date DESC, t.id DESC OFFSET :offset LIMIT :limit";
 
     private static final String SEARCH_TRANSACTIONS_CURSOR =
             "SELECT :distinctClauseWhenSearchingByMetadataValue t.*, po.paid_out_date AS paid_out_date FROM transaction t " +
@@ -84,6 +92,26 @@ public class TransactionDao {
                     ":cursorFields " +
                     "ORDER BY t.created_date DESC, t.id DESC LIMIT :limit";
 
+    private static final String SEARCH_TRANSACTIONS_CURSOR_BEFORE =
+            "SELECT :distinctClauseWhenSearchingByMetadataValue t.*, po.paid_out_date AS paid_out_date FROM transaction t " +
+                    " :transactionMetadataJoin " +
+                    "LEFT OUTER JOIN payout po on " +
+                    "t.gateway_payout_id = po.gateway_payout_id " +
+                    ":payoutJoinOnGatewayIdField " +
+                    ":searchExtraFields " +
+                    ":cursorFields " +
+                    "ORDER BY t.created_date ASC, t.id ASC LIMIT :limit";
+
+    private static final String STREAM_TRANSACTIONS =
+            "SELECT :distinctClauseWhenSearchingByMetadataValue t.*, po.paid_out_date AS paid_out_date FROM transaction t " +
+                    " :transactionMetadataJoin " +
+                    "LEFT OUTER JOIN payout po on " +
+                    "t.gateway_payout_id = po.gateway_payout_id " +
+                    ":payoutJoinOnGatewayIdField " +
+                    ":searchExtraFields " +
+                    ":cursorFields " +
+                    "ORDER BY t.created_date DESC, t.id DESC";
+
     private static final String SEARCH_TRANSACTIONS_FOR_REDACTION =
             "SELECT t.* FROM transaction t " +
                     " WHERE t.created_date > :dateOfLastProcessedTransaction AND t.created_date <= :redactTransactionsUpToDate  " +
@@ -119,6 +147,21 @@ public class TransactionDao {
             " OFFSET 0 LIMIT :limit" +
             ") txs";
 
+    private static final String ESTIMATE_TRANSACTIONS = "EXPLAIN SELECT t.id " +
+            "FROM transaction t " +
+            " :transactionMetadataJoin " +
+            ":searchExtraFields ";
+
+    private static final String ESTIMATE_TRANSACTIONS_WITH_PAIDOUT_DATE = "EXPLAIN SELECT t.id " +
+            "FROM transaction t " +
+            " :transactionMetadataJoin " +
+            "LEFT OUTER JOIN payout po on " +
+            "t.gateway_payout_id = po.gateway_payout_id " +
+            ":payoutJoinOnGatewayIdField " +
+            ":searchExtraFields ";
+
+    private static final Pattern PLAN_ROWS = Pattern.compile("rows=(\\d+)");
+
     private static final String UPSERT_STRING =
             "INSERT INTO transaction(" +
                     "external_id," +
@@ -147,7 +190,8 @@ public class TransactionDao {
                     "gateway_transaction_id, " +
                     "source, " +
                     "gateway_payout_id, " +
-                    "agreement_id" +
+                    "agreement_id," +
+                    "content_hash" +
                     ") " +
                     "VALUES (" +
                     ":externalId," +
@@ -178,7 +222,8 @@ public class TransactionDao {
                     ":gatewayTransactionId, " +
                     ":source::source, " +
                     ":gatewayPayoutId, " +
-                    ":agreementId" +
+                    ":agreementId," +
+                    ":contentHash" +
                     ") " +
                     "ON CONFLICT (external_id) " +
                     "DO UPDATE SET " +
@@ -210,8 +255,17 @@ public class TransactionDao {
                     "gateway_transaction_id = EXCLUDED.gateway_transaction_id, " +
                     "source = EXCLUDED.source, " +
                     "gateway_payout_id = EXCLUDED.gateway_payout_id, " +
-                    "agreement_id = EXCLUDED.agreement_id " +
-                    "WHERE EXCLUDED.event_count >= transaction.event_count;";
+                    "agreement_id = EXCLUDED.agreement_id, " +
+                    "content_hash = EXCLUDED.content_hash " +
+                    "WHERE EXCLUDED.event_count >= transaction.event_count " +
+                    "AND EXCLUDED.content_hash IS DISTINCT FROM transaction.content_hash";
+
+    private static final String UPDATE_EVENT_COUNT_OF_UNCHANGED_TRANSACTION =
+            "UPDATE transaction " +
+                    "SET event_count = :eventCount " +
+                    "WHERE external_id = :externalId " +
+                    "AND event_count < :eventCount " +
+                    "AND content_hash = :contentHash";
 
     private static final String REDACT_PII_FROM_TRANSACTIONS =
             "UPDATE transaction t " +
@@ -223,7 +277,8 @@ public class TransactionDao {
                     "                              JSONB_SET(transaction_details, '{address_line1}','\"<DELETED>\"', false), " +
                     "                              '{address_line2}','\"<DELETED>\"', false" +
                     "                        )" +
-                    "                         -'{reference,cardholder_name,email,description}'::text[]" +
+                    "                         -'{reference,cardholder_name,email,description}'::text[], " +
+                    "  content_hash = NULL" +
                     " WHERE t.external_id = :externalId";
 
     private static final String GET_SOURCE_TYPE_ENUM_VALUES =
@@ -348,14 +403,119 @@ public class TransactionDao {
         });
     }
 
+    /**
+     * Passes every transaction matching the search to the consumer as it is read, most recent first, and returns the
+     * number of transactions read. The search runs as one query in a read-only transaction, and rows are fetched from
+     * the server-side cursor fetchSize at a time, so memory use does not grow with the number of transactions.
+     */
+    public long streamTransactions(TransactionSearchParams searchParams, int fetchSize, Consumer<TransactionEntity> consumer) {
+        return streamTransactions(searchParams, "", query -> {}, fetchSize, consumer);
+    }
+
+    /**
+     * Streams the transactions matching the search that were also created in the given range, from the start
+     * inclusive to the end exclusive, so adjacent ranges can be streamed separately without missing or repeating any.
+     */
+    public long streamTransactions(TransactionSearchParams searchParams, ZonedDateTime fromCreatedDate,
+                                   ZonedDateTime toCreatedDate, int fetchSize, Consumer<TransactionEntity> consumer) {
+        return streamTransactions(searchParams,
+                "t.created_date >= :rangeFromCreatedDate AND t.created_date < :rangeToCreatedDate ",
+                query -> query.bind("rangeFromCreatedDate", fromCreatedDate).bind("rangeToCreatedDate", toCreatedDate),
+                fetchSize, consumer);
+    }
+
+    /**
+     * Streams the transactions matching the search that come after the cursor, so a stream that was interrupted can
+     * carry on from the last transaction it passed on.
+     */
+    public long streamTransactions(TransactionSearchParams searchParams, TransactionSearchCursor startingAfter,
+                                   int fetchSize, Consumer<TransactionEntity> consumer) {
+        return streamTransactions(searchParams,
+                "t.created_date <= :cursorCreatedDate AND NOT (t.created_date = :cursorCreatedDate AND t.id >= :cursorId) ",
+                query -> query.bind("cursorCreatedDate", startingAfter.getCreatedDate()).bind("cursorId", startingAfter.getId()),
+                fetchSize, consumer);
+    }
+
+    private long streamTransactions(TransactionSearchParams searchParams, String condition, Consumer<Query> conditionBinder,
+                                    int fetchSize, Consumer<TransactionEntity> consumer) {
+        String conditionTemplate = isNotBlank(condition)
+                ? (searchParams.getQueryMap().isEmpty() ? "WHERE " : "AND ") + condition
+                : "";
+        String searchTemplate = createSearchTemplate(searchParams, STREAM_TRANSACTIONS).replace(":cursorFields", conditionTemplate);
+
+        return jdbi.inTransaction(handle -> {
+            handle.execute("SET TRANSACTION READ ONLY");
+            Query query = handle.createQuery(searchTemplate);
+            searchParams.getQueryMap().forEach(bindSearchParameter(query));
+            conditionBinder.accept(query);
+            try (ResultIterator<TransactionEntity> transactions = query
+                    .setFetchSize(fetchSize)
+                    .setQueryTimeout(configuration.getReportingConfig().getSearchQueryTimeoutInSeconds())
+                    .map(new TransactionMapper())
+                    .iterator()) {
+                long count = 0;
+                while (transactions.hasNext()) {
+                    consumer.accept(transactions.next());
+                    count++;
+                }
+                return count;
+            }
+        });
+    }
+
+    /**
+     * Returns the query planner's estimate of the number of transactions matching the search, read from the plan of
+     * the search rather than by counting, or empty if the plan has no estimate.
+     */
+    public Optional<Long> getEstimatedTotalForSearch(TransactionSearchParams searchParams) {
+        return jdbi.withHandle(handle -> {
+            Query query = handle.createQuery(createSearchTemplate(searchParams,
+                    (isNotBlank(searchParams.getFromSettledDate()) || isNotBlank(searchParams.getToSettledDate())) ?
+                            ESTIMATE_TRANSACTIONS_WITH_PAIDOUT_DATE : ESTIMATE_TRANSACTIONS));
+            searchParams.getQueryMap().forEach(bindSearchParameter(query));
+            return query
+                    .setQueryTimeout(configuration.getReportingConfig().getSearchQueryTimeoutInSeconds())
+                    .mapTo(String.class)
+                    .findFirst()
+                    .map(PLAN_ROWS::matcher)
+                    .filter(Matcher::find)
+                    .map(matcher -> Long.parseLong(matcher.group(1)));
+        });
+    }
+
     public List<TransactionEntity> cursorTransactionSearch(TransactionSearchParams searchParams, ZonedDateTime startingAfterCreatedDate, Long startingAfterId) {
+        String cursorTemplate = "";
+        if (startingAfterCreatedDate != null && startingAfterId != null) {
+            cursorTemplate = "t.created_date <= :cursorCreatedDate AND NOT (t.created_date = :cursorCreatedDate AND t.id >= :cursorId) ";
+        }
+        return cursorTransactionSearch(searchParams, SEARCH_TRANSACTIONS_CURSOR, cursorTemplate, startingAfterCreatedDate, startingAfterId);
+    }
+
+    /**
+     * Returns the page of transactions after or before the cursor, most recent first. Pages before the cursor are
+     * found by walking the index in the other direction and reversing the results.
+     */
+    public List<TransactionEntity> searchTransactions(TransactionSearchParams searchParams, TransactionSearchCursor cursor) {
+        if (cursor.getDirection() == TransactionSearchCursor.Direction.AFTER) {
+            return cursorTransactionSearch(searchParams, cursor.getCreatedDate(), cursor.getId());
+        }
+
+        List<TransactionEntity> transactions = new ArrayList<>(cursorTransactionSearch(searchParams, SEARCH_TRANSACTIONS_CURSOR_BEFORE,
+                "t.created_date >= :cursorCreatedDate AND NOT (t.created_date = :cursorCreatedDate AND t.id <= :cursorId) ",
+                cursor.getCreatedDate(), cursor.getId()));
+        Collections.reverse(transactions);
+        return transactions;
+    }
+
+    private List<TransactionEntity> cursorTransactionSearch(TransactionSearchParams searchParams, String baseQueryString,
+                                                            String cursorCondition, ZonedDateTime cursorCreatedDate, Long cursorId) {
         Long cursorPageSize = searchParams.getDisplaySize();
         String cursorTemplate = "";
-        String searchTemplate = createSearchTemplate(searchParams, SEARCH_TRANSACTIONS_CURSOR);
+        String searchTemplate = createSearchTemplate(searchParams, baseQueryString);
 
-        if (startingAfterCreatedDate != null && startingAfterId != null) {
+        if (isNotBlank(cursorCondition)) {
             cursorTemplate = searchParams.getQueryMap().isEmpty() ? "WHERE " : "AND ";
-            cursorTemplate += "t.created_date <= :startingAfterCreatedDate AND NOT (t.created_date = :startingAfterCreatedDate AND t.id >= :startingAfterId) ";
+            cursorTemplate += cursorCondition;
         }
 
         searchTemplate = searchTemplate.replace(":cursorFields", cursorTemplate);
@@ -364,8 +524,8 @@ public class TransactionDao {
         return jdbi.withHandle(handle -> {
             Query query = handle.createQuery(finalSearchTemplate);
             searchParams.getQueryMap().forEach(bindSearchParameter(query));
-            query.bind("startingAfterCreatedDate", startingAfterCreatedDate);
-            query.bind("startingAfterId", startingAfterId);
+            query.bind("cursorCreatedDate", cursorCreatedDate);
+            query.bind("cursorId", cursorId);
             query.bind("limit", cursorPageSize);
 
             return query
@@ -429,11 +589,61 @@ public class TransactionDao {
         };
     }
 
-    public void upsert(TransactionEntity transaction) {
-        jdbi.withHandle(handle ->
-                handle.createUpdate(UPSERT_STRING)
-                        .bindBean(transaction)
-                        .execute());
+    /**
+     * Inserts or updates the transaction, unless the row already reflects a later event. When only the event count
+     * differs from the row, as it does for events that do not change anything projected, just the event count is
+     * updated so the row and its transaction details are not rewritten.
+     */
+    public TransactionUpsertOutcome upsert(TransactionEntity transaction) {
+        return upsert(List.of(transaction)).get(0);
+    }
+
+    /**
+     * Upserts the transactions as {@link #upsert(TransactionEntity)} does, in a single batch, returning the outcome
+     * for each transaction in order.
+     */
+    public List<TransactionUpsertOutcome> upsert(List<TransactionEntity> transactions) {
+        if (transactions.isEmpty()) {
+            return List.of();
+        }
+
+        List<String> contentHashes = transactions.stream().map(TransactionContentHash::of).toList();
+        return jdbi.withHandle(handle -> {
+            PreparedBatch upsertBatch = handle.prepareBatch(UPSERT_STRING);
+            for (int i = 0; i < transactions.size(); i++) {
+                upsertBatch.bindBean(transactions.get(i))
+                        .bind("contentHash", contentHashes.get(i))
+                        .add();
+            }
+            int[] rowsWritten = upsertBatch.execute();
+
+            TransactionUpsertOutcome[] outcomes = new TransactionUpsertOutcome[transactions.size()];
+            List<Integer> unwrittenIndexes = new ArrayList<>();
+            for (int i = 0; i < rowsWritten.length; i++) {
+                if (rowsWritten[i] > 0) {
+                    outcomes[i] = TransactionUpsertOutcome.WRITTEN;
+                } else {
+                    unwrittenIndexes.add(i);
+                }
+            }
+
+            if (!unwrittenIndexes.isEmpty()) {
+                PreparedBatch eventCountBatch = handle.prepareBatch(UPDATE_EVENT_COUNT_OF_UNCHANGED_TRANSACTION);
+                for (int i : unwrittenIndexes) {
+                    eventCountBatch.bind("externalId", transactions.get(i).getExternalId())
+                            .bind("eventCount", transactions.get(i).getEventCount())
+                            .bind("contentHash", contentHashes.get(i))
+                            .add();
+                }
+                int[] rowsUpdated = eventCountBatch.execute();
+                for (int j = 0; j < rowsUpdated.length; j++) {
+                    outcomes[unwrittenIndexes.get(j)] = rowsUpdated[j] > 0
+                            ? TransactionUpsertOutcome.EVENT_COUNT_UPDATED
+                            : TransactionUpsertOutcome.UNCHANGED;
+                }
+            }
+            return List.of(outcomes);
+        });
     }
 
     public List<String> getSourceTypeValues() {
@@ -0,0 +1,16 @@
+package uk.gov.pay.ledger.transaction.dao;
+
+public enum TransactionUpsertOutcome {
+    /**
+     * The transaction was inserted, or its projected columns changed and the row was rewritten.
+     */
+    WRITTEN,
+    /**
+     * The projected columns were unchanged, so only the event count was updated.
+     */
+    EVENT_COUNT_UPDATED,
+    /**
+     * The row already reflected at least as many events, so it was left as it was.
+     */
+    UNCHANGED
+}
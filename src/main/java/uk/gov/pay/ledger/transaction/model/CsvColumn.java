@@ -0,0 +1,48 @@
+package uk.gov.pay.ledger.transaction.model;
+
+/**
+ * The columns of a transaction CSV export, other than the columns of external metadata keys.
+ */
+enum CsvColumn {
+    REFERENCE("Reference"),
+    DESCRIPTION("Description"),
+    EMAIL("Email"),
+    AMOUNT("Amount"),
+    CARD_BRAND("Card Brand"),
+    CARDHOLDER_NAME("Cardholder Name"),
+    CARD_EXPIRY_DATE("Card Expiry Date"),
+    CARD_NUMBER("Card Number"),
+    STATE("State"),
+    FINISHED("Finished"),
+    ERROR_CODE("Error Code"),
+    ERROR_MESSAGE("Error Message"),
+    PROVIDER_ID("Provider ID"),
+    GOVUK_PAYMENT_ID("GOV.UK Payment ID"),
+    ISSUED_BY("Issued By"),
+    DATE_CREATED("Date Created"),
+    TIME_CREATED("Time Created"),
+    CORPORATE_CARD_SURCHARGE("Corporate Card Surcharge"),
+    TOTAL_AMOUNT("Total Amount"),
+    WALLET_TYPE("Wallet Type"),
+    FEE("Fee"),
+    NET("Net"),
+    FEE_BREAKDOWN_TRANSACTION("Fee (transaction)"),
+    FEE_BREAKDOWN_3DS("Fee (3DS)"),
+    FEE_BREAKDOWN_RADAR("Fee (fraud protection)"),
+    CARD_TYPE("Card Type"),
+    MOTO("MOTO"),
+    PAYMENT_PROVIDER("Payment Provider"),
+    THREE_D_SECURE_REQUIRED("3-D Secure Required");
+
+    static final String METADATA_HEADER_SUFFIX = " (metadata)";
+
+    private final String header;
+
+    CsvColumn(String header) {
+        this.header = header;
+    }
+
+    String getHeader() {
+        return header;
+    }
+}
@@ -0,0 +1,12 @@
+package uk.gov.pay.ledger.transaction.model;
+
+/**
+ * Receives the cells of a transaction's CSV row as they are worked out, so the same logic can build a map of the row
+ * or write it straight to an export.
+ */
+interface CsvRow {
+
+    void put(CsvColumn column, Object value);
+
+    void putMetadata(String key, Object value);
+}
@@ -0,0 +1,102 @@
+package uk.gov.pay.ledger.transaction.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import static uk.gov.pay.ledger.transaction.model.CsvColumn.METADATA_HEADER_SUFFIX;
+
+/**
+ * Writes transactions as CSV rows of a single export. The position of every column is worked out once from the
+ * export's headers, so each row is written cell by cell straight to the generator rather than being built as a map
+ * of header to value first.
+ *
+ * <p>An encoder reuses its cells between rows and must only be used by one thread at a time.</p>
+ */
+public class CsvRowEncoder implements CsvRow {
+
+    private static final int NOT_EXPORTED = -1;
+
+    private final CsvTransactionFactory csvTransactionFactory;
+    private final int[] columnIndexes = new int[CsvColumn.values().length];
+    private final Map<String, Integer> metadataIndexes = new HashMap<>();
+    private final Object[] cells;
+
+    CsvRowEncoder(CsvTransactionFactory csvTransactionFactory, Collection<String> headers) {
+        this.csvTransactionFactory = csvTransactionFactory;
+        this.cells = new Object[headers.size()];
+
+        Map<String, CsvColumn> columnsByHeader = new HashMap<>();
+        for (CsvColumn column : CsvColumn.values()) {
+            columnsByHeader.put(column.getHeader(), column);
+        }
+        Arrays.fill(columnIndexes, NOT_EXPORTED);
+
+        int index = 0;
+        for (String header : headers) {
+            CsvColumn column = columnsByHeader.get(header);
+            if (column != null) {
+                columnIndexes[column.ordinal()] = index;
+            } else if (header.endsWith(METADATA_HEADER_SUFFIX)) {
+                metadataIndexes.put(header.substring(0, header.length() - METADATA_HEADER_SUFFIX.length()), index);
+            }
+            index++;
+        }
+    }
+
+    public void encode(TransactionEntity transactionEntity, JsonGenerator generator) throws IOException {
+        Arrays.fill(cells, null);
+        csvTransactionFactory.writeRow(transactionEntity, this);
+
+        generator.writeStartArray();
+        for (Object cell : cells) {
+            writeCell(cell, generator);
+        }
+        generator.writeEndArray();
+    }
+
+    @Override
+    public void put(CsvColumn column, Object value) {
+        int index = columnIndexes[column.ordinal()];
+        if (index != NOT_EXPORTED) {
+            cells[index] = value;
+        }
+    }
+
+    @Override
+    public void putMetadata(String key, Object value) {
+        Integer index = metadataIndexes.get(key);
+        if (index != null) {
+            cells[index] = value;
+        }
+    }
+
+    private static void writeCell(Object cell, JsonGenerator generator) throws IOException {
+        if (cell == null) {
+            generator.writeNull();
+        } else if (cell instanceof String) {
+            generator.writeString((String) cell);
+        } else if (cell instanceof Boolean) {
+            generator.writeBoolean((Boolean) cell);
+        } else if (cell instanceof Integer) {
+            generator.writeNumber((Integer) cell);
+        } else if (cell instanceof Long) {
+            generator.writeNumber((Long) cell);
+        } else if (cell instanceof Double) {
+            generator.writeNumber((Double) cell);
+        } else if (cell instanceof BigInteger) {
+            generator.writeNumber((BigInteger) cell);
+        } else if (cell instanceof BigDecimal) {
+            generator.writeNumber((BigDecimal) cell);
+        } else {
+            generator.writeObject(cell);
+        }
+    }
+}
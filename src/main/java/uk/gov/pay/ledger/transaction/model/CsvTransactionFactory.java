@@ -1,6 +1,5 @@
 package uk.gov.pay.ledger.transaction.model;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
@@ -14,21 +13,22 @@ import uk.gov.pay.ledger.transaction.state.RefundState;
 import uk.gov.pay.ledger.transaction.state.TransactionState;
 
 import java.io.IOException;
-import java.text.DecimalFormat;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
-import static java.math.BigDecimal.valueOf;
 import static net.logstash.logback.argument.StructuredArguments.kv;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.lowerCase;
 import static org.apache.commons.lang3.StringUtils.replaceChars;
 import static org.apache.commons.text.WordUtils.capitalizeFully;
+import static uk.gov.pay.ledger.transaction.model.CsvColumn.METADATA_HEADER_SUFFIX;
 import static uk.gov.pay.ledger.transaction.model.TransactionType.DISPUTE;
 import static uk.gov.pay.ledger.transaction.model.TransactionType.REFUND;
 import static uk.gov.pay.ledger.transaction.state.TransactionState.WON;
@@ -40,35 +40,8 @@ import static uk.gov.service.payments.logging.LoggingKeys.PAYMENT_EXTERNAL_ID;
 public class CsvTransactionFactory {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CsvTransactionFactory.class);
-    private static final String FIELD_AMOUNT = "Amount";
-    private static final String FIELD_REFERENCE = "Reference";
-    private static final String FIELD_DESC = "Description";
-    private static final String FIELD_DATE_CREATED = "Date Created";
-    private static final String FIELD_TIME_CREATED = "Time Created";
-    private static final String FIELD_EMAIL = "Email";
-    private static final String FIELD_CARD_BRAND = "Card Brand";
-    private static final String FIELD_CARDHOLDER_NAME = "Cardholder Name";
-    private static final String FIELD_CARD_EXPIRY_DATE = "Card Expiry Date";
-    private static final String FIELD_CARD_NUMBER = "Card Number";
-    private static final String FIELD_STATE = "State";
-    private static final String FIELD_FINISHED = "Finished";
-    private static final String FIELD_ERROR_CODE = "Error Code";
-    private static final String FIELD_ERROR_MESSAGE = "Error Message";
-    private static final String FIELD_PROVIDER_ID = "Provider ID";
-    private static final String FIELD_GOVUK_PAYMENT_ID = "GOV.UK Payment ID";
-    private static final String FIELD_ISSUED_BY = "Issued By";
-    private static final String FIELD_CORPORATE_CARD_SURCHARGE = "Corporate Card Surcharge";
-    private static final String FIELD_TOTAL_AMOUNT = "Total Amount";
-    private static final String FIELD_WALLET_TYPE = "Wallet Type";
-    private static final String FIELD_CARD_TYPE = "Card Type";
-    private static final String FIELD_FEE = "Fee";
-    private static final String FIELD_FEE_BREAKDOWN_TRANSACTION = "Fee (transaction)";
-    private static final String FIELD_FEE_BREAKDOWN_3DS = "Fee (3DS)";
-    private static final String FIELD_FEE_BREAKDOWN_RADAR = "Fee (fraud protection)";
-    private static final String FIELD_NET = "Net";
-    private static final String FIELD_MOTO = "MOTO";
-    private static final String FIELD_PAYMENT_PROVIDER = "Payment Provider";
-    private static final String FIELD_3D_SECURE_REQUIRED = "3-D Secure Required";
+    private static final DateTimeFormatter DATE_CREATED_FORMATTER = DateTimeFormatter.ofPattern("dd MMM yyyy");
+    private static final DateTimeFormatter TIME_CREATED_FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss");
     private final ObjectMapper objectMapper;
 
     @Inject
@@ -78,12 +51,32 @@ public class CsvTransactionFactory {
 
     public Map<String, Object> toMap(TransactionEntity transactionEntity) {
         Map<String, Object> result = new HashMap<>();
+        writeRow(transactionEntity, new CsvRow() {
+            @Override
+            public void put(CsvColumn column, Object value) {
+                result.put(column.getHeader(), value);
+            }
+
+            @Override
+            public void putMetadata(String key, Object value) {
+                result.put(key + METADATA_HEADER_SUFFIX, value);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Returns an encoder writing the rows of an export with the given headers, as returned by
+     * {@link #getCsvHeadersWithMedataKeys}.
+     */
+    public CsvRowEncoder rowEncoderFor(Collection<String> headers) {
+        return new CsvRowEncoder(this, headers);
+    }
 
+    void writeRow(TransactionEntity transactionEntity, CsvRow row) {
         try {
-            String dateCreated = parseDateForPattern(transactionEntity.getCreatedDate(),
-                    "dd MMM yyyy");
-            String timeCreated = parseDateForPattern(transactionEntity.getCreatedDate(),
-                    "HH:mm:ss");
+            String dateCreated = formatDate(transactionEntity.getCreatedDate(), DATE_CREATED_FORMATTER);
+            String timeCreated = formatDate(transactionEntity.getCreatedDate(), TIME_CREATED_FORMATTER);
 
             Long totalOrAmount = Optional.ofNullable(transactionEntity.getTotalAmount()).orElse(transactionEntity.getAmount());
 
@@ -94,95 +87,83 @@ public class CsvTransactionFactory {
 
             if (TransactionType.PAYMENT.name().equals(transactionEntity.getTransactionType())) {
 
-                result.putAll(
-                        getPaymentTransactionAttributes(transactionEntity, transactionDetails)
-                );
+                writePaymentTransactionAttributes(transactionEntity, transactionDetails, row);
 
-                result.put(FIELD_GOVUK_PAYMENT_ID, transactionEntity.getExternalId());
-                result.put(FIELD_AMOUNT, penceToCurrency(transactionEntity.getAmount()));
+                row.put(CsvColumn.GOVUK_PAYMENT_ID, transactionEntity.getExternalId());
+                row.put(CsvColumn.AMOUNT, penceToCurrency(transactionEntity.getAmount()));
 
                 if (transactionEntity.getState() == TransactionState.SUCCESS) {
-                    result.put(FIELD_TOTAL_AMOUNT, penceToCurrency(totalOrAmount));
+                    row.put(CsvColumn.TOTAL_AMOUNT, penceToCurrency(totalOrAmount));
                 } else if (transactionEntity.getState().isFinished()) {
-                    result.put(FIELD_TOTAL_AMOUNT, penceToCurrency(0L));
+                    row.put(CsvColumn.TOTAL_AMOUNT, penceToCurrency(0L));
                 } else {
-                    result.put(FIELD_TOTAL_AMOUNT, "");
+                    row.put(CsvColumn.TOTAL_AMOUNT, "");
                 }
 
-                result.put(FIELD_FEE, penceToCurrency(transactionEntity.getFee()));
+                row.put(CsvColumn.FEE, penceToCurrency(transactionEntity.getFee()));
                 if (transactionEntity.getState() == TransactionState.SUCCESS) {
-                    result.put(FIELD_NET, penceToCurrency(netOrTotalOrAmount));
+                    row.put(CsvColumn.NET, penceToCurrency(netOrTotalOrAmount));
                 } else {
                     // use net_amount if available else set net to 0.00
-                    result.put(FIELD_NET, Optional.ofNullable(penceToCurrency(transactionEntity.getNetAmount())).orElse(penceToCurrency(0L)));
+                    row.put(CsvColumn.NET, Optional.ofNullable(penceToCurrency(transactionEntity.getNetAmount())).orElse(penceToCurrency(0L)));
                 }
-                result.put(FIELD_STATE, PaymentState.getDisplayName(transactionEntity.getState()));
-                result.put(FIELD_MOTO, transactionEntity.isMoto());
-                result.put(FIELD_PAYMENT_PROVIDER, safeGetAsString(transactionDetails, "payment_provider"));
-                result.put(FIELD_CORPORATE_CARD_SURCHARGE, penceToCurrency(
+                row.put(CsvColumn.STATE, PaymentState.getDisplayName(transactionEntity.getState()));
+                row.put(CsvColumn.MOTO, transactionEntity.isMoto());
+                row.put(CsvColumn.PAYMENT_PROVIDER, safeGetAsString(transactionDetails, "payment_provider"));
+                row.put(CsvColumn.CORPORATE_CARD_SURCHARGE, penceToCurrency(
                         Optional.ofNullable(safeGetAsLong(transactionDetails, "corporate_surcharge")).orElse(0L)
                 ));
 
                 JsonNode feeBreakdownNode = transactionDetails.get("fee_breakdown");
                 if (feeBreakdownNode != null && feeBreakdownNode.isArray()) {
-                    result.putAll(getFeeBreakdown(transactionEntity, feeBreakdownNode));
+                    writeFeeBreakdown(transactionEntity, feeBreakdownNode, row);
                 }
 
                 Boolean requires3ds = safeGetAsBoolean(transactionDetails, "requires_3ds", null);
-                result.put(FIELD_3D_SECURE_REQUIRED, Boolean.TRUE.equals(requires3ds) ? true : null);
+                row.put(CsvColumn.THREE_D_SECURE_REQUIRED, Boolean.TRUE.equals(requires3ds) ? true : null);
 
-                Optional<Map<String, Object>> externalMetadata = getExternalMetadata(transactionEntity.getTransactionDetails());
-
-                externalMetadata.ifPresent(metadata ->
-                        metadata.forEach((key, value) ->
-                                result.put(String.format("%s (metadata)", key), value)));
+                writeExternalMetadata(transactionDetails.get("external_metadata"), row);
             }
             if (REFUND.name().equals(transactionEntity.getTransactionType())) {
-                result.put(FIELD_TOTAL_AMOUNT, penceToCurrency(totalOrAmount * -1));
-                result.put(FIELD_ISSUED_BY, safeGetAsString(transactionDetails, "user_email"));
-                result.put(FIELD_STATE, RefundState.getDisplayName(transactionEntity.getState()));
-                result.put(FIELD_NET, penceToCurrency(netOrTotalOrAmount * -1));
+                row.put(CsvColumn.TOTAL_AMOUNT, penceToCurrency(totalOrAmount * -1));
+                row.put(CsvColumn.ISSUED_BY, safeGetAsString(transactionDetails, "user_email"));
+                row.put(CsvColumn.STATE, RefundState.getDisplayName(transactionEntity.getState()));
+                row.put(CsvColumn.NET, penceToCurrency(netOrTotalOrAmount * -1));
             }
             if (DISPUTE.name().equals(transactionEntity.getTransactionType())) {
-                result.put(FIELD_STATE, DisputeState.getDisplayName(transactionEntity.getState()));
-                result.put(FIELD_NET, penceToCurrency(transactionEntity.getNetAmount()));
-                result.put(FIELD_FEE, penceToCurrency(transactionEntity.getFee()));
+                row.put(CsvColumn.STATE, DisputeState.getDisplayName(transactionEntity.getState()));
+                row.put(CsvColumn.NET, penceToCurrency(transactionEntity.getNetAmount()));
+                row.put(CsvColumn.FEE, penceToCurrency(transactionEntity.getFee()));
             }
 
             if (REFUND.name().equals(transactionEntity.getTransactionType()) ||
                     DISPUTE.name().equals(transactionEntity.getTransactionType())) {
-                result.putAll(
-                        getPaymentTransactionAttributes(transactionEntity, transactionDetails.get("payment_details"))
-                );
-                result.put(FIELD_GOVUK_PAYMENT_ID, transactionEntity.getParentExternalId());
+                writePaymentTransactionAttributes(transactionEntity, transactionDetails.get("payment_details"), row);
+                row.put(CsvColumn.GOVUK_PAYMENT_ID, transactionEntity.getParentExternalId());
                 if (transactionEntity.getState() == WON) {
-                    result.put(FIELD_AMOUNT, penceToCurrency(transactionEntity.getAmount()));
+                    row.put(CsvColumn.AMOUNT, penceToCurrency(transactionEntity.getAmount()));
                 } else {
-                    result.put(FIELD_AMOUNT, penceToCurrency(transactionEntity.getAmount() * -1));
+                    row.put(CsvColumn.AMOUNT, penceToCurrency(transactionEntity.getAmount() * -1));
                 }
             }
 
-            result.put(FIELD_PROVIDER_ID, sanitiseAgainstSpreadsheetFormulaInjection(transactionEntity.getGatewayTransactionId()));
-            result.put(FIELD_DATE_CREATED, dateCreated);
-            result.put(FIELD_TIME_CREATED, timeCreated);
+            row.put(CsvColumn.PROVIDER_ID, sanitiseAgainstSpreadsheetFormulaInjection(transactionEntity.getGatewayTransactionId()));
+            row.put(CsvColumn.DATE_CREATED, dateCreated);
+            row.put(CsvColumn.TIME_CREATED, timeCreated);
 
             if (transactionEntity.getState() != null) {
                 ExternalTransactionState state = ExternalTransactionState.from(transactionEntity.getState(), 2);
-                result.put(FIELD_FINISHED, state.isFinished());
-                result.put(FIELD_ERROR_CODE, state.getCode());
-                result.put(FIELD_ERROR_MESSAGE, state.getMessage());
+                row.put(CsvColumn.FINISHED, state.isFinished());
+                row.put(CsvColumn.ERROR_CODE, state.getCode());
+                row.put(CsvColumn.ERROR_MESSAGE, state.getMessage());
             }
         } catch (IOException e) {
             LOGGER.error("Error during the parsing transaction entity data [{}] [errorMessage={}]",
                     transactionEntity.getExternalId(), e.getMessage());
         }
-
-        return result;
     }
 
-    private Map<String, Object> getFeeBreakdown(TransactionEntity transactionEntity, JsonNode feeBreakdown) {
-        Map<String, Object> result = new HashMap<>();
-
+    private void writeFeeBreakdown(TransactionEntity transactionEntity, JsonNode feeBreakdown, CsvRow row) {
         feeBreakdown.forEach((JsonNode jsonNode) -> {
             String feeType = safeGetAsString(jsonNode, "fee_type");
 
@@ -190,13 +171,13 @@ public class CsvTransactionFactory {
                 String amount = penceToCurrency(safeGetAsLong(jsonNode, "amount"));
                 switch (feeType) {
                     case "transaction":
-                        result.put(FIELD_FEE_BREAKDOWN_TRANSACTION, amount);
+                        row.put(CsvColumn.FEE_BREAKDOWN_TRANSACTION, amount);
                         break;
                     case "radar":
-                        result.put(FIELD_FEE_BREAKDOWN_RADAR, amount);
+                        row.put(CsvColumn.FEE_BREAKDOWN_RADAR, amount);
                         break;
                     case "three_ds":
-                        result.put(FIELD_FEE_BREAKDOWN_3DS, amount);
+                        row.put(CsvColumn.FEE_BREAKDOWN_3DS, amount);
                         break;
                     default:
                         LOGGER.warn("Unknown fee type for transaction",
@@ -205,29 +186,49 @@ public class CsvTransactionFactory {
                 }
             }
         });
-        return result;
     }
 
-    private Map<String, Object> getPaymentTransactionAttributes(TransactionEntity transactionEntity, JsonNode details) {
-
-        Map<String, Object> result = new HashMap<>();
-
-        result.put(FIELD_REFERENCE, sanitiseAgainstSpreadsheetFormulaInjection(transactionEntity.getReference()));
-        result.put(FIELD_DESC, sanitiseAgainstSpreadsheetFormulaInjection(transactionEntity.getDescription()));
-        result.put(FIELD_EMAIL, sanitiseAgainstSpreadsheetFormulaInjection(transactionEntity.getEmail()));
-        result.put(FIELD_CARDHOLDER_NAME, sanitiseAgainstSpreadsheetFormulaInjection(transactionEntity.getCardholderName()));
-        result.put(FIELD_CARD_NUMBER, transactionEntity.getLastDigitsCardNumber());
+    private void writePaymentTransactionAttributes(TransactionEntity transactionEntity, JsonNode details, CsvRow row) {
+        row.put(CsvColumn.REFERENCE, sanitiseAgainstSpreadsheetFormulaInjection(transactionEntity.getReference()));
+        row.put(CsvColumn.DESCRIPTION, sanitiseAgainstSpreadsheetFormulaInjection(transactionEntity.getDescription()));
+        row.put(CsvColumn.EMAIL, sanitiseAgainstSpreadsheetFormulaInjection(transactionEntity.getEmail()));
+        row.put(CsvColumn.CARDHOLDER_NAME, sanitiseAgainstSpreadsheetFormulaInjection(transactionEntity.getCardholderName()));
+        row.put(CsvColumn.CARD_NUMBER, transactionEntity.getLastDigitsCardNumber());
 
         if (details != null) {
-            result.put(FIELD_CARD_BRAND, safeGetAsString(details, "card_brand_label"));
-            result.put(FIELD_CARD_EXPIRY_DATE, safeGetAsString(details, "expiry_date"));
-            result.put(FIELD_CARD_TYPE, lowerCase(safeGetAsString(details, "card_type")));
-            result.put(FIELD_WALLET_TYPE, capitalizeFully(
+            row.put(CsvColumn.CARD_BRAND, safeGetAsString(details, "card_brand_label"));
+            row.put(CsvColumn.CARD_EXPIRY_DATE, safeGetAsString(details, "expiry_date"));
+            row.put(CsvColumn.CARD_TYPE, lowerCase(safeGetAsString(details, "card_type")));
+            row.put(CsvColumn.WALLET_TYPE, capitalizeFully(
                     replaceChars(safeGetAsString(details, "wallet"), '_', ' '))
             );
         }
+    }
 
-        return result;
+    /**
+     * Writes the external metadata from the transaction details already parsed for the row, converting each value as
+     * it would be if the metadata were read as a map.
+     */
+    private void writeExternalMetadata(JsonNode externalMetadata, CsvRow row) {
+        if (externalMetadata == null || !externalMetadata.isObject()) {
+            return;
+        }
+        Iterator<Map.Entry<String, JsonNode>> fields = externalMetadata.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            JsonNode value = field.getValue();
+            if (value.isTextual()) {
+                row.putMetadata(field.getKey(), value.textValue());
+            } else if (value.isBoolean()) {
+                row.putMetadata(field.getKey(), value.booleanValue());
+            } else if (value.isNumber()) {
+                row.putMetadata(field.getKey(), value.numberValue());
+            } else if (value.isNull()) {
+                row.putMetadata(field.getKey(), null);
+            } else {
+                row.putMetadata(field.getKey(), objectMapper.convertValue(value, Object.class));
+            }
+        }
     }
 
     public Map<String, Object> getCsvHeadersWithMedataKeys(List<String> metadataKeys,
@@ -235,90 +236,94 @@ public class CsvTransactionFactory {
                                                            boolean includeMotoHeader) {
         LinkedHashMap<String, Object> headers = new LinkedHashMap<>();
 
-        headers.put(FIELD_REFERENCE, FIELD_REFERENCE);
-        headers.put(FIELD_DESC, FIELD_DESC);
-        headers.put(FIELD_EMAIL, FIELD_EMAIL);
-        headers.put(FIELD_AMOUNT, FIELD_AMOUNT);
-        headers.put(FIELD_CARD_BRAND, FIELD_CARD_BRAND);
-        headers.put(FIELD_CARDHOLDER_NAME, FIELD_CARDHOLDER_NAME);
-        headers.put(FIELD_CARD_EXPIRY_DATE, FIELD_CARD_EXPIRY_DATE);
-        headers.put(FIELD_CARD_NUMBER, FIELD_CARD_NUMBER);
-        headers.put(FIELD_STATE, FIELD_STATE);
-        headers.put(FIELD_FINISHED, FIELD_FINISHED);
-        headers.put(FIELD_ERROR_CODE, FIELD_ERROR_CODE);
-        headers.put(FIELD_ERROR_MESSAGE, FIELD_ERROR_MESSAGE);
-        headers.put(FIELD_PROVIDER_ID, FIELD_PROVIDER_ID);
-        headers.put(FIELD_GOVUK_PAYMENT_ID, FIELD_GOVUK_PAYMENT_ID);
-        headers.put(FIELD_ISSUED_BY, FIELD_ISSUED_BY);
-        headers.put(FIELD_DATE_CREATED, FIELD_DATE_CREATED);
-        headers.put(FIELD_TIME_CREATED, FIELD_TIME_CREATED);
-        headers.put(FIELD_CORPORATE_CARD_SURCHARGE, FIELD_CORPORATE_CARD_SURCHARGE);
-        headers.put(FIELD_TOTAL_AMOUNT, FIELD_TOTAL_AMOUNT);
-        headers.put(FIELD_WALLET_TYPE, FIELD_WALLET_TYPE);
+        putHeader(headers, CsvColumn.REFERENCE);
+        putHeader(headers, CsvColumn.DESCRIPTION);
+        putHeader(headers, CsvColumn.EMAIL);
+        putHeader(headers, CsvColumn.AMOUNT);
+        putHeader(headers, CsvColumn.CARD_BRAND);
+        putHeader(headers, CsvColumn.CARDHOLDER_NAME);
+        putHeader(headers, CsvColumn.CARD_EXPIRY_DATE);
+        putHeader(headers, CsvColumn.CARD_NUMBER);
+        putHeader(headers, CsvColumn.STATE);
+        putHeader(headers, CsvColumn.FINISHED);
+        putHeader(headers, CsvColumn.ERROR_CODE);
+        putHeader(headers, CsvColumn.ERROR_MESSAGE);
+        putHeader(headers, CsvColumn.PROVIDER_ID);
+        putHeader(headers, CsvColumn.GOVUK_PAYMENT_ID);
+        putHeader(headers, CsvColumn.ISSUED_BY);
+        putHeader(headers, CsvColumn.DATE_CREATED);
+        putHeader(headers, CsvColumn.TIME_CREATED);
+        putHeader(headers, CsvColumn.CORPORATE_CARD_SURCHARGE);
+        putHeader(headers, CsvColumn.TOTAL_AMOUNT);
+        putHeader(headers, CsvColumn.WALLET_TYPE);
 
         if (includeFeeHeaders) {
-            headers.put(FIELD_FEE, FIELD_FEE);
-            headers.put(FIELD_NET, FIELD_NET);
-            headers.put(FIELD_FEE_BREAKDOWN_TRANSACTION, FIELD_FEE_BREAKDOWN_TRANSACTION);
-            headers.put(FIELD_FEE_BREAKDOWN_3DS, FIELD_FEE_BREAKDOWN_3DS);
-            headers.put(FIELD_FEE_BREAKDOWN_RADAR, FIELD_FEE_BREAKDOWN_RADAR);
+            putHeader(headers, CsvColumn.FEE);
+            putHeader(headers, CsvColumn.NET);
+            putHeader(headers, CsvColumn.FEE_BREAKDOWN_TRANSACTION);
+            putHeader(headers, CsvColumn.FEE_BREAKDOWN_3DS);
+            putHeader(headers, CsvColumn.FEE_BREAKDOWN_RADAR);
         }
 
-        headers.put(FIELD_CARD_TYPE, FIELD_CARD_TYPE);
+        putHeader(headers, CsvColumn.CARD_TYPE);
 
         if (includeMotoHeader) {
-            headers.put(FIELD_MOTO, FIELD_MOTO);
+            putHeader(headers, CsvColumn.MOTO);
         }
 
-        headers.put(FIELD_PAYMENT_PROVIDER, FIELD_PAYMENT_PROVIDER);
+        putHeader(headers, CsvColumn.PAYMENT_PROVIDER);
 
-        headers.put(FIELD_3D_SECURE_REQUIRED, FIELD_3D_SECURE_REQUIRED);
+        putHeader(headers, CsvColumn.THREE_D_SECURE_REQUIRED);
 
         if (metadataKeys != null) {
             metadataKeys.stream().sorted()
                     .forEach(key -> {
-                        String header = String.format("%s (metadata)", key);
+                        String header = key + METADATA_HEADER_SUFFIX;
                         headers.put(header, header);
                     });
         }
         return headers;
     }
 
-    private String penceToCurrency(Long amount) {
-        if (amount != null) {
-            DecimalFormat decimalFormat = new DecimalFormat("#,##0.00");
-            return decimalFormat.format(valueOf(amount).divide(valueOf(100L)));
-        }
-        return null;
+    private static void putHeader(Map<String, Object> headers, CsvColumn column) {
+        headers.put(column.getHeader(), column.getHeader());
     }
 
-    private String parseDateForPattern(ZonedDateTime dateTime, String pattern) {
-        return Optional.ofNullable(dateTime)
-                .map(date -> date.format(DateTimeFormatter.ofPattern(pattern)))
-                .orElse(null);
+    /**
+     * Formats pence as pounds with two decimal places and grouped thousands, such as 1,234.56, without the
+     * BigDecimal and DecimalFormat previously created for every amount of every row.
+     */
+    private static String penceToCurrency(Long amount) {
+        if (amount == null) {
+            return null;
+        }
+        long pence = Math.abs(amount);
+        String pounds = Long.toString(pence / 100);
+        StringBuilder formatted = new StringBuilder(pounds.length() + pounds.length() / 3 + 4);
+        if (amount < 0) {
+            formatted.append('-');
+        }
+        for (int i = 0; i < pounds.length(); i++) {
+            if (i > 0 && (pounds.length() - i) % 3 == 0) {
+                formatted.append(',');
+            }
+            formatted.append(pounds.charAt(i));
+        }
+        long remainder = pence % 100;
+        formatted.append(remainder < 10 ? ".0" : ".").append(remainder);
+        return formatted.toString();
     }
 
-    private Optional<Map<String, Object>> getExternalMetadata(String transactionDetails)
-            throws IOException {
-
-        JsonNode transactionDetailsJsonNode = objectMapper.readTree(
-                Optional.ofNullable(transactionDetails).orElse("{}"));
-
-        Map<String, Object> metadata = null;
-        if (transactionDetailsJsonNode.has("external_metadata")) {
-            metadata = objectMapper.readValue(
-                    objectMapper.treeAsTokens(transactionDetailsJsonNode.get("external_metadata")),
-                    new TypeReference<>() {
-                    });
-        }
-        return Optional.ofNullable(metadata);
+    private static String formatDate(ZonedDateTime dateTime, DateTimeFormatter formatter) {
+        return dateTime == null ? null : dateTime.format(formatter);
     }
 
-    private String sanitiseAgainstSpreadsheetFormulaInjection(String value) {
+    private static String sanitiseAgainstSpreadsheetFormulaInjection(String value) {
         if (isBlank(value)) {
             return value;
         }
 
-        return value.replaceFirst("(^[=@+-])", "'$1");
+        char first = value.charAt(0);
+        return first == '=' || first == '@' || first == '+' || first == '-' ? "'" + value : value;
     }
 }
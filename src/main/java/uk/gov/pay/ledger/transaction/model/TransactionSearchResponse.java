@@ -1,5 +1,6 @@
 package uk.gov.pay.ledger.transaction.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import uk.gov.pay.ledger.util.pagination.PaginationBuilder;
 import uk.gov.pay.ledger.transaction.search.model.TransactionView;
@@ -10,12 +11,20 @@ public class TransactionSearchResponse {
 
     @JsonProperty("total")
     private Long total;
+    @JsonProperty("total_is_estimate")
+    private boolean totalIsEstimate;
     @JsonProperty("count")
     private long count;
     @JsonProperty("page")
     private long page;
     @JsonProperty("results")
     List<TransactionView> transactionViewList;
+    @JsonProperty("prev_cursor")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String prevCursor;
+    @JsonProperty("next_cursor")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextCursor;
     @JsonProperty("_links")
     private PaginationBuilder paginationBuilder;
 
@@ -27,6 +36,17 @@ public class TransactionSearchResponse {
         this.transactionViewList = transactionViewList;
     }
 
+    public TransactionSearchResponse withTotalIsEstimate(boolean totalIsEstimate) {
+        this.totalIsEstimate = totalIsEstimate;
+        return this;
+    }
+
+    public TransactionSearchResponse withCursors(String prevCursor, String nextCursor) {
+        this.prevCursor = prevCursor;
+        this.nextCursor = nextCursor;
+        return this;
+    }
+
     public TransactionSearchResponse withPaginationBuilder(PaginationBuilder paginationBuilder) {
         this.paginationBuilder = paginationBuilder;
         return this;
@@ -36,6 +56,10 @@ public class TransactionSearchResponse {
         return total;
     }
 
+    public boolean isTotalIsEstimate() {
+        return totalIsEstimate;
+    }
+
     public Long getCount() {
         return count;
     }
@@ -48,6 +72,14 @@ public class TransactionSearchResponse {
         return transactionViewList;
     }
 
+    public String getPrevCursor() {
+        return prevCursor;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
     public PaginationBuilder getPaginationBuilder() {
         return paginationBuilder;
     }
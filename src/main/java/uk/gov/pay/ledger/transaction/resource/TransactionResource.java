@@ -1,8 +1,10 @@
 package uk.gov.pay.ledger.transaction.resource;
 
 import com.codahale.metrics.annotation.Timed;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.google.common.base.Stopwatch;
+import com.google.common.io.CountingOutputStream;
 import com.google.inject.Inject;
 import io.swagger.v3.oas.annotations.Hidden;
 import io.swagger.v3.oas.annotations.Operation;
@@ -32,7 +34,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.gov.pay.ledger.app.LedgerConfig;
 import uk.gov.pay.ledger.exception.ErrorResponse;
-import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
+import uk.gov.pay.ledger.filters.MeteredResponseSize;
+import uk.gov.pay.ledger.transaction.model.CsvRowEncoder;
 import uk.gov.pay.ledger.transaction.model.TransactionEventResponse;
 import uk.gov.pay.ledger.transaction.model.TransactionSearchResponse;
 import uk.gov.pay.ledger.transaction.model.TransactionType;
@@ -45,12 +48,14 @@ import uk.gov.pay.ledger.transaction.service.CsvService;
 import uk.gov.pay.ledger.transaction.service.TransactionService;
 import uk.gov.pay.ledger.util.CommaDelimitedSetParameter;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.sql.SQLException;
-import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static net.logstash.logback.argument.StructuredArguments.kv;
 import static uk.gov.pay.ledger.transaction.search.common.TransactionSearchParamsValidator.validateSearchParams;
@@ -116,6 +121,7 @@ public class TransactionResource {
     @Path("/")
     @GET
     @Timed
+    @MeteredResponseSize
     @Operation(
             summary = "Search transactions by query params. Same endpoint can be used to download CSV (with  Accept header=\"text/csv\"). Refer to code for details",
             operationId = "search transactions",
@@ -151,6 +157,7 @@ public class TransactionResource {
     @GET
     @Produces("text/csv; qs=.5")
     @Timed
+    @MeteredResponseSize
     @Hidden
     public Response streamCsv(@Valid @BeanParam TransactionSearchParams searchParams,
                               @QueryParam("account_id") CommaDelimitedSetParameter gatewayAccountIds,
@@ -162,33 +169,32 @@ public class TransactionResource {
 
             validateSearchParamsForCsv(csvSearchParams, gatewayAccountIds);
 
-            csvSearchParams.overrideMaxDisplaySize((long) configuration.getReportingConfig().getStreamingCsvPageSize());
             csvSearchParams.setAccountIds(gatewayAccountIds.getParameters());
 
-            List<TransactionEntity> page;
-            ZonedDateTime startingAfterCreatedDate = null;
-            Long startingAfterId = null;
-            int count = 0;
+            int pageSize = configuration.getReportingConfig().getStreamingCsvPageSize();
+            int flushIntervalInBytes = configuration.getReportingConfig().getStreamingCsvFlushIntervalInBytes();
+            long count;
 
             Map<String, Object> headers = csvService.csvHeaderFrom(csvSearchParams, includeFeeHeaders, includeMotoHeader);
             ObjectWriter writer = csvService.writerFrom(headers);
             Stopwatch stopwatch = Stopwatch.createStarted();
-            outputStream.write(csvService.csvStringFrom(headers, writer).getBytes());
-            do {
-                page = transactionService.searchTransactionAfter(csvSearchParams, startingAfterCreatedDate, startingAfterId);
-                count += page.size();
-
-                if (!page.isEmpty()) {
-                    var lastEntity = page.get(page.size() - 1);
-                    startingAfterCreatedDate = lastEntity.getCreatedDate();
-                    startingAfterId = lastEntity.getId();
-
-                    outputStream.write(
-                            csvService.csvStringFrom(page, writer).getBytes()
-                    );
-                    outputStream.flush();
-                }
-            } while (!page.isEmpty());
+            CountingOutputStream countingOutputStream = new CountingOutputStream(outputStream);
+            countingOutputStream.write(csvService.csvStringFrom(headers, writer).getBytes());
+            // send the headers straight away rather than once the first rows have been read
+            countingOutputStream.flush();
+            CsvRowEncoder rowEncoder = csvService.rowEncoderFrom(headers);
+            try (JsonGenerator rowWriter = csvService.rowWriterFrom(writer, countingOutputStream)) {
+                AtomicLong flushedBytes = new AtomicLong(countingOutputStream.getCount());
+                count = transactionService.streamTransactions(csvSearchParams, pageSize, transaction -> {
+                    csvService.writeCsvRow(rowWriter, rowEncoder, transaction);
+                    if (countingOutputStream.getCount() - flushedBytes.get() >= flushIntervalInBytes) {
+                        flush(rowWriter);
+                        flushedBytes.set(countingOutputStream.getCount());
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
             outputStream.close();
             long elapsed = stopwatch.stop().elapsed(TimeUnit.MILLISECONDS);
             LOGGER.info("CSV stream took:",
@@ -198,6 +204,14 @@ public class TransactionResource {
         return Response.ok(stream).build();
     }
 
+    private static void flush(JsonGenerator rowWriter) {
+        try {
+            rowWriter.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     private TransactionSearchResponse searchForTransactions(TransactionSearchParams searchParams, Boolean overrideAccountRestriction, CommaDelimitedSetParameter commaSeparatedGatewayAccountIds, UriInfo uriInfo) {
         TransactionSearchParams transactionSearchParams = Optional.ofNullable(searchParams)
                 .orElse(new TransactionSearchParams());
@@ -0,0 +1,77 @@
+package uk.gov.pay.ledger.transaction.search.common;
+
+import uk.gov.pay.ledger.exception.ValidationException;
+import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * A position in the results of a transaction search, which are ordered by created date and then id, most recent first.
+ * A cursor selects the page of transactions either after or before the transaction it was taken from, so any page
+ * can be fetched with an index seek however deep into the results it is.
+ * <p>
+ * Cursors are handed to clients as opaque tokens. They identify a position rather than a page number, so transactions
+ * arriving while a client pages through the results do not shift later pages.
+ */
+public class TransactionSearchCursor {
+
+    public enum Direction {
+        AFTER, BEFORE
+    }
+
+    private static final String SEPARATOR = "|";
+
+    private final Direction direction;
+    private final ZonedDateTime createdDate;
+    private final long id;
+
+    private TransactionSearchCursor(Direction direction, ZonedDateTime createdDate, long id) {
+        this.direction = direction;
+        this.createdDate = createdDate;
+        this.id = id;
+    }
+
+    public static TransactionSearchCursor after(TransactionEntity transaction) {
+        return new TransactionSearchCursor(Direction.AFTER, transaction.getCreatedDate(), transaction.getId());
+    }
+
+    public static TransactionSearchCursor before(TransactionEntity transaction) {
+        return new TransactionSearchCursor(Direction.BEFORE, transaction.getCreatedDate(), transaction.getId());
+    }
+
+    public static TransactionSearchCursor decode(String token) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\\" + SEPARATOR);
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Expected 3 parts but found " + parts.length);
+            }
+            return new TransactionSearchCursor(Direction.valueOf(parts[0]),
+                    ZonedDateTime.ofInstant(Instant.parse(parts[1]), ZoneOffset.UTC),
+                    Long.parseLong(parts[2]));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new ValidationException("Invalid cursor [" + token + "]");
+        }
+    }
+
+    public String encode() {
+        String value = direction.name() + SEPARATOR + createdDate.toInstant() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public Direction getDirection() {
+        return direction;
+    }
+
+    public ZonedDateTime getCreatedDate() {
+        return createdDate;
+    }
+
+    public long getId() {
+        return id;
+    }
+}
@@ -2,6 +2,7 @@ package uk.gov.pay.ledger.transaction.search.common;
 
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Schema;
+import uk.gov.pay.ledger.common.search.CursorSearchParams;
 import uk.gov.pay.ledger.common.search.SearchParams;
 import uk.gov.pay.ledger.transaction.model.TransactionType;
 import uk.gov.pay.ledger.transaction.state.TransactionState;
@@ -13,6 +14,7 @@ import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -23,7 +25,7 @@ import java.util.stream.Collectors;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 import static uk.gov.service.payments.commons.validation.DateTimeUtils.fromLocalDateOnlyString;
 
-public class TransactionSearchParams extends SearchParams {
+public class TransactionSearchParams extends SearchParams implements CursorSearchParams {
 
     private static final String GATEWAY_ACCOUNT_EXTERNAL_FIELD = "account_id";
     private static final String CARDHOLDER_NAME_FIELD = "cardholder_name";
@@ -48,6 +50,8 @@ public class TransactionSearchParams extends SearchParams {
     private static final Long DEFAULT_LIMIT_TOTAL_SIZE = 10000L;
     private static final String METADATA_VALUE = "metadata_value";
     private static final String AGREEMENT_ID_FIELD = "agreement_id";
+    private static final String CURSOR_FIELD = "cursor";
+    private static final String ESTIMATE_TOTAL_FIELD = "estimate_total";
 
     private long maxDisplaySize = DEFAULT_MAX_DISPLAY_SIZE;
 
@@ -72,12 +76,14 @@ public class TransactionSearchParams extends SearchParams {
     private String metadataValue;
     private String agreementId;
     private Long pageNumber = 1L;
+    private String cursor;
 
     private Long displaySize = DEFAULT_MAX_DISPLAY_SIZE;
     private boolean limitTotal;
     private Long limitTotalSize = DEFAULT_LIMIT_TOTAL_SIZE;
+    private boolean estimateTotal;
 
-    private Map<String, Object> queryMap;
+    private volatile Map<String, Object> queryMap;
     private String gatewayTransactionId;
     private CommaDelimitedSetParameter disputeStates;
 
@@ -202,6 +208,13 @@ public class TransactionSearchParams extends SearchParams {
         this.pageNumber = Objects.requireNonNullElse(pageNumber, DEFAULT_PAGE_NUMBER);
     }
 
+    @QueryParam("cursor")
+    @Parameter(description = "Opaque cursor returned as next_cursor or prev_cursor by a previous search. Fetches the page " +
+            "of results after or before the one the cursor was returned with, and is used instead of page")
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
     @Parameter(example = "100", schema = @Schema(defaultValue = "500"))
     @DefaultValue("500")
     @QueryParam("display_size")
@@ -223,6 +236,15 @@ public class TransactionSearchParams extends SearchParams {
         this.limitTotal = limitTotal;
     }
 
+    @Parameter(example = "true", description = "Set to 'true' to allow the total number of transactions to be estimated " +
+            "from the query planner's statistics when the estimate is very large. The response's 'total_is_estimate' " +
+            "field says whether it was. Ignored when 'limit_total' is set")
+    @DefaultValue("false")
+    @QueryParam("estimate_total")
+    public void setEstimateTotal(boolean estimateTotal) {
+        this.estimateTotal = estimateTotal;
+    }
+
     @Parameter(description = "Comma delimited dispute states.", example = "won,needs_response", schema = @Schema(type = "string", implementation = String.class))
     @QueryParam("dispute_states")
     public void setDisputeStates(CommaDelimitedSetParameter disputeStates) {
@@ -304,7 +326,12 @@ public class TransactionSearchParams extends SearchParams {
         }
     }
 
+    /**
+     * Returns the values bound to the search query. The map is built once, unmodifiable and safely published, as the
+     * page and total count queries of a search read it from different threads.
+     */
     public Map<String, Object> getQueryMap() {
+        Map<String, Object> queryMap = this.queryMap;
         if (queryMap == null) {
             queryMap = new HashMap<>();
 
@@ -376,6 +403,7 @@ public class TransactionSearchParams extends SearchParams {
             if (isNotBlank(agreementId)) {
                 queryMap.put(AGREEMENT_ID_FIELD, agreementId);
             }
+            this.queryMap = queryMap = Collections.unmodifiableMap(queryMap);
         }
         return queryMap;
     }
@@ -395,6 +423,10 @@ public class TransactionSearchParams extends SearchParams {
         return pageNumber;
     }
 
+    public Optional<TransactionSearchCursor> getCursor() {
+        return isNotBlank(cursor) ? Optional.of(TransactionSearchCursor.decode(cursor)) : Optional.empty();
+    }
+
     @Override
     public Long getDisplaySize() {
         if (this.displaySize > this.maxDisplaySize) {
@@ -409,6 +441,10 @@ public class TransactionSearchParams extends SearchParams {
         return limitTotal;
     }
 
+    public boolean estimateTotal() {
+        return estimateTotal && !limitTotal;
+    }
+
     public Long getLimitTotalSize() {
         if (limitTotalSize < displaySize) {
             return DEFAULT_LIMIT_TOTAL_SIZE;
@@ -446,6 +482,23 @@ public class TransactionSearchParams extends SearchParams {
 
     @Override
     public String buildQueryParamString(Long forPage) {
+        List<String> queries = buildFilterQueryParams();
+        queries.add("page=" + forPage);
+        queries.add("display_size=" + getDisplaySize());
+
+        return String.join("&", queries);
+    }
+
+    @Override
+    public String buildQueryParamStringForCursor(String forCursor) {
+        List<String> queries = buildFilterQueryParams();
+        queries.add(CURSOR_FIELD + "=" + URLEncoder.encode(forCursor, StandardCharsets.UTF_8));
+        queries.add("display_size=" + getDisplaySize());
+
+        return String.join("&", queries);
+    }
+
+    private List<String> buildFilterQueryParams() {
         List<String> queries = new ArrayList<>();
 
         if (accountIds != null && !accountIds.isEmpty()) {
@@ -505,10 +558,10 @@ public class TransactionSearchParams extends SearchParams {
         if (isNotBlank(agreementId)) {
             queries.add(AGREEMENT_ID_FIELD + "=" + URLEncoder.encode(agreementId, StandardCharsets.UTF_8));
         }
-        queries.add("page=" + forPage);
-        queries.add("display_size=" + getDisplaySize());
-        
-        return String.join("&", queries);
+        if (estimateTotal) {
+            queries.add(ESTIMATE_TOTAL_FIELD + "=true");
+        }
+        return queries;
     }
 
     public Long getOffset() {
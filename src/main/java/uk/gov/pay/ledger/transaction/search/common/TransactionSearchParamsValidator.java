@@ -18,6 +18,7 @@ public class TransactionSearchParamsValidator {
 
     public static void validateSearchParams(TransactionSearchParams searchParams, CommaDelimitedSetParameter gatewayAccountIds) {
         validateDates(searchParams);
+        validateCursor(searchParams);
     }
 
     public static void validateSearchParamsForCsv(TransactionSearchParams searchParams, CommaDelimitedSetParameter gatewayAccountIds) {
@@ -47,6 +48,12 @@ public class TransactionSearchParamsValidator {
         }
     }
 
+    private static void validateCursor(TransactionSearchParams searchParams) {
+        if (searchParams.getCursor().isPresent() && searchParams.getPageNumber() > 1) {
+            throw new ValidationException("page and cursor cannot be used together");
+        }
+    }
+
     private static void validateDate(String fieldName, String dateToParse) {
         try {
             ZonedDateTime.parse(dateToParse);
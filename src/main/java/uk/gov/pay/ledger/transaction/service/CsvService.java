@@ -9,9 +9,13 @@ import com.fasterxml.jackson.dataformat.csv.CsvSchema;
 import com.google.inject.Inject;
 import uk.gov.pay.ledger.gatewayaccountmetadata.service.GatewayAccountMetadataService;
 import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
+import uk.gov.pay.ledger.transaction.model.CsvRowEncoder;
 import uk.gov.pay.ledger.transaction.model.CsvTransactionFactory;
 import uk.gov.pay.ledger.transaction.search.common.TransactionSearchParams;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -61,6 +65,22 @@ public class CsvService {
         return csvString(csvTransactions, writer);
     }
 
+    public CsvRowEncoder rowEncoderFrom(Map<String, Object> headers) {
+        return csvTransactionFactory.rowEncoderFor(headers.keySet());
+    }
+
+    public JsonGenerator rowWriterFrom(ObjectWriter writer, OutputStream outputStream) throws IOException {
+        return writer.createGenerator(outputStream);
+    }
+
+    public void writeCsvRow(JsonGenerator rowWriter, CsvRowEncoder rowEncoder, TransactionEntity transaction) {
+        try {
+            rowEncoder.encode(transaction, rowWriter);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     private String csvString(List<Map<String, Object>> page, ObjectWriter writer) throws JsonProcessingException {
         return writer.writeValueAsString(page);
     }
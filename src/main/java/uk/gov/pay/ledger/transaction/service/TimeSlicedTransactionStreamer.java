@@ -0,0 +1,241 @@
+package uk.gov.pay.ledger.transaction.service;
+
+import com.google.inject.Inject;
+import io.dropwizard.core.setup.Environment;
+import uk.gov.pay.ledger.app.LedgerConfig;
+import uk.gov.pay.ledger.app.config.ReportingConfig;
+import uk.gov.pay.ledger.transaction.dao.TransactionDao;
+import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
+import uk.gov.pay.ledger.transaction.search.common.TransactionSearchParams;
+
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * Streams the transactions of a CSV export, most recent first, optionally reading a long date range as several
+ * shorter time slices at once rather than on a single connection.
+ * <p>
+ * Slices are read newest first, each into a bounded buffer, and written out one after another, so the export is in
+ * the same order as when it is read in one go. A request reads a limited number of slices at once, and all slices run
+ * on one fixed pool, so exports cannot take more database connections than the pool has threads. The pool's queue is
+ * first in first out and each request starts a slice only after the ones before it, so the slice a request is writing
+ * has always started before any of its later slices that may be waiting on full buffers.
+ * This class is bound as a singleton, as the pool is shared by every export.
+ */
+public class TimeSlicedTransactionStreamer {
+
+    private static final String CSV_EXPORT_SLICE_THREAD_NAME = "csv-export-slice-%d";
+    private static final Object END_OF_SLICE = new Object();
+    private static final long ABANDONED_CHECK_INTERVAL_IN_MILLIS = 100;
+
+    private final ExecutorService executorService;
+    private final TransactionDao transactionDao;
+    private final Duration sliceDuration;
+    private final int slicesPerRequest;
+    private final int readAheadSize;
+
+    @Inject
+    public TimeSlicedTransactionStreamer(Environment environment, LedgerConfig configuration, TransactionDao transactionDao) {
+        this(buildExecutorService(environment, configuration.getReportingConfig()), configuration.getReportingConfig(),
+                transactionDao);
+    }
+
+    TimeSlicedTransactionStreamer(ExecutorService executorService, ReportingConfig reportingConfig,
+                                  TransactionDao transactionDao) {
+        this.executorService = executorService;
+        this.transactionDao = transactionDao;
+        this.sliceDuration = Duration.ofDays(reportingConfig.getCsvExportSliceDurationInDays());
+        this.slicesPerRequest = reportingConfig.getCsvExportSlicesPerRequest();
+        this.readAheadSize = reportingConfig.getCsvExportSliceReadAheadSize();
+    }
+
+    public long streamTransactions(TransactionSearchParams searchParams, int fetchSize, Consumer<TransactionEntity> consumer) {
+        List<Slice> slices = slicesOf(searchParams);
+        if (slices.size() < 2 || slicesPerRequest < 2) {
+            return transactionDao.streamTransactions(searchParams, fetchSize, consumer);
+        }
+
+        // Builds the query map on the request thread, so the slices read it rather than racing to build it
+        searchParams.getQueryMap();
+        AtomicBoolean abandoned = new AtomicBoolean();
+        Iterator<Slice> unread = slices.iterator();
+        Deque<SliceReader> reading = new ArrayDeque<>();
+        try {
+            while (reading.size() < slicesPerRequest && unread.hasNext()) {
+                reading.add(startReading(searchParams, unread.next(), fetchSize, abandoned));
+            }
+            long count = 0;
+            while (!reading.isEmpty()) {
+                count += reading.poll().writeTo(consumer);
+                if (unread.hasNext()) {
+                    reading.add(startReading(searchParams, unread.next(), fetchSize, abandoned));
+                }
+            }
+            return count;
+        } finally {
+            // Stops slices still reading once the export has finished, failed or been abandoned by the client
+            abandoned.set(true);
+        }
+    }
+
+    List<Slice> slicesOf(TransactionSearchParams searchParams) {
+        if (sliceDuration.isZero() || isBlank(searchParams.getFromDate()) || isBlank(searchParams.getToDate())) {
+            return List.of();
+        }
+        ZonedDateTime fromDate = ZonedDateTime.parse(searchParams.getFromDate());
+        List<Slice> slices = new ArrayList<>();
+        for (ZonedDateTime end = ZonedDateTime.parse(searchParams.getToDate()); end.isAfter(fromDate); ) {
+            ZonedDateTime start = end.minus(sliceDuration);
+            start = start.isBefore(fromDate) ? fromDate : start;
+            slices.add(new Slice(start, end));
+            end = start;
+        }
+        return slices;
+    }
+
+    private SliceReader startReading(TransactionSearchParams searchParams, Slice slice, int fetchSize,
+                                     AtomicBoolean abandoned) {
+        SliceReader reader = new SliceReader(searchParams, slice, fetchSize, abandoned);
+        executorService.execute(reader);
+        return reader;
+    }
+
+    private static ExecutorService buildExecutorService(Environment environment, ReportingConfig reportingConfig) {
+        return environment.lifecycle()
+                .executorService(CSV_EXPORT_SLICE_THREAD_NAME)
+                .minThreads(reportingConfig.getCsvExportSliceThreads())
+                .maxThreads(reportingConfig.getCsvExportSliceThreads())
+                .workQueue(new LinkedBlockingQueue<>())
+                .build();
+    }
+
+    /**
+     * The transactions created from the start, inclusive, to the end, exclusive.
+     */
+    static class Slice {
+        private final ZonedDateTime start;
+        private final ZonedDateTime end;
+
+        Slice(ZonedDateTime start, ZonedDateTime end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        ZonedDateTime getStart() {
+            return start;
+        }
+
+        ZonedDateTime getEnd() {
+            return end;
+        }
+    }
+
+    private class SliceReader implements Runnable {
+        private final TransactionSearchParams searchParams;
+        private final Slice slice;
+        private final int fetchSize;
+        private final AtomicBoolean abandoned;
+        private final BlockingQueue<Object> rows;
+
+        private SliceReader(TransactionSearchParams searchParams, Slice slice, int fetchSize, AtomicBoolean abandoned) {
+            this.searchParams = searchParams;
+            this.slice = slice;
+            this.fetchSize = fetchSize;
+            this.abandoned = abandoned;
+            this.rows = new ArrayBlockingQueue<>(readAheadSize);
+        }
+
+        @Override
+        public void run() {
+            if (abandoned.get()) {
+                return;
+            }
+            try {
+                transactionDao.streamTransactions(searchParams, slice.getStart(), slice.getEnd(), fetchSize, this::put);
+                put(END_OF_SLICE);
+            } catch (SliceAbandonedException e) {
+                // Nothing is waiting for the rest of the slice
+            } catch (RuntimeException | Error e) {
+                try {
+                    put(new SliceFailure(e));
+                } catch (SliceAbandonedException abandonedException) {
+                    // Nothing is waiting for the failure
+                }
+            }
+        }
+
+        long writeTo(Consumer<TransactionEntity> consumer) {
+            long count = 0;
+            while (true) {
+                Object row = take();
+                if (row == END_OF_SLICE) {
+                    return count;
+                }
+                if (row instanceof SliceFailure failure) {
+                    throw failure.rethrow();
+                }
+                consumer.accept((TransactionEntity) row);
+                count++;
+            }
+        }
+
+        private void put(Object row) {
+            try {
+                while (!rows.offer(row, ABANDONED_CHECK_INTERVAL_IN_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (abandoned.get()) {
+                        throw new SliceAbandonedException();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SliceAbandonedException();
+            }
+        }
+
+        private Object take() {
+            try {
+                return rows.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new UncheckedIOException(new InterruptedIOException("CSV export interrupted"));
+            }
+        }
+    }
+
+    private static class SliceFailure {
+        private final Throwable cause;
+
+        private SliceFailure(Throwable cause) {
+            this.cause = cause;
+        }
+
+        private RuntimeException rethrow() {
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            return (RuntimeException) cause;
+        }
+    }
+
+    private static class SliceAbandonedException extends RuntimeException {
+        SliceAbandonedException() {
+            super("CSV export slice abandoned", null, false, false);
+        }
+    }
+}
@@ -1,88 +1,108 @@
 package uk.gov.pay.ledger.transaction.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.inject.Inject;
-import org.jdbi.v3.core.statement.UnableToExecuteStatementException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.gov.pay.ledger.event.entity.EventEntity;
 import uk.gov.pay.ledger.event.model.EventDigest;
 import uk.gov.pay.ledger.gatewayaccountmetadata.service.GatewayAccountMetadataService;
 import uk.gov.pay.ledger.metadatakey.dao.MetadataKeyDao;
-import uk.gov.pay.ledger.transaction.dao.TransactionDao;
+import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
 import uk.gov.pay.ledger.transactionmetadata.dao.TransactionMetadataDao;
 
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
-import static net.logstash.logback.argument.StructuredArguments.kv;
-
+/**
+ * Projects the external metadata of payments. All the metadata of an event is written with one statement per table,
+ * and metadata keys (and the gateway accounts they have been used by) are remembered once written, so the writes to
+ * metadata_key and gateway_account_metadata are skipped for the keys a service sends with every payment. Neither
+ * table is ever deleted from, so a remembered key never goes stale. This class is bound as a singleton so the caches
+ * are shared by all the event processing threads.
+ */
 public class TransactionMetadataService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(TransactionMetadataService.class);
-    private final TransactionDao transactionDao;
+    private static final long KNOWN_METADATA_KEYS_CACHE_SIZE = 10_000;
+    private static final long KNOWN_GATEWAY_ACCOUNT_METADATA_KEYS_CACHE_SIZE = 100_000;
+
     private final MetadataKeyDao metadataKeyDao;
     private final TransactionMetadataDao transactionMetadataDao;
     private final GatewayAccountMetadataService gatewayAccountMetadataService;
-
+    private final Cache<String, Boolean> knownMetadataKeys = CacheBuilder.newBuilder()
+            .maximumSize(KNOWN_METADATA_KEYS_CACHE_SIZE)
+            .build();
+    private final Cache<Map.Entry<String, String>, Boolean> knownGatewayAccountMetadataKeys = CacheBuilder.newBuilder()
+            .maximumSize(KNOWN_GATEWAY_ACCOUNT_METADATA_KEYS_CACHE_SIZE)
+            .build();
 
     @Inject
     public TransactionMetadataService(MetadataKeyDao metadataKeyDao,
                                       TransactionMetadataDao transactionMetadataDao,
-                                      TransactionDao transactionDao,
                                       GatewayAccountMetadataService gatewayAccountMetadataService) {
         this.metadataKeyDao = metadataKeyDao;
         this.transactionMetadataDao = transactionMetadataDao;
-        this.transactionDao = transactionDao;
         this.gatewayAccountMetadataService = gatewayAccountMetadataService;
-
     }
 
-    public void upsertMetadataFor(EventEntity event) {
+    /**
+     * Upserts the external metadata of the event for the transaction that was projected from it.
+     */
+    public void upsertMetadataFor(TransactionEntity transaction, EventEntity event) {
         JsonNode eventDataNode;
         try {
-            eventDataNode = new ObjectMapper().readTree(event.getEventData());
-        } catch (JsonProcessingException e) {
+            eventDataNode = event.getEventDataNode();
+        } catch (UncheckedIOException e) {
             LOGGER.error("Unable to parse incoming event payload: {}", e.getMessage());
             return;
         }
         if (eventDataNode != null && eventDataNode.has("external_metadata")) {
-            transactionDao.findTransactionByExternalId(event.getResourceExternalId())
-                    .ifPresent(transactionEntity -> {
-                        eventDataNode.get("external_metadata").fields().forEachRemaining(metadata -> {
-                            try {
-                                metadataKeyDao.insertIfNotExist(metadata.getKey());
-                            } catch (UnableToExecuteStatementException ex) {
-                                LOGGER.info("Metadata key already exists",
-                                        kv("key", metadata.getKey()),
-                                        kv("exception", ex.getMessage()));
-                            }
-                            String value = metadata.getValue().asText();
-                            transactionMetadataDao
-                                    .upsert(transactionEntity.getId(), metadata.getKey(), value);
-                            gatewayAccountMetadataService.upsertMetadataKeyForGatewayAccount(transactionEntity.getGatewayAccountId(), metadata.getKey());
-                        });
-                    });
+            Map<String, String> metadata = new LinkedHashMap<>();
+            eventDataNode.get("external_metadata").fields()
+                    .forEachRemaining(field -> metadata.put(field.getKey(), field.getValue().asText()));
+            upsertMetadata(transaction, metadata);
         }
     }
 
-    public void reprojectFromEventDigest(EventDigest eventDigest) {
-        var eventData = eventDigest.getEventAggregate();
-
-        transactionDao.findTransactionByExternalId(eventDigest.getResourceExternalId())
-                .ifPresent(transactionEntity -> {
-                    Optional.ofNullable(eventData.get("external_metadata"))
-                            .ifPresent(metadataObj -> {
-                                @SuppressWarnings("unchecked")
-                                var metadata = (Map<String, Object>) metadataObj;
-                                metadata.forEach((key, value) -> {
-                                    metadataKeyDao.insertIfNotExist(key);
-                                    transactionMetadataDao.upsert(transactionEntity.getId(), key, value.toString());
-                                    gatewayAccountMetadataService.upsertMetadataKeyForGatewayAccount(transactionEntity.getGatewayAccountId(), key);
-                                });
-                            });
+    public void reprojectFromEventDigest(TransactionEntity transaction, EventDigest eventDigest) {
+        Optional.ofNullable(eventDigest.getEventAggregate().get("external_metadata"))
+                .ifPresent(metadataObj -> {
+                    @SuppressWarnings("unchecked")
+                    var externalMetadata = (Map<String, Object>) metadataObj;
+                    Map<String, String> metadata = new LinkedHashMap<>();
+                    externalMetadata.forEach((key, value) -> metadata.put(key, value.toString()));
+                    upsertMetadata(transaction, metadata);
                 });
     }
+
+    private void upsertMetadata(TransactionEntity transaction, Map<String, String> metadata) {
+        if (metadata.isEmpty()) {
+            return;
+        }
+
+        List<String> newKeys = metadata.keySet().stream()
+                .filter(key -> knownMetadataKeys.getIfPresent(key) == null)
+                .toList();
+        if (!newKeys.isEmpty()) {
+            metadataKeyDao.insertAllIfNotExist(newKeys);
+            newKeys.forEach(key -> knownMetadataKeys.put(key, Boolean.TRUE));
+        }
+
+        transactionMetadataDao.upsert(transaction.getExternalId(), metadata);
+
+        String gatewayAccountId = transaction.getGatewayAccountId();
+        List<String> newGatewayAccountKeys = metadata.keySet().stream()
+                .filter(key -> knownGatewayAccountMetadataKeys.getIfPresent(Map.entry(gatewayAccountId, key)) == null)
+                .toList();
+        if (!newGatewayAccountKeys.isEmpty()) {
+            gatewayAccountMetadataService.upsertMetadataKeysForGatewayAccount(gatewayAccountId, newGatewayAccountKeys);
+            newGatewayAccountKeys.forEach(key -> knownGatewayAccountMetadataKeys.put(Map.entry(gatewayAccountId, key), Boolean.TRUE));
+        }
+    }
 }
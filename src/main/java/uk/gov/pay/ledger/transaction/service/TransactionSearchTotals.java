@@ -0,0 +1,173 @@
+package uk.gov.pay.ledger.transaction.service;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Inject;
+import io.dropwizard.core.setup.Environment;
+import uk.gov.pay.ledger.app.LedgerConfig;
+import uk.gov.pay.ledger.app.config.ReportingConfig;
+import uk.gov.pay.ledger.transaction.dao.TransactionDao;
+import uk.gov.pay.ledger.transaction.search.common.TransactionSearchParams;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Works out the total number of transactions matching a search, which is otherwise counted afresh for every page of
+ * the same search.
+ * <p>
+ * Totals are cached for a short time, keyed by the filters of the search and the values bound to them. Each gateway
+ * account has a generation that is bumped whenever one of its transactions is written by ingestion or redacted, or
+ * one of its payouts, which settled date searches join on, is written. A cached total is only used while the
+ * generations of the accounts it was counted for are unchanged, so a node never serves a total older than the last
+ * change it made. Other nodes see the change within the expiry, as do searches affected by changes made directly in
+ * the database, such as transactions removed by hand.
+ * <p>
+ * When a search asks for an estimate, the query planner's estimate of the number of matching transactions is used
+ * instead of counting them if it is above the configured threshold. Smaller totals are still counted exactly.
+ * This class is bound as a singleton, as the cache is shared and the gauges can only be registered once.
+ */
+public class TransactionSearchTotals {
+
+    private static final AtomicLong NO_CHANGES = new AtomicLong();
+
+    private final TransactionDao transactionDao;
+    private final long estimateThreshold;
+    private final Cache<List<Object>, CachedTotal> totals;
+    private final Map<String, AtomicLong> gatewayAccountGenerations = new ConcurrentHashMap<>();
+    private final AtomicLong allGatewayAccountsGeneration = new AtomicLong();
+
+    @Inject
+    public TransactionSearchTotals(Environment environment, LedgerConfig configuration, TransactionDao transactionDao) {
+        this(environment.metrics(), configuration.getReportingConfig(), Ticker.systemTicker(), transactionDao);
+    }
+
+    TransactionSearchTotals(MetricRegistry metricRegistry, ReportingConfig reportingConfig, Ticker ticker,
+                            TransactionDao transactionDao) {
+        this.transactionDao = transactionDao;
+        this.estimateThreshold = reportingConfig.getSearchTotalEstimateThreshold();
+        this.totals = CacheBuilder.newBuilder()
+                .expireAfterWrite(Duration.ofSeconds(reportingConfig.getSearchTotalCacheExpiryInSeconds()))
+                .maximumSize(reportingConfig.getSearchTotalCacheMaximumSize())
+                .ticker(ticker)
+                .recordStats()
+                .build();
+
+        metricRegistry.register("transaction-search-total-cache.hits", (Gauge<Long>) () -> totals.stats().hitCount());
+        metricRegistry.register("transaction-search-total-cache.misses", (Gauge<Long>) () -> totals.stats().missCount());
+        metricRegistry.register("transaction-search-total-cache.size", (Gauge<Long>) totals::size);
+    }
+
+    public Total getTotal(TransactionSearchParams searchParams) {
+        return totalQueryFor(searchParams).get();
+    }
+
+    /**
+     * Returns a query for the total of the search that can be run on another thread. The cache key and generation are
+     * taken from the search params when this is called, so the query does not read the params itself other than to
+     * count the transactions.
+     */
+    public Supplier<Total> totalQueryFor(TransactionSearchParams searchParams) {
+        List<Object> key = keyFor(searchParams);
+        long generation = generationOf(searchParams.getAccountIds());
+
+        return () -> {
+            CachedTotal cachedTotal = totals.getIfPresent(key);
+            if (cachedTotal != null && cachedTotal.generation == generation) {
+                return cachedTotal.total;
+            }
+
+            Total total = countTotal(searchParams);
+            totals.put(key, new CachedTotal(total, generation));
+            return total;
+        };
+    }
+
+    /**
+     * Stops cached totals of searches that may include transactions of the gateway account from being used. Called
+     * after ingestion has written a transaction of the gateway account, a transaction of the gateway account has had
+     * its personal data redacted or a payout of the gateway account has been written.
+     */
+    public void invalidate(String gatewayAccountId) {
+        gatewayAccountGenerations.computeIfAbsent(gatewayAccountId, id -> new AtomicLong()).incrementAndGet();
+        allGatewayAccountsGeneration.incrementAndGet();
+    }
+
+    private Total countTotal(TransactionSearchParams searchParams) {
+        if (searchParams.limitTotal()) {
+            return Total.exact(transactionDao.getTotalWithLimitForSearch(searchParams));
+        }
+        if (searchParams.estimateTotal()) {
+            Long estimate = transactionDao.getEstimatedTotalForSearch(searchParams).orElse(null);
+            if (estimate != null && estimate > estimateThreshold) {
+                return Total.estimated(estimate);
+            }
+        }
+        return Total.exact(transactionDao.getTotalForSearch(searchParams));
+    }
+
+    private long generationOf(Collection<String> gatewayAccountIds) {
+        if (gatewayAccountIds == null || gatewayAccountIds.isEmpty()) {
+            return allGatewayAccountsGeneration.get();
+        }
+        // Generations only increase, so the sum changes whenever any of them does
+        return gatewayAccountIds.stream()
+                .mapToLong(id -> gatewayAccountGenerations.getOrDefault(id, NO_CHANGES).get())
+                .sum();
+    }
+
+    private static List<Object> keyFor(TransactionSearchParams searchParams) {
+        Map<String, Object> boundValues = new TreeMap<>();
+        searchParams.getQueryMap().forEach((name, value) -> boundValues.put(name, value instanceof Collection<?> values
+                ? values.stream().map(String::valueOf).sorted().toList()
+                : String.valueOf(value)));
+        String mode = searchParams.limitTotal() ? "limit:" + searchParams.getLimitTotalSize()
+                : searchParams.estimateTotal() ? "estimate" : "exact";
+        return List.of(mode, searchParams.getFilterTemplates(), boundValues);
+    }
+
+    public static class Total {
+        private final Long value;
+        private final boolean estimated;
+
+        private Total(Long value, boolean estimated) {
+            this.value = value;
+            this.estimated = estimated;
+        }
+
+        public static Total exact(Long value) {
+            return new Total(value, false);
+        }
+
+        public static Total estimated(Long value) {
+            return new Total(value, true);
+        }
+
+        public Long getValue() {
+            return value;
+        }
+
+        public boolean isEstimated() {
+            return estimated;
+        }
+    }
+
+    private static class CachedTotal {
+        private final Total total;
+        private final long generation;
+
+        private CachedTotal(Total total, long generation) {
+            this.total = total;
+            this.generation = generation;
+        }
+    }
+}
@@ -2,11 +2,11 @@ package uk.gov.pay.ledger.transaction.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
+import uk.gov.pay.ledger.common.search.SearchQueryExecutor;
 import uk.gov.pay.ledger.event.dao.EventDao;
 import uk.gov.pay.ledger.event.entity.EventEntity;
-import uk.gov.pay.ledger.event.model.EventDigest;
-import uk.gov.pay.ledger.event.model.TransactionEntityFactory;
 import uk.gov.pay.ledger.transaction.dao.TransactionDao;
+import uk.gov.pay.ledger.transaction.dao.TransactionUpsertOutcome;
 import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
 import uk.gov.pay.ledger.transaction.model.CsvTransactionFactory;
 import uk.gov.pay.ledger.transaction.model.Transaction;
@@ -16,6 +16,7 @@ import uk.gov.pay.ledger.transaction.model.TransactionFactory;
 import uk.gov.pay.ledger.transaction.model.TransactionSearchResponse;
 import uk.gov.pay.ledger.transaction.model.TransactionType;
 import uk.gov.pay.ledger.transaction.model.TransactionsForTransactionResponse;
+import uk.gov.pay.ledger.transaction.search.common.TransactionSearchCursor;
 import uk.gov.pay.ledger.transaction.search.common.TransactionSearchParams;
 import uk.gov.pay.ledger.transaction.search.model.TransactionView;
 import uk.gov.pay.ledger.util.pagination.PaginationBuilder;
@@ -23,12 +24,12 @@ import uk.gov.pay.ledger.util.pagination.PaginationBuilder;
 import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.UriInfo;
-import java.time.ZonedDateTime;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static java.lang.String.format;
@@ -42,21 +43,27 @@ public class TransactionService {
 
     private final TransactionDao transactionDao;
     private final EventDao eventDao;
-    private TransactionEntityFactory transactionEntityFactory;
     private TransactionFactory transactionFactory;
     private CsvTransactionFactory csvTransactionFactory;
     private ObjectMapper objectMapper;
+    private final SearchQueryExecutor searchQueryExecutor;
+    private final TransactionSearchTotals transactionSearchTotals;
+    private final TimeSlicedTransactionStreamer timeSlicedTransactionStreamer;
 
     @Inject
-    public TransactionService(TransactionDao transactionDao, EventDao eventDao, TransactionEntityFactory transactionEntityFactory,
-                              TransactionFactory transactionFactory, CsvTransactionFactory csvTransactionFactory,
-                              ObjectMapper objectMapper) {
+    public TransactionService(TransactionDao transactionDao, EventDao eventDao, TransactionFactory transactionFactory,
+                              CsvTransactionFactory csvTransactionFactory, ObjectMapper objectMapper,
+                              SearchQueryExecutor searchQueryExecutor,
+                              TransactionSearchTotals transactionSearchTotals,
+                              TimeSlicedTransactionStreamer timeSlicedTransactionStreamer) {
         this.transactionDao = transactionDao;
         this.eventDao = eventDao;
-        this.transactionEntityFactory = transactionEntityFactory;
         this.transactionFactory = transactionFactory;
         this.csvTransactionFactory = csvTransactionFactory;
         this.objectMapper = objectMapper;
+        this.searchQueryExecutor = searchQueryExecutor;
+        this.transactionSearchTotals = transactionSearchTotals;
+        this.timeSlicedTransactionStreamer = timeSlicedTransactionStreamer;
     }
 
     public Optional<TransactionView> getTransactionForGatewayAccount(String gatewayAccountId, String transactionExternalId,
@@ -93,20 +100,24 @@ public class TransactionService {
             searchParams.setAccountIds(gatewayAccountIds);
         }
 
-        List<Transaction> transactionList = transactionDao.searchTransactions(searchParams)
+        Optional<TransactionSearchCursor> cursor = searchParams.getCursor();
+        SearchQueryExecutor.SearchResult<TransactionEntity, TransactionSearchTotals.Total> searchResult = searchQueryExecutor.execute(
+                () -> cursor
+                        .map(searchCursor -> transactionDao.searchTransactions(searchParams, searchCursor))
+                        .orElseGet(() -> transactionDao.searchTransactions(searchParams)),
+                transactionSearchTotals.totalQueryFor(searchParams));
+        List<TransactionEntity> transactionEntities = searchResult.getPage();
+        List<Transaction> transactionList = transactionEntities
                 .stream()
                 .map(transactionFactory::createTransactionEntity)
                 .collect(Collectors.toList());
 
-        Long total;
-
-        if (searchParams.limitTotal()) {
-            total = transactionDao.getTotalWithLimitForSearch(searchParams);
-        } else {
-            total = transactionDao.getTotalForSearch(searchParams);
+        Long total = searchResult.getTotal().getValue();
+        boolean totalIsEstimate = searchResult.getTotal().isEstimated();
 
+        if (!searchParams.limitTotal() && !totalIsEstimate) {
             long size = searchParams.getDisplaySize();
-            if (total > 0 && searchParams.getDisplaySize() > 0) {
+            if (cursor.isEmpty() && total > 0 && searchParams.getDisplaySize() > 0) {
                 long lastPage = (total + size - 1) / size;
                 if (searchParams.getPageNumber() > lastPage || searchParams.getPageNumber() < 1) {
                     throw new WebApplicationException("the requested page not found",
@@ -115,19 +126,50 @@ public class TransactionService {
             }
         }
 
-        return buildTransactionSearchResponse(searchParams, uriInfo, transactionList, total);
+        return buildTransactionSearchResponse(searchParams, uriInfo, transactionList, total, totalIsEstimate,
+                prevCursor(searchParams, cursor.orElse(null), transactionEntities),
+                nextCursor(searchParams, cursor.orElse(null), transactionEntities));
+    }
+
+    private static String prevCursor(TransactionSearchParams searchParams, TransactionSearchCursor cursor,
+                                     List<TransactionEntity> transactionEntities) {
+        if (transactionEntities.isEmpty()) {
+            return null;
+        }
+        boolean hasPreviousResults = cursor == null
+                ? searchParams.getPageNumber() > 1
+                : cursor.getDirection() == TransactionSearchCursor.Direction.AFTER || isFullPage(searchParams, transactionEntities);
+        return hasPreviousResults ? TransactionSearchCursor.before(transactionEntities.get(0)).encode() : null;
+    }
+
+    private static String nextCursor(TransactionSearchParams searchParams, TransactionSearchCursor cursor,
+                                     List<TransactionEntity> transactionEntities) {
+        if (transactionEntities.isEmpty()) {
+            return null;
+        }
+        boolean hasNextResults = isFullPage(searchParams, transactionEntities)
+                || (cursor != null && cursor.getDirection() == TransactionSearchCursor.Direction.BEFORE);
+        return hasNextResults ? TransactionSearchCursor.after(transactionEntities.get(transactionEntities.size() - 1)).encode() : null;
+    }
+
+    private static boolean isFullPage(TransactionSearchParams searchParams, List<TransactionEntity> transactionEntities) {
+        return transactionEntities.size() >= searchParams.getDisplaySize();
     }
 
-    public List<TransactionEntity> searchTransactionAfter(TransactionSearchParams searchParams, ZonedDateTime startingAfterCreatedDate, Long startingAfterId) {
-        return transactionDao.cursorTransactionSearch(searchParams, startingAfterCreatedDate, startingAfterId);
+    public long streamTransactions(TransactionSearchParams searchParams, int fetchSize, Consumer<TransactionEntity> consumer) {
+        return timeSlicedTransactionStreamer.streamTransactions(searchParams, fetchSize, consumer);
     }
 
-    private TransactionSearchResponse buildTransactionSearchResponse(TransactionSearchParams searchParams, UriInfo uriInfo, List<Transaction> transactionList, Long totalCount) {
+    private TransactionSearchResponse buildTransactionSearchResponse(TransactionSearchParams searchParams, UriInfo uriInfo,
+                                                                     List<Transaction> transactionList, Long totalCount,
+                                                                     boolean totalIsEstimate, String prevCursor, String nextCursor) {
         Long total = Optional.ofNullable(totalCount).orElse(0L);
         PaginationBuilder paginationBuilder = new PaginationBuilder(searchParams, uriInfo);
         paginationBuilder = paginationBuilder
                 .withTotalCount(total)
                 .withCount((long) transactionList.size())
+                .withCursors(searchParams, searchParams.getCursor().map(TransactionSearchCursor::encode).orElse(null),
+                        prevCursor, nextCursor)
                 .buildResponse();
 
         List<TransactionView> transactionViewList = mapToTransactionViewList(transactionList, searchParams.getStatusVersion());
@@ -137,7 +179,9 @@ public class TransactionService {
                 (long) transactionList.size(),
                 searchParams.getPageNumber(),
                 transactionViewList
-        ).withPaginationBuilder(paginationBuilder);
+        ).withTotalIsEstimate(totalIsEstimate)
+                .withCursors(prevCursor, nextCursor)
+                .withPaginationBuilder(paginationBuilder);
     }
 
     private List<TransactionView> mapToTransactionViewList(List<Transaction> transactionList, int statusVersion) {
@@ -145,16 +189,19 @@ public class TransactionService {
                 .map(transaction -> TransactionView.from(transaction, statusVersion))
                 .collect(Collectors.toList());
     }
-    // @TODO(sfount) handling writing invalid transaction should be tested at `EventMessageHandler` integration level
 
-    public TransactionEntity upsertTransactionFor(EventDigest eventDigest) {
-        TransactionEntity transaction = transactionEntityFactory.create(eventDigest);
-        transactionDao.upsert(transaction);
-        return transaction;
+    public TransactionUpsertOutcome upsertTransaction(TransactionEntity transaction) {
+        return upsertTransactions(List.of(transaction)).get(0);
     }
 
-    public void upsertTransaction(TransactionEntity transaction) {
-        transactionDao.upsert(transaction);
+    public List<TransactionUpsertOutcome> upsertTransactions(List<TransactionEntity> transactions) {
+        List<TransactionUpsertOutcome> outcomes = transactionDao.upsert(transactions);
+        for (int i = 0; i < outcomes.size(); i++) {
+            if (outcomes.get(i) == TransactionUpsertOutcome.WRITTEN) {
+                transactionSearchTotals.invalidate(transactions.get(i).getGatewayAccountId());
+            }
+        }
+        return outcomes;
     }
 
     public TransactionEventResponse findTransactionEvents(String externalId, String gatewayAccountId,
@@ -3,14 +3,20 @@ package uk.gov.pay.ledger.transactionmetadata.dao;
 import com.google.inject.Inject;
 import org.jdbi.v3.core.Jdbi;
 
+import java.util.List;
+import java.util.Map;
+
 public class TransactionMetadataDao {
 
-    private static final String UPSERT_STRING = "INSERT INTO transaction_metadata(transaction_id, metadata_key_id, value) " +
-            "VALUES(:transactionId, (select id from metadata_key where key = :key ), :value) " +
+    private static final String UPSERT_ALL_FOR_TRANSACTION = "INSERT INTO transaction_metadata(transaction_id, metadata_key_id, value) " +
+            "SELECT t.id, mk.id, m.value " +
+            "FROM transaction t " +
+            "CROSS JOIN unnest(ARRAY[<keys>]::varchar[], ARRAY[<values>]::varchar[]) AS m(key, value) " +
+            "JOIN metadata_key mk ON mk.key = m.key " +
+            "WHERE t.external_id = :transactionExternalId " +
             "ON CONFLICT ON CONSTRAINT transaction_id_and_metadata_key_id_key " +
             "DO UPDATE SET value = EXCLUDED.value " +
-            "WHERE transaction_metadata.transaction_id = EXCLUDED.transaction_id " +
-            "AND transaction_metadata.metadata_key_id = EXCLUDED.metadata_key_id";
+            "WHERE transaction_metadata.value IS DISTINCT FROM EXCLUDED.value";
 
     private final Jdbi jdbi;
 
@@ -19,13 +25,18 @@ public class TransactionMetadataDao {
         this.jdbi = jdbi;
     }
 
-    public void upsert(Long transactionId, String key, String value) {
+    /**
+     * Upserts all the metadata of a transaction in one statement, looking the transaction up by its external id. The
+     * metadata keys must already exist. Values that have not changed are not rewritten.
+     */
+    public void upsert(String transactionExternalId, Map<String, String> metadata) {
+        List<String> keys = List.copyOf(metadata.keySet());
         jdbi.withHandle(handle ->
-                handle.createUpdate(UPSERT_STRING)
-                        .bind("transactionId", transactionId)
-                        .bind("key", key)
-                        .bind("value", value)
+                handle.createUpdate(UPSERT_ALL_FOR_TRANSACTION)
+                        .bind("transactionExternalId", transactionExternalId)
+                        .bindList("keys", keys)
+                        .bindList("values", keys.stream().map(metadata::get).toList())
                         .execute()
         );
     }
-}
\ No newline at end of file
+}
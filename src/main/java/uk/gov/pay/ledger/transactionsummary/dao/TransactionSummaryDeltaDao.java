@@ -0,0 +1,71 @@
+package uk.gov.pay.ledger.transactionsummary.dao;
+
+import org.jdbi.v3.sqlobject.config.RegisterRowMapper;
+import org.jdbi.v3.sqlobject.customizer.Bind;
+import org.jdbi.v3.sqlobject.customizer.BindBeanList;
+import org.jdbi.v3.sqlobject.customizer.BindList;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+import org.jdbi.v3.sqlobject.statement.SqlUpdate;
+import uk.gov.pay.ledger.transactionsummary.dao.mapper.TransactionSummaryDeltaMapper;
+import uk.gov.pay.ledger.transactionsummary.entity.TransactionSummaryDeltaEntity;
+
+import java.util.List;
+
+/**
+ * Journal of changes to the transaction summary. Ingestion appends deltas here rather than updating the summary rows,
+ * which are shared by every payment of a gateway account on a day, and the deltas are folded into the summary in the
+ * background.
+ */
+@RegisterRowMapper(TransactionSummaryDeltaMapper.class)
+public interface TransactionSummaryDeltaDao {
+
+    String DELTA_COLUMNS = "gateway_account_id, type, transaction_date, state, live, moto, no_of_transactions, " +
+            "total_amount_in_pence, total_fee_in_pence";
+
+    @SqlUpdate("INSERT INTO transaction_summary_delta(" + DELTA_COLUMNS + ", upsert) VALUES <deltas>")
+    void insert(@BindBeanList(value = "deltas", propertyNames = {"gatewayAccountId", "type", "transactionDate", "state",
+            "live", "moto", "noOfTransactions", "totalAmountInPence", "totalFeeInPence", "upsert"})
+                List<TransactionSummaryDeltaEntity> deltas);
+
+    /**
+     * Locks the oldest deltas. Deltas locked by another instance are skipped rather than waited for.
+     */
+    @SqlQuery("SELECT * FROM transaction_summary_delta ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED")
+    List<TransactionSummaryDeltaEntity> findOldest(@Bind("limit") int limit);
+
+    /**
+     * Adds the deltas to their summary rows, leaving out any rows that do not exist. The deltas must be for distinct
+     * rows.
+     */
+    @SqlUpdate("UPDATE transaction_summary AS ts SET no_of_transactions = ts.no_of_transactions + d.no_of_transactions, " +
+            "total_amount_in_pence = ts.total_amount_in_pence + d.total_amount_in_pence, " +
+            "total_fee_in_pence = ts.total_fee_in_pence + d.total_fee_in_pence " +
+            "FROM (VALUES <deltas>) AS d(" + DELTA_COLUMNS + ") " +
+            "WHERE ts.gateway_account_id = d.gateway_account_id AND ts.type = d.type " +
+            "AND ts.transaction_date = d.transaction_date AND ts.state = d.state AND ts.live = d.live AND ts.moto = d.moto")
+    int applyToExistingTransactionSummary(@BindBeanList(value = "deltas", propertyNames = {"gatewayAccountId", "type",
+            "transactionDate", "state", "live", "moto", "noOfTransactions", "totalAmountInPence", "totalFeeInPence"})
+                                          List<TransactionSummaryDeltaEntity> deltas);
+
+    /**
+     * Adds the deltas to their summary rows, creating any rows that do not exist yet. The deltas must be for
+     * distinct rows.
+     */
+    @SqlUpdate("INSERT INTO transaction_summary AS ts(" + DELTA_COLUMNS + ") VALUES <deltas> " +
+            "ON CONFLICT ON CONSTRAINT transaction_summmary_unique_key " +
+            "DO UPDATE SET no_of_transactions = ts.no_of_transactions + EXCLUDED.no_of_transactions, " +
+            "total_amount_in_pence = ts.total_amount_in_pence + EXCLUDED.total_amount_in_pence, " +
+            "total_fee_in_pence = ts.total_fee_in_pence + EXCLUDED.total_fee_in_pence")
+    int applyToTransactionSummary(@BindBeanList(value = "deltas", propertyNames = {"gatewayAccountId", "type",
+            "transactionDate", "state", "live", "moto", "noOfTransactions", "totalAmountInPence", "totalFeeInPence"})
+                                  List<TransactionSummaryDeltaEntity> deltas);
+
+    @SqlUpdate("DELETE FROM transaction_summary_delta WHERE id IN (<ids>)")
+    int delete(@BindList("ids") List<Long> ids);
+
+    @SqlQuery("SELECT count(*) FROM transaction_summary_delta")
+    long countEntries();
+
+    @SqlQuery("SELECT COALESCE(EXTRACT(EPOCH FROM now() - min(created_date)), 0)::bigint FROM transaction_summary_delta")
+    long getAgeOfOldestEntryInSeconds();
+}
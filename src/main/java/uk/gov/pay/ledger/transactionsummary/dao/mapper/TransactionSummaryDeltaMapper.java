@@ -0,0 +1,31 @@
+package uk.gov.pay.ledger.transactionsummary.dao.mapper;
+
+import org.jdbi.v3.core.mapper.RowMapper;
+import org.jdbi.v3.core.statement.StatementContext;
+import uk.gov.pay.ledger.transaction.state.TransactionState;
+import uk.gov.pay.ledger.transactionsummary.entity.TransactionSummaryDeltaEntity;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static uk.gov.pay.ledger.util.dao.MapperUtils.getBooleanWithNullCheck;
+
+public class TransactionSummaryDeltaMapper implements RowMapper<TransactionSummaryDeltaEntity> {
+
+    @Override
+    public TransactionSummaryDeltaEntity map(ResultSet resultSet, StatementContext statementContext) throws SQLException {
+        return new TransactionSummaryDeltaEntity(
+                resultSet.getLong("id"),
+                resultSet.getString("gateway_account_id"),
+                resultSet.getString("type"),
+                resultSet.getDate("transaction_date").toLocalDate(),
+                TransactionState.valueOf(resultSet.getString("state")),
+                getBooleanWithNullCheck(resultSet, "live"),
+                resultSet.getBoolean("moto"),
+                resultSet.getLong("no_of_transactions"),
+                resultSet.getLong("total_amount_in_pence"),
+                resultSet.getLong("total_fee_in_pence"),
+                resultSet.getBoolean("upsert")
+        );
+    }
+}
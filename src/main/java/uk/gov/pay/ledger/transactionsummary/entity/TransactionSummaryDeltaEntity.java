@@ -0,0 +1,113 @@
+package uk.gov.pay.ledger.transactionsummary.entity;
+
+import uk.gov.pay.ledger.transaction.state.TransactionState;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+
+/**
+ * A change to one row of the transaction summary: the number of transactions, amount and fee to add to the row for
+ * a gateway account, transaction date, state, type, live and moto. Deductions are negative.
+ * <p>
+ * Only an upsert, which adds a transaction to the row, creates the row when it does not exist yet. Other deltas, such
+ * as deducting a transaction that has moved to another state or adding a fee, only change a row that exists, as the
+ * summary has always done when it is updated directly.
+ */
+public class TransactionSummaryDeltaEntity {
+
+    /**
+     * Orders deltas by the row they change. Deltas for the same row compare as equal.
+     */
+    public static final Comparator<TransactionSummaryDeltaEntity> BY_SUMMARY_ROW =
+            Comparator.comparing(TransactionSummaryDeltaEntity::getGatewayAccountId)
+                    .thenComparing(TransactionSummaryDeltaEntity::getType)
+                    .thenComparing(TransactionSummaryDeltaEntity::getTransactionDate)
+                    .thenComparing(TransactionSummaryDeltaEntity::getState)
+                    .thenComparing(TransactionSummaryDeltaEntity::getLive, Comparator.nullsFirst(Comparator.naturalOrder()))
+                    .thenComparing(TransactionSummaryDeltaEntity::isMoto);
+
+    private Long id;
+    private String gatewayAccountId;
+    private String type;
+    private LocalDate transactionDate;
+    private TransactionState state;
+    private Boolean live;
+    private boolean moto;
+    private long noOfTransactions;
+    private long totalAmountInPence;
+    private long totalFeeInPence;
+    private boolean upsert;
+
+    public TransactionSummaryDeltaEntity(Long id, String gatewayAccountId, String type, LocalDate transactionDate,
+                                         TransactionState state, Boolean live, boolean moto, long noOfTransactions,
+                                         long totalAmountInPence, long totalFeeInPence, boolean upsert) {
+        this.id = id;
+        this.gatewayAccountId = gatewayAccountId;
+        this.type = type;
+        this.transactionDate = transactionDate;
+        this.state = state;
+        this.live = live;
+        this.moto = moto;
+        this.noOfTransactions = noOfTransactions;
+        this.totalAmountInPence = totalAmountInPence;
+        this.totalFeeInPence = totalFeeInPence;
+        this.upsert = upsert;
+    }
+
+    public static TransactionSummaryDeltaEntity forSummaryRow(String gatewayAccountId, String type,
+                                                              LocalDate transactionDate, TransactionState state,
+                                                              Boolean live, boolean moto, boolean upsert) {
+        return new TransactionSummaryDeltaEntity(null, gatewayAccountId, type, transactionDate, state, live, moto,
+                0, 0, 0, upsert);
+    }
+
+    public void add(long noOfTransactions, long totalAmountInPence, long totalFeeInPence) {
+        this.noOfTransactions += noOfTransactions;
+        this.totalAmountInPence += totalAmountInPence;
+        this.totalFeeInPence += totalFeeInPence;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getGatewayAccountId() {
+        return gatewayAccountId;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public LocalDate getTransactionDate() {
+        return transactionDate;
+    }
+
+    public TransactionState getState() {
+        return state;
+    }
+
+    public Boolean getLive() {
+        return live;
+    }
+
+    public boolean isMoto() {
+        return moto;
+    }
+
+    public long getNoOfTransactions() {
+        return noOfTransactions;
+    }
+
+    public long getTotalAmountInPence() {
+        return totalAmountInPence;
+    }
+
+    public long getTotalFeeInPence() {
+        return totalFeeInPence;
+    }
+
+    public boolean isUpsert() {
+        return upsert;
+    }
+}
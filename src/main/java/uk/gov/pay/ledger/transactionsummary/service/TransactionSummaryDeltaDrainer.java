@@ -0,0 +1,133 @@
+package uk.gov.pay.ledger.transactionsummary.service;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.inject.Inject;
+import io.dropwizard.core.setup.Environment;
+import io.dropwizard.lifecycle.Managed;
+import org.jdbi.v3.core.Jdbi;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.ledger.app.LedgerConfig;
+import uk.gov.pay.ledger.app.config.TransactionSummaryConfig;
+import uk.gov.pay.ledger.transactionsummary.dao.TransactionSummaryDeltaDao;
+import uk.gov.pay.ledger.transactionsummary.entity.TransactionSummaryDeltaEntity;
+
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * Folds the transaction summary delta journal into the transaction summary in the background. Deltas for the same
+ * summary row are merged, so a row shared by many payments is updated once per batch rather than once per payment,
+ * and ingestion never waits on the lock of a summary row.
+ * <p>
+ * Each run applies batches of the oldest deltas until the journal is empty, applying and deleting each batch in the
+ * transaction that locked it, so a delta is applied exactly once even if the application stops part way through.
+ * The drainer runs whether or not write-behind is enabled, so that the deltas journalled before it was turned off
+ * are still applied.
+ */
+public class TransactionSummaryDeltaDrainer implements Managed {
+
+    private static final String TRANSACTION_SUMMARY_DELTA_DRAINER_THREAD_NAME = "transaction-summary-delta-drainer-%d";
+    private static final Logger LOGGER = LoggerFactory.getLogger(TransactionSummaryDeltaDrainer.class);
+
+    private final ScheduledExecutorService scheduledExecutorService;
+    private final MetricRegistry metricRegistry;
+    private final TransactionSummaryConfig transactionSummaryConfig;
+    private final Jdbi jdbi;
+    private final TransactionSummaryDeltaDao transactionSummaryDeltaDao;
+    private final AtomicLong backlog = new AtomicLong();
+    private final AtomicLong lagInSeconds = new AtomicLong();
+    private volatile boolean running;
+
+    @Inject
+    public TransactionSummaryDeltaDrainer(Environment environment,
+                                          LedgerConfig configuration,
+                                          Jdbi jdbi,
+                                          TransactionSummaryDeltaDao transactionSummaryDeltaDao) {
+        this(environment.lifecycle().scheduledExecutorService(TRANSACTION_SUMMARY_DELTA_DRAINER_THREAD_NAME).threads(1).build(),
+                environment.metrics(), configuration.getTransactionSummaryConfig(), jdbi, transactionSummaryDeltaDao);
+    }
+
+    TransactionSummaryDeltaDrainer(ScheduledExecutorService scheduledExecutorService,
+                                   MetricRegistry metricRegistry,
+                                   TransactionSummaryConfig transactionSummaryConfig,
+                                   Jdbi jdbi,
+                                   TransactionSummaryDeltaDao transactionSummaryDeltaDao) {
+        this.scheduledExecutorService = scheduledExecutorService;
+        this.metricRegistry = metricRegistry;
+        this.transactionSummaryConfig = transactionSummaryConfig;
+        this.jdbi = jdbi;
+        this.transactionSummaryDeltaDao = transactionSummaryDeltaDao;
+        metricRegistry.register("transaction-summary-delta.backlog", (Gauge<Long>) backlog::get);
+        metricRegistry.register("transaction-summary-delta.lag-seconds", (Gauge<Long>) lagInSeconds::get);
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        scheduledExecutorService.scheduleWithFixedDelay(
+                this::drain,
+                transactionSummaryConfig.getDeltaDrainIntervalInMilliseconds(),
+                transactionSummaryConfig.getDeltaDrainIntervalInMilliseconds(),
+                TimeUnit.MILLISECONDS
+        );
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        scheduledExecutorService.shutdown();
+    }
+
+    private void drain() {
+        try (Timer.Context ignored = metricRegistry.timer("transaction-summary-delta.drain-time").time()) {
+            int drainedDeltas;
+            do {
+                drainedDeltas = jdbi.inTransaction(handle -> applyBatch(handle.attach(TransactionSummaryDeltaDao.class)));
+            } while (running && drainedDeltas == transactionSummaryConfig.getDeltaBatchSize());
+        } catch (Exception e) {
+            LOGGER.error("Transaction summary delta drainer exception", e);
+        }
+
+        try {
+            backlog.set(transactionSummaryDeltaDao.countEntries());
+            lagInSeconds.set(transactionSummaryDeltaDao.getAgeOfOldestEntryInSeconds());
+        } catch (Exception e) {
+            LOGGER.warn("Failed to measure transaction summary delta backlog", kv("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Applies the deltas locked by the given DAO, returning the number of deltas that were applied.
+     */
+    int applyBatch(TransactionSummaryDeltaDao transactionalTransactionSummaryDeltaDao) {
+        List<TransactionSummaryDeltaEntity> journalledDeltas =
+                transactionalTransactionSummaryDeltaDao.findOldest(transactionSummaryConfig.getDeltaBatchSize());
+        if (journalledDeltas.isEmpty()) {
+            return 0;
+        }
+
+        TransactionSummaryDeltas deltas = new TransactionSummaryDeltas();
+        journalledDeltas.forEach(deltas::add);
+        List<TransactionSummaryDeltaEntity> updates = deltas.updates();
+        List<TransactionSummaryDeltaEntity> upserts = deltas.upserts();
+
+        if (!updates.isEmpty()) {
+            transactionalTransactionSummaryDeltaDao.applyToExistingTransactionSummary(updates);
+        }
+        if (!upserts.isEmpty()) {
+            transactionalTransactionSummaryDeltaDao.applyToTransactionSummary(upserts);
+        }
+        transactionalTransactionSummaryDeltaDao.delete(journalledDeltas.stream().map(TransactionSummaryDeltaEntity::getId).toList());
+
+        metricRegistry.meter("transaction-summary-delta.applied-deltas").mark(journalledDeltas.size());
+        metricRegistry.meter("transaction-summary-delta.updated-rows").mark(updates.size() + upserts.size());
+        return journalledDeltas.size();
+    }
+}
@@ -0,0 +1,65 @@
+package uk.gov.pay.ledger.transactionsummary.service;
+
+import uk.gov.pay.ledger.transactionsummary.entity.TransactionSummaryDeltaEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static uk.gov.pay.ledger.transactionsummary.entity.TransactionSummaryDeltaEntity.BY_SUMMARY_ROW;
+
+/**
+ * Accumulates changes to the transaction summary, merging those for the same row into one. The merged deltas are
+ * ordered by row, so that concurrent writers applying them lock the rows in the same order.
+ * <p>
+ * The changes to a row before its first upsert are merged separately from the upsert and the changes after it, and
+ * must be applied first. They only change the row if it already exists, so merging them into the upsert would create
+ * the row with a deduction or fee that applying the changes one by one would have skipped.
+ */
+class TransactionSummaryDeltas {
+
+    private final Map<TransactionSummaryDeltaEntity, TransactionSummaryDeltaEntity> updatesBySummaryRow =
+            new TreeMap<>(BY_SUMMARY_ROW);
+    private final Map<TransactionSummaryDeltaEntity, TransactionSummaryDeltaEntity> upsertsBySummaryRow =
+            new TreeMap<>(BY_SUMMARY_ROW);
+
+    void add(TransactionSummaryDeltaEntity delta) {
+        TransactionSummaryDeltaEntity merged = upsertsBySummaryRow.get(delta);
+        if (merged == null) {
+            merged = delta.isUpsert()
+                    ? upsertsBySummaryRow.computeIfAbsent(delta, row -> forSummaryRowOf(row, true))
+                    : updatesBySummaryRow.computeIfAbsent(delta, row -> forSummaryRowOf(row, false));
+        }
+        merged.add(delta.getNoOfTransactions(), delta.getTotalAmountInPence(), delta.getTotalFeeInPence());
+    }
+
+    boolean isEmpty() {
+        return updatesBySummaryRow.isEmpty() && upsertsBySummaryRow.isEmpty();
+    }
+
+    /**
+     * The merged deltas that only change existing rows.
+     */
+    List<TransactionSummaryDeltaEntity> updates() {
+        return List.copyOf(updatesBySummaryRow.values());
+    }
+
+    /**
+     * The merged deltas that create their rows if they do not exist yet.
+     */
+    List<TransactionSummaryDeltaEntity> upserts() {
+        return List.copyOf(upsertsBySummaryRow.values());
+    }
+
+    List<TransactionSummaryDeltaEntity> toList() {
+        List<TransactionSummaryDeltaEntity> deltas = new ArrayList<>(updatesBySummaryRow.values());
+        deltas.addAll(upsertsBySummaryRow.values());
+        return deltas;
+    }
+
+    private static TransactionSummaryDeltaEntity forSummaryRowOf(TransactionSummaryDeltaEntity row, boolean upsert) {
+        return TransactionSummaryDeltaEntity.forSummaryRow(row.getGatewayAccountId(), row.getType(),
+                row.getTransactionDate(), row.getState(), row.getLive(), row.isMoto(), upsert);
+    }
+}
@@ -1,17 +1,21 @@
 package uk.gov.pay.ledger.transactionsummary.service;
 
 import com.google.inject.Inject;
+import uk.gov.pay.ledger.app.LedgerConfig;
 import uk.gov.pay.ledger.event.entity.EventEntity;
 import uk.gov.pay.ledger.event.model.SalientEventType;
 import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
 import uk.gov.pay.ledger.transaction.model.TransactionType;
 import uk.gov.pay.ledger.transaction.state.TransactionState;
 import uk.gov.pay.ledger.transactionsummary.dao.TransactionSummaryDao;
+import uk.gov.pay.ledger.transactionsummary.dao.TransactionSummaryDeltaDao;
+import uk.gov.pay.ledger.transactionsummary.entity.TransactionSummaryDeltaEntity;
 
 import java.time.LocalDate;
 import java.time.ZonedDateTime;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -26,6 +30,8 @@ import static uk.gov.pay.ledger.event.model.SalientEventType.from;
 public class TransactionSummaryService {
 
     private final TransactionSummaryDao transactionSummaryDao;
+    private final TransactionSummaryDeltaDao transactionSummaryDeltaDao;
+    private final boolean writeBehindEnabled;
 
     // CAPTURE_SUBMITTED event (common to payment notifications, service approved and user approved payments) will be
     // considered to project transaction summary for success state. Ignore the following events that result into the
@@ -36,8 +42,33 @@ public class TransactionSummaryService {
             SERVICE_APPROVED_FOR_CAPTURE.name());
 
     @Inject
-    public TransactionSummaryService(TransactionSummaryDao transactionSummaryDao) {
+    public TransactionSummaryService(TransactionSummaryDao transactionSummaryDao,
+                                     TransactionSummaryDeltaDao transactionSummaryDeltaDao,
+                                     LedgerConfig configuration) {
+        this(transactionSummaryDao, transactionSummaryDeltaDao,
+                configuration.getTransactionSummaryConfig().isWriteBehindEnabled());
+    }
+
+    /**
+     * When write-behind is enabled, the changes to the summary are appended to the delta journal rather than made to
+     * the summary rows, and {@link TransactionSummaryDeltaDrainer} folds them into the summary in the background.
+     */
+    TransactionSummaryService(TransactionSummaryDao transactionSummaryDao,
+                              TransactionSummaryDeltaDao transactionSummaryDeltaDao,
+                              boolean writeBehindEnabled) {
         this.transactionSummaryDao = transactionSummaryDao;
+        this.transactionSummaryDeltaDao = transactionSummaryDeltaDao;
+        this.writeBehindEnabled = writeBehindEnabled;
+    }
+
+    /**
+     * Transaction summaries only change for events that create a payment, move it into a finished state or confirm
+     * its capture. Callers can use this to avoid loading the payment's event history for any other event.
+     */
+    public boolean mayProjectTransactionSummaryFor(EventEntity currentEvent) {
+        return isAPaymentOrNotificationCreatedEvent(currentEvent)
+                || from(currentEvent.getEventType()).orElse(null) == CAPTURE_CONFIRMED
+                || getTransactionState(currentEvent).map(TransactionState::isFinished).orElse(false);
     }
 
     public void projectTransactionSummary(TransactionEntity transaction, EventEntity currentEvent, List<EventEntity> events) {
@@ -48,12 +79,17 @@ public class TransactionSummaryService {
 
     private void projectPaymentTransactionSummary(TransactionEntity transaction, EventEntity currentEvent,
                                                   List<EventEntity> events) {
+        TransactionSummaryDeltas deltas = new TransactionSummaryDeltas();
         if (canProjectTransactionAmount(currentEvent, events)) {
-            projectTransactionAmount(transaction, currentEvent, events);
+            projectTransactionAmount(transaction, currentEvent, events, deltas);
         }
 
         if (canProjectTransactionFee(transaction, currentEvent, events)) {
-            projectTransactionFee(transaction);
+            projectTransactionFee(transaction, deltas);
+        }
+
+        if (!deltas.isEmpty()) {
+            transactionSummaryDeltaDao.insert(deltas.toList());
         }
     }
 
@@ -96,9 +132,10 @@ public class TransactionSummaryService {
     }
 
     private void projectTransactionAmount(TransactionEntity transaction, EventEntity currentEvent,
-                                          List<EventEntity> events) {
+                                          List<EventEntity> events, TransactionSummaryDeltas deltas) {
         List<EventEntity> eventsMappingToFinishedState =
                 getEventsMappingToTransactionFinishedStateInDescendingOrder(events);
+        Long amount = transaction.getTotalAmount() != null ? transaction.getTotalAmount() : transaction.getAmount();
 
         if (eventsMappingToFinishedState.size() > 1
                 && PAYMENT_CREATED != from(currentEvent.getEventType()).orElse(null)) {
@@ -108,22 +145,43 @@ public class TransactionSummaryService {
                 return;
             }
 
-            transactionSummaryDao.deductTransactionSummaryFor(transaction.getGatewayAccountId(),
-                    transaction.getTransactionType(), toLocalDate(transaction.getCreatedDate()),
-                    getTransactionState(previousEvent).get(), transaction.isLive(), transaction.isMoto(),
-                    (transaction.getTotalAmount() != null ? transaction.getTotalAmount() : transaction.getAmount()),
-                    transaction.getFee());
+            if (writeBehindEnabled) {
+                deltas.add(deltaFor(transaction, getTransactionState(previousEvent).get(), -1, -amount,
+                        -Objects.requireNonNullElse(transaction.getFee(), 0L), false));
+            } else {
+                transactionSummaryDao.deductTransactionSummaryFor(transaction.getGatewayAccountId(),
+                        transaction.getTransactionType(), toLocalDate(transaction.getCreatedDate()),
+                        getTransactionState(previousEvent).get(), transaction.isLive(), transaction.isMoto(),
+                        amount, transaction.getFee());
+            }
+        }
+
+        if (writeBehindEnabled) {
+            deltas.add(deltaFor(transaction, transaction.getState(), 1, amount, 0, true));
+        } else {
+            transactionSummaryDao.upsert(transaction.getGatewayAccountId(), transaction.getTransactionType(),
+                    toLocalDate(transaction.getCreatedDate()), transaction.getState(),
+                    transaction.isLive(), transaction.isMoto(), amount);
+        }
+    }
+
+    private void projectTransactionFee(TransactionEntity transaction, TransactionSummaryDeltas deltas) {
+        if (writeBehindEnabled) {
+            deltas.add(deltaFor(transaction, transaction.getState(), 0, 0, transaction.getFee(), false));
+        } else {
+            transactionSummaryDao.updateFee(transaction.getGatewayAccountId(), transaction.getTransactionType(),
+                    toLocalDate(transaction.getCreatedDate()), transaction.getState(), transaction.isLive(),
+                    transaction.isMoto(), transaction.getFee());
         }
-        transactionSummaryDao.upsert(transaction.getGatewayAccountId(), transaction.getTransactionType(),
-                toLocalDate(transaction.getCreatedDate()), transaction.getState(),
-                transaction.isLive(), transaction.isMoto(),
-                (transaction.getTotalAmount() != null ? transaction.getTotalAmount() : transaction.getAmount()));
     }
 
-    private void projectTransactionFee(TransactionEntity transaction) {
-        transactionSummaryDao.updateFee(transaction.getGatewayAccountId(), transaction.getTransactionType(),
-                toLocalDate(transaction.getCreatedDate()), transaction.getState(), transaction.isLive(),
-                transaction.isMoto(), transaction.getFee());
+    private TransactionSummaryDeltaEntity deltaFor(TransactionEntity transaction, TransactionState state,
+                                                   long noOfTransactions, long amount, long fee, boolean upsert) {
+        TransactionSummaryDeltaEntity delta = TransactionSummaryDeltaEntity.forSummaryRow(
+                transaction.getGatewayAccountId(), transaction.getTransactionType(),
+                toLocalDate(transaction.getCreatedDate()), state, transaction.isLive(), transaction.isMoto(), upsert);
+        delta.add(noOfTransactions, amount, fee);
+        return delta;
     }
 
     private LocalDate toLocalDate(ZonedDateTime createdDate) {
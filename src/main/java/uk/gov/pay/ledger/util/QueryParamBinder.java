@@ -0,0 +1,56 @@
+package uk.gov.pay.ledger.util;
+
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MultivaluedMap;
+import org.glassfish.jersey.uri.UriComponent;
+
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Objects;
+
+/**
+ * Binds a query string to the setters of a bean annotated with {@link QueryParam}, the way JAX-RS binds a
+ * {@code @BeanParam}, so that search params can be rebuilt outside the request they came with.
+ */
+public final class QueryParamBinder {
+
+    private QueryParamBinder() {
+    }
+
+    public static <T> T bind(T bean, String queryString) {
+        MultivaluedMap<String, String> parameters = UriComponent.decodeQuery(Objects.requireNonNullElse(queryString, ""), true);
+        for (Method method : bean.getClass().getMethods()) {
+            QueryParam queryParam = method.getAnnotation(QueryParam.class);
+            if (queryParam == null || method.getParameterCount() != 1) {
+                continue;
+            }
+            String value = parameters.getFirst(queryParam.value());
+            if (value == null && method.isAnnotationPresent(DefaultValue.class)) {
+                value = method.getAnnotation(DefaultValue.class).value();
+            }
+            if (value != null) {
+                try {
+                    method.invoke(bean, convert(value, method.getParameterTypes()[0]));
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalArgumentException("Could not bind query parameter [" + queryParam.value() + "]",
+                            e instanceof InvocationTargetException ? e.getCause() : e);
+                }
+            }
+        }
+        return bean;
+    }
+
+    private static Object convert(String value, Class<?> type) throws ReflectiveOperationException {
+        if (type == String.class) {
+            return value;
+        }
+        Class<?> boxedType = MethodType.methodType(type).wrap().returnType();
+        try {
+            return boxedType.getMethod("valueOf", String.class).invoke(null, value);
+        } catch (NoSuchMethodException e) {
+            return boxedType.getConstructor(String.class).newInstance(value);
+        }
+    }
+}
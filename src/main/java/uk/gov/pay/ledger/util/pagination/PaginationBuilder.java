@@ -3,6 +3,7 @@ package uk.gov.pay.ledger.util.pagination;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import uk.gov.pay.ledger.common.search.CursorSearchParams;
 import uk.gov.pay.ledger.common.search.SearchParams;
 
 import jakarta.ws.rs.core.UriInfo;
@@ -28,6 +29,14 @@ public class PaginationBuilder {
     private Long count;
     @JsonIgnore
     private Long selfPageNum;
+    @JsonIgnore
+    private CursorSearchParams cursorSearchParams;
+    @JsonIgnore
+    private String selfCursor;
+    @JsonIgnore
+    private String prevCursor;
+    @JsonIgnore
+    private String nextCursor;
     @JsonProperty(SELF_LINK)
     private PaginationLink selfLink;
     @JsonProperty(FIRST_LINK)
@@ -55,9 +64,25 @@ public class PaginationBuilder {
         return this;
     }
 
+    /**
+     * Sets the cursors of the current page and of the pages either side of it. When the current page was requested
+     * with a cursor the next and previous links use cursors rather than page numbers, built from the given search
+     * parameters.
+     */
+    public PaginationBuilder withCursors(CursorSearchParams cursorSearchParams, String selfCursor, String prevCursor,
+                                         String nextCursor) {
+        this.cursorSearchParams = cursorSearchParams;
+        this.selfCursor = selfCursor;
+        this.prevCursor = prevCursor;
+        this.nextCursor = nextCursor;
+        return this;
+    }
+
     public PaginationBuilder buildResponse() {
 
-        if (searchParams.limitTotal()) {
+        if (selfCursor != null) {
+            buildLinksForCursor();
+        } else if (searchParams.limitTotal()) {
             buildLinksForLimitTotal();
         } else {
             Long pageSize = searchParams.getDisplaySize();
@@ -103,6 +128,13 @@ public class PaginationBuilder {
         }
     }
 
+    private void buildLinksForCursor() {
+        selfLink = PaginationLink.ofValue(uriWithParams(cursorSearchParams.buildQueryParamStringForCursor(selfCursor)));
+        firstLink = PaginationLink.ofValue(uriWithParams(searchParams.buildQueryParamString(1L)));
+        prevLink = prevCursor == null ? null : PaginationLink.ofValue(uriWithParams(cursorSearchParams.buildQueryParamStringForCursor(prevCursor)));
+        nextLink = nextCursor == null ? null : PaginationLink.ofValue(uriWithParams(cursorSearchParams.buildQueryParamStringForCursor(nextCursor)));
+    }
+
     private void buildLinks(long lastPage) {
         selfLink = PaginationLink.ofValue(uriWithParams(searchParams.buildQueryParamString(searchParams.getPageNumber())));
         firstLink = PaginationLink.ofValue(uriWithParams(searchParams.buildQueryParamString(1L)));
@@ -0,0 +1,19 @@
+--liquibase formatted sql
+
+--changeset uk.gov.pay:create_table_event_digest_snapshot
+CREATE TABLE event_digest_snapshot (
+    resource_external_id VARCHAR(255) NOT NULL,
+    resource_type VARCHAR(255) NOT NULL,
+    parent_resource_external_id VARCHAR(255),
+    service_id VARCHAR(32),
+    live BOOLEAN,
+    event_count INTEGER NOT NULL,
+    event_aggregate JSONB NOT NULL,
+    salient_event_types JSONB NOT NULL,
+    latest_salient_event_type VARCHAR(255),
+    most_recent_event_date TIMESTAMP WITH TIME ZONE NOT NULL,
+    earliest_event_date TIMESTAMP WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (resource_external_id, resource_type)
+);
+
+--rollback drop table event_digest_snapshot;
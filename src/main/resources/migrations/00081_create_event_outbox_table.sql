@@ -0,0 +1,19 @@
+--liquibase formatted sql
+
+--changeset uk.gov.pay:create_table_event_outbox
+CREATE TABLE event_outbox (
+    id BIGSERIAL PRIMARY KEY,
+    topic VARCHAR(255) NOT NULL,
+    message TEXT NOT NULL,
+    sqs_message_id VARCHAR(255),
+    resource_type VARCHAR(255),
+    resource_external_id VARCHAR(255) NOT NULL,
+    event_type VARCHAR(255) NOT NULL,
+    created_date TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now(),
+    attempts INTEGER NOT NULL DEFAULT 0,
+    next_attempt_date TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now()
+);
+
+CREATE INDEX event_outbox_next_attempt_date_idx ON event_outbox(next_attempt_date);
+
+--rollback drop table event_outbox;
@@ -0,0 +1,6 @@
+--liquibase formatted sql
+
+--changeset uk.gov.pay:add_content_hash_to_transaction_table
+ALTER TABLE transaction ADD COLUMN content_hash VARCHAR(64);
+
+--rollback ALTER TABLE transaction DROP COLUMN content_hash;
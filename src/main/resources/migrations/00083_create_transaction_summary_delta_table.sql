@@ -0,0 +1,19 @@
+--liquibase formatted sql
+
+--changeset uk.gov.pay:create_table_transaction_summary_delta
+CREATE TABLE transaction_summary_delta (
+    id BIGSERIAL PRIMARY KEY,
+    gateway_account_id VARCHAR(255) NOT NULL,
+    type VARCHAR(255) NOT NULL,
+    transaction_date DATE NOT NULL,
+    state TEXT NOT NULL,
+    live BOOLEAN,
+    moto BOOLEAN NOT NULL,
+    no_of_transactions BIGINT NOT NULL,
+    total_amount_in_pence BIGINT NOT NULL,
+    total_fee_in_pence BIGINT NOT NULL,
+    upsert BOOLEAN NOT NULL,
+    created_date TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now()
+);
+
+--rollback drop table transaction_summary_delta;
@@ -0,0 +1,26 @@
+--liquibase formatted sql
+
+--changeset uk.gov.pay:create_table_csv_export_job
+CREATE TABLE csv_export_job (
+    id VARCHAR(36) PRIMARY KEY,
+    request_digest VARCHAR(64) NOT NULL,
+    query_string TEXT NOT NULL,
+    gateway_account_ids VARCHAR(255)[] NOT NULL,
+    include_fee_headers BOOLEAN NOT NULL,
+    include_moto_header BOOLEAN NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    checkpoint_cursor VARCHAR(255),
+    size_in_bytes BIGINT NOT NULL DEFAULT 0,
+    row_count BIGINT NOT NULL DEFAULT 0,
+    created_date TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now(),
+    finished_date TIMESTAMP WITH TIME ZONE,
+    lease_owner VARCHAR(36),
+    lease_expiry_date TIMESTAMP WITH TIME ZONE
+);
+
+CREATE UNIQUE INDEX csv_export_job_unfinished_request_digest_idx ON csv_export_job(request_digest) WHERE status IN ('PENDING', 'RUNNING');
+CREATE INDEX csv_export_job_unfinished_lease_expiry_date_idx ON csv_export_job(lease_expiry_date) WHERE status IN ('PENDING', 'RUNNING');
+CREATE INDEX csv_export_job_finished_date_idx ON csv_export_job(finished_date);
+
+--rollback drop table csv_export_job;
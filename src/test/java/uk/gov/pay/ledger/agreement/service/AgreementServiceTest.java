@@ -9,15 +9,18 @@ import uk.gov.pay.ledger.agreement.dao.AgreementDao;
 import uk.gov.pay.ledger.agreement.dao.PaymentInstrumentDao;
 import uk.gov.pay.ledger.agreement.entity.AgreementEntity;
 import uk.gov.pay.ledger.agreement.entity.AgreementsFactory;
+import uk.gov.pay.ledger.common.search.SearchQueryExecutor;
 import uk.gov.pay.ledger.event.model.EventDigest;
 import uk.gov.pay.ledger.event.service.EventService;
 import uk.gov.pay.ledger.exception.EmptyEventsException;
 
+import java.time.Duration;
 import java.util.Optional;
 import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
+import static com.google.common.util.concurrent.MoreExecutors.newDirectExecutorService;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.Mockito.mock;
@@ -41,7 +44,8 @@ class AgreementServiceTest {
     @BeforeEach
     void setUp() {
         reset(agreementDao, paymentInstrumentDao, agreementEntityFactory, eventService);
-        agreementService = new AgreementService(agreementDao, paymentInstrumentDao, agreementEntityFactory, eventService, objectMapper);
+        agreementService = new AgreementService(agreementDao, paymentInstrumentDao, agreementEntityFactory, eventService, objectMapper,
+                new SearchQueryExecutor(newDirectExecutorService(), Duration.ofSeconds(10)));
     }
 
     @Test
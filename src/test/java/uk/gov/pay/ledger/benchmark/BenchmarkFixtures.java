@@ -0,0 +1,152 @@
+package uk.gov.pay.ledger.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import uk.gov.pay.ledger.event.entity.EventEntity;
+import uk.gov.pay.ledger.event.model.EventDigest;
+import uk.gov.pay.ledger.event.model.TransactionEntityFactory;
+import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
+import uk.gov.pay.ledger.transaction.search.common.TransactionSearchParams;
+import uk.gov.pay.ledger.util.CommaDelimitedSetParameter;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static uk.gov.pay.ledger.event.model.ResourceType.PAYMENT;
+import static uk.gov.pay.ledger.util.fixture.QueuePaymentEventFixture.aQueuePaymentEventFixture;
+
+/**
+ * Generates the data the benchmarks run against. Payments are built the way ingestion builds them, by projecting a
+ * card payment's event history, so the transaction details and search parameters have the shape seen in production.
+ */
+final class BenchmarkFixtures {
+
+    private static final List<String> PAYMENT_LIFECYCLE = List.of("PAYMENT_CREATED", "PAYMENT_STARTED",
+            "PAYMENT_DETAILS_ENTERED", "AUTHORISATION_SUCCEEDED", "USER_APPROVED_FOR_CAPTURE", "CAPTURE_SUBMITTED",
+            "CAPTURE_CONFIRMED");
+    private static final ZonedDateTime FIRST_PAYMENT_CREATED_DATE = ZonedDateTime.parse("2024-01-01T10:00:00Z");
+    private static final TransactionEntityFactory TRANSACTION_ENTITY_FACTORY = new TransactionEntityFactory(new ObjectMapper());
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * Returns the events of a card payment that was captured and then had its refund availability updated until
+     * it had the given number of events, most recent first as they are loaded from the database.
+     */
+    static List<EventEntity> paymentEventHistory(String externalId, int numberOfEvents) {
+        ZonedDateTime createdDate = FIRST_PAYMENT_CREATED_DATE.plusMinutes(externalId.hashCode() % 1000);
+        List<EventEntity> events = new ArrayList<>();
+        for (int i = 0; i < numberOfEvents; i++) {
+            var event = aQueuePaymentEventFixture()
+                    .withResourceType(PAYMENT)
+                    .withResourceExternalId(externalId)
+                    .withGatewayAccountId("123")
+                    .withEventDate(createdDate.plusSeconds(i));
+            if (i < PAYMENT_LIFECYCLE.size()) {
+                event.withEventType(PAYMENT_LIFECYCLE.get(i))
+                        .withDefaultEventDataForEventType(PAYMENT_LIFECYCLE.get(i));
+            } else {
+                event.withEventType("REFUND_AVAILABILITY_UPDATED")
+                        .withEventData("{\"refund_amount_available\": " + (1000 - i) + ", \"refund_amount_refunded\": " + i +
+                                ", \"refund_status\": \"available\"}");
+            }
+            events.add(event.toEntity());
+        }
+        return events.reversed();
+    }
+
+    static EventDigest paymentEventDigest(String externalId, int numberOfEvents) {
+        return EventDigest.fromEventList(paymentEventHistory(externalId, numberOfEvents));
+    }
+
+    static TransactionEntity paymentTransaction(String externalId) {
+        return TRANSACTION_ENTITY_FACTORY.create(paymentEventDigest(externalId, PAYMENT_LIFECYCLE.size() + 2));
+    }
+
+    static List<TransactionEntity> paymentTransactions(int numberOfTransactions) {
+        List<TransactionEntity> transactions = new ArrayList<>();
+        for (int i = 0; i < numberOfTransactions; i++) {
+            transactions.add(paymentTransaction("payment-external-id-" + i));
+        }
+        return transactions;
+    }
+
+    /**
+     * Returns search parameters like those sent when a service downloads a month of its successful and refunded
+     * payments.
+     */
+    static TransactionSearchParams transactionSearchParams() {
+        TransactionSearchParams searchParams = new TransactionSearchParams();
+        searchParams.setAccountIds(List.of("123", "456"));
+        searchParams.setFromDate("2024-01-01T00:00:00Z");
+        searchParams.setToDate("2024-02-01T00:00:00Z");
+        searchParams.setPaymentStates(new CommaDelimitedSetParameter("success"));
+        searchParams.setRefundStates(new CommaDelimitedSetParameter("success,submitted"));
+        searchParams.setCardBrands(new CommaDelimitedSetParameter("visa,master-card"));
+        searchParams.setEmail("test@email.invalid");
+        searchParams.setReference("reference");
+        return searchParams;
+    }
+
+    /**
+     * Returns a result set positioned on the transaction row for the entity, as selected by the transaction search
+     * queries. Only the getters used by the row mappers are supported.
+     */
+    static ResultSet transactionRow(TransactionEntity transaction) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", 1L);
+        row.put("service_id", transaction.getServiceId());
+        row.put("gateway_account_id", transaction.getGatewayAccountId());
+        row.put("external_id", transaction.getExternalId());
+        row.put("parent_external_id", transaction.getParentExternalId());
+        row.put("amount", transaction.getAmount());
+        row.put("reference", transaction.getReference());
+        row.put("description", transaction.getDescription());
+        row.put("state", transaction.getState().name());
+        row.put("email", transaction.getEmail());
+        row.put("cardholder_name", transaction.getCardholderName());
+        row.put("created_date", Timestamp.from(transaction.getCreatedDate().toInstant()));
+        row.put("transaction_details", transaction.getTransactionDetails());
+        row.put("event_count", transaction.getEventCount());
+        row.put("card_brand", transaction.getCardBrand());
+        row.put("last_digits_card_number", transaction.getLastDigitsCardNumber());
+        row.put("first_digits_card_number", transaction.getFirstDigitsCardNumber());
+        row.put("net_amount", transaction.getNetAmount());
+        row.put("total_amount", transaction.getTotalAmount());
+        row.put("refund_status", transaction.getRefundStatus());
+        row.put("refund_amount_refunded", transaction.getRefundAmountRefunded());
+        row.put("refund_amount_available", transaction.getRefundAmountAvailable());
+        row.put("fee", transaction.getFee());
+        row.put("type", transaction.getTransactionType());
+        row.put("live", transaction.isLive());
+        row.put("moto", transaction.isMoto());
+        row.put("gateway_transaction_id", transaction.getGatewayTransactionId());
+        row.put("gateway_payout_id", "a-payout-id");
+        row.put("paid_out_date", Timestamp.from(transaction.getCreatedDate().plusDays(2).toInstant()));
+        row.put("agreement_id", transaction.getAgreementId());
+        row.put("source", transaction.getSource() == null ? null : transaction.getSource().name());
+
+        boolean[] lastValueWasNull = new boolean[1];
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("wasNull")) {
+                        return lastValueWasNull[0];
+                    }
+                    Object value = row.get((String) args[0]);
+                    lastValueWasNull[0] = value == null;
+                    return switch (method.getName()) {
+                        case "getString", "getTimestamp" -> value;
+                        case "getLong" -> value == null ? 0L : ((Number) value).longValue();
+                        case "getInt" -> value == null ? 0 : ((Number) value).intValue();
+                        case "getBoolean" -> value != null && (Boolean) value;
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    };
+                });
+    }
+}
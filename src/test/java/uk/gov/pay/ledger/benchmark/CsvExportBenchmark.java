@@ -0,0 +1,101 @@
+package uk.gov.pay.ledger.benchmark;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
+import uk.gov.pay.ledger.transaction.model.CsvRowEncoder;
+import uk.gov.pay.ledger.transaction.model.CsvTransactionFactory;
+import uk.gov.pay.ledger.transaction.service.CsvService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures turning transactions into CSV rows, both a single row and a whole page of a download written with the
+ * headers of an account with external metadata, fees and MOTO payments, either to a string or streamed row by row.
+ * Streaming with the row encoder used by downloads is compared against building a map of each row, as downloads did
+ * before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CsvExportBenchmark {
+
+    @Param({"100", "1000"})
+    private int pageSize;
+
+    private final CsvTransactionFactory csvTransactionFactory = new CsvTransactionFactory(new ObjectMapper());
+    // the metadata service is only needed to look up headers, which are built here from known keys
+    private final CsvService csvService = new CsvService(csvTransactionFactory, null);
+    private List<TransactionEntity> page;
+    private ObjectWriter writer;
+    private CsvRowEncoder rowEncoder;
+
+    @Setup
+    public void setUp() {
+        page = BenchmarkFixtures.paymentTransactions(pageSize);
+        Map<String, Object> headers = csvTransactionFactory.getCsvHeadersWithMedataKeys(List.of("key"), true, true);
+        writer = csvService.writerFrom(headers);
+        rowEncoder = csvService.rowEncoderFrom(headers);
+    }
+
+    @Benchmark
+    public Map<String, Object> toCsvRow() {
+        return csvTransactionFactory.toMap(page.get(0));
+    }
+
+    @Benchmark
+    public void encodeCsvRow() throws IOException {
+        try (JsonGenerator rowWriter = csvService.rowWriterFrom(writer, OutputStream.nullOutputStream())) {
+            rowEncoder.encode(page.get(0), rowWriter);
+        }
+    }
+
+    @Benchmark
+    public String writeCsvPage() throws JsonProcessingException {
+        return csvService.csvStringFrom(page, writer);
+    }
+
+    @Benchmark
+    public void streamCsvPage() throws IOException {
+        try (JsonGenerator rowWriter = csvService.rowWriterFrom(writer, OutputStream.nullOutputStream())) {
+            page.forEach(transaction -> csvService.writeCsvRow(rowWriter, rowEncoder, transaction));
+        }
+    }
+
+    @Benchmark
+    public void streamCsvPageFromMaps() throws IOException {
+        try (SequenceWriter rowWriter = writer.writeValues(OutputStream.nullOutputStream())) {
+            for (TransactionEntity transaction : page) {
+                rowWriter.write(csvTransactionFactory.toMap(transaction));
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CsvExportBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,117 @@
+package uk.gov.pay.ledger.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import uk.gov.pay.ledger.event.entity.EventEntity;
+import uk.gov.pay.ledger.event.model.EventDigest;
+import uk.gov.pay.ledger.event.model.SalientEventType;
+import uk.gov.pay.ledger.util.JsonParser;
+
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares building an event digest in a single pass, as EventDigest.fromEventList does, against the previous
+ * builder, which walked the events once per derived field, parsed every event's data into its own map and looked up
+ * salient event types by scanning all of them. The histories are a captured card payment followed by
+ * refund availability updates, as generated by BenchmarkFixtures.
+ * <p>
+ * The events are created afresh for every invocation, as they are when a digest is built from events read from the
+ * database. Otherwise the event data parsed and cached on each event by the first invocation would be reused by all
+ * the later ones, leaving parsing out of the single pass builder's time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class EventDigestBenchmark {
+
+    @Param({"1", "10", "50", "200"})
+    private int numberOfEvents;
+
+    private List<EventEntity> events;
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+        events = BenchmarkFixtures.paymentEventHistory("payment-external-id", numberOfEvents);
+    }
+
+    @Benchmark
+    public EventDigest singlePassBuilder() {
+        return EventDigest.fromEventList(events);
+    }
+
+    @Benchmark
+    public Object[] previousStreamBuilder() {
+        Map<String, Object> eventAggregate = events.stream()
+                .map(EventEntity::getEventData)
+                .map(JsonParser::jsonStringToMap)
+                .flatMap(m -> m.entrySet().stream())
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (later, earlier) -> later));
+        EventEntity latestEvent = events.stream().findFirst().orElseThrow();
+        SalientEventType latestSalientEventType = events.stream()
+                .map(EventEntity::getEventType)
+                .map(EventDigestBenchmark::scanForSalientEventType)
+                .flatMap(Optional::stream)
+                .findFirst()
+                .orElse(null);
+        ZonedDateTime earliestDate = events.stream()
+                .map(EventEntity::getEventDate)
+                .min(ZonedDateTime::compareTo)
+                .orElseThrow();
+        String parentResourceExternalId = events.stream()
+                .map(EventEntity::getParentResourceExternalId)
+                .filter(id -> id != null && !id.isEmpty())
+                .findFirst()
+                .orElse(null);
+        String serviceId = events.stream()
+                .map(EventEntity::getServiceId)
+                .filter(id -> id != null && !id.isEmpty())
+                .findFirst()
+                .orElse(null);
+        Boolean isLive = events.stream()
+                .map(EventEntity::getLive)
+                .filter(live -> live != null)
+                .findFirst()
+                .orElse(null);
+        Set<SalientEventType> salientEventTypes = events.stream()
+                .map(EventEntity::getEventType)
+                .map(EventDigestBenchmark::scanForSalientEventType)
+                .flatMap(Optional::stream)
+                .collect(Collectors.toCollection(() -> EnumSet.noneOf(SalientEventType.class)));
+        return new Object[]{eventAggregate, latestEvent, latestSalientEventType, earliestDate, parentResourceExternalId,
+                serviceId, isLive, salientEventTypes};
+    }
+
+    private static Optional<SalientEventType> scanForSalientEventType(String eventName) {
+        return Arrays.stream(SalientEventType.values())
+                .filter(v -> v.name().equals(eventName))
+                .findFirst();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(EventDigestBenchmark.class.getSimpleName()).build()).run();
+    }
+}
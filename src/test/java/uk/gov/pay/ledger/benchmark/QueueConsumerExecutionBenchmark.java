@@ -0,0 +1,149 @@
+package uk.gov.pay.ledger.benchmark;
+
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.core.setup.Environment;
+import io.dropwizard.lifecycle.setup.LifecycleEnvironment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import uk.gov.pay.ledger.app.LedgerConfig;
+import uk.gov.pay.ledger.app.config.QueueMessageReceiverConfig;
+import uk.gov.pay.ledger.queue.EventMessage;
+import uk.gov.pay.ledger.queue.EventMessageHandler;
+import uk.gov.pay.ledger.queue.EventQueue;
+import uk.gov.pay.ledger.queue.managed.QueueMessageReceiver;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Compares batch throughput of QueueMessageReceiver running the same number of consumers as scheduled platform
+ * threads, as it does by default, and as virtual threads processing as many batches at once as the database pool
+ * allows ingest, as it does when virtual threads are enabled. The queue and event handler are stubbed, long-polling
+ * SQS and processing a batch while holding a database connection being simulated with sleeps, so that only the
+ * execution model differs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class QueueConsumerExecutionBenchmark {
+
+    private static final int BATCHES = 500;
+
+    @Param({"10", "100"})
+    private int consumers;
+
+    @Param({"10"})
+    private int databasePoolSize;
+
+    @Param({"20"})
+    private int sqsLatencyInMilliseconds;
+
+    @Param({"5"})
+    private int databaseLatencyInMilliseconds;
+
+    @Benchmark
+    @OperationsPerInvocation(BATCHES)
+    public void platformThreads() throws Exception {
+        consumeBatches(false);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCHES)
+    public void virtualThreads() throws Exception {
+        consumeBatches(true);
+    }
+
+    private void consumeBatches(boolean virtualThreadsEnabled) throws Exception {
+        AtomicInteger remainingBatches = new AtomicInteger(BATCHES);
+        CountDownLatch processedBatches = new CountDownLatch(BATCHES);
+        Semaphore databaseConnections = new Semaphore(databasePoolSize);
+        EventMessage message = mock(EventMessage.class);
+
+        EventQueue eventQueue = mock(EventQueue.class);
+        when(eventQueue.retrieveEvents()).thenAnswer(invocation -> {
+            Thread.sleep(sqsLatencyInMilliseconds);
+            return remainingBatches.getAndDecrement() > 0 ? List.of(message) : List.of();
+        });
+
+        EventMessageHandler eventMessageHandler = mock(EventMessageHandler.class);
+        doAnswer(invocation -> {
+            process(invocation.getArgument(0), databaseConnections, processedBatches);
+            return null;
+        }).when(eventMessageHandler).process(any(), any());
+        doAnswer(invocation -> {
+            process(eventQueue.retrieveEvents(), databaseConnections, processedBatches);
+            return null;
+        }).when(eventMessageHandler).handle();
+
+        QueueMessageReceiver queueMessageReceiver = new QueueMessageReceiver(
+                environment(), ledgerConfig(virtualThreadsEnabled), eventMessageHandler, eventQueue);
+        queueMessageReceiver.start();
+        try {
+            processedBatches.await();
+        } finally {
+            queueMessageReceiver.stop();
+        }
+    }
+
+    private void process(List<EventMessage> messages, Semaphore databaseConnections, CountDownLatch processedBatches)
+            throws InterruptedException {
+        if (messages.isEmpty()) {
+            return;
+        }
+        databaseConnections.acquire();
+        try {
+            Thread.sleep(databaseLatencyInMilliseconds);
+        } finally {
+            databaseConnections.release();
+        }
+        processedBatches.countDown();
+    }
+
+    private LedgerConfig ledgerConfig(boolean virtualThreadsEnabled) {
+        QueueMessageReceiverConfig queueMessageReceiverConfig = mock(QueueMessageReceiverConfig.class);
+        when(queueMessageReceiverConfig.getNumberOfThreads()).thenReturn(consumers);
+        when(queueMessageReceiverConfig.getThreadDelayInMilliseconds()).thenReturn(1);
+        when(queueMessageReceiverConfig.getEventProcessingThreads()).thenReturn(1);
+        when(queueMessageReceiverConfig.isVirtualThreadsEnabled()).thenReturn(virtualThreadsEnabled);
+        when(queueMessageReceiverConfig.getVirtualThreadsMaximumConcurrentBatches()).thenReturn(databasePoolSize);
+
+        LedgerConfig ledgerConfig = mock(LedgerConfig.class);
+        when(ledgerConfig.getQueueMessageReceiverConfig()).thenReturn(queueMessageReceiverConfig);
+        return ledgerConfig;
+    }
+
+    private static Environment environment() {
+        MetricRegistry metricRegistry = new MetricRegistry();
+        Environment environment = mock(Environment.class);
+        when(environment.metrics()).thenReturn(metricRegistry);
+        when(environment.lifecycle()).thenReturn(new LifecycleEnvironment(metricRegistry));
+        return environment;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(QueueConsumerExecutionBenchmark.class.getSimpleName()).build()).run();
+    }
+}
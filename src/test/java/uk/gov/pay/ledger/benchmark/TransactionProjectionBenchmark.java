@@ -0,0 +1,64 @@
+package uk.gov.pay.ledger.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import uk.gov.pay.ledger.event.entity.EventEntity;
+import uk.gov.pay.ledger.event.model.EventDigest;
+import uk.gov.pay.ledger.event.model.TransactionEntityFactory;
+import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures projecting a payment's event history into the transaction row that ingestion upserts, on its own and
+ * together with building the digest it is projected from.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TransactionProjectionBenchmark {
+
+    @Param({"7", "50"})
+    private int numberOfEvents;
+
+    private final TransactionEntityFactory transactionEntityFactory = new TransactionEntityFactory(new ObjectMapper());
+    private List<EventEntity> events;
+    private EventDigest eventDigest;
+
+    @Setup
+    public void setUp() {
+        events = BenchmarkFixtures.paymentEventHistory("payment-external-id", numberOfEvents);
+        eventDigest = EventDigest.fromEventList(events);
+    }
+
+    @Benchmark
+    public TransactionEntity createTransactionEntity() {
+        return transactionEntityFactory.create(eventDigest);
+    }
+
+    @Benchmark
+    public TransactionEntity buildDigestAndCreateTransactionEntity() {
+        return transactionEntityFactory.create(EventDigest.fromEventList(events));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TransactionProjectionBenchmark.class.getSimpleName()).build()).run();
+    }
+}
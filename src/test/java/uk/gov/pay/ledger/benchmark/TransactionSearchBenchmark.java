@@ -0,0 +1,90 @@
+package uk.gov.pay.ledger.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import uk.gov.pay.ledger.transaction.dao.mapper.TransactionMapper;
+import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
+import uk.gov.pay.ledger.transaction.model.Transaction;
+import uk.gov.pay.ledger.transaction.model.TransactionFactory;
+import uk.gov.pay.ledger.transaction.search.common.TransactionSearchParams;
+import uk.gov.pay.ledger.transaction.search.model.TransactionView;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-row work of a transaction search: mapping the selected row, turning it into a transaction and
+ * then into the view returned by the API, as well as building the filters and bind values of the search query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TransactionSearchBenchmark {
+
+    private final TransactionMapper transactionMapper = new TransactionMapper();
+    private final TransactionFactory transactionFactory = new TransactionFactory(new ObjectMapper());
+    private ResultSet transactionRow;
+    private TransactionEntity transactionEntity;
+    private Transaction transaction;
+
+    @Setup
+    public void setUp() throws SQLException {
+        transactionRow = BenchmarkFixtures.transactionRow(BenchmarkFixtures.paymentTransaction("payment-external-id"));
+        transactionEntity = transactionMapper.map(transactionRow, null);
+        transaction = transactionFactory.createTransactionEntity(transactionEntity);
+    }
+
+    @Benchmark
+    public TransactionEntity mapTransactionRow() throws SQLException {
+        return transactionMapper.map(transactionRow, null);
+    }
+
+    @Benchmark
+    public Transaction createTransaction() {
+        return transactionFactory.createTransactionEntity(transactionEntity);
+    }
+
+    @Benchmark
+    public TransactionView createTransactionView() {
+        return TransactionView.from(transaction, 2);
+    }
+
+    @Benchmark
+    public TransactionView mapTransactionRowToView() throws SQLException {
+        return TransactionView.from(transactionFactory.createTransactionEntity(transactionMapper.map(transactionRow, null)), 2);
+    }
+
+    @Benchmark
+    public List<String> buildFilterTemplates() {
+        return BenchmarkFixtures.transactionSearchParams().getFilterTemplates();
+    }
+
+    @Benchmark
+    public Map<String, Object> buildQueryMap() {
+        // the query map is cached by the search params, so each invocation needs its own
+        TransactionSearchParams searchParams = BenchmarkFixtures.transactionSearchParams();
+        return searchParams.getQueryMap();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TransactionSearchBenchmark.class.getSimpleName()).build()).run();
+    }
+}
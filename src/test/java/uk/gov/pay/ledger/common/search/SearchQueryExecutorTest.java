@@ -0,0 +1,121 @@
+package uk.gov.pay.ledger.common.search;
+
+import jakarta.ws.rs.WebApplicationException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import uk.gov.pay.ledger.transaction.search.common.TransactionSearchParams;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.util.concurrent.MoreExecutors.newDirectExecutorService;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SearchQueryExecutorTest {
+
+    private final ExecutorService executorService = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    void shouldRunPageAndTotalQueriesConcurrently() {
+        var searchQueryExecutor = new SearchQueryExecutor(executorService, Duration.ofSeconds(10));
+        var bothStarted = new CountDownLatch(2);
+
+        var searchResult = searchQueryExecutor.execute(
+                () -> {
+                    bothStarted.countDown();
+                    assertThat(await(bothStarted), is(true));
+                    return List.of("a", "b");
+                },
+                () -> {
+                    bothStarted.countDown();
+                    assertThat(await(bothStarted), is(true));
+                    return 2L;
+                });
+
+        assertThat(searchResult.getPage(), is(List.of("a", "b")));
+        assertThat(searchResult.getTotal(), is(2L));
+    }
+
+    @Test
+    void shouldRethrowTheFailureOfEitherQuery() {
+        var searchQueryExecutor = new SearchQueryExecutor(newDirectExecutorService(), Duration.ofSeconds(10));
+        var failure = new IllegalStateException("page query failed");
+
+        IllegalStateException thrown = assertThrows(IllegalStateException.class, () -> searchQueryExecutor.execute(
+                () -> {
+                    throw failure;
+                },
+                () -> 2L));
+
+        assertThat(thrown, is(failure));
+    }
+
+    @Test
+    void shouldThrowServiceUnavailable_whenQueriesDoNotCompleteWithinTimeout() {
+        var searchQueryExecutor = new SearchQueryExecutor(executorService, Duration.ofMillis(100));
+        var release = new CountDownLatch(1);
+
+        WebApplicationException thrown = assertThrows(WebApplicationException.class, () -> searchQueryExecutor.execute(
+                List::of,
+                () -> {
+                    await(release);
+                    return 0L;
+                }));
+
+        assertThat(thrown.getResponse().getStatus(), is(503));
+        release.countDown();
+    }
+
+    @Test
+    void shouldGiveBothQueriesTheSameQueryMapOfFreshSearchParams() {
+        var searchQueryExecutor = new SearchQueryExecutor(executorService, Duration.ofSeconds(10));
+
+        for (int i = 0; i < 100; i++) {
+            TransactionSearchParams searchParams = new TransactionSearchParams();
+            searchParams.setAccountIds(List.of("1", "2"));
+            searchParams.setEmail("test@example.org");
+            searchParams.setReference("reference");
+            searchParams.setCardHolderName("Jane Doe");
+            searchParams.setFromDate("2024-01-01T00:00:00Z");
+            searchParams.setToDate("2024-02-01T00:00:00Z");
+            searchParams.setLastDigitsCardNumber("4242");
+            var bothStarted = new CountDownLatch(2);
+
+            var searchResult = searchQueryExecutor.execute(
+                    () -> {
+                        bothStarted.countDown();
+                        await(bothStarted);
+                        return List.of(searchParams.getQueryMap());
+                    },
+                    () -> {
+                        bothStarted.countDown();
+                        await(bothStarted);
+                        return searchParams.getQueryMap();
+                    });
+
+            assertThat(searchResult.getPage().get(0).size(), is(7));
+            assertThat(searchResult.getTotal(), is(searchResult.getPage().get(0)));
+            assertThat(searchParams.getQueryMap(), is(searchResult.getTotal()));
+        }
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -9,6 +9,9 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 import uk.gov.pay.ledger.event.entity.EventEntity;
 import uk.gov.pay.ledger.event.model.EventTicker;
+import uk.gov.pay.ledger.eventpublisher.TopicName;
+import uk.gov.pay.ledger.eventpublisher.dao.EventOutboxDao;
+import uk.gov.pay.ledger.eventpublisher.entity.EventOutboxEntity;
 import uk.gov.pay.ledger.extension.AppWithPostgresAndSqsExtension;
 import uk.gov.pay.ledger.util.DatabaseTestHelper;
 import uk.gov.service.payments.commons.model.AuthorisationMode;
@@ -16,6 +19,7 @@ import uk.gov.service.payments.commons.model.AuthorisationMode;
 import java.io.IOException;
 import java.sql.Timestamp;
 import java.time.ZonedDateTime;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -26,6 +30,7 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.hasSize;
 import static org.junit.Assert.assertTrue;
+import static uk.gov.pay.ledger.event.model.ResourceType.REFUND;
 import static uk.gov.pay.ledger.util.DatabaseTestHelper.aDatabaseTestHelper;
 import static uk.gov.pay.ledger.util.ZonedDateTimeTimestampMatcher.isDate;
 import static uk.gov.pay.ledger.util.fixture.EventFixture.anEventFixture;
@@ -119,6 +124,72 @@ class EventDaoIT {
         assertThat(objectMapper.readTree(result.get("event_data").toString()), is(objectMapper.readTree(event.getEventData())));
     }
 
+    @Test
+    void shouldInsertBatchOfEventsAndReportDuplicates() {
+        EventEntity existingEvent = anEventFixture()
+                .withEventDate(CREATED_AT)
+                .insert(rule.getJdbi())
+                .toEntity();
+        EventEntity duplicateOfExistingEvent = anEventFixture()
+                .from(existingEvent)
+                .withSQSMessageId(RandomStringUtils.randomAlphanumeric(50))
+                .toEntity();
+        EventEntity newEvent = anEventFixture()
+                .withResourceExternalId(existingEvent.getResourceExternalId())
+                .withEventType("AUTHORISATION_SUCCEEDED")
+                .withEventDate(CREATED_AT.plusMinutes(1))
+                .toEntity();
+        EventEntity duplicateOfNewEvent = anEventFixture()
+                .from(newEvent)
+                .withSQSMessageId(RandomStringUtils.randomAlphanumeric(50))
+                .toEntity();
+        EventEntity refundEvent = anEventFixture()
+                .withResourceType(REFUND)
+                .withEventDate(CREATED_AT)
+                .toEntity();
+
+        int[] insertedCounts = eventDao.insertEventsIfDoNotExistWithResourceTypeId(
+                List.of(duplicateOfExistingEvent, newEvent, duplicateOfNewEvent, refundEvent));
+
+        assertThat(insertedCounts, is(new int[]{0, 1, 0, 1}));
+        assertThat(dbHelper.getEventsCountByExternalId(existingEvent.getResourceExternalId()), is(2));
+        assertThat(dbHelper.getEventsCountByExternalId(refundEvent.getResourceExternalId()), is(1));
+    }
+
+    @Test
+    void shouldInsertOutboxEntriesOnlyForNewlyInsertedEvents() {
+        EventEntity existingEvent = anEventFixture()
+                .withEventDate(CREATED_AT)
+                .insert(rule.getJdbi())
+                .toEntity();
+        EventEntity duplicateOfExistingEvent = anEventFixture()
+                .from(existingEvent)
+                .withSQSMessageId(RandomStringUtils.randomAlphanumeric(50))
+                .toEntity();
+        EventEntity newEvent = anEventFixture()
+                .withResourceExternalId(existingEvent.getResourceExternalId())
+                .withEventType("AUTHORISATION_SUCCEEDED")
+                .withEventDate(CREATED_AT.plusMinutes(1))
+                .toEntity();
+        EventEntity eventWithNothingToPublish = anEventFixture()
+                .withEventDate(CREATED_AT)
+                .toEntity();
+
+        eventDao.insertEventsIfDoNotExistWithResourceTypeId(
+                List.of(duplicateOfExistingEvent, newEvent, eventWithNothingToPublish),
+                Arrays.asList(
+                        EventOutboxEntity.from(duplicateOfExistingEvent, "duplicate message", TopicName.CARD_PAYMENT_EVENTS),
+                        EventOutboxEntity.from(newEvent, "new message", TopicName.CARD_PAYMENT_EVENTS),
+                        null));
+
+        List<EventOutboxEntity> outboxEntries = rule.getJdbi().onDemand(EventOutboxDao.class).claimDueForPublishing(10, 0);
+        assertThat(outboxEntries, hasSize(1));
+        assertThat(outboxEntries.get(0).getMessage(), is("new message"));
+        assertThat(outboxEntries.get(0).getTopicName(), is(TopicName.CARD_PAYMENT_EVENTS));
+        assertThat(outboxEntries.get(0).getResourceExternalId(), is(newEvent.getResourceExternalId()));
+        assertThat(outboxEntries.get(0).getEventType(), is("AUTHORISATION_SUCCEEDED"));
+    }
+
     @Test
     void shouldInsertDuplicateEventWithDifferentTimestamp() {
         EventEntity event = anEventFixture()
@@ -0,0 +1,100 @@
+package uk.gov.pay.ledger.event.dao;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import uk.gov.pay.ledger.event.entity.EventDigestSnapshotEntity;
+import uk.gov.pay.ledger.event.entity.EventEntity;
+import uk.gov.pay.ledger.event.model.EventDigest;
+import uk.gov.pay.ledger.event.model.SalientEventType;
+import uk.gov.pay.ledger.extension.AppWithPostgresAndSqsExtension;
+import uk.gov.pay.ledger.util.DatabaseTestHelper;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static java.time.ZonedDateTime.parse;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static uk.gov.pay.ledger.event.model.ResourceType.PAYMENT;
+import static uk.gov.pay.ledger.util.DatabaseTestHelper.aDatabaseTestHelper;
+import static uk.gov.pay.ledger.util.fixture.EventFixture.anEventFixture;
+
+class EventDigestSnapshotDaoIT {
+
+    @RegisterExtension
+    public static AppWithPostgresAndSqsExtension rule = new AppWithPostgresAndSqsExtension();
+
+    private static final ZonedDateTime CREATED_AT = parse("2019-06-07T08:46:01.123456Z");
+
+    private EventDigestSnapshotDao eventDigestSnapshotDao;
+    private DatabaseTestHelper dbHelper;
+
+    @BeforeEach
+    void setUp() {
+        eventDigestSnapshotDao = rule.getJdbi().onDemand(EventDigestSnapshotDao.class);
+        dbHelper = aDatabaseTestHelper(rule.getJdbi());
+        dbHelper.truncateAllData();
+    }
+
+    @Test
+    void shouldInsertAndFindSnapshot() {
+        EventEntity event = anEventFixture()
+                .withResourceType(PAYMENT)
+                .withEventDate(CREATED_AT)
+                .withServiceId("a-service-id")
+                .withLive(true)
+                .withEventData("{\"amount\": 1000, \"reference\": \"a-reference\"}")
+                .toEntity();
+
+        eventDigestSnapshotDao.upsert(EventDigestSnapshotEntity.from(EventDigest.fromEventList(List.of(event))));
+
+        EventDigest snapshot = eventDigestSnapshotDao.findByResourceExternalIdAndType(event.getResourceExternalId(), PAYMENT.name())
+                .map(EventDigestSnapshotEntity::toEventDigest)
+                .orElseThrow();
+
+        assertThat(snapshot.getEventCount(), is(1));
+        assertThat(snapshot.getServiceId(), is("a-service-id"));
+        assertThat(snapshot.isLive(), is(true));
+        assertThat(snapshot.getMostRecentEventTimestamp(), is(CREATED_AT));
+        assertThat(snapshot.getEventCreatedDate(), is(CREATED_AT));
+        assertThat(snapshot.getEventAggregate().get("amount"), is(1000));
+        assertThat(snapshot.getEventAggregate().get("reference"), is("a-reference"));
+        assertThat(snapshot.getLatestSalientEventType().orElseThrow(), is(SalientEventType.PAYMENT_CREATED));
+        assertThat(snapshot.getSalientEventTypes(), is(Set.of(SalientEventType.PAYMENT_CREATED)));
+    }
+
+    @Test
+    void shouldOnlyUpdateSnapshotIfEventCountIsUnchanged() {
+        EventEntity event = anEventFixture().withEventDate(CREATED_AT).toEntity();
+        EventDigest eventDigest = EventDigest.fromEventList(List.of(event));
+        eventDigestSnapshotDao.upsert(EventDigestSnapshotEntity.from(eventDigest));
+
+        EventEntity nextEvent = anEventFixture()
+                .withResourceExternalId(event.getResourceExternalId())
+                .withEventDate(CREATED_AT.plusMinutes(1))
+                .withEventType("AUTHORISATION_SUCCEEDED")
+                .toEntity();
+        EventDigestSnapshotEntity folded = EventDigestSnapshotEntity.from(eventDigest.fold(nextEvent));
+
+        assertThat(eventDigestSnapshotDao.updateIfEventCountIs(folded, 1), is(1));
+        assertThat(eventDigestSnapshotDao.updateIfEventCountIs(folded, 1), is(0));
+    }
+
+    @Test
+    void shouldNotReplaceSnapshotWithOneBuiltFromFewerEvents() {
+        EventEntity event = anEventFixture().withEventDate(CREATED_AT).toEntity();
+        EventDigest eventDigest = EventDigest.fromEventList(List.of(event));
+        EventEntity nextEvent = anEventFixture()
+                .withResourceExternalId(event.getResourceExternalId())
+                .withEventDate(CREATED_AT.plusMinutes(1))
+                .toEntity();
+        eventDigestSnapshotDao.upsert(EventDigestSnapshotEntity.from(eventDigest.fold(nextEvent)));
+
+        eventDigestSnapshotDao.upsert(EventDigestSnapshotEntity.from(eventDigest));
+
+        assertThat(eventDigestSnapshotDao.findByResourceExternalIdAndType(event.getResourceExternalId(), PAYMENT.name())
+                .orElseThrow().getEventCount(), is(2));
+    }
+}
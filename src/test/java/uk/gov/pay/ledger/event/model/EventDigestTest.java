@@ -5,6 +5,8 @@ import uk.gov.pay.ledger.event.entity.EventEntity;
 
 import java.time.ZonedDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
@@ -130,4 +132,72 @@ public class EventDigestTest {
         assertThat(eventDigest.isLive(), is(nullValue()));
     }
 
+    @Test
+    public void shouldTakeTheMostRecentValueOfEachFieldOfTheEventData() {
+        ZonedDateTime now = ZonedDateTime.now();
+        EventEntity paymentCreated = anEventFixture()
+                .withEventDate(now.minusMinutes(2))
+                .withEventData("{\"amount\": 1000, \"address\": {\"line1\": \"1 Street\", \"city\": \"London\"}, \"tags\": [1, 2]}")
+                .toEntity();
+        EventEntity detailsUpdated = anEventFixture()
+                .withEventDate(now)
+                .withEventType("A_NON_SALIENT_EVENT")
+                .withEventData("{\"address\": {\"line1\": \"2 Street\"}, \"reference\": null}")
+                .toEntity();
+
+        EventDigest eventDigest = EventDigest.fromEventList(List.of(detailsUpdated, paymentCreated));
+
+        assertThat(eventDigest.getEventAggregate().get("amount"), is(1000));
+        assertThat(eventDigest.getEventAggregate().get("address"), is(Map.of("line1", "2 Street")));
+        assertThat(eventDigest.getEventAggregate().get("tags"), is(List.of(1, 2)));
+        assertThat(eventDigest.getEventAggregate().containsKey("reference"), is(true));
+        assertThat(eventDigest.getLatestSalientEventType(), is(Optional.of(SalientEventType.PAYMENT_CREATED)));
+        assertThat(eventDigest.getEventCreatedDate(), is(paymentCreated.getEventDate()));
+    }
+
+    @Test
+    public void foldingANewerEventShouldGiveSameDigestAsRebuildingFromAllEvents() {
+        ZonedDateTime now = ZonedDateTime.now();
+        EventEntity paymentCreated = anEventFixture()
+                .withEventDate(now.minusMinutes(2))
+                .withServiceId("a-service-id")
+                .withLive(true)
+                .withEventData("{\"amount\": 1000, \"description\": \"a payment\"}")
+                .toEntity();
+        EventEntity captureConfirmed = anEventFixture()
+                .withResourceExternalId(paymentCreated.getResourceExternalId())
+                .withEventDate(now.minusMinutes(1))
+                .withEventType("CAPTURE_CONFIRMED")
+                .withEventData("{\"fee\": 10}")
+                .toEntity();
+        EventEntity detailsUpdated = anEventFixture()
+                .withResourceExternalId(paymentCreated.getResourceExternalId())
+                .withEventDate(now)
+                .withEventType("A_NON_SALIENT_EVENT")
+                .withEventData("{\"description\": \"an updated payment\"}")
+                .toEntity();
+
+        EventDigest folded = EventDigest.fromEventList(List.of(paymentCreated))
+                .fold(captureConfirmed)
+                .fold(detailsUpdated);
+        EventDigest rebuilt = EventDigest.fromEventList(List.of(detailsUpdated, captureConfirmed, paymentCreated));
+
+        assertThat(folded.getEventAggregate(), is(rebuilt.getEventAggregate()));
+        assertThat(folded.getEventCount(), is(rebuilt.getEventCount()));
+        assertThat(folded.getMostRecentEventTimestamp(), is(rebuilt.getMostRecentEventTimestamp()));
+        assertThat(folded.getLatestSalientEventType(), is(rebuilt.getLatestSalientEventType()));
+        assertThat(folded.getSalientEventTypes(), is(rebuilt.getSalientEventTypes()));
+        assertThat(folded.getEventCreatedDate(), is(rebuilt.getEventCreatedDate()));
+        assertThat(folded.getServiceId(), is(rebuilt.getServiceId()));
+        assertThat(folded.isLive(), is(rebuilt.isLive()));
+    }
+
+    @Test
+    public void shouldNotFoldEventOlderThanMostRecentEvent() {
+        ZonedDateTime now = ZonedDateTime.now();
+        EventDigest eventDigest = EventDigest.fromEventList(List.of(anEventFixture().withEventDate(now).toEntity()));
+
+        assertThat(eventDigest.canFold(anEventFixture().withEventDate(now.minusSeconds(1)).toEntity()), is(false));
+        assertThat(eventDigest.canFold(anEventFixture().withEventDate(now.plusSeconds(1)).toEntity()), is(true));
+    }
 }
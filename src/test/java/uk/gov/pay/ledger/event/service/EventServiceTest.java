@@ -7,17 +7,25 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import uk.gov.pay.ledger.event.dao.EventDao;
+import uk.gov.pay.ledger.event.dao.EventDigestSnapshotDao;
+import uk.gov.pay.ledger.event.entity.EventDigestSnapshotEntity;
 import uk.gov.pay.ledger.event.entity.EventEntity;
 import uk.gov.pay.ledger.event.model.EventDigest;
 import uk.gov.pay.ledger.event.model.SalientEventType;
 import uk.gov.pay.ledger.event.model.response.CreateEventResponse;
+import uk.gov.pay.ledger.eventpublisher.TopicName;
+import uk.gov.pay.ledger.eventpublisher.entity.EventOutboxEntity;
 import uk.gov.pay.ledger.exception.EmptyEventsException;
+import uk.gov.pay.ledger.referencedata.ReferenceDataCache;
 import uk.gov.pay.ledger.util.fixture.EventFixture;
 
 import java.time.Instant;
 import java.time.ZonedDateTime;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static java.time.ZoneOffset.UTC;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -25,7 +33,13 @@ import static org.hamcrest.core.Is.is;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static uk.gov.pay.ledger.event.model.ResourceType.AGREEMENT;
 import static uk.gov.pay.ledger.event.model.ResourceType.PAYMENT;
@@ -34,6 +48,12 @@ import static uk.gov.pay.ledger.event.model.ResourceType.PAYMENT;
 class EventServiceTest {
     @Mock
     EventDao mockEventDao;
+    @Mock
+    EventDigestSnapshotDao mockEventDigestSnapshotDao;
+    @Mock
+    ReferenceDataCache mockReferenceDataCache;
+
+    private static final int RESOURCE_TYPE_ID = 1;
 
     private EventService eventService;
 
@@ -46,7 +66,8 @@ class EventServiceTest {
 
     @BeforeEach
     void setUp() {
-        eventService = new EventService(mockEventDao);
+        eventService = new EventService(mockEventDao, mockEventDigestSnapshotDao, mockReferenceDataCache);
+        lenient().when(mockReferenceDataCache.getResourceTypeId(any())).thenReturn(RESOURCE_TYPE_ID);
 
         latestEventTime = ZonedDateTime.now().minusHours(1L);
         String eventDetails1 = "{ \"amount\": 1000}";
@@ -80,6 +101,22 @@ class EventServiceTest {
         assertThat(eventDigest.getEventAggregate().get("amount"), is(1000));
     }
 
+    @Test
+    void getEventDigestsForResources_shouldBuildADigestForEachResourceFromEventsLoadedOldestFirst() {
+        EventEntity otherResourceEvent = EventFixture.anEventFixture()
+                .withResourceExternalId("other_resource_external_id")
+                .toEntity();
+        when(mockEventDao.findEventsForExternalIds(Set.of(resourceExternalId, "other_resource_external_id")))
+                .thenReturn(List.of(event2, otherResourceEvent, event1));
+
+        Map<String, EventDigest> eventDigests = eventService.getEventDigestsForResources(Set.of(resourceExternalId, "other_resource_external_id"));
+
+        assertThat(eventDigests.size(), is(2));
+        assertThat(eventDigests.get(resourceExternalId).getMostRecentEventTimestamp(), is(latestEventTime));
+        assertThat(eventDigests.get(resourceExternalId).getEventAggregate().get("amount"), is(1000));
+        assertThat(eventDigests.get("other_resource_external_id").getResourceExternalId(), is("other_resource_external_id"));
+    }
+
     @Test
     void shouldGetCorrectLatestSalientEventType() {
         String eventDetails1 = "{ \"amount\": 1000}";
@@ -104,7 +141,7 @@ class EventServiceTest {
 
     @Test
     void createIfDoesNotExistReturnsSuccessfulCreatedResponse() {
-        when(mockEventDao.insertEventIfDoesNotExistWithResourceTypeId(event)).thenReturn(Optional.of(1L));
+        when(mockEventDao.insertEventIfDoesNotExist(event, RESOURCE_TYPE_ID, null)).thenReturn(Optional.of(1L));
 
         CreateEventResponse response = eventService.createIfDoesNotExist(event);
 
@@ -114,7 +151,7 @@ class EventServiceTest {
 
     @Test
     void createIfDoesNotExistReturnsSuccessfulIgnoredResponse() {
-        when(mockEventDao.insertEventIfDoesNotExistWithResourceTypeId(event)).thenReturn(Optional.empty());
+        when(mockEventDao.insertEventIfDoesNotExist(event, RESOURCE_TYPE_ID, null)).thenReturn(Optional.empty());
 
         CreateEventResponse response = eventService.createIfDoesNotExist(event);
 
@@ -124,7 +161,7 @@ class EventServiceTest {
 
     @Test
     void createIfDoesNotExistReturnsNotSuccessfulResponse() {
-        when(mockEventDao.insertEventIfDoesNotExistWithResourceTypeId(event))
+        when(mockEventDao.insertEventIfDoesNotExist(event, RESOURCE_TYPE_ID, null))
                 .thenThrow(new RuntimeException("forced failure"));
 
         CreateEventResponse response = eventService.createIfDoesNotExist(event);
@@ -134,6 +171,139 @@ class EventServiceTest {
         assertThat(response.getErrorMessage(), is("forced failure"));
     }
 
+    @Test
+    void createAllIfDoNotExistReturnsResponseForEachEventInOrder() {
+        EventEntity duplicateEvent = EventFixture.anEventFixture().toEntity();
+        when(mockEventDao.insertEventsIfDoNotExist(List.of(event, duplicateEvent), List.of(RESOURCE_TYPE_ID, RESOURCE_TYPE_ID), Arrays.asList(null, null))).thenReturn(new int[]{1, 0});
+
+        List<CreateEventResponse> responses = eventService.createAllIfDoNotExist(List.of(event, duplicateEvent));
+
+        assertThat(responses.get(0).getState(), is(CreateEventResponse.CreateEventState.INSERTED));
+        assertThat(responses.get(1).getState(), is(CreateEventResponse.CreateEventState.IGNORED));
+    }
+
+    @Test
+    void createAllIfDoNotExistStoresEventsIndividuallyWhenBatchFails() {
+        EventEntity badEvent = EventFixture.anEventFixture().toEntity();
+        when(mockEventDao.insertEventsIfDoNotExist(List.of(event, badEvent), List.of(RESOURCE_TYPE_ID, RESOURCE_TYPE_ID), Arrays.asList(null, null)))
+                .thenThrow(new RuntimeException("forced failure"));
+        when(mockEventDao.insertEventIfDoesNotExist(event, RESOURCE_TYPE_ID, null)).thenReturn(Optional.of(1L));
+        when(mockEventDao.insertEventIfDoesNotExist(badEvent, RESOURCE_TYPE_ID, null)).thenThrow(new RuntimeException("bad event"));
+
+        List<CreateEventResponse> responses = eventService.createAllIfDoNotExist(List.of(event, badEvent));
+
+        assertThat(responses.get(0).getState(), is(CreateEventResponse.CreateEventState.INSERTED));
+        assertThat(responses.get(1).getState(), is(CreateEventResponse.CreateEventState.ERROR));
+        assertThat(responses.get(1).getErrorMessage(), is("bad event"));
+    }
+
+    @Test
+    void createAllIfDoNotExistStoresOutboxEntriesWithEventsStoredIndividuallyWhenBatchFails() {
+        EventEntity otherEvent = EventFixture.anEventFixture().toEntity();
+        EventOutboxEntity outboxEntry = EventOutboxEntity.from(event, "a message", TopicName.CARD_PAYMENT_EVENTS);
+        List<EventOutboxEntity> outboxEntries = Arrays.asList(outboxEntry, null);
+        when(mockEventDao.insertEventsIfDoNotExist(List.of(event, otherEvent), List.of(RESOURCE_TYPE_ID, RESOURCE_TYPE_ID), outboxEntries))
+                .thenThrow(new RuntimeException("forced failure"));
+        when(mockEventDao.insertEventIfDoesNotExist(event, RESOURCE_TYPE_ID, outboxEntry)).thenReturn(Optional.of(1L));
+        when(mockEventDao.insertEventIfDoesNotExist(otherEvent, RESOURCE_TYPE_ID, null)).thenReturn(Optional.of(2L));
+
+        List<CreateEventResponse> responses = eventService.createAllIfDoNotExist(List.of(event, otherEvent), outboxEntries);
+
+        assertThat(responses.get(0).getState(), is(CreateEventResponse.CreateEventState.INSERTED));
+        assertThat(responses.get(1).getState(), is(CreateEventResponse.CreateEventState.INSERTED));
+    }
+
+    @Nested
+    class getEventDigestIncludingEvents {
+
+        private EventEntity newEvent;
+
+        @BeforeEach
+        void setUp() {
+            newEvent = EventFixture.anEventFixture()
+                    .withEventData("{ \"reference\": \"a reference\"}")
+                    .withEventType("AUTHORISATION_SUCCEEDED")
+                    .withResourceExternalId(resourceExternalId)
+                    .withEventDate(latestEventTime.plusMinutes(5L))
+                    .toEntity();
+        }
+
+        @Test
+        void shouldFoldNewEventIntoSnapshotWithoutReadingEventHistory() {
+            EventDigest snapshotDigest = EventDigest.fromEventList(List.of(event1, event2));
+            when(mockEventDigestSnapshotDao.findByResourceExternalIdAndType(resourceExternalId, PAYMENT.name()))
+                    .thenReturn(Optional.of(EventDigestSnapshotEntity.from(snapshotDigest)));
+            when(mockEventDigestSnapshotDao.updateIfEventCountIs(any(EventDigestSnapshotEntity.class), eq(2))).thenReturn(1);
+
+            EventDigest eventDigest = eventService.getEventDigestIncludingEvents(List.of(newEvent), true);
+
+            assertThat(eventDigest.getEventCount(), is(3));
+            assertThat(eventDigest.getMostRecentEventTimestamp(), is(newEvent.getEventDate()));
+            assertThat(eventDigest.getMostRecentSalientEventType().get(), is(SalientEventType.AUTHORISATION_SUCCEEDED));
+            assertThat(eventDigest.getEventAggregate().get("reference"), is("a reference"));
+            assertThat(eventDigest.getEventAggregate().get("description"), is("a payment"));
+            assertThat(eventDigest.getEventAggregate().get("amount"), is(1000));
+            verify(mockEventDao, never()).getEventsByResourceExternalId(any());
+        }
+
+        @Test
+        void shouldFoldSeveralNewEventsIntoSnapshotInEventDateOrder() {
+            EventEntity laterEvent = EventFixture.anEventFixture()
+                    .withEventData("{ \"reference\": \"a later reference\"}")
+                    .withEventType("USER_APPROVED_FOR_CAPTURE")
+                    .withResourceExternalId(resourceExternalId)
+                    .withEventDate(latestEventTime.plusMinutes(10L))
+                    .toEntity();
+            EventDigest snapshotDigest = EventDigest.fromEventList(List.of(event1, event2));
+            when(mockEventDigestSnapshotDao.findByResourceExternalIdAndType(resourceExternalId, PAYMENT.name()))
+                    .thenReturn(Optional.of(EventDigestSnapshotEntity.from(snapshotDigest)));
+            when(mockEventDigestSnapshotDao.updateIfEventCountIs(any(EventDigestSnapshotEntity.class), eq(2))).thenReturn(1);
+
+            EventDigest eventDigest = eventService.getEventDigestIncludingEvents(List.of(laterEvent, newEvent), true);
+
+            assertThat(eventDigest.getEventCount(), is(4));
+            assertThat(eventDigest.getMostRecentEventTimestamp(), is(laterEvent.getEventDate()));
+            assertThat(eventDigest.getEventAggregate().get("reference"), is("a later reference"));
+            verify(mockEventDigestSnapshotDao, times(1)).updateIfEventCountIs(any(EventDigestSnapshotEntity.class), eq(2));
+            verify(mockEventDao, never()).getEventsByResourceExternalId(any());
+        }
+
+        @Test
+        void shouldRebuildFromEventHistoryWhenEventIsOlderThanSnapshot() {
+            EventDigest snapshotDigest = EventDigest.fromEventList(List.of(newEvent));
+            when(mockEventDigestSnapshotDao.findByResourceExternalIdAndType(resourceExternalId, PAYMENT.name()))
+                    .thenReturn(Optional.of(EventDigestSnapshotEntity.from(snapshotDigest)));
+
+            EventDigest eventDigest = eventService.getEventDigestIncludingEvents(List.of(event1), true);
+
+            assertThat(eventDigest.getEventCount(), is(2));
+            verify(mockEventDigestSnapshotDao, never()).updateIfEventCountIs(any(), anyInt());
+            verify(mockEventDigestSnapshotDao).upsert(any(EventDigestSnapshotEntity.class));
+        }
+
+        @Test
+        void shouldRebuildFromEventHistoryWhenSnapshotWasUpdatedConcurrently() {
+            EventDigest snapshotDigest = EventDigest.fromEventList(List.of(event1, event2));
+            when(mockEventDigestSnapshotDao.findByResourceExternalIdAndType(resourceExternalId, PAYMENT.name()))
+                    .thenReturn(Optional.of(EventDigestSnapshotEntity.from(snapshotDigest)));
+            when(mockEventDigestSnapshotDao.updateIfEventCountIs(any(EventDigestSnapshotEntity.class), eq(2))).thenReturn(0);
+
+            eventService.getEventDigestIncludingEvents(List.of(newEvent), true);
+
+            verify(mockEventDao).getEventsByResourceExternalId(resourceExternalId);
+            verify(mockEventDigestSnapshotDao).upsert(any(EventDigestSnapshotEntity.class));
+        }
+
+        @Test
+        void shouldRebuildFromEventHistoryForAnEventThatWasAlreadyStored() {
+            EventDigest eventDigest = eventService.getEventDigestIncludingEvents(List.of(event1), false);
+
+            assertThat(eventDigest.getEventCount(), is(2));
+            verify(mockEventDigestSnapshotDao, never()).findByResourceExternalIdAndType(any(), any());
+            verify(mockEventDigestSnapshotDao).upsert(any(EventDigestSnapshotEntity.class));
+        }
+    }
+
     @Nested
     class getEventDigestForResourceAndType {
         @Test
@@ -0,0 +1,94 @@
+package uk.gov.pay.ledger.eventpublisher;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.pay.ledger.app.config.SnsConfig;
+import uk.gov.pay.ledger.eventpublisher.dao.EventOutboxDao;
+import uk.gov.pay.ledger.eventpublisher.entity.EventOutboxEntity;
+import uk.gov.pay.ledger.queue.IngestStageMetrics;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static uk.gov.pay.ledger.eventpublisher.TopicName.CARD_PAYMENT_DISPUTE_EVENTS;
+import static uk.gov.pay.ledger.eventpublisher.TopicName.CARD_PAYMENT_EVENTS;
+
+@ExtendWith(MockitoExtension.class)
+class EventOutboxDrainerTest {
+
+    @Mock
+    private ScheduledExecutorService scheduledExecutorService;
+
+    @Mock
+    private SnsConfig snsConfig;
+
+    @Mock
+    private EventOutboxDao eventOutboxDao;
+
+    @Mock
+    private EventPublisher eventPublisher;
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private EventOutboxDrainer eventOutboxDrainer;
+
+    @BeforeEach
+    void setUp() {
+        when(snsConfig.getOutboxBatchSize()).thenReturn(100);
+        when(snsConfig.getOutboxClaimLeaseInSeconds()).thenReturn(60);
+        eventOutboxDrainer = new EventOutboxDrainer(scheduledExecutorService, metricRegistry, snsConfig,
+                eventOutboxDao, eventPublisher, new IngestStageMetrics(metricRegistry));
+    }
+
+    @Test
+    void shouldDeletePublishedEntriesAndScheduleFailedEntriesForRetry() {
+        EventOutboxEntity paymentEntry = anOutboxEntry(1L, CARD_PAYMENT_EVENTS, "payment message");
+        EventOutboxEntity otherPaymentEntry = anOutboxEntry(2L, CARD_PAYMENT_EVENTS, "other payment message");
+        EventOutboxEntity disputeEntry = anOutboxEntry(3L, CARD_PAYMENT_DISPUTE_EVENTS, "dispute message");
+        when(eventOutboxDao.claimDueForPublishing(100, 60)).thenReturn(List.of(disputeEntry, paymentEntry, otherPaymentEntry));
+        when(eventPublisher.publishMessagesToTopic(Map.of("1", "payment message", "2", "other payment message"), CARD_PAYMENT_EVENTS))
+                .thenReturn(Map.of("2", "InternalError: try again"));
+        when(eventPublisher.publishMessagesToTopic(Map.of("3", "dispute message"), CARD_PAYMENT_DISPUTE_EVENTS))
+                .thenReturn(Map.of());
+        when(snsConfig.getOutboxMaximumRetryDelayInSeconds()).thenReturn(300);
+
+        int drainedEntries = eventOutboxDrainer.publishBatch();
+
+        assertThat(drainedEntries, is(3));
+        verify(eventOutboxDao).delete(List.of(1L, 3L));
+        verify(eventOutboxDao).scheduleRetry(List.of(2L), 300);
+        assertThat(metricRegistry.meter("event-outbox.published-messages").getCount(), is(2L));
+        assertThat(metricRegistry.meter("event-outbox.failed-messages").getCount(), is(1L));
+        assertThat(metricRegistry.timer("ingest-stage.sns-publish.payment").getCount(), is(3L));
+    }
+
+    @Test
+    void shouldNotPublishAnythingWhenNoEntriesAreDue() {
+        when(eventOutboxDao.claimDueForPublishing(100, 60)).thenReturn(List.of());
+
+        int drainedEntries = eventOutboxDrainer.publishBatch();
+
+        assertThat(drainedEntries, is(0));
+        verifyNoInteractions(eventPublisher);
+        verify(eventOutboxDao, never()).delete(any());
+        verify(eventOutboxDao, never()).scheduleRetry(any(), anyInt());
+    }
+
+    private EventOutboxEntity anOutboxEntry(Long id, TopicName topicName, String message) {
+        return new EventOutboxEntity(id, topicName.name(), message, "sqs-message-id", "PAYMENT", "resource-external-id",
+                "PAYMENT_CREATED", ZonedDateTime.now(), 0);
+    }
+}
@@ -2,15 +2,27 @@ package uk.gov.pay.ledger.eventpublisher;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import software.amazon.awssdk.services.sns.SnsClient;
-import software.amazon.awssdk.services.sns.model.PublishRequest;
+import software.amazon.awssdk.services.sns.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequest;
+import software.amazon.awssdk.services.sns.model.PublishBatchResponse;
 import uk.gov.pay.ledger.app.LedgerConfig;
 import uk.gov.pay.ledger.app.config.SnsConfig;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -34,22 +46,52 @@ public class EventPublisherTest {
     private EventPublisher eventPublisher;
 
     @Test
-    public void shouldPublishMessageToSpecifiedTopic() throws Exception {
+    public void shouldPublishMessagesInBatchesOfAtMostTenAndReturnFailures() {
         when(ledgerConfig.getSnsConfig()).thenReturn(snsConfig);
         when(snsConfig.getCardPaymentEventsTopicArn()).thenReturn(cardPaymentEventsTopicArn);
         when(snsConfig.getCardPaymentDisputeEventsTopicArn()).thenReturn(cardPaymentDisputeEventsTopicArn);
-        topicNameArnMapper = new TopicNameArnMapper(ledgerConfig);
-        eventPublisher = new EventPublisher(snsClient, topicNameArnMapper);
-        var message = "Hooray, I've been published";
-        var expectedPublishRequest = PublishRequest
-                .builder()
-                .message(message)
-                .topicArn(cardPaymentEventsTopicArn)
-                .build();
+        eventPublisher = new EventPublisher(snsClient, new TopicNameArnMapper(ledgerConfig));
+        Map<String, String> messagesById = new LinkedHashMap<>();
+        for (int i = 0; i < 12; i++) {
+            messagesById.put(String.valueOf(i), "message " + i);
+        }
+        when(snsClient.publishBatch(any(PublishBatchRequest.class)))
+                .thenReturn(PublishBatchResponse.builder()
+                        .failed(BatchResultErrorEntry.builder().id("3").code("InternalError").message("try again").build())
+                        .build())
+                .thenThrow(new RuntimeException("SNS unavailable"));
+
+        Map<String, String> failures = eventPublisher.publishMessagesToTopic(messagesById, TopicName.CARD_PAYMENT_EVENTS);
+
+        ArgumentCaptor<PublishBatchRequest> requests = ArgumentCaptor.forClass(PublishBatchRequest.class);
+        verify(snsClient, times(2)).publishBatch(requests.capture());
+        assertThat(requests.getAllValues().get(0).publishBatchRequestEntries(), hasSize(10));
+        assertThat(requests.getAllValues().get(0).topicArn(), is(cardPaymentEventsTopicArn));
+        assertThat(requests.getAllValues().get(1).publishBatchRequestEntries(), hasSize(2));
+        assertThat(failures.keySet(), containsInAnyOrder("3", "10", "11"));
+        assertThat(failures.get("3"), is("InternalError: try again"));
+    }
+
+    @Test
+    public void shouldStartANewBatchRatherThanExceedTheMaximumRequestSize() {
+        when(ledgerConfig.getSnsConfig()).thenReturn(snsConfig);
+        when(snsConfig.getCardPaymentEventsTopicArn()).thenReturn(cardPaymentEventsTopicArn);
+        when(snsConfig.getCardPaymentDisputeEventsTopicArn()).thenReturn(cardPaymentDisputeEventsTopicArn);
+        eventPublisher = new EventPublisher(snsClient, new TopicNameArnMapper(ledgerConfig));
+        String largeMessage = "a".repeat(EventPublisher.MAXIMUM_BATCH_SIZE_IN_BYTES / 2);
+        Map<String, String> messagesById = new LinkedHashMap<>();
+        messagesById.put("1", largeMessage);
+        messagesById.put("2", largeMessage);
+        messagesById.put("3", "small message");
+        when(snsClient.publishBatch(any(PublishBatchRequest.class))).thenReturn(PublishBatchResponse.builder().build());
 
-        eventPublisher.publishMessageToTopic(message, TopicName.CARD_PAYMENT_EVENTS);
+        Map<String, String> failures = eventPublisher.publishMessagesToTopic(messagesById, TopicName.CARD_PAYMENT_EVENTS);
 
-        verify(snsClient).publish(expectedPublishRequest);
+        ArgumentCaptor<PublishBatchRequest> requests = ArgumentCaptor.forClass(PublishBatchRequest.class);
+        verify(snsClient, times(2)).publishBatch(requests.capture());
+        assertThat(requests.getAllValues().get(0).publishBatchRequestEntries(), hasSize(2));
+        assertThat(requests.getAllValues().get(1).publishBatchRequestEntries(), hasSize(1));
+        assertThat(failures.isEmpty(), is(true));
     }
 
     @Test
@@ -0,0 +1,85 @@
+package uk.gov.pay.ledger.eventpublisher.dao;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import uk.gov.pay.ledger.event.entity.EventEntity;
+import uk.gov.pay.ledger.eventpublisher.entity.EventOutboxEntity;
+import uk.gov.pay.ledger.extension.AppWithPostgresAndSqsExtension;
+import uk.gov.pay.ledger.util.DatabaseTestHelper;
+
+import java.util.Comparator;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static uk.gov.pay.ledger.eventpublisher.TopicName.CARD_PAYMENT_EVENTS;
+import static uk.gov.pay.ledger.util.DatabaseTestHelper.aDatabaseTestHelper;
+import static uk.gov.pay.ledger.util.fixture.EventFixture.anEventFixture;
+
+class EventOutboxDaoIT {
+
+    @RegisterExtension
+    public static AppWithPostgresAndSqsExtension rule = new AppWithPostgresAndSqsExtension();
+
+    private EventOutboxDao eventOutboxDao;
+    private DatabaseTestHelper dbHelper;
+
+    @BeforeEach
+    void setUp() {
+        eventOutboxDao = rule.getJdbi().onDemand(EventOutboxDao.class);
+        dbHelper = aDatabaseTestHelper(rule.getJdbi());
+        dbHelper.truncateAllData();
+    }
+
+    @Test
+    void shouldClaimTheOldestDueEntries() {
+        EventEntity event = anEventFixture().toEntity();
+        eventOutboxDao.insert(List.of(
+                EventOutboxEntity.from(event, "first message", CARD_PAYMENT_EVENTS),
+                EventOutboxEntity.from(event, "second message", CARD_PAYMENT_EVENTS),
+                EventOutboxEntity.from(event, "third message", CARD_PAYMENT_EVENTS)));
+
+        List<EventOutboxEntity> entries = eventOutboxDao.claimDueForPublishing(2, 60);
+
+        assertThat(entries.stream().map(EventOutboxEntity::getMessage).toList(),
+                containsInAnyOrder("first message", "second message"));
+        assertThat(entries.get(0).getSqsMessageId(), is(event.getSqsMessageId()));
+        assertThat(entries.get(0).getAttempts(), is(0));
+        assertThat(eventOutboxDao.countEntries(), is(3L));
+    }
+
+    @Test
+    void shouldNotClaimEntriesAgainUntilTheLeaseExpires() {
+        EventEntity event = anEventFixture().toEntity();
+        eventOutboxDao.insert(List.of(
+                EventOutboxEntity.from(event, "claimed message", CARD_PAYMENT_EVENTS),
+                EventOutboxEntity.from(event, "expired message", CARD_PAYMENT_EVENTS)));
+        eventOutboxDao.claimDueForPublishing(1, 300);
+        eventOutboxDao.claimDueForPublishing(1, 0);
+
+        List<EventOutboxEntity> entries = eventOutboxDao.claimDueForPublishing(10, 300);
+
+        assertThat(entries, hasSize(1));
+        assertThat(entries.get(0).getMessage(), is("expired message"));
+    }
+
+    @Test
+    void shouldNotFindEntriesScheduledForRetryUntilTheyAreDue() {
+        EventEntity event = anEventFixture().toEntity();
+        eventOutboxDao.insert(List.of(
+                EventOutboxEntity.from(event, "failed message", CARD_PAYMENT_EVENTS),
+                EventOutboxEntity.from(event, "published message", CARD_PAYMENT_EVENTS)));
+        List<EventOutboxEntity> entries = eventOutboxDao.claimDueForPublishing(10, 0).stream()
+                .sorted(Comparator.comparing(EventOutboxEntity::getId))
+                .toList();
+
+        eventOutboxDao.scheduleRetry(List.of(entries.get(0).getId()), 300);
+        eventOutboxDao.delete(List.of(entries.get(1).getId()));
+
+        assertThat(eventOutboxDao.claimDueForPublishing(10, 0), hasSize(0));
+        assertThat(eventOutboxDao.countEntries(), is(1L));
+    }
+}
@@ -0,0 +1,94 @@
+package uk.gov.pay.ledger.exportjob.dao;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import uk.gov.pay.ledger.exportjob.model.CsvExportJob;
+import uk.gov.pay.ledger.extension.AppWithPostgresAndSqsExtension;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static uk.gov.pay.ledger.util.DatabaseTestHelper.aDatabaseTestHelper;
+
+class CsvExportJobDaoIT {
+
+    @RegisterExtension
+    public static AppWithPostgresAndSqsExtension rule = new AppWithPostgresAndSqsExtension();
+
+    private CsvExportJobDao csvExportJobDao;
+
+    @BeforeEach
+    void setUp() {
+        csvExportJobDao = rule.getJdbi().onDemand(CsvExportJobDao.class);
+        aDatabaseTestHelper(rule.getJdbi()).truncateAllData();
+    }
+
+    @Test
+    void shouldInsertOnlyOneUnfinishedJobForTheSameRequest() {
+        Optional<CsvExportJob> job = insert("job-1", "digest", List.of("1", "2"), "node-1");
+        Optional<CsvExportJob> sameRequest = insert("job-2", "digest", List.of("1", "2"), "node-1");
+
+        assertThat(job.isPresent(), is(true));
+        assertThat(job.get().getStatus(), is(CsvExportJob.Status.PENDING));
+        assertThat(job.get().getGatewayAccountIds(), is(Set.of("1", "2")));
+        assertThat(job.get().getQueryString(), is("account_id=1,2&state=success"));
+        assertThat(sameRequest.isPresent(), is(false));
+        assertThat(csvExportJobDao.findUnfinishedByRequestDigest("digest").get().getId(), is("job-1"));
+
+        csvExportJobDao.startAttempt("job-1", "node-1");
+        csvExportJobDao.complete("job-1", "node-1", null, 100, 2);
+
+        assertThat(csvExportJobDao.findUnfinishedByRequestDigest("digest").isPresent(), is(false));
+        assertThat(insert("job-3", "digest", List.of("1", "2"), "node-1").isPresent(), is(true));
+    }
+
+    @Test
+    void shouldOnlyUpdateJobWhileTheOwnerHoldsTheLease() {
+        insert("job-1", "digest", List.of("1"), "node-1");
+
+        assertThat(csvExportJobDao.startAttempt("job-1", "node-2"), is(0));
+        assertThat(csvExportJobDao.startAttempt("job-1", "node-1"), is(1));
+        assertThat(csvExportJobDao.checkpoint("job-1", "node-1", null, 50, 1, 300), is(1));
+
+        CsvExportJob job = csvExportJobDao.findById("job-1").get();
+        assertThat(job.getStatus(), is(CsvExportJob.Status.RUNNING));
+        assertThat(job.getAttempts(), is(1));
+        assertThat(job.getCheckpoint().getSizeInBytes(), is(50L));
+    }
+
+    @Test
+    void shouldClaimJobsWhoseLeaseHasExpired() {
+        insert("job-1", "digest-1", List.of("1"), "node-1");
+        insert("job-2", "digest-2", List.of("1"), "node-1");
+
+        assertThat(csvExportJobDao.claimAbandoned("node-2", 300).isPresent(), is(false));
+
+        csvExportJobDao.releaseLeases("node-1");
+        CsvExportJob claimedJob = csvExportJobDao.claimAbandoned("node-2", 300).get();
+
+        assertThat(claimedJob.getId(), is("job-1"));
+        assertThat(csvExportJobDao.startAttempt("job-1", "node-1"), is(0));
+        assertThat(csvExportJobDao.startAttempt("job-1", "node-2"), is(1));
+    }
+
+    @Test
+    void shouldCountUnfinishedJobsSharingAGatewayAccount() {
+        insert("job-1", "digest-1", List.of("1", "2"), "node-1");
+        insert("job-2", "digest-2", List.of("3"), "node-1");
+        insert("job-3", "digest-3", List.of("2"), "node-1");
+        csvExportJobDao.startAttempt("job-3", "node-1");
+        csvExportJobDao.fail("job-3", "node-1");
+
+        assertThat(csvExportJobDao.countUnfinishedForGatewayAccounts(List.of("2", "4")), is(1L));
+        assertThat(csvExportJobDao.countUnfinishedForGatewayAccounts(List.of("1", "3")), is(2L));
+    }
+
+    private Optional<CsvExportJob> insert(String id, String requestDigest, List<String> gatewayAccountIds, String leaseOwner) {
+        return csvExportJobDao.insert(id, requestDigest, "account_id=" + String.join(",", gatewayAccountIds) + "&state=success",
+                gatewayAccountIds, false, false, leaseOwner, 300);
+    }
+}
@@ -0,0 +1,50 @@
+package uk.gov.pay.ledger.exportjob.resource;
+
+import jakarta.ws.rs.WebApplicationException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.NullSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ByteRangeTest {
+
+    @Test
+    void shouldParseRangeWithFirstAndLastByte() {
+        ByteRange range = ByteRange.fromHeader("bytes=10-19", 100).orElseThrow();
+
+        assertThat(range.getFirst(), is(10L));
+        assertThat(range.getLength(), is(10L));
+        assertThat(range.contentRange(100), is("bytes 10-19/100"));
+    }
+
+    @Test
+    void shouldParseOpenEndedRangeAndRangeEndingPastTheFile() {
+        assertThat(ByteRange.fromHeader("bytes=90-", 100).orElseThrow().contentRange(100), is("bytes 90-99/100"));
+        assertThat(ByteRange.fromHeader("bytes=90-500", 100).orElseThrow().contentRange(100), is("bytes 90-99/100"));
+    }
+
+    @Test
+    void shouldParseSuffixRange() {
+        assertThat(ByteRange.fromHeader("bytes=-30", 100).orElseThrow().contentRange(100), is("bytes 70-99/100"));
+        assertThat(ByteRange.fromHeader("bytes=-300", 100).orElseThrow().contentRange(100), is("bytes 0-99/100"));
+    }
+
+    @ParameterizedTest
+    @NullSource
+    @ValueSource(strings = {"", "bytes=-", "bytes=20-10", "bytes=0-10,20-30", "items=0-10", "bytes=a-b"})
+    void shouldIgnoreMissingInvalidOrMultipleRanges(String rangeHeader) {
+        assertThat(ByteRange.fromHeader(rangeHeader, 100).isPresent(), is(false));
+    }
+
+    @Test
+    void shouldRejectRangeStartingPastTheFile() {
+        WebApplicationException exception = assertThrows(WebApplicationException.class, () -> ByteRange.fromHeader("bytes=100-", 100));
+
+        assertThat(exception.getResponse().getStatus(), is(416));
+        assertThat(exception.getResponse().getHeaderString("Content-Range"), is("bytes */100"));
+    }
+}
@@ -0,0 +1,128 @@
+package uk.gov.pay.ledger.exportjob.resource;
+
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import uk.gov.pay.ledger.extension.AppWithPostgresAndSqsExtension;
+import uk.gov.pay.ledger.transaction.state.TransactionState;
+import uk.gov.pay.ledger.util.fixture.TransactionFixture;
+
+import jakarta.ws.rs.core.Response;
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static io.restassured.RestAssured.given;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.commons.csv.CSVFormat.RFC4180;
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static uk.gov.pay.ledger.util.DatabaseTestHelper.aDatabaseTestHelper;
+import static uk.gov.pay.ledger.util.fixture.TransactionFixture.aTransactionFixture;
+
+public class CsvExportJobResourceIT {
+
+    @RegisterExtension
+    public static AppWithPostgresAndSqsExtension rule = new AppWithPostgresAndSqsExtension();
+
+    private Integer port = rule.getAppRule().getLocalPort();
+
+    @BeforeEach
+    public void setUp() {
+        aDatabaseTestHelper(rule.getJdbi()).truncateAllData();
+    }
+
+    @Test
+    public void shouldGenerateCsvInTheBackgroundAndDownloadItInRanges() throws IOException {
+        String gatewayAccountId = "123";
+        TransactionFixture newerPayment = insertPayment(gatewayAccountId, ZonedDateTime.parse("2018-03-12T16:25:01.123456Z"));
+        TransactionFixture olderPayment = insertPayment(gatewayAccountId, ZonedDateTime.parse("2018-03-11T16:25:01.123456Z"));
+        insertPayment("456", ZonedDateTime.parse("2018-03-12T16:25:01.123456Z"));
+
+        String jobId = given().port(port)
+                .post("/v1/csv-export-job?account_id=" + gatewayAccountId)
+                .then()
+                .statusCode(Response.Status.ACCEPTED.getStatusCode())
+                .extract().path("job_id");
+
+        await().atMost(10, TimeUnit.SECONDS).until(() -> "completed".equals(given().port(port)
+                .get("/v1/csv-export-job/" + jobId + "?account_id=" + gatewayAccountId)
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode())
+                .extract().path("status")));
+
+        String csv = given().port(port)
+                .get("/v1/csv-export-job/" + jobId + "/download?account_id=" + gatewayAccountId)
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode())
+                .header("Accept-Ranges", "bytes")
+                .contentType("text/csv")
+                .extract().asString();
+
+        List<CSVRecord> csvRecords = CSVParser.parse(csv, RFC4180.withFirstRecordAsHeader()).getRecords();
+        assertThat(csvRecords.size(), is(2));
+        assertThat(csvRecords.get(0).get("GOV.UK Payment ID"), is(newerPayment.getExternalId()));
+        assertThat(csvRecords.get(1).get("GOV.UK Payment ID"), is(olderPayment.getExternalId()));
+
+        byte[] csvBytes = csv.getBytes(UTF_8);
+        String tail = given().port(port)
+                .header("Range", "bytes=10-")
+                .get("/v1/csv-export-job/" + jobId + "/download?account_id=" + gatewayAccountId)
+                .then()
+                .statusCode(Response.Status.PARTIAL_CONTENT.getStatusCode())
+                .header("Content-Range", "bytes 10-" + (csvBytes.length - 1) + "/" + csvBytes.length)
+                .extract().asString();
+        assertThat(tail, is(new String(csvBytes, 10, csvBytes.length - 10, UTF_8)));
+    }
+
+    @Test
+    public void shouldCreateAnotherJobForTheSameExport_whenTheFirstHasCompleted() {
+        String firstJobId = given().port(port)
+                .post("/v1/csv-export-job?account_id=1,2&state=success")
+                .then()
+                .statusCode(Response.Status.ACCEPTED.getStatusCode())
+                .extract().path("job_id");
+
+        await().atMost(10, TimeUnit.SECONDS).until(() -> "completed".equals(given().port(port)
+                .get("/v1/csv-export-job/" + firstJobId + "?account_id=2,1")
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode())
+                .extract().path("status")));
+
+        String secondJobId = given().port(port)
+                .post("/v1/csv-export-job?account_id=2,1&state=success")
+                .then()
+                .statusCode(Response.Status.ACCEPTED.getStatusCode())
+                .extract().path("job_id");
+        assertThat(secondJobId.equals(firstJobId), is(false));
+    }
+
+    @Test
+    public void shouldNotFindJobForOtherGatewayAccounts() {
+        String jobId = given().port(port)
+                .post("/v1/csv-export-job?account_id=1")
+                .then()
+                .statusCode(Response.Status.ACCEPTED.getStatusCode())
+                .extract().path("job_id");
+
+        given().port(port)
+                .get("/v1/csv-export-job/" + jobId + "?account_id=2")
+                .then()
+                .statusCode(Response.Status.NOT_FOUND.getStatusCode());
+    }
+
+    private TransactionFixture insertPayment(String gatewayAccountId, ZonedDateTime createdDate) {
+        return aTransactionFixture()
+                .withTransactionType("PAYMENT")
+                .withState(TransactionState.SUCCESS)
+                .withGatewayAccountId(gatewayAccountId)
+                .withCreatedDate(createdDate)
+                .withDefaultCardDetails()
+                .withDefaultTransactionDetails()
+                .insert(rule.getJdbi());
+    }
+}
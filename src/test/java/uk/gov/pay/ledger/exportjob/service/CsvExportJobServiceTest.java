@@ -0,0 +1,318 @@
+package uk.gov.pay.ledger.exportjob.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.ws.rs.WebApplicationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.pay.ledger.app.config.ReportingConfig;
+import uk.gov.pay.ledger.exportjob.dao.CsvExportJobDao;
+import uk.gov.pay.ledger.exportjob.model.CsvExportJob;
+import uk.gov.pay.ledger.gatewayaccountmetadata.service.GatewayAccountMetadataService;
+import uk.gov.pay.ledger.transaction.dao.TransactionDao;
+import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
+import uk.gov.pay.ledger.transaction.model.CsvTransactionFactory;
+import uk.gov.pay.ledger.transaction.search.common.TransactionSearchCursor;
+import uk.gov.pay.ledger.transaction.search.common.TransactionSearchParams;
+import uk.gov.pay.ledger.transaction.service.CsvService;
+import uk.gov.pay.ledger.transaction.state.TransactionState;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Consumer;
+
+import static com.google.common.util.concurrent.MoreExecutors.newDirectExecutorService;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static uk.gov.pay.ledger.util.fixture.TransactionFixture.aTransactionFixture;
+
+@ExtendWith(MockitoExtension.class)
+class CsvExportJobServiceTest {
+
+    private static final String QUERY_STRING = "account_id=1,2&state=success";
+
+    @Mock
+    private ReportingConfig reportingConfig;
+
+    @Mock
+    private CsvExportJobDao csvExportJobDao;
+
+    @Mock
+    private TransactionDao transactionDao;
+
+    @Mock
+    private GatewayAccountMetadataService gatewayAccountMetadataService;
+
+    @TempDir
+    Path directory;
+
+    private final Clock clock = Clock.fixed(Instant.parse("2024-01-10T12:00:00Z"), ZoneOffset.UTC);
+    private CsvService csvService;
+    private TransactionSearchParams searchParams;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(reportingConfig.getCsvExportJobDirectory()).thenReturn(directory.toString());
+        lenient().when(reportingConfig.getStreamingCsvPageSize()).thenReturn(100);
+        lenient().when(reportingConfig.getCsvExportJobCheckpointInterval()).thenReturn(2);
+        lenient().when(reportingConfig.getCsvExportJobMaximumAttempts()).thenReturn(2);
+        lenient().when(reportingConfig.getCsvExportJobExpiryInMinutes()).thenReturn(60);
+        lenient().when(reportingConfig.getCsvExportJobLeaseInSeconds()).thenReturn(300);
+        lenient().when(reportingConfig.getCsvExportJobMaximumUnfinishedJobsPerAccount()).thenReturn(2);
+        lenient().when(reportingConfig.getCsvExportJobMaximumTotalSizeInMegabytes()).thenReturn(1L);
+        lenient().when(gatewayAccountMetadataService.getKeysForGatewayAccounts(anyList())).thenReturn(List.of());
+        lenient().when(csvExportJobDao.findUnfinishedByRequestDigest(anyString())).thenReturn(Optional.empty());
+        lenient().when(csvExportJobDao.insert(anyString(), anyString(), anyString(), anyList(), anyBoolean(), anyBoolean(), anyString(), anyInt()))
+                .thenAnswer(invocation -> Optional.of(aJob(invocation.getArgument(0), invocation.getArgument(1),
+                        invocation.getArgument(2), CsvExportJob.Checkpoint.START, 0)));
+        lenient().when(csvExportJobDao.startAttempt(anyString(), anyString())).thenReturn(1);
+        lenient().when(csvExportJobDao.checkpoint(anyString(), anyString(), any(), anyLong(), anyLong(), anyInt())).thenReturn(1);
+        lenient().when(csvExportJobDao.complete(anyString(), anyString(), any(), anyLong(), anyLong())).thenReturn(1);
+        csvService = new CsvService(new CsvTransactionFactory(new ObjectMapper()), gatewayAccountMetadataService);
+        searchParams = aSearch(List.of("1", "2"));
+    }
+
+    @Test
+    void shouldWriteEveryTransactionToTheFileOfTheJob() throws IOException {
+        CsvExportJobService csvExportJobService = csvExportJobService(newDirectExecutorService());
+        when(transactionDao.streamTransactions(any(TransactionSearchParams.class), eq(100), any())).thenAnswer(invocation -> {
+            pass(invocation.getArgument(2), 5, 4, 3);
+            return 3L;
+        });
+
+        CsvExportJob job = csvExportJobService.createJob(QUERY_STRING, searchParams, false, false);
+
+        assertThat(job.getStatus(), is(CsvExportJob.Status.COMPLETED));
+        assertThat(job.getCheckpoint().getRowCount(), is(3L));
+        List<String> lines = Files.readAllLines(csvExportJobService.fileOf(job));
+        assertThat(lines.size(), is(4));
+        assertThat(job.getCheckpoint().getSizeInBytes(), is(Files.size(csvExportJobService.fileOf(job))));
+        verify(csvExportJobDao).complete(eq(job.getId()), anyString(), any(), eq(Files.size(csvExportJobService.fileOf(job))), eq(3L));
+    }
+
+    @Test
+    void shouldRebuildTheSearchFromTheQueryStringOfTheJob() {
+        CsvExportJobService csvExportJobService = csvExportJobService(newDirectExecutorService());
+        ArgumentCaptor<TransactionSearchParams> searchParamsCaptor = ArgumentCaptor.forClass(TransactionSearchParams.class);
+        when(transactionDao.streamTransactions(searchParamsCaptor.capture(), eq(100), any())).thenReturn(0L);
+
+        csvExportJobService.run(aJob("job-id", "digest", QUERY_STRING, CsvExportJob.Checkpoint.START, 0));
+
+        TransactionSearchParams expected = aSearch(List.of("1", "2"));
+        expected.setState("success");
+        expected.setStatusVersion(2);
+        assertThat(new HashSet<>(searchParamsCaptor.getValue().getAccountIds()), is(Set.of("1", "2")));
+        assertThat(searchParamsCaptor.getValue().getFilterTemplates(), is(expected.getFilterTemplates()));
+    }
+
+    @Test
+    void shouldReturnTheUnfinishedJobForTheSameExport() {
+        ExecutorService executorService = mock(ExecutorService.class);
+        CsvExportJobService csvExportJobService = csvExportJobService(executorService);
+        CsvExportJob job = csvExportJobService.createJob(QUERY_STRING, searchParams, true, false);
+        when(csvExportJobDao.findUnfinishedByRequestDigest(job.getRequestDigest())).thenReturn(Optional.of(job));
+
+        CsvExportJob sameJob = csvExportJobService.createJob("account_id=2,1&state=success", aSearch(List.of("2", "1")), true, false);
+        CsvExportJob otherJob = csvExportJobService.createJob(QUERY_STRING, aSearch(List.of("2", "1")), false, false);
+
+        assertThat(sameJob, is(sameInstance(job)));
+        assertThat(otherJob.getRequestDigest().equals(job.getRequestDigest()), is(false));
+        verify(executorService, times(2)).execute(any());
+    }
+
+    @Test
+    void shouldRefuseJob_whenTooManyAreUnfinishedForTheGatewayAccounts() {
+        CsvExportJobService csvExportJobService = csvExportJobService(mock(ExecutorService.class));
+        when(csvExportJobDao.countUnfinishedForGatewayAccounts(List.of("1", "2"))).thenReturn(2L);
+
+        WebApplicationException exception = assertThrows(WebApplicationException.class,
+                () -> csvExportJobService.createJob(QUERY_STRING, searchParams, false, false));
+
+        assertThat(exception.getResponse().getStatus(), is(429));
+        verify(csvExportJobDao, never()).insert(anyString(), anyString(), anyString(), anyList(), anyBoolean(), anyBoolean(), anyString(), anyInt());
+    }
+
+    @Test
+    void shouldRefuseJob_whenTheFilesOfTheJobsKeptAreTooLarge() {
+        CsvExportJobService csvExportJobService = csvExportJobService(mock(ExecutorService.class));
+        when(csvExportJobDao.getTotalSizeInBytes()).thenReturn(1024L * 1024L);
+
+        WebApplicationException exception = assertThrows(WebApplicationException.class,
+                () -> csvExportJobService.createJob(QUERY_STRING, searchParams, false, false));
+
+        assertThat(exception.getResponse().getStatus(), is(503));
+    }
+
+    @Test
+    void shouldRemoveAndRefuseJob_whenTheQueueIsFull() {
+        ExecutorService executorService = mock(ExecutorService.class);
+        doThrow(new RejectedExecutionException()).when(executorService).execute(any());
+        CsvExportJobService csvExportJobService = csvExportJobService(executorService);
+
+        WebApplicationException exception = assertThrows(WebApplicationException.class,
+                () -> csvExportJobService.createJob(QUERY_STRING, searchParams, false, false));
+
+        assertThat(exception.getResponse().getStatus(), is(503));
+        verify(csvExportJobDao).delete(anyString());
+    }
+
+    @Test
+    void shouldCarryOnFromTheLastCheckpoint_whenAnAttemptFails() throws IOException {
+        CsvExportJobService csvExportJobService = csvExportJobService(newDirectExecutorService());
+        when(transactionDao.streamTransactions(any(TransactionSearchParams.class), eq(100), any())).thenAnswer(invocation -> {
+            pass(invocation.getArgument(2), 5, 4, 3);
+            throw new IllegalStateException("connection lost");
+        });
+        when(transactionDao.streamTransactions(any(TransactionSearchParams.class), any(TransactionSearchCursor.class), eq(100), any())).thenAnswer(invocation -> {
+            assertThat(invocation.<TransactionSearchCursor>getArgument(1).getId(), is(4L));
+            pass(invocation.getArgument(3), 3, 2);
+            return 2L;
+        });
+
+        CsvExportJob job = csvExportJobService.createJob(QUERY_STRING, searchParams, false, false);
+
+        assertThat(job.getStatus(), is(CsvExportJob.Status.COMPLETED));
+        assertThat(job.getAttempts(), is(2));
+        assertThat(job.getCheckpoint().getRowCount(), is(4L));
+        List<String> lines = Files.readAllLines(csvExportJobService.fileOf(job));
+        assertThat(lines.size(), is(5));
+    }
+
+    @Test
+    void shouldStartAgain_whenTheFileIsShorterThanTheCheckpointOfAResumedJob() throws IOException {
+        CsvExportJobService csvExportJobService = csvExportJobService(newDirectExecutorService());
+        when(transactionDao.streamTransactions(any(TransactionSearchParams.class), eq(100), any())).thenAnswer(invocation -> {
+            pass(invocation.getArgument(2), 5, 4, 3);
+            return 3L;
+        });
+        TransactionSearchCursor cursor = TransactionSearchCursor.after(aTransactionFixture().withId(4L).toEntity());
+        CsvExportJob job = aJob("job-id", "digest", QUERY_STRING, new CsvExportJob.Checkpoint(cursor, 1000, 2), 1);
+
+        csvExportJobService.run(job);
+
+        assertThat(job.getStatus(), is(CsvExportJob.Status.COMPLETED));
+        assertThat(job.getCheckpoint().getRowCount(), is(3L));
+        assertThat(Files.readAllLines(csvExportJobService.fileOf(job)).size(), is(4));
+    }
+
+    @Test
+    void shouldStopAttemptWithoutFailingTheJob_whenAnotherNodeHasClaimedIt() {
+        CsvExportJobService csvExportJobService = csvExportJobService(newDirectExecutorService());
+        when(csvExportJobDao.checkpoint(anyString(), anyString(), any(), anyLong(), anyLong(), anyInt())).thenReturn(0);
+        when(transactionDao.streamTransactions(any(TransactionSearchParams.class), eq(100), any())).thenAnswer(invocation -> {
+            pass(invocation.getArgument(2), 5, 4, 3);
+            return 3L;
+        });
+
+        CsvExportJob job = csvExportJobService.createJob(QUERY_STRING, searchParams, false, false);
+
+        assertThat(job.getStatus(), is(CsvExportJob.Status.RUNNING));
+        assertThat(job.getAttempts(), is(1));
+        verify(csvExportJobDao, never()).fail(anyString(), anyString());
+        verify(csvExportJobDao, never()).complete(anyString(), anyString(), any(), anyLong(), anyLong());
+    }
+
+    @Test
+    void shouldFailJob_whenEveryAttemptFails() {
+        CsvExportJobService csvExportJobService = csvExportJobService(newDirectExecutorService());
+        when(transactionDao.streamTransactions(any(TransactionSearchParams.class), anyInt(), any())).thenThrow(new IllegalStateException("connection lost"));
+
+        CsvExportJob job = csvExportJobService.createJob(QUERY_STRING, searchParams, false, false);
+
+        assertThat(job.getStatus(), is(CsvExportJob.Status.FAILED));
+        assertThat(job.getAttempts(), is(2));
+        verify(csvExportJobDao).fail(eq(job.getId()), anyString());
+    }
+
+    @Test
+    void shouldResumeJobsWhoseNodeStopped_whenSweeping() {
+        CsvExportJobService csvExportJobService = csvExportJobService(newDirectExecutorService());
+        CsvExportJob abandonedJob = aJob("job-id", "digest", QUERY_STRING, CsvExportJob.Checkpoint.START, 1);
+        when(csvExportJobDao.claimAbandoned(anyString(), eq(300))).thenReturn(Optional.of(abandonedJob), Optional.empty());
+        when(csvExportJobDao.deleteExpired(60)).thenReturn(List.of());
+        when(transactionDao.streamTransactions(any(TransactionSearchParams.class), eq(100), any())).thenReturn(0L);
+
+        csvExportJobService.sweep();
+
+        assertThat(abandonedJob.getStatus(), is(CsvExportJob.Status.COMPLETED));
+        assertThat(abandonedJob.getAttempts(), is(2));
+        verify(csvExportJobDao).renewLeases(anyString(), eq(300));
+    }
+
+    @Test
+    void shouldRemoveFilesOfExpiredJobs_whenSweeping() throws IOException {
+        CsvExportJobService csvExportJobService = csvExportJobService(mock(ExecutorService.class));
+        CsvExportJob expiredJob = aJob("expired-job-id", "digest", QUERY_STRING, CsvExportJob.Checkpoint.START, 1);
+        Files.writeString(csvExportJobService.fileOf(expiredJob), "csv");
+        when(csvExportJobDao.claimAbandoned(anyString(), eq(300))).thenReturn(Optional.empty());
+        when(csvExportJobDao.deleteExpired(60)).thenReturn(List.of("expired-job-id"));
+
+        csvExportJobService.sweep();
+
+        assertThat(Files.exists(csvExportJobService.fileOf(expiredJob)), is(false));
+        verifyNoInteractions(transactionDao);
+    }
+
+    private CsvExportJobService csvExportJobService(ExecutorService executorService) {
+        return new CsvExportJobService(executorService, mock(ScheduledExecutorService.class), reportingConfig, clock,
+                csvExportJobDao, transactionDao, csvService);
+    }
+
+    private static CsvExportJob aJob(String id, String requestDigest, String queryString, CsvExportJob.Checkpoint checkpoint,
+                                     int attempts) {
+        return new CsvExportJob(id, requestDigest, queryString, Set.of("1", "2"), false, false,
+                ZonedDateTime.parse("2024-01-10T11:00:00Z"), CsvExportJob.Status.PENDING, checkpoint, attempts, null);
+    }
+
+    private static void pass(Consumer<TransactionEntity> consumer, long... ids) {
+        for (long id : ids) {
+            consumer.accept(aTransactionFixture()
+                    .withId(id)
+                    .withTransactionType("PAYMENT")
+                    .withState(TransactionState.SUCCESS)
+                    .withCreatedDate(ZonedDateTime.parse("2024-01-01T00:00:00Z").plusHours(id))
+                    .withDefaultCardDetails()
+                    .withDefaultTransactionDetails()
+                    .toEntity());
+        }
+    }
+
+    private static TransactionSearchParams aSearch(List<String> gatewayAccountIds) {
+        TransactionSearchParams searchParams = new TransactionSearchParams();
+        searchParams.setAccountIds(gatewayAccountIds);
+        return searchParams;
+    }
+}
@@ -19,6 +19,7 @@ import uk.gov.pay.ledger.event.dao.EventDao;
 import uk.gov.pay.ledger.expungeorredact.dao.TransactionRedactionInfoDao;
 import uk.gov.pay.ledger.transaction.dao.TransactionDao;
 import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
+import uk.gov.pay.ledger.transaction.service.TransactionSearchTotals;
 
 import java.time.Instant;
 import java.time.InstantSource;
@@ -59,6 +60,8 @@ class ExpungeOrRedactServiceTest {
     @Mock
     ExpungeOrRedactHistoricalDataConfig mockExpungeOrRedactHistoricalDataConfig;
     @Mock
+    TransactionSearchTotals mockTransactionSearchTotals;
+    @Mock
     private Appender<ILoggingEvent> mockAppender;
 
     @Captor
@@ -75,7 +78,7 @@ class ExpungeOrRedactServiceTest {
     void setUp() {
         instantSource = InstantSource.fixed(Instant.parse(SYSTEM_INSTANT));
         when(mockLedgerConfig.getExpungeOrRedactHistoricalDataConfig()).thenReturn(mockExpungeOrRedactHistoricalDataConfig);
-        expungeOrRedactService = new ExpungeOrRedactService(mockTransactionDao, mockEventDao, mockTransactionRedactionInfoDao, mockLedgerConfig, instantSource);
+        expungeOrRedactService = new ExpungeOrRedactService(mockTransactionDao, mockEventDao, mockTransactionRedactionInfoDao, mockLedgerConfig, instantSource, mockTransactionSearchTotals);
     }
 
     @Test
@@ -167,6 +170,8 @@ class ExpungeOrRedactServiceTest {
         verify(mockTransactionDao, times(2)).redactPIIFromTransaction(any());
         verify(mockEventDao).deleteEventsForTransactions(List.of(transactionEntity1.getExternalId(), transactionEntity2.getExternalId()));
         verify(mockTransactionRedactionInfoDao).update(transactionEntity2.getCreatedDate());
+        verify(mockTransactionSearchTotals).invalidate(transactionEntity1.getGatewayAccountId());
+        verify(mockTransactionSearchTotals).invalidate(transactionEntity2.getGatewayAccountId());
 
         verifyNoMoreInteractions(mockTransactionDao);
         verifyNoMoreInteractions(mockTransactionRedactionInfoDao);
@@ -0,0 +1,68 @@
+package uk.gov.pay.ledger.filters;
+
+import com.codahale.metrics.MetricRegistry;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.util.Callback;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ResponseBytesOutHandlerTest {
+
+    @Mock
+    private Handler handler;
+
+    @Mock
+    private Request request;
+
+    @Mock
+    private Response response;
+
+    @Mock
+    private Callback callback;
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private final ByteBuffer content = ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5});
+
+    @BeforeEach
+    void setUp() throws Exception {
+        doAnswer(invocation -> {
+            Response wrappedResponse = invocation.getArgument(1);
+            wrappedResponse.write(true, content, callback);
+            return true;
+        }).when(handler).handle(eq(request), any(Response.class), eq(callback));
+    }
+
+    @Test
+    void shouldCountBytesWritten_whenRequestIsMarkedByResponseSizeFilter() throws Exception {
+        when(request.getAttribute(ResponseBytesOutHandler.METERED_ATTRIBUTE)).thenReturn(Boolean.TRUE);
+
+        new ResponseBytesOutHandler(handler, metricRegistry).handle(request, response, callback);
+
+        assertThat(metricRegistry.counter("response-compression.bytes-out").getCount(), is(5L));
+        verify(response).write(true, content, callback);
+    }
+
+    @Test
+    void shouldNotCountBytesWritten_whenRequestIsNotMarked() throws Exception {
+        new ResponseBytesOutHandler(handler, metricRegistry).handle(request, response, callback);
+
+        assertThat(metricRegistry.counter("response-compression.bytes-out").getCount(), is(0L));
+        verify(response).write(true, content, callback);
+    }
+}
@@ -0,0 +1,76 @@
+package uk.gov.pay.ledger.filters;
+
+import com.codahale.metrics.MetricRegistry;
+import jakarta.ws.rs.ext.WriterInterceptorContext;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ResponseSizeFilterTest {
+
+    @Mock
+    private WriterInterceptorContext writerInterceptorContext;
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private final ByteArrayOutputStream responseBody = new ByteArrayOutputStream();
+    private final OutputStream[] entityStream = new OutputStream[1];
+
+    @Test
+    void shouldWriteEntityUnchangedAndCountBytes() throws IOException {
+        String entity = "Reference,Description,Amount\n".repeat(1000);
+        givenEntityStreamIsCaptured();
+        doAnswer(invocation -> {
+            entityStream[0].write(entity.getBytes(UTF_8));
+            return null;
+        }).when(writerInterceptorContext).proceed();
+
+        new ResponseSizeFilter(metricRegistry).aroundWriteTo(writerInterceptorContext);
+
+        assertThat(responseBody.toString(UTF_8), is(entity));
+        assertThat(metricRegistry.counter("response-compression.bytes-in").getCount(), is((long) entity.length()));
+    }
+
+    @Test
+    void shouldMarkRequestForResponseBytesOutHandler() throws IOException {
+        givenEntityStreamIsCaptured();
+
+        new ResponseSizeFilter(metricRegistry).aroundWriteTo(writerInterceptorContext);
+
+        verify(writerInterceptorContext).setProperty(ResponseBytesOutHandler.METERED_ATTRIBUTE, Boolean.TRUE);
+    }
+
+    @Test
+    void shouldCountBytesWritten_whenResponseFailsPartWayThrough() throws IOException {
+        givenEntityStreamIsCaptured();
+        doAnswer(invocation -> {
+            entityStream[0].write("Reference,Description,Amount\n".getBytes(UTF_8));
+            throw new IOException("Broken pipe");
+        }).when(writerInterceptorContext).proceed();
+
+        assertThrows(IOException.class,
+                () -> new ResponseSizeFilter(metricRegistry).aroundWriteTo(writerInterceptorContext));
+
+        assertThat(metricRegistry.counter("response-compression.bytes-in").getCount(), is(29L));
+    }
+
+    private void givenEntityStreamIsCaptured() {
+        when(writerInterceptorContext.getOutputStream()).thenReturn(responseBody);
+        doAnswer(invocation -> entityStream[0] = invocation.getArgument(0))
+                .when(writerInterceptorContext).setOutputStream(any());
+    }
+}
@@ -39,13 +39,10 @@ class GatewayAccountMetadataDaoIT {
         String gatewayAccountId1 = randomAlphanumeric(15);
         String gatewayAccountId2 = randomAlphanumeric(15);
 
-        metadataKeyDao.insertIfNotExist("test-key-1");
-        metadataKeyDao.insertIfNotExist("test-key-2");
-        metadataKeyDao.insertIfNotExist("test-key-3");
+        metadataKeyDao.insertAllIfNotExist(List.of("test-key-1", "test-key-2", "test-key-3"));
 
-        gatewayAccountMetadataDao.upsert(gatewayAccountId1, "test-key-1");
-        gatewayAccountMetadataDao.upsert(gatewayAccountId1, "test-key-2");
-        gatewayAccountMetadataDao.upsert(gatewayAccountId2, "test-key-3");
+        gatewayAccountMetadataDao.upsert(gatewayAccountId1, List.of("test-key-1", "test-key-2"));
+        gatewayAccountMetadataDao.upsert(gatewayAccountId2, List.of("test-key-3"));
 
         List<String> keysForGatewayAccount =
                 gatewayAccountMetadataDao.findMetadataKeysForGatewayAccounts(List.of(gatewayAccountId1));
@@ -60,13 +57,13 @@ class GatewayAccountMetadataDaoIT {
     public void shouldNotInsertAnotherWhenARecordExistsAlreadyForGatewayAccountAndMetadataKey() {
         String gatewayAccountId = randomAlphanumeric(15);
 
-        metadataKeyDao.insertIfNotExist("test-key-1");
+        metadataKeyDao.insertAllIfNotExist(List.of("test-key-1"));
         aGatewayAccountMetadataFixture()
                 .withGatewayAccountId(gatewayAccountId)
                 .withMetadataKey("test-key-1")
                 .insert(rule.getJdbi());
 
-        gatewayAccountMetadataDao.upsert(gatewayAccountId, "test-key-1");
+        gatewayAccountMetadataDao.upsert(gatewayAccountId, List.of("test-key-1"));
 
         List<Map<String, Object>> gatewayAccountMetadata = dbHelper.getGatewayAccountMetadata(gatewayAccountId, "test-key-1");
         assertThat(gatewayAccountMetadata.size(), is(1));
@@ -77,12 +74,27 @@ class GatewayAccountMetadataDaoIT {
     @Test
     public void shouldInsertWhenARecordDoesNotExistsForGatewayAccountAndMetadataKey() {
         String gatewayAccountId = randomAlphanumeric(15);
-        metadataKeyDao.insertIfNotExist("test-key-2");
+        metadataKeyDao.insertAllIfNotExist(List.of("test-key-2"));
 
-        gatewayAccountMetadataDao.upsert(gatewayAccountId, "test-key-2");
+        gatewayAccountMetadataDao.upsert(gatewayAccountId, List.of("test-key-2"));
 
         List<Map<String, Object>> gatewayAccountMetadata = dbHelper.getGatewayAccountMetadata(gatewayAccountId, "test-key-2");
         assertThat(gatewayAccountMetadata.get(0).get("metadata_key_id"), is(notNullValue()));
         assertThat(gatewayAccountMetadata.get(0).get("gateway_account_id"), is(gatewayAccountId));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldInsertAllMetadataKeysNotAlreadyRecordedForGatewayAccount() {
+        String gatewayAccountId = randomAlphanumeric(15);
+        metadataKeyDao.insertAllIfNotExist(List.of("test-key-1", "test-key-4"));
+        aGatewayAccountMetadataFixture()
+                .withGatewayAccountId(gatewayAccountId)
+                .withMetadataKey("test-key-1")
+                .insert(rule.getJdbi());
+
+        gatewayAccountMetadataDao.upsert(gatewayAccountId, List.of("test-key-1", "test-key-4"));
+
+        assertThat(dbHelper.getGatewayAccountMetadata(gatewayAccountId, "test-key-1").size(), is(1));
+        assertThat(dbHelper.getGatewayAccountMetadata(gatewayAccountId, "test-key-4").size(), is(1));
+    }
+}
@@ -6,8 +6,15 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import uk.gov.pay.ledger.gatewayaccountmetadata.dao.GatewayAccountMetadataDao;
+import uk.gov.pay.ledger.referencedata.ReferenceDataCache;
 
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class GatewayAccountMetadataServiceTest {
@@ -18,10 +25,22 @@ class GatewayAccountMetadataServiceTest {
     @Mock
     GatewayAccountMetadataDao gatewayAccountMetadataDao;
 
+    @Mock
+    ReferenceDataCache referenceDataCache;
+
+    @Test
+    void shouldInsertAllMetadataKeysAndInvalidateCachedKeysForGatewayAccount() {
+        gatewayAccountMetadataService.upsertMetadataKeysForGatewayAccount("accnt-id", List.of("meta-key-1", "meta-key-2"));
+
+        verify(gatewayAccountMetadataDao).upsert("accnt-id", List.of("meta-key-1", "meta-key-2"));
+        verify(referenceDataCache).invalidateMetadataKeysForGatewayAccount("accnt-id");
+    }
+
     @Test
-    void shouldInsertMetadata() {
-        gatewayAccountMetadataService.upsertMetadataKeyForGatewayAccount("accnt-id", "meta-key-1");
+    void shouldGetMetadataKeysFromReferenceDataCache() {
+        when(referenceDataCache.getMetadataKeysForGatewayAccounts(List.of("accnt-id"))).thenReturn(List.of("meta-key-1"));
 
-        verify(gatewayAccountMetadataDao).upsert("accnt-id", "meta-key-1");
+        assertThat(gatewayAccountMetadataService.getKeysForGatewayAccounts(List.of("accnt-id")), is(List.of("meta-key-1")));
+        verifyNoInteractions(gatewayAccountMetadataDao);
     }
-}
\ No newline at end of file
+}
@@ -31,7 +31,7 @@ public class MetadataKeyDaoIT {
     public void shouldInsertMetadataKey() {
         String key = "key-1";
 
-        metadataKeyDao.insertIfNotExist(key);
+        metadataKeyDao.insertAllIfNotExist(List.of(key));
 
         List<Map<String, Object>> metadataKeyRecord = dbHelper.getMetadataKey(key);
 
@@ -44,12 +44,22 @@ public class MetadataKeyDaoIT {
         String key = "key-2";
         String duplicateKey = "key-1";
 
-        metadataKeyDao.insertIfNotExist(key);
-        metadataKeyDao.insertIfNotExist(duplicateKey);
+        metadataKeyDao.insertAllIfNotExist(List.of(key));
+        metadataKeyDao.insertAllIfNotExist(List.of(duplicateKey));
 
         List<Map<String, Object>> metadataKeyRecord = dbHelper.getMetadataKey(key);
 
         assertThat(metadataKeyRecord.size(), is(1));
         assertThat(metadataKeyRecord.get(0).get("key"), is(key));
     }
+
+    @Test
+    public void shouldInsertOnlyTheMetadataKeysThatDoNotExist() {
+        metadataKeyDao.insertAllIfNotExist(List.of("key-3"));
+
+        metadataKeyDao.insertAllIfNotExist(List.of("key-3", "key-4", "key-4"));
+
+        assertThat(dbHelper.getMetadataKey("key-3").size(), is(1));
+        assertThat(dbHelper.getMetadataKey("key-4").size(), is(1));
+    }
 }
@@ -5,24 +5,32 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.pay.ledger.common.search.SearchQueryExecutor;
+import uk.gov.pay.ledger.event.model.EventDigest;
 import uk.gov.pay.ledger.payout.dao.PayoutDao;
 import uk.gov.pay.ledger.payout.entity.PayoutEntity;
 import uk.gov.pay.ledger.payout.model.PayoutEntityFactory;
 import uk.gov.pay.ledger.payout.model.PayoutSearchResponse;
 import uk.gov.pay.ledger.payout.search.PayoutSearchParams;
+import uk.gov.pay.ledger.transaction.service.TransactionSearchTotals;
 
 import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.core.UriBuilder;
 import jakarta.ws.rs.core.UriInfo;
+import java.time.Duration;
 import java.util.List;
 
+import static com.google.common.util.concurrent.MoreExecutors.newDirectExecutorService;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static uk.gov.pay.ledger.util.fixture.PayoutFixture.PayoutFixtureBuilder.aPayoutFixture;
 import static uk.gov.pay.ledger.util.fixture.PayoutFixture.aPayoutList;
+import static uk.gov.pay.ledger.util.fixture.QueuePaymentEventFixture.aQueuePaymentEventFixture;
 
 @ExtendWith(MockitoExtension.class)
 public class PayoutServiceTest {
@@ -32,6 +40,8 @@ public class PayoutServiceTest {
     @Mock
     private PayoutEntityFactory payoutEntityFactory;
     @Mock
+    private TransactionSearchTotals mockTransactionSearchTotals;
+    @Mock
     private UriInfo mockUriInfo;
     private PayoutService payoutService;
     private String gatewayAccountId = "12345";
@@ -39,11 +49,24 @@ public class PayoutServiceTest {
 
     @BeforeEach
     public void setUp() {
-        payoutService = new PayoutService(mockPayoutDao, payoutEntityFactory);
+        payoutService = new PayoutService(mockPayoutDao, payoutEntityFactory,
+                new SearchQueryExecutor(newDirectExecutorService(), Duration.ofSeconds(10)), mockTransactionSearchTotals);
         lenient().when(mockUriInfo.getBaseUriBuilder()).thenReturn(UriBuilder.fromUri("http://example.com"));
         lenient().when(mockUriInfo.getPath()).thenReturn("/v1/payout");
     }
 
+    @Test
+    public void shouldInvalidateSearchTotalsOfTheGatewayAccount_whenPayoutIsUpserted() {
+        EventDigest eventDigest = EventDigest.fromEventList(List.of(aQueuePaymentEventFixture().toEntity()));
+        PayoutEntity payoutEntity = aPayoutFixture().withGatewayAccountId(gatewayAccountId).build().toEntity();
+        when(payoutEntityFactory.create(eventDigest)).thenReturn(payoutEntity);
+
+        payoutService.upsertPayoutFor(eventDigest);
+
+        verify(mockPayoutDao).upsert(payoutEntity);
+        verify(mockTransactionSearchTotals).invalidate(gatewayAccountId);
+    }
+
     @Test
     public void shouldReturnAPaginatedPayoutSearchResponse() {
         List<String> gatewayAccountIds = List.of(gatewayAccountId);
@@ -6,7 +6,10 @@ import ch.qos.logback.classic.spi.LoggingEvent;
 import ch.qos.logback.core.Appender;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.jdbi.v3.core.HandleConsumer;
+import org.jdbi.v3.core.Jdbi;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -14,9 +17,11 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.stubbing.Answer;
 import org.slf4j.LoggerFactory;
 import uk.gov.pay.ledger.app.LedgerConfig;
 import uk.gov.pay.ledger.app.config.SnsConfig;
@@ -24,22 +29,36 @@ import uk.gov.pay.ledger.event.entity.EventEntity;
 import uk.gov.pay.ledger.event.model.ResourceType;
 import uk.gov.pay.ledger.event.model.response.CreateEventResponse;
 import uk.gov.pay.ledger.event.service.EventService;
-import uk.gov.pay.ledger.eventpublisher.EventPublisher;
 import uk.gov.pay.ledger.eventpublisher.TopicName;
+import uk.gov.pay.ledger.eventpublisher.entity.EventOutboxEntity;
+import uk.gov.pay.ledger.queue.eventprocessor.IngestedEvent;
 import uk.gov.service.payments.commons.queue.exception.QueueException;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static ch.qos.logback.classic.Level.INFO;
 import static net.logstash.logback.argument.StructuredArguments.kv;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.hasItemInArray;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 import static uk.gov.pay.ledger.util.fixture.QueuePaymentEventFixture.aQueuePaymentEventFixture;
@@ -69,6 +88,12 @@ class EventMessageHandlerTest {
     @Mock
     private Histogram histogram;
 
+    @Mock
+    private Timer timer;
+
+    @Mock
+    private IngestStageMetrics ingestStageMetrics;
+
     @Mock
     private Appender<ILoggingEvent> mockAppender;
 
@@ -82,17 +107,180 @@ class EventMessageHandlerTest {
     private LedgerConfig ledgerConfig;
 
     @Mock
-    private EventPublisher eventPublisher;
+    private Jdbi jdbi;
 
     @Captor
     private ArgumentCaptor<LoggingEvent> loggingEventArgumentCaptor;
 
+    @Captor
+    private ArgumentCaptor<List<EventOutboxEntity>> outboxEntriesCaptor;
+
     @InjectMocks
     private EventMessageHandler eventMessageHandler;
 
     @BeforeEach
     void setUp() throws QueueException {
-        when(eventQueue.retrieveEvents()).thenReturn(List.of(eventMessage));
+        lenient().when(eventQueue.retrieveEvents()).thenReturn(List.of(eventMessage));
+        lenient().when(metricRegistry.histogram(any())).thenReturn(histogram);
+        lenient().when(metricRegistry.timer(any())).thenReturn(timer);
+        lenient().when(ledgerConfig.getSnsConfig()).thenReturn(snsConfig);
+    }
+
+    @Nested
+    @DisplayName("EventMessageHandlerPartitioningBatches")
+    class TestEventMessageHandlerPartitioning {
+
+        @Test
+        void shouldProcessEventsForTheSameResourceInOrderWhenUsingAnExecutor() throws QueueException {
+            EventEntity paymentEvent = aQueuePaymentEventFixture().withResourceExternalId("payment-id").toEntity();
+            EventEntity refundEvent = aQueuePaymentEventFixture()
+                    .withResourceType(ResourceType.REFUND)
+                    .withResourceExternalId("refund-id")
+                    .withParentResourceExternalId("payment-id")
+                    .toEntity();
+            EventEntity laterPaymentEvent = aQueuePaymentEventFixture()
+                    .withResourceExternalId("payment-id")
+                    .withEventType("AUTHORISATION_SUCCEEDED")
+                    .toEntity();
+            EventEntity otherPaymentEvent = aQueuePaymentEventFixture().withResourceExternalId("other-payment-id").toEntity();
+
+            List<EventMessage> messages = List.of(
+                    messageFor(paymentEvent), messageFor(refundEvent), messageFor(otherPaymentEvent), messageFor(laterPaymentEvent));
+            when(eventQueue.retrieveEvents()).thenReturn(messages);
+            when(eventService.createAllIfDoNotExist(any(), any())).thenAnswer(respondingWith(createEventResponse));
+            when(createEventResponse.isSuccessful()).thenReturn(true);
+
+            ExecutorService executorService = Executors.newFixedThreadPool(4);
+            try {
+                eventMessageHandler.handle(executorService);
+            } finally {
+                executorService.shutdown();
+            }
+
+            verify(eventService).createAllIfDoNotExist(eq(List.of(paymentEvent, refundEvent, otherPaymentEvent, laterPaymentEvent)), any());
+            InOrder inOrder = inOrder(eventDigestHandler);
+            inOrder.verify(eventDigestHandler).processEvents(
+                    List.of(new IngestedEvent(paymentEvent, false), new IngestedEvent(laterPaymentEvent, false)));
+            inOrder.verify(eventDigestHandler).processEvents(List.of(new IngestedEvent(refundEvent, false)));
+            verify(eventDigestHandler).processEvents(List.of(new IngestedEvent(otherPaymentEvent, false)));
+            verify(histogram, times(2)).update(anyInt());
+        }
+
+        @Test
+        void shouldProjectEventsForTheSameResourceInABatchTogether() throws QueueException {
+            EventEntity paymentEvent = aQueuePaymentEventFixture().withResourceExternalId("payment-id").toEntity();
+            EventEntity laterPaymentEvent = aQueuePaymentEventFixture()
+                    .withResourceExternalId("payment-id")
+                    .withEventType("AUTHORISATION_SUCCEEDED")
+                    .toEntity();
+
+            when(eventQueue.retrieveEvents()).thenReturn(List.of(messageFor(paymentEvent), messageFor(laterPaymentEvent)));
+            when(eventService.createAllIfDoNotExist(any(), any())).thenAnswer(respondingWith(createEventResponse));
+            when(createEventResponse.isSuccessful()).thenReturn(true);
+            when(createEventResponse.getState()).thenReturn(CreateEventResponse.CreateEventState.INSERTED);
+
+            eventMessageHandler.handle();
+
+            verify(eventDigestHandler).processEvents(
+                    List.of(new IngestedEvent(paymentEvent, true), new IngestedEvent(laterPaymentEvent, true)));
+            verifyNoMoreInteractions(eventDigestHandler);
+        }
+
+        @Test
+        void shouldAcknowledgeMessagesForAllResourcesInOneBatch() throws QueueException {
+            EventEntity paymentEvent = aQueuePaymentEventFixture().withResourceExternalId("payment-id").toEntity();
+            EventEntity otherPaymentEvent = aQueuePaymentEventFixture().withResourceExternalId("other-payment-id").toEntity();
+            EventMessage paymentMessage = messageFor(paymentEvent);
+            EventMessage otherPaymentMessage = messageFor(otherPaymentEvent);
+            when(paymentMessage.getQueueMessageReceiptHandle()).thenReturn(Optional.of("a-receipt-handle"));
+            when(otherPaymentMessage.getQueueMessageReceiptHandle()).thenReturn(Optional.of("another-receipt-handle"));
+
+            when(eventQueue.retrieveEvents()).thenReturn(List.of(paymentMessage, otherPaymentMessage));
+            when(eventService.createAllIfDoNotExist(any(), any())).thenAnswer(respondingWith(createEventResponse));
+            when(createEventResponse.isSuccessful()).thenReturn(true);
+
+            ExecutorService executorService = Executors.newFixedThreadPool(2);
+            try {
+                eventMessageHandler.handle(executorService);
+            } finally {
+                executorService.shutdown();
+            }
+
+            ArgumentCaptor<List<EventMessage>> acknowledgedMessages = ArgumentCaptor.forClass(List.class);
+            verify(eventQueue).markMessagesAsProcessed(acknowledgedMessages.capture());
+            assertThat(acknowledgedMessages.getValue(), containsInAnyOrder(paymentMessage, otherPaymentMessage));
+            verify(eventQueue, never()).scheduleMessagesForRetry(any());
+        }
+
+        @Test
+        void shouldRetryDeletingMessagesThatFailedToDelete() throws QueueException {
+            EventMessage paymentMessage = messageFor(aQueuePaymentEventFixture().withResourceExternalId("payment-id").toEntity());
+            EventMessage otherPaymentMessage = messageFor(aQueuePaymentEventFixture().withResourceExternalId("other-payment-id").toEntity());
+            when(paymentMessage.getQueueMessageReceiptHandle()).thenReturn(Optional.of("a-receipt-handle"));
+            when(otherPaymentMessage.getQueueMessageReceiptHandle()).thenReturn(Optional.of("another-receipt-handle"));
+
+            when(eventQueue.retrieveEvents()).thenReturn(List.of(paymentMessage, otherPaymentMessage));
+            when(eventService.createAllIfDoNotExist(any(), any())).thenAnswer(respondingWith(createEventResponse));
+            when(createEventResponse.isSuccessful()).thenReturn(true);
+            when(eventQueue.markMessagesAsProcessed(List.of(paymentMessage, otherPaymentMessage))).thenReturn(List.of(otherPaymentMessage));
+            when(eventQueue.markMessagesAsProcessed(List.of(otherPaymentMessage))).thenReturn(List.of());
+
+            eventMessageHandler.handle();
+
+            verify(eventQueue).markMessagesAsProcessed(List.of(otherPaymentMessage));
+        }
+
+        @Test
+        void shouldNotAcknowledgeAnyMessagesForAResourceThatFailsToProject() throws QueueException {
+            EventEntity paymentEvent = aQueuePaymentEventFixture().withResourceExternalId("payment-id").toEntity();
+            EventEntity laterPaymentEvent = aQueuePaymentEventFixture()
+                    .withResourceExternalId("payment-id")
+                    .withEventType("AUTHORISATION_SUCCEEDED")
+                    .toEntity();
+            EventMessage paymentMessage = messageFor(paymentEvent);
+            EventMessage laterPaymentMessage = messageFor(laterPaymentEvent);
+
+            when(eventQueue.retrieveEvents()).thenReturn(List.of(paymentMessage, laterPaymentMessage));
+            when(eventService.createAllIfDoNotExist(any(), any())).thenAnswer(respondingWith(createEventResponse));
+            when(createEventResponse.isSuccessful()).thenReturn(true);
+            doThrow(new RuntimeException("projection failed")).when(eventDigestHandler).processEvents(any());
+
+            eventMessageHandler.handle();
+
+            verify(eventQueue, never()).markMessagesAsProcessed(any());
+        }
+
+        @Test
+        void shouldProjectEachResourceOnceWhenProcessingABatchInATransaction() throws QueueException {
+            EventEntity paymentEvent = aQueuePaymentEventFixture().withResourceExternalId("payment-id").toEntity();
+            EventEntity otherPaymentEvent = aQueuePaymentEventFixture().withResourceExternalId("other-payment-id").toEntity();
+            EventEntity laterPaymentEvent = aQueuePaymentEventFixture()
+                    .withResourceExternalId("payment-id")
+                    .withEventType("AUTHORISATION_SUCCEEDED")
+                    .toEntity();
+            doAnswer(invocation -> {
+                invocation.<HandleConsumer<?>>getArgument(0).useHandle(null);
+                return null;
+            }).when(jdbi).useTransaction(any());
+            when(eventService.createAllIfDoNotExist(any(), any())).thenAnswer(respondingWith(createEventResponse));
+            when(createEventResponse.isSuccessful()).thenReturn(true);
+            when(createEventResponse.getState()).thenReturn(CreateEventResponse.CreateEventState.INSERTED);
+
+            eventMessageHandler.processEventBatch(List.of(
+                    messageFor(paymentEvent), messageFor(otherPaymentEvent), messageFor(laterPaymentEvent)));
+
+            verify(eventService).createAllIfDoNotExist(eq(List.of(paymentEvent, otherPaymentEvent, laterPaymentEvent)), any());
+            verify(eventDigestHandler).processEvents(
+                    List.of(new IngestedEvent(paymentEvent, true), new IngestedEvent(laterPaymentEvent, true)));
+            verify(eventDigestHandler).processEvents(List.of(new IngestedEvent(otherPaymentEvent, true)));
+            verifyNoMoreInteractions(eventDigestHandler);
+        }
+
+        private EventMessage messageFor(EventEntity event) {
+            EventMessage message = mock(EventMessage.class);
+            when(message.getEvent()).thenReturn(event);
+            return message;
+        }
     }
 
     @Nested
@@ -103,14 +291,14 @@ class EventMessageHandlerTest {
             EventEntity event = aQueuePaymentEventFixture().toEntity();
             when(eventMessage.getEvent()).thenReturn(event);
             when(eventMessage.getQueueMessageReceiptHandle()).thenReturn(Optional.of("a-valid-recipient-handle"));
-            when(eventService.createIfDoesNotExist(any())).thenReturn(createEventResponse);
+            when(eventService.createAllIfDoNotExist(any(), any())).thenAnswer(respondingWith(createEventResponse));
             when(createEventResponse.isSuccessful()).thenReturn(true);
             when(metricRegistry.histogram((any()))).thenReturn(histogram);
 
             eventMessageHandler.handle();
 
-            verify(eventDigestHandler).processEvent(event, false);
-            verify(eventQueue).markMessageAsProcessed(any(EventMessage.class));
+            verify(eventDigestHandler).processEvents(List.of(new IngestedEvent(event, false)));
+            verify(eventQueue).markMessagesAsProcessed(List.of(eventMessage));
         }
 
         @Test
@@ -127,12 +315,11 @@ class EventMessageHandlerTest {
             when(eventMessage.getEvent()).thenReturn(event);
             when(eventMessage.getQueueMessageReceiptHandle()).thenReturn(Optional.of("a-valid-recipient-handle"));
             when(metricRegistry.histogram((any()))).thenReturn(histogram);
-            when(ledgerConfig.getSnsConfig()).thenReturn(snsConfig);
 
             eventMessageHandler.handle();
-            verify(eventDigestHandler).processEvent(event, false);
-            verify(eventQueue).markMessageAsProcessed(any(EventMessage.class));
-            verify(eventService, never()).createIfDoesNotExist(any());
+            verify(eventDigestHandler).processEvents(List.of(new IngestedEvent(event, false)));
+            verify(eventQueue).markMessagesAsProcessed(List.of(eventMessage));
+            verify(eventService).createAllIfDoNotExist(List.of(), List.of());
 
             verify(mockAppender, times(1)).doAppend(loggingEventArgumentCaptor.capture());
             assertThat(loggingEventArgumentCaptor.getValue().getArgumentArray(), hasItemInArray(kv("reproject_domain_object_event", true)));
@@ -144,12 +331,12 @@ class EventMessageHandlerTest {
             EventEntity event = aQueuePaymentEventFixture().toEntity();
             when(eventMessage.getEvent()).thenReturn(event);
             when(eventMessage.getQueueMessageId()).thenReturn(Optional.of("a-valid-queue-message-id"));
-            when(eventService.createIfDoesNotExist(any())).thenReturn(createEventResponse);
+            when(eventService.createAllIfDoNotExist(any(), any())).thenAnswer(respondingWith(createEventResponse));
             when(createEventResponse.isSuccessful()).thenReturn(false);
 
             eventMessageHandler.handle();
 
-            verify(eventQueue).scheduleMessageForRetry(any());
+            verify(eventQueue).scheduleMessagesForRetry(List.of(eventMessage));
         }
 
         @Test
@@ -157,7 +344,7 @@ class EventMessageHandlerTest {
             EventEntity event = aQueuePaymentEventFixture().toEntity();
             when(eventMessage.getEvent()).thenReturn(event);
             when(eventMessage.getQueueMessageId()).thenReturn(null);
-            when(eventService.createIfDoesNotExist(any())).thenReturn(createEventResponse);
+            when(eventService.createAllIfDoNotExist(any(), any())).thenAnswer(respondingWith(createEventResponse));
             when(createEventResponse.isSuccessful()).thenReturn(false);
 
             eventMessageHandler.handle();
@@ -170,86 +357,96 @@ class EventMessageHandlerTest {
     @DisplayName("EventMessageHandlerPublishingToSNS")
     class TestEventMessageHandlerPublishingToSns {
 
+        private final String messageBody = "{ \"foo\": \"bar\"}";
+
         @BeforeEach
         void setup() {
-            when(ledgerConfig.getSnsConfig()).thenReturn(snsConfig);
             when(snsConfig.isSnsEnabled()).thenReturn(true);
-            when(eventService.createIfDoesNotExist(any())).thenReturn(createEventResponse);
+            lenient().when(eventMessage.getRawMessageBody()).thenReturn(messageBody);
+            when(eventService.createAllIfDoNotExist(any(), any())).thenAnswer(respondingWith(createEventResponse));
             when(createEventResponse.isSuccessful()).thenReturn(true);
             when(metricRegistry.histogram((any()))).thenReturn(histogram);
         }
 
         @Test
-        void shouldPublishCardPaymentMessageWhenSnsEnabled() throws Exception {
-            String messageBody = "{ \"foo\": \"bar\"}";
-
+        void shouldStoreCardPaymentMessageInOutboxWhenSnsEnabled() throws Exception {
             EventEntity event = aQueuePaymentEventFixture().toEntity();
             when(eventMessage.getEvent()).thenReturn(event);
-            when(eventMessage.getRawMessageBody()).thenReturn(messageBody);
             when(snsConfig.isPublishCardPaymentEventsToSns()).thenReturn(true);
 
             eventMessageHandler.handle();
 
-            verify(eventPublisher).publishMessageToTopic(messageBody, TopicName.CARD_PAYMENT_EVENTS);
+            verify(eventService).createAllIfDoNotExist(eq(List.of(event)), outboxEntriesCaptor.capture());
+            EventOutboxEntity outboxEntry = outboxEntriesCaptor.getValue().get(0);
+            assertThat(outboxEntry.getTopicName(), is(TopicName.CARD_PAYMENT_EVENTS));
+            assertThat(outboxEntry.getMessage(), is(messageBody));
+            assertThat(outboxEntry.getResourceExternalId(), is(event.getResourceExternalId()));
         }
 
         @Test
-        void shouldNotPublishAgreementEventsToSNS() throws Exception {
+        void shouldNotStoreAgreementEventsInOutbox() throws Exception {
             EventEntity event = aQueuePaymentEventFixture().withResourceType(ResourceType.AGREEMENT).toEntity();
             when(eventMessage.getEvent()).thenReturn(event);
 
             eventMessageHandler.handle();
 
-            verifyNoInteractions(eventPublisher);
+            verifyNothingStoredInOutbox();
         }
 
         @Test
-        void shouldNotTryToPublishMessagesWhenSnsNotEnabled() throws QueueException {
+        void shouldNotStoreMessagesInOutboxWhenSnsNotEnabled() throws QueueException {
             EventEntity event = aQueuePaymentEventFixture().toEntity();
             when(eventMessage.getEvent()).thenReturn(event);
             when(snsConfig.isSnsEnabled()).thenReturn(false);
 
             eventMessageHandler.handle();
 
-            verifyNoInteractions(eventPublisher);
+            verifyNothingStoredInOutbox();
         }
 
         @Test
-        void shouldNotTryToPublishWhenPublishCardPaymentEventsToSnsDisabled() throws QueueException {
+        void shouldNotStoreMessagesInOutboxWhenPublishCardPaymentEventsToSnsDisabled() throws QueueException {
             EventEntity event = aQueuePaymentEventFixture().toEntity();
             when(eventMessage.getEvent()).thenReturn(event);
             when(snsConfig.isPublishCardPaymentEventsToSns()).thenReturn(false);
 
             eventMessageHandler.handle();
 
-            verifyNoInteractions(eventPublisher);
+            verifyNothingStoredInOutbox();
         }
 
         @Test
-        void shouldNotTryToPublishWhenPublishCardPaymentDisputeEventsToSnsDisabled() throws QueueException {
+        void shouldNotStoreMessagesInOutboxWhenPublishCardPaymentDisputeEventsToSnsDisabled() throws QueueException {
             EventEntity event = aQueuePaymentEventFixture().withResourceType(ResourceType.DISPUTE).toEntity();
-            when(createEventResponse.isSuccessful()).thenReturn(true);
-            when(eventService.createIfDoesNotExist(any())).thenReturn(createEventResponse);
             when(eventMessage.getEvent()).thenReturn(event);
             when(snsConfig.isPublishCardPaymentDisputeEventsToSns()).thenReturn(false);
 
             eventMessageHandler.handle();
 
-            verifyNoInteractions(eventPublisher);
+            verifyNothingStoredInOutbox();
         }
 
         @Test
-        void shouldPublishDisputeMessageWhenSnsEnabled() throws Exception {
-            String messageBody = "{ \"foo\": \"bar\"}";
-
+        void shouldStoreDisputeMessageInOutboxWhenSnsEnabled() throws Exception {
             EventEntity event = aQueuePaymentEventFixture().withResourceType(ResourceType.DISPUTE).toEntity();
             when(eventMessage.getEvent()).thenReturn(event);
-            when(eventMessage.getRawMessageBody()).thenReturn(messageBody);
             when(snsConfig.isPublishCardPaymentDisputeEventsToSns()).thenReturn(true);
 
             eventMessageHandler.handle();
 
-            verify(eventPublisher).publishMessageToTopic(messageBody, TopicName.CARD_PAYMENT_DISPUTE_EVENTS);
+            verify(eventService).createAllIfDoNotExist(eq(List.of(event)), outboxEntriesCaptor.capture());
+            EventOutboxEntity outboxEntry = outboxEntriesCaptor.getValue().get(0);
+            assertThat(outboxEntry.getTopicName(), is(TopicName.CARD_PAYMENT_DISPUTE_EVENTS));
+            assertThat(outboxEntry.getMessage(), is(messageBody));
         }
+
+        private void verifyNothingStoredInOutbox() {
+            verify(eventService).createAllIfDoNotExist(any(), outboxEntriesCaptor.capture());
+            assertThat(outboxEntriesCaptor.getValue(), contains(nullValue()));
+        }
+    }
+
+    private static Answer<List<CreateEventResponse>> respondingWith(CreateEventResponse response) {
+        return invocation -> Collections.nCopies(invocation.<List<?>>getArgument(0).size(), response);
     }
 }
@@ -1,11 +1,20 @@
 package uk.gov.pay.ledger.queue;
 
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchRequest;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchResponse;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResponse;
 import software.amazon.awssdk.services.sqs.model.SendMessageResponse;
 import uk.gov.pay.ledger.app.LedgerConfig;
 import uk.gov.pay.ledger.app.config.QueueMessageReceiverConfig;
@@ -17,24 +26,38 @@ import uk.gov.service.payments.commons.queue.sqs.SqsQueueService;
 
 import java.time.ZonedDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class EventQueueTest {
 
+    private static final int RETRY_DELAY_IN_SECONDS = 900;
+
     @Mock
     private LedgerConfig ledgerConfig;
 
     @Mock
     private SqsQueueService sqsQueueService;
 
+    @Mock
+    private SqsClient sqsClient;
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+
     private EventQueue eventQueue;
 
     @BeforeEach
@@ -58,12 +81,12 @@ class EventQueueTest {
         QueueMessageReceiverConfig queueMessageReceiverConfig = mock(QueueMessageReceiverConfig.class);
         SqsConfig sqsConfig = mock(SqsConfig.class);
         when(sqsConfig.getEventQueueUrl()).thenReturn("");
-        when(queueMessageReceiverConfig.getMessageRetryDelayInSeconds()).thenReturn(900);
+        when(queueMessageReceiverConfig.getMessageRetryDelayInSeconds()).thenReturn(RETRY_DELAY_IN_SECONDS);
         when(ledgerConfig.getSqsConfig()).thenReturn(sqsConfig);
         when(ledgerConfig.getQueueMessageReceiverConfig()).thenReturn(queueMessageReceiverConfig);
-        when(sqsQueueService.receiveMessages(anyString(), anyString())).thenReturn(messages);
+        lenient().when(sqsQueueService.receiveMessages(anyString(), anyString())).thenReturn(messages);
 
-        eventQueue = new EventQueue(sqsQueueService, ledgerConfig, new ObjectMapper());
+        eventQueue = new EventQueue(sqsQueueService, sqsClient, ledgerConfig, new ObjectMapper(), metricRegistry);
     }
 
     @Test
@@ -79,4 +102,79 @@ class EventQueueTest {
         assertEquals("{\"example_event_details_field\":\"and its value\"}", eventsList.get(0).getEvent().getEventData());
         assertTrue(eventsList.get(0).getEvent().isReprojectDomainObject());
     }
+
+    @Test
+    void retrievedEventsShareThePayloadParsedWithTheMessage() throws QueueException {
+        EventMessage eventMessage = eventQueue.retrieveEvents().get(0);
+
+        assertSame(eventMessage.getEvent(), eventMessage.getEvent());
+        assertSame(eventMessage.getEventDto().getEventDataNode(), eventMessage.getEvent().getEventDataNode());
+    }
+
+    @Test
+    void markMessagesAsProcessedDeletesMessagesInBatchesOfTen() {
+        List<EventMessage> messages = messagesWithReceiptHandles(11);
+        when(sqsClient.deleteMessageBatch(any(DeleteMessageBatchRequest.class)))
+                .thenReturn(DeleteMessageBatchResponse.builder().build());
+
+        List<EventMessage> failedMessages = eventQueue.markMessagesAsProcessed(messages);
+
+        ArgumentCaptor<DeleteMessageBatchRequest> requests = ArgumentCaptor.forClass(DeleteMessageBatchRequest.class);
+        verify(sqsClient, times(2)).deleteMessageBatch(requests.capture());
+        assertEquals(10, requests.getAllValues().get(0).entries().size());
+        assertEquals(1, requests.getAllValues().get(1).entries().size());
+        assertEquals("receipt-handle-10", requests.getAllValues().get(1).entries().get(0).receiptHandle());
+        assertTrue(failedMessages.isEmpty());
+    }
+
+    @Test
+    void markMessagesAsProcessedReturnsMessagesThatFailedToDelete() {
+        List<EventMessage> messages = messagesWithReceiptHandles(3);
+        when(sqsClient.deleteMessageBatch(any(DeleteMessageBatchRequest.class)))
+                .thenReturn(DeleteMessageBatchResponse.builder()
+                        .failed(BatchResultErrorEntry.builder().id("1").code("ReceiptHandleIsInvalid").senderFault(true).build())
+                        .build());
+
+        List<EventMessage> failedMessages = eventQueue.markMessagesAsProcessed(messages);
+
+        assertEquals(List.of(messages.get(1)), failedMessages);
+        assertEquals(1, metricRegistry.counter("event-queue.delete-message-batch.failed-entries").getCount());
+    }
+
+    @Test
+    void markMessagesAsProcessedReturnsAllMessagesInABatchThatFailedToSend() {
+        List<EventMessage> messages = messagesWithReceiptHandles(3);
+        when(sqsClient.deleteMessageBatch(any(DeleteMessageBatchRequest.class)))
+                .thenThrow(SdkClientException.create("connection refused"));
+
+        List<EventMessage> failedMessages = eventQueue.markMessagesAsProcessed(messages);
+
+        assertEquals(messages, failedMessages);
+        assertEquals(3, metricRegistry.counter("event-queue.delete-message-batch.failed-entries").getCount());
+    }
+
+    @Test
+    void scheduleMessagesForRetryChangesVisibilityToRetryDelay() {
+        List<EventMessage> messages = messagesWithReceiptHandles(2);
+        when(sqsClient.changeMessageVisibilityBatch(any(ChangeMessageVisibilityBatchRequest.class)))
+                .thenReturn(ChangeMessageVisibilityBatchResponse.builder().build());
+
+        List<EventMessage> failedMessages = eventQueue.scheduleMessagesForRetry(messages);
+
+        ArgumentCaptor<ChangeMessageVisibilityBatchRequest> request = ArgumentCaptor.forClass(ChangeMessageVisibilityBatchRequest.class);
+        verify(sqsClient).changeMessageVisibilityBatch(request.capture());
+        assertEquals(2, request.getValue().entries().size());
+        request.getValue().entries().forEach(entry -> assertEquals(RETRY_DELAY_IN_SECONDS, entry.visibilityTimeout().intValue()));
+        assertTrue(failedMessages.isEmpty());
+    }
+
+    private List<EventMessage> messagesWithReceiptHandles(int numberOfMessages) {
+        return IntStream.range(0, numberOfMessages)
+                .mapToObj(i -> {
+                    EventMessage message = mock(EventMessage.class);
+                    lenient().when(message.getQueueMessageReceiptHandle()).thenReturn(Optional.of("receipt-handle-" + i));
+                    return message;
+                })
+                .toList();
+    }
 }
@@ -0,0 +1,60 @@
+package uk.gov.pay.ledger.queue;
+
+import com.codahale.metrics.MetricRegistry;
+import io.prometheus.client.Collector;
+import io.prometheus.client.dropwizard.DropwizardExports;
+import io.prometheus.client.dropwizard.samplebuilder.CustomMappingSampleBuilder;
+import org.junit.jupiter.api.Test;
+import uk.gov.pay.ledger.event.entity.EventEntity;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static uk.gov.pay.ledger.event.model.ResourceType.REFUND;
+import static uk.gov.pay.ledger.queue.IngestStageMetrics.Stage.DIGEST_BUILD;
+import static uk.gov.pay.ledger.queue.IngestStageMetrics.Stage.EVENT_INSERT;
+import static uk.gov.pay.ledger.util.fixture.EventFixture.anEventFixture;
+
+class IngestStageMetricsTest {
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private final IngestStageMetrics ingestStageMetrics = new IngestStageMetrics(metricRegistry);
+
+    @Test
+    void shouldShareTheTimeOfAStageBetweenItsEventsByResourceType() {
+        EventEntity paymentCreated = anEventFixture().withEventType("PAYMENT_CREATED").toEntity();
+        EventEntity paymentStarted = anEventFixture().withEventType("PAYMENT_STARTED").toEntity();
+        EventEntity refundCreated = anEventFixture().withResourceType(REFUND).withEventType("REFUND_CREATED").toEntity();
+        long startedAt = System.nanoTime();
+
+        ingestStageMetrics.recordSince(EVENT_INSERT, List.of(paymentCreated, paymentStarted, refundCreated), startedAt);
+        long elapsed = System.nanoTime() - startedAt;
+
+        assertThat(metricRegistry.timer("ingest-stage.event-insert.payment").getCount(), is(2L));
+        assertThat(metricRegistry.timer("ingest-stage.event-insert.refund").getCount(), is(1L));
+        assertThat(metricRegistry.timer("ingest-stage.event-insert.refund").getSnapshot().getMax(),
+                is(lessThanOrEqualTo(elapsed / 3)));
+    }
+
+    @Test
+    void shouldExportStageTimersToPrometheusWithLabels() {
+        ingestStageMetrics.record(DIGEST_BUILD, "PAYMENT", 1_000_000);
+
+        List<Collector.MetricFamilySamples> metricFamilySamples = new DropwizardExports(metricRegistry,
+                new CustomMappingSampleBuilder(List.of(IngestStageMetrics.PROMETHEUS_MAPPER_CONFIG))).collect();
+
+        Map<String, String> expectedLabels = Map.of("stage", "digest-build", "resource_type", "payment");
+        assertThat(metricFamilySamples.stream()
+                .flatMap(family -> family.samples.stream())
+                .filter(sample -> sample.name.equals("ledger_ingest_stage_duration_seconds_count"))
+                .map(sample -> sample.labelNames.stream()
+                        .filter(expectedLabels::containsKey)
+                        .collect(Collectors.toMap(name -> name, name -> sample.labelValues.get(sample.labelNames.indexOf(name)))))
+                .toList(), hasItem(expectedLabels));
+    }
+}
@@ -33,11 +33,11 @@ class AgreementEventProcessorTest {
     void shouldUpsertAgreement() {
         EventEntity event = anEventFixture().withResourceType(AGREEMENT).toEntity();
         var eventDigest = EventDigest.fromEventList(List.of(anEventFixture().toEntity()));
-        when(mockEventService.getEventDigestForResource(event)).thenReturn(eventDigest);
+        when(mockEventService.getEventDigestIncludingEvents(List.of(event), true)).thenReturn(eventDigest);
 
         agreementEventProcessor.process(event, true);
 
-        verify(mockEventService).getEventDigestForResource(event);
+        verify(mockEventService).getEventDigestIncludingEvents(List.of(event), true);
         verify(mockAgreementService).upsertAgreementFor(eventDigest);
     }
 }
@@ -1,5 +1,6 @@
 package uk.gov.pay.ledger.queue.eventprocessor;
 
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableMap;
 import com.google.gson.GsonBuilder;
@@ -18,19 +19,27 @@ import uk.gov.pay.ledger.event.model.ResourceType;
 import uk.gov.pay.ledger.event.model.TransactionEntityFactory;
 import uk.gov.pay.ledger.event.service.EventService;
 import uk.gov.pay.ledger.exception.EmptyEventsException;
+import uk.gov.pay.ledger.queue.IngestStageMetrics;
+import uk.gov.pay.ledger.transaction.dao.TransactionUpsertOutcome;
 import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
 import uk.gov.pay.ledger.transaction.service.TransactionService;
 
 import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.everyItem;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static uk.gov.pay.ledger.event.model.ResourceType.PAYMENT;
 import static uk.gov.pay.ledger.event.model.ResourceType.REFUND;
 import static uk.gov.pay.ledger.util.fixture.EventFixture.anEventFixture;
 import static uk.gov.pay.ledger.util.fixture.QueuePaymentEventFixture.aQueuePaymentEventFixture;
@@ -44,6 +53,8 @@ class ChildTransactionEventProcessorTest {
     private TransactionService mockTransactionService;
     @Captor
     private ArgumentCaptor<TransactionEntity> transactionEntityArgumentCaptor;
+    @Captor
+    private ArgumentCaptor<List<TransactionEntity>> transactionEntitiesArgumentCaptor;
 
     private TransactionEntityFactory transactionEntityFactory;
     private ChildTransactionEventProcessor childTransactionEventProcessor;
@@ -52,7 +63,8 @@ class ChildTransactionEventProcessorTest {
     void setUp() {
         transactionEntityFactory = new TransactionEntityFactory(new ObjectMapper());
         childTransactionEventProcessor = new ChildTransactionEventProcessor(mockEventService, mockTransactionService,
-                transactionEntityFactory);
+                transactionEntityFactory, new IngestStageMetrics(new MetricRegistry()));
+        lenient().when(mockTransactionService.upsertTransaction(any())).thenReturn(TransactionUpsertOutcome.WRITTEN);
     }
 
     @Test
@@ -97,9 +109,9 @@ class ChildTransactionEventProcessorTest {
                 .toEntity();
 
         EventDigest refundEventDigest = EventDigest.fromEventList(List.of(refundEvent));
-        when(mockEventService.getEventDigestForResource(refundEvent)).thenReturn(refundEventDigest);
+        when(mockEventService.getEventDigestIncludingEvents(List.of(refundEvent), true)).thenReturn(refundEventDigest);
         EventDigest paymentEventDigest = EventDigest.fromEventList(List.of(paymentEvent1, paymentEvent2, paymentEvent3));
-        when(mockEventService.getEventDigestForResource(paymentExternalId)).thenReturn(paymentEventDigest);
+        when(mockEventService.getLatestEventDigestForResource(paymentExternalId, PAYMENT)).thenReturn(paymentEventDigest);
 
         childTransactionEventProcessor.process(refundEvent, true);
 
@@ -140,12 +152,13 @@ class ChildTransactionEventProcessorTest {
                 .toEntity();
 
         EventDigest refundEventDigest = EventDigest.fromEventList(List.of(refundEvent));
-        when(mockEventService.getEventDigestForResource(refundEvent)).thenReturn(refundEventDigest);
-        when(mockEventService.getEventDigestForResource(paymentExternalId)).thenThrow(EmptyEventsException.class);
+        when(mockEventService.getEventDigestIncludingEvents(List.of(refundEvent), true)).thenReturn(refundEventDigest);
+        when(mockEventService.getLatestEventDigestForResource(paymentExternalId, PAYMENT)).thenThrow(EmptyEventsException.class);
 
         childTransactionEventProcessor.process(refundEvent, true);
 
-        verify(mockTransactionService).upsertTransactionFor(refundEventDigest);
+        verify(mockTransactionService).upsertTransaction(transactionEntityArgumentCaptor.capture());
+        assertThat(transactionEntityArgumentCaptor.getValue().getExternalId(), is(refundExternalId));
     }
 
     @Test
@@ -169,13 +182,14 @@ class ChildTransactionEventProcessorTest {
         EventDigest refundEventDigest = EventDigest.fromEventList(List.of(refundEvent));
 
         String refundExternalId = "refund-external-id";
-        when(mockEventService.getEventDigestForResource(refundExternalId)).thenReturn(refundEventDigest);
+        when(mockEventService.getEventDigestsForResources(Set.of(refundExternalId))).thenReturn(Map.of(refundExternalId, refundEventDigest));
 
-        childTransactionEventProcessor.reprojectChildTransaction(refundExternalId, paymentEventDigest);
+        childTransactionEventProcessor.reprojectChildTransactions(Set.of(refundExternalId), paymentEventDigest);
 
-        verify(mockTransactionService).upsertTransaction(transactionEntityArgumentCaptor.capture());
+        verify(mockTransactionService).upsertTransactions(transactionEntitiesArgumentCaptor.capture());
 
-        TransactionEntity transactionEntity = transactionEntityArgumentCaptor.getValue();
+        assertThat(transactionEntitiesArgumentCaptor.getValue().size(), is(1));
+        TransactionEntity transactionEntity = transactionEntitiesArgumentCaptor.getValue().get(0);
         assertThat(transactionEntity.getReference(), is("payment-ref"));
         assertThat(transactionEntity.getAmount(), is(-50L));
 
@@ -186,13 +200,33 @@ class ChildTransactionEventProcessorTest {
     }
 
 
+    @Test
+    void shouldReprojectAllChildTransactionsInOneBatch() {
+        EventEntity paymentEvent = anEventFixture().withEventData("{\"reference\": \"payment-ref\"}").toEntity();
+        EventDigest paymentEventDigest = EventDigest.fromEventList(List.of(paymentEvent));
+        EventEntity refundEvent = anEventFixture().withResourceType(REFUND).withResourceExternalId("refund-external-id").toEntity();
+        EventEntity disputeEvent = anEventFixture().withResourceType(ResourceType.DISPUTE).withResourceExternalId("dispute-external-id").toEntity();
+        when(mockEventService.getEventDigestsForResources(Set.of("refund-external-id", "dispute-external-id"))).thenReturn(Map.of(
+                "refund-external-id", EventDigest.fromEventList(List.of(refundEvent)),
+                "dispute-external-id", EventDigest.fromEventList(List.of(disputeEvent))));
+
+        childTransactionEventProcessor.reprojectChildTransactions(Set.of("refund-external-id", "dispute-external-id"), paymentEventDigest);
+
+        verify(mockTransactionService).upsertTransactions(transactionEntitiesArgumentCaptor.capture());
+        assertThat(transactionEntitiesArgumentCaptor.getValue().stream().map(TransactionEntity::getExternalId).toList(),
+                containsInAnyOrder("refund-external-id", "dispute-external-id"));
+        assertThat(transactionEntitiesArgumentCaptor.getValue().stream().map(TransactionEntity::getReference).toList(),
+                everyItem(is("payment-ref")));
+    }
+
     @Test
     void shouldProjectDisputeTransaction() {
         EventEntity disputeEvent = anEventFixture().withResourceType(ResourceType.DISPUTE).withLive(true).toEntity();
         EventDigest eventDigest = EventDigest.fromEventList(List.of(disputeEvent));
-        when(mockEventService.getEventDigestForResource(disputeEvent)).thenReturn(eventDigest);
+        when(mockEventService.getEventDigestIncludingEvents(List.of(disputeEvent), true)).thenReturn(eventDigest);
         childTransactionEventProcessor.process(disputeEvent, true);
 
-        verify(mockTransactionService).upsertTransactionFor(eventDigest);
+        verify(mockTransactionService).upsertTransaction(transactionEntityArgumentCaptor.capture());
+        assertThat(transactionEntityArgumentCaptor.getValue().getExternalId(), is(disputeEvent.getResourceExternalId()));
     }
 }
@@ -1,5 +1,6 @@
 package uk.gov.pay.ledger.queue.eventprocessor;
 
+import com.codahale.metrics.MetricRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -7,17 +8,24 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import uk.gov.pay.ledger.event.entity.EventEntity;
 import uk.gov.pay.ledger.event.model.EventDigest;
+import uk.gov.pay.ledger.event.model.TransactionEntityFactory;
 import uk.gov.pay.ledger.event.service.EventService;
+import uk.gov.pay.ledger.queue.IngestStageMetrics;
+import uk.gov.pay.ledger.transaction.dao.TransactionUpsertOutcome;
 import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
 import uk.gov.pay.ledger.transaction.service.TransactionMetadataService;
 import uk.gov.pay.ledger.transaction.service.TransactionService;
 import uk.gov.pay.ledger.transactionsummary.service.TransactionSummaryService;
 
+import java.time.ZonedDateTime;
 import java.util.List;
+import java.util.Set;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
@@ -38,13 +46,17 @@ class PaymentEventProcessorTest {
     private ChildTransactionEventProcessor childTransactionEventProcessor;
     @Mock
     private TransactionSummaryService transactionSummaryService;
+    @Mock
+    private TransactionEntityFactory transactionEntityFactory;
 
     private PaymentEventProcessor paymentEventProcessor;
 
 
     @BeforeEach
     void setUp() {
-        paymentEventProcessor = new PaymentEventProcessor(eventService, transactionService, transactionMetadataService, childTransactionEventProcessor, transactionSummaryService);
+        paymentEventProcessor = new PaymentEventProcessor(eventService, transactionService, transactionMetadataService, childTransactionEventProcessor,
+                transactionSummaryService, transactionEntityFactory, new IngestStageMetrics(new MetricRegistry()));
+        lenient().when(transactionService.upsertTransaction(any())).thenReturn(TransactionUpsertOutcome.WRITTEN);
     }
 
     @Test
@@ -60,7 +72,7 @@ class PaymentEventProcessorTest {
                 .withEventType("USER_APPROVED_FOR_CAPTURE")
                 .toEntity();
 
-        when(eventService.getEventsForResource(event.getResourceExternalId())).thenReturn(List.of(previousEvent, event));
+        when(eventService.getEventDigestIncludingEvents(List.of(event), true)).thenReturn(EventDigest.fromEventList(List.of(previousEvent, event)));
 
         TransactionEntity refundTransaction1 = aTransactionFixture().withExternalId("refund-external-id-1").toEntity();
         TransactionEntity refundTransaction2 = aTransactionFixture().withExternalId("refund-external-id-2").toEntity();
@@ -68,10 +80,10 @@ class PaymentEventProcessorTest {
 
         paymentEventProcessor.process(event, true);
 
-        verify(transactionService).upsertTransactionFor(any(EventDigest.class));
-        verify(transactionMetadataService).upsertMetadataFor(event);
-        verify(childTransactionEventProcessor).reprojectChildTransaction(eq(refundTransaction1.getExternalId()), any(EventDigest.class));
-        verify(childTransactionEventProcessor).reprojectChildTransaction(eq(refundTransaction2.getExternalId()), any(EventDigest.class));
+        verify(transactionService).upsertTransaction(any());
+        verify(transactionMetadataService).upsertMetadataFor(any(), eq(event));
+        verify(childTransactionEventProcessor).reprojectChildTransactions(
+                eq(Set.of(refundTransaction1.getExternalId(), refundTransaction2.getExternalId())), any(EventDigest.class));
     }
 
     @Test
@@ -87,13 +99,13 @@ class PaymentEventProcessorTest {
                 .withEventType("PAYMENT_STARTED")
                 .toEntity();
 
-        when(eventService.getEventsForResource(event.getResourceExternalId())).thenReturn(List.of(previousEvent, event));
+        when(eventService.getEventDigestIncludingEvents(List.of(event), true)).thenReturn(EventDigest.fromEventList(List.of(previousEvent, event)));
 
         paymentEventProcessor.process(event, true);
-        verify(transactionService).upsertTransactionFor(any(EventDigest.class));
-        verify(transactionMetadataService).upsertMetadataFor(event);
+        verify(transactionService).upsertTransaction(any());
+        verify(transactionMetadataService).upsertMetadataFor(any(), eq(event));
         verify(transactionService, never()).getChildTransactions(any());
-        verify(childTransactionEventProcessor, never()).reprojectChildTransaction(any(), any());
+        verify(childTransactionEventProcessor, never()).reprojectChildTransactions(any(), any());
     }
 
     @Test
@@ -109,13 +121,13 @@ class PaymentEventProcessorTest {
                 .withEventType("USER_APPROVED_FOR_CAPTURE")
                 .toEntity();
 
-        when(eventService.getEventsForResource(event.getResourceExternalId())).thenReturn(List.of(previousEvent, event));
+        when(eventService.getEventDigestIncludingEvents(List.of(event), true)).thenReturn(EventDigest.fromEventList(List.of(previousEvent, event)));
 
         paymentEventProcessor.process(event, true);
-        verify(transactionService).upsertTransactionFor(any(EventDigest.class));
-        verify(transactionMetadataService).upsertMetadataFor(event);
+        verify(transactionService).upsertTransaction(any());
+        verify(transactionMetadataService).upsertMetadataFor(any(), eq(event));
         verify(transactionService, never()).getChildTransactions(any());
-        verify(childTransactionEventProcessor, never()).reprojectChildTransaction(any(), any());
+        verify(childTransactionEventProcessor, never()).reprojectChildTransactions(any(), any());
     }
 
     @Test
@@ -129,13 +141,61 @@ class PaymentEventProcessorTest {
         List<EventEntity> events = List.of(event);
         TransactionEntity transactionEntity = aTransactionFixture().toEntity();
 
+        when(eventService.getEventDigestIncludingEvents(List.of(event), true)).thenReturn(EventDigest.fromEventList(events));
         when(eventService.getEventsForResource(event.getResourceExternalId())).thenReturn(events);
-        when(transactionService.upsertTransactionFor(any(EventDigest.class))).thenReturn(transactionEntity);
+        when(transactionEntityFactory.create(any(EventDigest.class))).thenReturn(transactionEntity);
+        when(transactionSummaryService.mayProjectTransactionSummaryFor(event)).thenReturn(true);
 
         paymentEventProcessor.process(event, true);
         verify(transactionSummaryService).projectTransactionSummary(transactionEntity, event, events);
     }
 
+    @Test
+    void shouldUpsertTransactionOnceAndProjectTransactionSummaryForEachEventWhenProcessingSeveralEvents() {
+        EventEntity createdEvent = anEventFixture().withResourceType(PAYMENT)
+                .withResourceExternalId("payment-external-id")
+                .withEventType("PAYMENT_CREATED")
+                .withEventDate(ZonedDateTime.parse("2019-06-07T08:46:01.123456Z"))
+                .toEntity();
+        EventEntity captureConfirmedEvent = anEventFixture().withResourceType(PAYMENT)
+                .withResourceExternalId("payment-external-id")
+                .withEventType("CAPTURE_CONFIRMED")
+                .withEventDate(ZonedDateTime.parse("2019-06-07T08:47:01.123456Z"))
+                .toEntity();
+        List<EventEntity> events = List.of(createdEvent, captureConfirmedEvent);
+        List<EventEntity> eventHistory = List.of(captureConfirmedEvent, createdEvent);
+        TransactionEntity transactionEntity = aTransactionFixture().toEntity();
+
+        when(eventService.getEventDigestIncludingEvents(events, true)).thenReturn(EventDigest.fromEventList(eventHistory));
+        when(eventService.getEventsForResource("payment-external-id")).thenReturn(eventHistory);
+        when(transactionEntityFactory.create(any(EventDigest.class))).thenReturn(transactionEntity);
+        when(transactionSummaryService.mayProjectTransactionSummaryFor(any(EventEntity.class))).thenReturn(true);
+
+        paymentEventProcessor.process(List.of(new IngestedEvent(createdEvent, true), new IngestedEvent(captureConfirmedEvent, true)));
+
+        verify(transactionService, times(1)).upsertTransaction(transactionEntity);
+        verify(eventService, times(1)).getEventsForResource("payment-external-id");
+        verify(transactionMetadataService).upsertMetadataFor(transactionEntity, createdEvent);
+        verify(transactionMetadataService).upsertMetadataFor(transactionEntity, captureConfirmedEvent);
+        verify(transactionSummaryService).projectTransactionSummary(any(TransactionEntity.class), eq(createdEvent), eq(List.of(createdEvent)));
+        verify(transactionSummaryService).projectTransactionSummary(transactionEntity, captureConfirmedEvent, eventHistory);
+    }
+
+    @Test
+    void shouldNotLoadEventHistoryWhenEventCannotChangeTransactionSummary() {
+        EventEntity event = anEventFixture().withResourceType(PAYMENT)
+                .withResourceExternalId("payment-external-id")
+                .withEventType("AUTHORISATION_SUCCEEDED")
+                .toEntity();
+
+        when(eventService.getEventDigestIncludingEvents(List.of(event), true)).thenReturn(EventDigest.fromEventList(List.of(event)));
+        when(transactionSummaryService.mayProjectTransactionSummaryFor(event)).thenReturn(false);
+
+        paymentEventProcessor.process(event, true);
+        verify(eventService, never()).getEventsForResource(any());
+        verify(transactionSummaryService, never()).projectTransactionSummary(any(), any(), any());
+    }
+
     @Test
     void shouldNotProjectTransactionSummaryForAReprojectionEvent() {
         String refundExternalId = "refund-external-id";
@@ -145,7 +205,7 @@ class PaymentEventProcessorTest {
                 .withIsReprojectDomainObject(true)
                 .toEntity();
 
-        when(eventService.getEventsForResource(event.getResourceExternalId())).thenReturn(List.of(event));
+        when(eventService.getEventDigestIncludingEvents(List.of(event), true)).thenReturn(EventDigest.fromEventList(List.of(event)));
 
         paymentEventProcessor.process(event, true);
         verifyNoInteractions(transactionSummaryService);
@@ -160,7 +220,7 @@ class PaymentEventProcessorTest {
                 .withIsReprojectDomainObject(false)
                 .toEntity();
 
-        when(eventService.getEventsForResource(event.getResourceExternalId())).thenReturn(List.of(event));
+        when(eventService.getEventDigestIncludingEvents(List.of(event), false)).thenReturn(EventDigest.fromEventList(List.of(event)));
 
         paymentEventProcessor.process(event, false);
         verifyNoInteractions(transactionSummaryService);
@@ -173,11 +233,11 @@ class PaymentEventProcessorTest {
                 .withIsReprojectDomainObject(true)
                 .toEntity();
 
-        when(eventService.getEventsForResource(event.getResourceExternalId())).thenReturn(List.of(anEventFixture().toEntity()));
+        when(eventService.getEventDigestIncludingEvents(List.of(event), true)).thenReturn(EventDigest.fromEventList(List.of(anEventFixture().toEntity())));
         paymentEventProcessor.process(event, true);
 
-        verify(transactionService).upsertTransactionFor(any(EventDigest.class));
-        verify(transactionMetadataService).reprojectFromEventDigest(any(EventDigest.class));
-        verify(transactionMetadataService, never()).upsertMetadataFor(event);
+        verify(transactionService).upsertTransaction(any());
+        verify(transactionMetadataService).reprojectFromEventDigest(any(), any(EventDigest.class));
+        verify(transactionMetadataService, never()).upsertMetadataFor(any(), eq(event));
     }
 }
@@ -33,11 +33,11 @@ class PayoutEventProcessorTest {
     void shouldUpsertPayout() {
         EventEntity event = anEventFixture().withResourceType(PAYOUT).toEntity();
         var eventDigest = EventDigest.fromEventList(List.of(anEventFixture().toEntity()));
-        when(mockEventService.getEventDigestForResource(event)).thenReturn(eventDigest);
+        when(mockEventService.getEventDigestIncludingEvents(List.of(event), true)).thenReturn(eventDigest);
 
         payoutEventProcessor.process(event, true);
 
-        verify(mockEventService).getEventDigestForResource(event);
+        verify(mockEventService).getEventDigestIncludingEvents(List.of(event), true);
         verify(mockPayoutService).upsertPayoutFor(eventDigest);
     }
 }
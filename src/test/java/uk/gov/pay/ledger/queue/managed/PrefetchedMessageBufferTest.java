@@ -0,0 +1,63 @@
+package uk.gov.pay.ledger.queue.managed;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.gov.pay.ledger.queue.EventMessage;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+
+class PrefetchedMessageBufferTest {
+
+    private final AtomicLong nanoClock = new AtomicLong();
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private PrefetchedMessageBuffer buffer;
+
+    @BeforeEach
+    void setUp() {
+        buffer = new PrefetchedMessageBuffer(2, Duration.ofSeconds(10), metricRegistry, nanoClock::get);
+    }
+
+    @Test
+    void shouldReturnBatchesInTheOrderTheyWereReceived() throws InterruptedException {
+        List<EventMessage> firstBatch = List.of(mock(EventMessage.class));
+        List<EventMessage> secondBatch = List.of(mock(EventMessage.class));
+        buffer.put(firstBatch);
+        buffer.put(secondBatch);
+
+        assertThat(metricRegistry.getGauges().get("queue-message-receiver.prefetch-buffer.occupancy").getValue(), is(2));
+        assertThat(buffer.poll(0, TimeUnit.SECONDS), is(Optional.of(firstBatch)));
+        assertThat(buffer.poll(0, TimeUnit.SECONDS), is(Optional.of(secondBatch)));
+        assertThat(buffer.size(), is(0));
+    }
+
+    @Test
+    void shouldEvictBatchesBufferedForLongerThanTheMaximumAge() throws InterruptedException {
+        List<EventMessage> staleBatch = List.of(mock(EventMessage.class), mock(EventMessage.class));
+        List<EventMessage> freshBatch = List.of(mock(EventMessage.class));
+        buffer.put(staleBatch);
+        nanoClock.addAndGet(Duration.ofSeconds(8).toNanos());
+        buffer.put(freshBatch);
+        nanoClock.addAndGet(Duration.ofSeconds(3).toNanos());
+
+        assertThat(buffer.poll(0, TimeUnit.SECONDS), is(Optional.of(freshBatch)));
+        assertThat(metricRegistry.meter("queue-message-receiver.prefetch-buffer.evicted-messages").getCount(), is(2L));
+    }
+
+    @Test
+    void shouldReturnEmptyWhenOnlyStaleBatchesAreBuffered() throws InterruptedException {
+        buffer.put(List.of(mock(EventMessage.class)));
+        nanoClock.addAndGet(Duration.ofSeconds(11).toNanos());
+
+        assertThat(buffer.poll(0, TimeUnit.SECONDS), is(Optional.empty()));
+        assertThat(buffer.size(), is(0));
+    }
+}
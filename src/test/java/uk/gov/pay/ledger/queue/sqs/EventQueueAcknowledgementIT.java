@@ -0,0 +1,112 @@
+package uk.gov.pay.ledger.queue.sqs;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.CreateQueueRequest;
+import software.amazon.awssdk.services.sqs.model.GetQueueAttributesRequest;
+import software.amazon.awssdk.services.sqs.model.QueueAttributeName;
+import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
+import uk.gov.pay.ledger.app.LedgerConfig;
+import uk.gov.pay.ledger.app.config.QueueMessageReceiverConfig;
+import uk.gov.pay.ledger.app.config.SqsConfig;
+import uk.gov.pay.ledger.extension.AppWithPostgresAndSqsExtension;
+import uk.gov.pay.ledger.queue.EventMessage;
+import uk.gov.pay.ledger.queue.EventQueue;
+import uk.gov.service.payments.commons.queue.exception.QueueException;
+import uk.gov.service.payments.commons.queue.sqs.SqsQueueService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EventQueueAcknowledgementIT {
+
+    @RegisterExtension
+    public static AppWithPostgresAndSqsExtension rule = new AppWithPostgresAndSqsExtension();
+
+    private SqsClient client;
+    private String queueUrl;
+    private EventQueue eventQueue;
+
+    @BeforeEach
+    void setUp() {
+        client = rule.getSqsClient();
+        queueUrl = client.createQueue(CreateQueueRequest.builder()
+                .queueName("event-queue-" + RandomStringUtils.randomAlphanumeric(10).toLowerCase())
+                .build()).queueUrl();
+
+        SqsConfig sqsConfig = mock(SqsConfig.class);
+        when(sqsConfig.getEventQueueUrl()).thenReturn(queueUrl);
+        QueueMessageReceiverConfig queueReceiverConfig = mock(QueueMessageReceiverConfig.class);
+        when(queueReceiverConfig.getMessageRetryDelayInSeconds()).thenReturn(60);
+        LedgerConfig mockConfig = mock(LedgerConfig.class);
+        when(mockConfig.getSqsConfig()).thenReturn(sqsConfig);
+        when(mockConfig.getQueueMessageReceiverConfig()).thenReturn(queueReceiverConfig);
+
+        eventQueue = new EventQueue(new SqsQueueService(client, 1, 10), client, mockConfig, new ObjectMapper(), new MetricRegistry());
+    }
+
+    @Test
+    void shouldDeleteMoreMessagesThanFitInOneBatch() throws QueueException {
+        List<EventMessage> messages = sendAndReceiveMessages(12);
+
+        List<EventMessage> failedMessages = eventQueue.markMessagesAsProcessed(messages);
+
+        assertThat(failedMessages, is(empty()));
+        assertThat(queueAttribute(QueueAttributeName.APPROXIMATE_NUMBER_OF_MESSAGES), is(0));
+        assertThat(queueAttribute(QueueAttributeName.APPROXIMATE_NUMBER_OF_MESSAGES_NOT_VISIBLE), is(0));
+    }
+
+    @Test
+    void shouldDeferMessagesScheduledForRetry() throws QueueException {
+        List<EventMessage> messages = sendAndReceiveMessages(3);
+
+        List<EventMessage> failedMessages = eventQueue.scheduleMessagesForRetry(messages);
+
+        assertThat(failedMessages, is(empty()));
+        assertThat(eventQueue.retrieveEvents(), is(empty()));
+        assertThat(queueAttribute(QueueAttributeName.APPROXIMATE_NUMBER_OF_MESSAGES_NOT_VISIBLE), is(3));
+    }
+
+    private List<EventMessage> sendAndReceiveMessages(int numberOfMessages) throws QueueException {
+        for (int i = 0; i < numberOfMessages; i++) {
+            client.sendMessage(SendMessageRequest.builder()
+                    .queueUrl(queueUrl)
+                    .messageBody("{" +
+                            "\"timestamp\": \"2018-03-12T16:25:01.123456Z\"," +
+                            "\"resource_external_id\": \"resource-" + i + "\"," +
+                            "\"event_type\":\"PAYMENT_CREATED\"," +
+                            "\"resource_type\": \"payment\"," +
+                            "\"event_details\": {}" +
+                            "}")
+                    .build());
+        }
+
+        List<EventMessage> messages = new ArrayList<>();
+        while (messages.size() < numberOfMessages) {
+            messages.addAll(eventQueue.retrieveEvents());
+        }
+        assertThat(messages, hasSize(numberOfMessages));
+        return messages;
+    }
+
+    private int queueAttribute(QueueAttributeName attributeName) {
+        Map<QueueAttributeName, String> attributes = client.getQueueAttributes(GetQueueAttributesRequest.builder()
+                .queueUrl(queueUrl)
+                .attributeNames(attributeName)
+                .build()).attributes();
+        return Integer.parseInt(attributes.get(attributeName));
+    }
+}
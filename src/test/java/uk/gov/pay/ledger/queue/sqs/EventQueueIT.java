@@ -1,5 +1,6 @@
 package uk.gov.pay.ledger.queue.sqs;
 
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
@@ -62,7 +63,7 @@ public class EventQueueIT {
         when(mockConfig.getQueueMessageReceiverConfig()).thenReturn(queueReceiverConfig);
 
         SqsQueueService sqsQueueService = new SqsQueueService(client, 1, 10);
-        EventQueue eventQueue = new EventQueue(sqsQueueService, mockConfig, new ObjectMapper());
+        EventQueue eventQueue = new EventQueue(sqsQueueService, client, mockConfig, new ObjectMapper(), new MetricRegistry());
 
         List<EventMessage> result = eventQueue.retrieveEvents();
         assertFalse(result.isEmpty());
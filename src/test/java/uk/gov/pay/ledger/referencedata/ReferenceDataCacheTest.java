@@ -0,0 +1,112 @@
+package uk.gov.pay.ledger.referencedata;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Ticker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.pay.ledger.app.config.ReferenceDataCacheConfig;
+import uk.gov.pay.ledger.event.dao.ResourceTypeDao;
+import uk.gov.pay.ledger.gatewayaccountmetadata.dao.GatewayAccountMetadataDao;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.gov.pay.ledger.event.model.ResourceType.PAYMENT;
+import static uk.gov.pay.ledger.event.model.ResourceType.REFUND;
+
+@ExtendWith(MockitoExtension.class)
+class ReferenceDataCacheTest {
+
+    @Mock
+    private ReferenceDataCacheConfig referenceDataCacheConfig;
+
+    @Mock
+    private ResourceTypeDao resourceTypeDao;
+
+    @Mock
+    private GatewayAccountMetadataDao gatewayAccountMetadataDao;
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private ReferenceDataCache referenceDataCache;
+
+    @BeforeEach
+    void setUp() {
+        when(referenceDataCacheConfig.getRefreshIntervalInSeconds()).thenReturn(3600);
+        when(referenceDataCacheConfig.getGatewayAccountMetadataKeysExpiryInSeconds()).thenReturn(60);
+        when(referenceDataCacheConfig.getGatewayAccountMetadataKeysMaximumSize()).thenReturn(100);
+        Ticker ticker = new Ticker() {
+            @Override
+            public long read() {
+                return nanos.get();
+            }
+        };
+        referenceDataCache = new ReferenceDataCache(metricRegistry, referenceDataCacheConfig, ticker,
+                resourceTypeDao, gatewayAccountMetadataDao);
+    }
+
+    @Test
+    void shouldLookUpEachResourceTypeIdOnce() {
+        when(resourceTypeDao.getResourceTypeIdByName("PAYMENT")).thenReturn(1);
+        when(resourceTypeDao.getResourceTypeIdByName("REFUND")).thenReturn(2);
+
+        assertThat(referenceDataCache.getResourceTypeId(PAYMENT), is(1));
+        assertThat(referenceDataCache.getResourceTypeId(PAYMENT), is(1));
+        assertThat(referenceDataCache.getResourceTypeId(REFUND), is(2));
+
+        verify(resourceTypeDao, times(1)).getResourceTypeIdByName("PAYMENT");
+        assertThat(gaugeValue("reference-data-cache.resource-type-ids.hits"), is(1L));
+        assertThat(gaugeValue("reference-data-cache.resource-type-ids.misses"), is(2L));
+    }
+
+    @Test
+    void shouldRefreshResourceTypeIdsAfterRefreshInterval() {
+        when(resourceTypeDao.getResourceTypeIdByName("PAYMENT")).thenReturn(1, 3);
+
+        assertThat(referenceDataCache.getResourceTypeId(PAYMENT), is(1));
+        nanos.addAndGet(Duration.ofSeconds(3601).toNanos());
+
+        assertThat(referenceDataCache.getResourceTypeId(PAYMENT), is(3));
+    }
+
+    @Test
+    void shouldCacheMetadataKeysForGatewayAccountsUntilTheyExpire() {
+        when(gatewayAccountMetadataDao.findMetadataKeysForGatewayAccounts(any())).thenReturn(List.of("key-1"));
+
+        referenceDataCache.getMetadataKeysForGatewayAccounts(List.of("1", "2"));
+        referenceDataCache.getMetadataKeysForGatewayAccounts(List.of("2", "1"));
+        verify(gatewayAccountMetadataDao, times(1)).findMetadataKeysForGatewayAccounts(any());
+
+        nanos.addAndGet(Duration.ofSeconds(61).toNanos());
+        referenceDataCache.getMetadataKeysForGatewayAccounts(List.of("1", "2"));
+        verify(gatewayAccountMetadataDao, times(2)).findMetadataKeysForGatewayAccounts(any());
+    }
+
+    @Test
+    void shouldInvalidateMetadataKeysOfEverySetOfGatewayAccountsIncludingTheAccount() {
+        when(gatewayAccountMetadataDao.findMetadataKeysForGatewayAccounts(any())).thenReturn(List.of("key-1"));
+        referenceDataCache.getMetadataKeysForGatewayAccounts(List.of("1", "2"));
+        referenceDataCache.getMetadataKeysForGatewayAccounts(List.of("3"));
+
+        referenceDataCache.invalidateMetadataKeysForGatewayAccount("2");
+
+        referenceDataCache.getMetadataKeysForGatewayAccounts(List.of("1", "2"));
+        referenceDataCache.getMetadataKeysForGatewayAccounts(List.of("3"));
+        verify(gatewayAccountMetadataDao, times(2)).findMetadataKeysForGatewayAccounts(List.of("1", "2"));
+        verify(gatewayAccountMetadataDao, times(1)).findMetadataKeysForGatewayAccounts(List.of("3"));
+    }
+
+    private long gaugeValue(String name) {
+        return (Long) metricRegistry.getGauges().get(name).getValue();
+    }
+}
@@ -304,6 +304,48 @@ class TransactionDaoIT {
         assertThat(retrievedTransaction.getState(), is(transaction.getState()));
     }
 
+    @Test
+    void shouldOnlyUpdateEventCountWhenUpsertingTransactionWithUnchangedContent() {
+        TransactionEntity transaction = aTransactionFixture()
+                .withEventCount(1)
+                .withState(TransactionState.CREATED)
+                .toEntity();
+
+        TransactionUpsertOutcome firstOutcome = transactionDao.upsert(transaction);
+        transaction.setEventCount(2);
+        TransactionUpsertOutcome secondOutcome = transactionDao.upsert(transaction);
+        TransactionUpsertOutcome repeatedOutcome = transactionDao.upsert(transaction);
+
+        assertThat(firstOutcome, is(TransactionUpsertOutcome.WRITTEN));
+        assertThat(secondOutcome, is(TransactionUpsertOutcome.EVENT_COUNT_UPDATED));
+        assertThat(repeatedOutcome, is(TransactionUpsertOutcome.UNCHANGED));
+        assertThat(transactionDao.findTransactionByExternalId(transaction.getExternalId()).get().getEventCount(), is(2));
+
+        transaction.setEventCount(3);
+        transaction.setState(TransactionState.SUBMITTED);
+
+        assertThat(transactionDao.upsert(transaction), is(TransactionUpsertOutcome.WRITTEN));
+        assertThat(transactionDao.findTransactionByExternalId(transaction.getExternalId()).get().getState(), is(TransactionState.SUBMITTED));
+    }
+
+    @Test
+    void shouldUpsertTransactionsInABatch() {
+        TransactionEntity existingTransaction = aTransactionFixture()
+                .withEventCount(1)
+                .insert(rule.getJdbi())
+                .toEntity();
+        TransactionEntity staleTransaction = aTransactionFixture()
+                .withExternalId(existingTransaction.getExternalId())
+                .withEventCount(0)
+                .toEntity();
+        TransactionEntity newTransaction = aTransactionFixture().toEntity();
+
+        List<TransactionUpsertOutcome> outcomes = transactionDao.upsert(List.of(staleTransaction, newTransaction));
+
+        assertThat(outcomes, is(List.of(TransactionUpsertOutcome.UNCHANGED, TransactionUpsertOutcome.WRITTEN)));
+        assertThat(transactionDao.findTransactionByExternalId(newTransaction.getExternalId()).isPresent(), is(true));
+    }
+
     @Test
     void shouldFilterTransactionByExternalIdOrParentExternalIdAndGatewayAccountId() {
         String payOutId = randomAlphanumeric(20);
@@ -16,6 +16,7 @@ import uk.gov.pay.ledger.extension.AppWithPostgresAndSqsExtension;
 import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
 import uk.gov.pay.ledger.transaction.model.Transaction;
 import uk.gov.pay.ledger.transaction.model.TransactionType;
+import uk.gov.pay.ledger.transaction.search.common.TransactionSearchCursor;
 import uk.gov.pay.ledger.transaction.search.common.TransactionSearchParams;
 import uk.gov.pay.ledger.transaction.state.TransactionState;
 import uk.gov.pay.ledger.util.CommaDelimitedSetParameter;
@@ -24,8 +25,11 @@ import uk.gov.pay.ledger.util.fixture.TransactionFixture;
 
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import static java.time.ZonedDateTime.now;
 import static org.apache.commons.lang3.RandomStringUtils.randomAlphanumeric;
@@ -755,6 +759,63 @@ public class TransactionDaoSearchIT {
         assertThat(fourthPage.size(), is(0));
     }
 
+    @Test
+    public void searchTransactionsWithCursor_shouldReturnPagesAfterAndBeforeCursor() {
+        ZonedDateTime sharedCreatedDate = now(ZoneOffset.UTC).minusDays(5);
+        aTransactionFixture().withId(9L).withGatewayAccountId("1").withCreatedDate(now(ZoneOffset.UTC).minusDays(3)).insert(rule.getJdbi());
+        aTransactionFixture().withId(200L).withGatewayAccountId("1").withCreatedDate(sharedCreatedDate).insert(rule.getJdbi());
+        aTransactionFixture().withId(50L).withGatewayAccountId("1").withCreatedDate(sharedCreatedDate).insert(rule.getJdbi());
+        aTransactionFixture().withId(6L).withGatewayAccountId("1").withCreatedDate(sharedCreatedDate).insert(rule.getJdbi());
+        aTransactionFixture().withId(3L).withGatewayAccountId("1").withCreatedDate(now(ZoneOffset.UTC).minusDays(6)).insert(rule.getJdbi());
+
+        searchParams.setAccountIds(List.of("1"));
+        searchParams.setDisplaySize(2L);
+
+        List<TransactionEntity> firstPage = transactionDao.searchTransactions(searchParams);
+        List<TransactionEntity> secondPage = transactionDao.searchTransactions(searchParams,
+                TransactionSearchCursor.after(firstPage.get(firstPage.size() - 1)));
+        List<TransactionEntity> pageBeforeSecondPage = transactionDao.searchTransactions(searchParams,
+                TransactionSearchCursor.before(secondPage.get(0)));
+
+        assertThat(firstPage.stream().map(TransactionEntity::getId).collect(Collectors.toList()), is(List.of(9L, 200L)));
+        assertThat(secondPage.stream().map(TransactionEntity::getId).collect(Collectors.toList()), is(List.of(50L, 6L)));
+        assertThat(pageBeforeSecondPage.stream().map(TransactionEntity::getId).collect(Collectors.toList()), is(List.of(9L, 200L)));
+    }
+
+    @Test
+    public void streamTransactions_shouldPassEveryMatchingTransactionToConsumerMostRecentFirst() {
+        aTransactionFixture().withId(9L).withGatewayAccountId("1").withCreatedDate(now(ZoneOffset.UTC).minusDays(3)).insert(rule.getJdbi());
+        aTransactionFixture().withId(200L).withGatewayAccountId("1").withCreatedDate(now(ZoneOffset.UTC).minusDays(5)).insert(rule.getJdbi());
+        aTransactionFixture().withId(50L).withGatewayAccountId("1").withCreatedDate(now(ZoneOffset.UTC).minusDays(5)).insert(rule.getJdbi());
+        aTransactionFixture().withId(3L).withGatewayAccountId("2").withCreatedDate(now(ZoneOffset.UTC).minusDays(4)).insert(rule.getJdbi());
+
+        searchParams.setAccountIds(List.of("1"));
+        List<Long> streamedIds = new ArrayList<>();
+
+        long count = transactionDao.streamTransactions(searchParams, 2, transaction -> streamedIds.add(transaction.getId()));
+
+        assertThat(count, is(3L));
+        assertThat(streamedIds, is(List.of(9L, 200L, 50L)));
+    }
+
+    @Test
+    public void streamTransactions_shouldOnlyPassTransactionsCreatedFromStartInclusiveToEndExclusive() {
+        ZonedDateTime boundary = now(ZoneOffset.UTC).minusDays(4).truncatedTo(ChronoUnit.SECONDS);
+        aTransactionFixture().withId(9L).withGatewayAccountId("1").withCreatedDate(boundary.plusDays(1)).insert(rule.getJdbi());
+        aTransactionFixture().withId(200L).withGatewayAccountId("1").withCreatedDate(boundary).insert(rule.getJdbi());
+        aTransactionFixture().withId(50L).withGatewayAccountId("1").withCreatedDate(boundary.minusDays(1)).insert(rule.getJdbi());
+
+        searchParams.setAccountIds(List.of("1"));
+        List<Long> newerIds = new ArrayList<>();
+        List<Long> olderIds = new ArrayList<>();
+
+        transactionDao.streamTransactions(searchParams, boundary, boundary.plusDays(2), 2, transaction -> newerIds.add(transaction.getId()));
+        transactionDao.streamTransactions(searchParams, boundary.minusDays(2), boundary, 2, transaction -> olderIds.add(transaction.getId()));
+
+        assertThat(newerIds, is(List.of(9L, 200L)));
+        assertThat(olderIds, is(List.of(50L)));
+    }
+
     @Test
     public void searchTransactionsByCursorAndetadataValue() {
         String gatewayAccountId = "account-id-" + nextLong();
@@ -810,6 +871,18 @@ public class TransactionDaoSearchIT {
         assertThat(total, is(15L));
     }
 
+    @Test
+    public void getEstimatedTotalForSearchShouldReturnPlannerEstimate() {
+        String gatewayAccountId = "account-id-" + nextLong();
+        aPersistedTransactionList(gatewayAccountId, 5, rule.getJdbi(), true);
+
+        TransactionSearchParams searchParams = new TransactionSearchParams();
+        searchParams.setAccountIds(List.of(gatewayAccountId));
+        searchParams.setFromSettledDate("2019-10-01T10:00:00.000Z");
+
+        assertThat(transactionDao.getEstimatedTotalForSearch(searchParams).isPresent(), is(true));
+    }
+
     @Test
     public void getTotalWithLimitForSearchShouldApplySearchByMetadataValueCorrectly() {
         String gatewayAccountId = "account-id-" + nextLong();
@@ -0,0 +1,120 @@
+package uk.gov.pay.ledger.transaction.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
+import uk.gov.pay.ledger.transaction.service.CsvService;
+import uk.gov.pay.ledger.transaction.state.TransactionState;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static uk.gov.pay.ledger.util.fixture.TransactionFixture.aTransactionFixture;
+
+class CsvRowEncoderTest {
+
+    private CsvTransactionFactory csvTransactionFactory;
+    private CsvService csvService;
+
+    @BeforeEach
+    void setUp() {
+        csvTransactionFactory = new CsvTransactionFactory(new ObjectMapper());
+        csvService = new CsvService(csvTransactionFactory, null);
+    }
+
+    @Test
+    void shouldWriteTheSameRowsAsTheColumnMaps() throws IOException {
+        JSONObject transactionDetails = new JSONObject()
+                .put("payment_provider", "stripe")
+                .put("card_type", "DEBIT")
+                .put("wallet", "APPLE_PAY")
+                .put("requires_3ds", true)
+                .put("corporate_surcharge", 250)
+                .put("fee_breakdown", new JSONArray()
+                        .put(new JSONObject().put("fee_type", "transaction").put("amount", 4))
+                        .put(new JSONObject().put("fee_type", "radar").put("amount", 3)))
+                .put("external_metadata", new JSONObject()
+                        .put("key-1", "value, with \"quotes\"")
+                        .put("key-2", 42)
+                        .put("key-3", true)
+                        .put("key-4", 1.5)
+                        .put("key-not-exported", "value"));
+        TransactionEntity payment = aTransactionFixture()
+                .withTransactionType(TransactionType.PAYMENT.name())
+                .withState(TransactionState.SUCCESS)
+                .withAmount(123456789L)
+                .withFee(7L)
+                .withNetAmount(123456782L)
+                .withReference("=SUM(A1:A2)")
+                .withMoto(true)
+                .withCreatedDate(ZonedDateTime.parse("2018-03-12T16:25:01.123456Z"))
+                .withDefaultCardDetails()
+                .withTransactionDetails(transactionDetails.toString())
+                .toEntity();
+        TransactionEntity refund = aTransactionFixture()
+                .withTransactionType(TransactionType.REFUND.name())
+                .withState(TransactionState.SUBMITTED)
+                .withAmount(100L)
+                .withParentExternalId("parent-external-id")
+                .withTransactionDetails(new JSONObject()
+                        .put("user_email", "refunder@example.org")
+                        .put("payment_details", new JSONObject().put("card_brand_label", "Visa")).toString())
+                .toEntity();
+        TransactionEntity dispute = aTransactionFixture()
+                .withTransactionType(TransactionType.DISPUTE.name())
+                .withState(TransactionState.LOST)
+                .withAmount(1000L)
+                .withFee(1500L)
+                .withNetAmount(-2500L)
+                .withParentExternalId("parent-external-id")
+                .toEntity();
+
+        Map<String, Object> headers = csvTransactionFactory.getCsvHeadersWithMedataKeys(
+                List.of("key-1", "key-2", "key-3", "key-4", "key-missing"), true, true);
+
+        assertThat(encode(headers, List.of(payment, refund, dispute)), is(fromColumnMaps(headers, List.of(payment, refund, dispute))));
+    }
+
+    @Test
+    void shouldOnlyWriteTheColumnsOfTheHeaders() throws IOException {
+        TransactionEntity payment = aTransactionFixture()
+                .withTransactionType(TransactionType.PAYMENT.name())
+                .withState(TransactionState.FAILED_REJECTED)
+                .withAmount(100L)
+                .withFee(5L)
+                .withDefaultCardDetails()
+                .withDefaultTransactionDetails()
+                .toEntity();
+
+        Map<String, Object> headers = csvTransactionFactory.getCsvHeadersWithMedataKeys(List.of(), false, false);
+
+        assertThat(encode(headers, List.of(payment)), is(fromColumnMaps(headers, List.of(payment))));
+    }
+
+    private String encode(Map<String, Object> headers, List<TransactionEntity> transactions) throws IOException {
+        CsvRowEncoder rowEncoder = csvService.rowEncoderFrom(headers);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (JsonGenerator rowWriter = csvService.rowWriterFrom(csvService.writerFrom(headers), outputStream)) {
+            for (TransactionEntity transaction : transactions) {
+                rowEncoder.encode(transaction, rowWriter);
+            }
+        }
+        return outputStream.toString(UTF_8);
+    }
+
+    private String fromColumnMaps(Map<String, Object> headers, List<TransactionEntity> transactions) throws IOException {
+        ObjectWriter writer = csvService.writerFrom(headers);
+        return writer.writeValueAsString(transactions.stream().map(csvTransactionFactory::toMap).toList());
+    }
+}
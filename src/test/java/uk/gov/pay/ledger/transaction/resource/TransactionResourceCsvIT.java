@@ -9,9 +9,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 import uk.gov.pay.ledger.extension.AppWithPostgresAndSqsExtension;
-import uk.gov.pay.ledger.metadatakey.dao.MetadataKeyDao;
 import uk.gov.pay.ledger.transaction.state.TransactionState;
-import uk.gov.pay.ledger.transactionmetadata.dao.TransactionMetadataDao;
 import uk.gov.pay.ledger.util.fixture.TransactionFixture;
 
 import jakarta.ws.rs.core.Response;
@@ -36,7 +34,9 @@ import static uk.gov.pay.ledger.transaction.state.TransactionState.UNDER_REVIEW;
 import static uk.gov.pay.ledger.transaction.state.TransactionState.WON;
 import static uk.gov.pay.ledger.util.DatabaseTestHelper.aDatabaseTestHelper;
 import static uk.gov.pay.ledger.util.fixture.GatewayAccountMetadataFixture.aGatewayAccountMetadataFixture;
+import static uk.gov.pay.ledger.util.fixture.MetadataKeyFixture.insertMedataKeyIfNotExists;
 import static uk.gov.pay.ledger.util.fixture.TransactionFixture.aTransactionFixture;
+import static uk.gov.pay.ledger.util.fixture.TransactionMetadataFixture.aTransactionMetadataFixture;
 
 public class TransactionResourceCsvIT {
 
@@ -44,13 +44,9 @@ public class TransactionResourceCsvIT {
     public static AppWithPostgresAndSqsExtension rule = new AppWithPostgresAndSqsExtension();
 
     private Integer port = rule.getAppRule().getLocalPort();
-    private MetadataKeyDao metadataKeyDao;
-    private TransactionMetadataDao transactionMetadataDao;
 
     @BeforeEach
     public void setUp() {
-        transactionMetadataDao = new TransactionMetadataDao(rule.getJdbi());
-        metadataKeyDao = rule.getJdbi().onDemand(MetadataKeyDao.class);
         aDatabaseTestHelper(rule.getJdbi()).truncateAllData();
     }
 
@@ -96,14 +92,18 @@ public class TransactionResourceCsvIT {
                 .withDefaultTransactionDetails()
                 .insert(rule.getJdbi());
 
-        metadataKeyDao.insertIfNotExist("test-key-1");
+        insertMedataKeyIfNotExists(rule.getJdbi(), "test-key-1");
 
         aGatewayAccountMetadataFixture()
                 .withGatewayAccountId(targetGatewayAccountId)
                 .withMetadataKey("test-key-1")
                 .insert(rule.getJdbi());
 
-        transactionMetadataDao.upsert(transactionFixture.getId(), "test-key-1", "value1");
+        aTransactionMetadataFixture()
+                .withTransactionId(transactionFixture.getId())
+                .withMetadataKey("test-key-1")
+                .withValue("value1")
+                .insert(rule.getJdbi());
 
         InputStream csvResponseStream = given().port(port)
                 .accept("text/csv")
@@ -410,8 +410,12 @@ public class TransactionResourceCsvIT {
                 .withDefaultTransactionDetails()
                 .insert(rule.getJdbi());
 
-        metadataKeyDao.insertIfNotExist(metadataKey);
-        transactionMetadataDao.upsert(transactionFixture.getId(), metadataKey, "value1");
+        insertMedataKeyIfNotExists(rule.getJdbi(), metadataKey);
+        aTransactionMetadataFixture()
+                .withTransactionId(transactionFixture.getId())
+                .withMetadataKey(metadataKey)
+                .withValue("value1")
+                .insert(rule.getJdbi());
 
         aGatewayAccountMetadataFixture()
                 .withGatewayAccountId(targetGatewayAccountId)
@@ -556,6 +560,34 @@ public class TransactionResourceCsvIT {
         assertThat(record.get("metadata-key-2 (metadata)"), is("value2"));
     }
 
+    @Test
+    public void shouldCompressCsv_whenClientAcceptsGzip() throws IOException {
+        String targetGatewayAccountId = "123";
+        TransactionFixture transactionFixture = aTransactionFixture()
+                .withTransactionType("PAYMENT")
+                .withState(SUCCESS)
+                .withGatewayAccountId(targetGatewayAccountId)
+                .withDefaultCardDetails()
+                .withDefaultTransactionDetails()
+                .insert(rule.getJdbi());
+
+        InputStream csvResponseStream = given().port(port)
+                .accept("text/csv")
+                .header("Accept-Encoding", "gzip")
+                .get("/v1/transaction?account_id=" + targetGatewayAccountId)
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode())
+                .contentType("text/csv")
+                .header("Content-Encoding", "gzip")
+                .header("Vary", "Accept-Encoding")
+                .extract().asInputStream();
+
+        List<CSVRecord> csvRecords = CSVParser.parse(csvResponseStream, UTF_8, RFC4180.withFirstRecordAsHeader()).getRecords();
+
+        assertThat(csvRecords.size(), is(1));
+        assertThat(csvRecords.get(0).get("GOV.UK Payment ID"), is(transactionFixture.getExternalId()));
+    }
+
     private void assertCommonPaymentFields(CSVRecord csvRecord, TransactionFixture transactionFixture) {
         assertThat(csvRecord.get("Reference"), is(transactionFixture.getReference()));
         assertThat(csvRecord.get("Description"), is(transactionFixture.getDescription()));
@@ -0,0 +1,35 @@
+package uk.gov.pay.ledger.transaction.search.common;
+
+import org.junit.jupiter.api.Test;
+import uk.gov.pay.ledger.exception.ValidationException;
+import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
+
+import java.time.ZonedDateTime;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static uk.gov.pay.ledger.util.fixture.TransactionFixture.aTransactionFixture;
+
+class TransactionSearchCursorTest {
+
+    @Test
+    void shouldDecodeEncodedCursor() {
+        TransactionEntity transaction = aTransactionFixture()
+                .withId(1234L)
+                .withCreatedDate(ZonedDateTime.parse("2019-09-01T10:15:30.123456Z"))
+                .toEntity();
+
+        TransactionSearchCursor cursor = TransactionSearchCursor.decode(TransactionSearchCursor.before(transaction).encode());
+
+        assertThat(cursor.getDirection(), is(TransactionSearchCursor.Direction.BEFORE));
+        assertThat(cursor.getCreatedDate().toInstant(), is(transaction.getCreatedDate().toInstant()));
+        assertThat(cursor.getId(), is(1234L));
+    }
+
+    @Test
+    void shouldThrowValidationException_whenCursorCannotBeDecoded() {
+        assertThrows(ValidationException.class, () -> TransactionSearchCursor.decode("%%%"));
+        assertThrows(ValidationException.class, () -> TransactionSearchCursor.decode("bm90LWEtY3Vyc29y"));
+    }
+}
@@ -11,6 +11,7 @@ import uk.gov.pay.ledger.util.CommaDelimitedSetParameter;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static uk.gov.pay.ledger.util.fixture.TransactionFixture.aTransactionFixture;
 
 class TransactionSearchParamsValidatorTest {
 
@@ -115,4 +116,21 @@ class TransactionSearchParamsValidatorTest {
                 () -> TransactionSearchParamsValidator.validateSearchParams(searchParams, null));
         assertThat(unparsableDateException.getMessage(), is("Input to_settled_date (2020.09.25) is wrong format"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldThrowException_whenPageAndCursorAreBothSet() {
+        searchParams.setPageNumber(2L);
+        searchParams.setCursor(TransactionSearchCursor.after(aTransactionFixture().toEntity()).encode());
+        ValidationException validationException = assertThrows(ValidationException.class,
+                () -> TransactionSearchParamsValidator.validateSearchParams(searchParams, null));
+        assertThat(validationException.getMessage(), is("page and cursor cannot be used together"));
+    }
+
+    @Test
+    void shouldThrowException_whenInvalidCursor() {
+        searchParams.setCursor("not-a-cursor");
+        ValidationException validationException = assertThrows(ValidationException.class,
+                () -> TransactionSearchParamsValidator.validateSearchParams(searchParams, null));
+        assertThat(validationException.getMessage(), is("Invalid cursor [not-a-cursor]"));
+    }
+}
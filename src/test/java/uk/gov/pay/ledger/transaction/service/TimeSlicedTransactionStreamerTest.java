@@ -0,0 +1,133 @@
+package uk.gov.pay.ledger.transaction.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.pay.ledger.app.config.ReportingConfig;
+import uk.gov.pay.ledger.transaction.dao.TransactionDao;
+import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
+import uk.gov.pay.ledger.transaction.search.common.TransactionSearchParams;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.gov.pay.ledger.util.fixture.TransactionFixture.aTransactionFixture;
+
+@ExtendWith(MockitoExtension.class)
+class TimeSlicedTransactionStreamerTest {
+
+    private static final ZonedDateTime FROM_DATE = ZonedDateTime.parse("2024-01-01T00:00:00Z");
+    private static final ZonedDateTime TO_DATE = ZonedDateTime.parse("2024-01-10T00:00:00Z");
+
+    @Mock
+    private ReportingConfig reportingConfig;
+
+    @Mock
+    private TransactionDao transactionDao;
+
+    private final ExecutorService executorService = Executors.newFixedThreadPool(2);
+    private TimeSlicedTransactionStreamer timeSlicedTransactionStreamer;
+    private TransactionSearchParams searchParams;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(reportingConfig.getCsvExportSliceDurationInDays()).thenReturn(3);
+        lenient().when(reportingConfig.getCsvExportSlicesPerRequest()).thenReturn(2);
+        lenient().when(reportingConfig.getCsvExportSliceReadAheadSize()).thenReturn(1);
+        timeSlicedTransactionStreamer = new TimeSlicedTransactionStreamer(executorService, reportingConfig, transactionDao);
+        searchParams = new TransactionSearchParams();
+        searchParams.setAccountIds(List.of("1"));
+        searchParams.setFromDate(FROM_DATE.toString());
+        searchParams.setToDate(TO_DATE.toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    void shouldSplitDateRangeIntoSlicesMostRecentFirst() {
+        List<TimeSlicedTransactionStreamer.Slice> slices = timeSlicedTransactionStreamer.slicesOf(searchParams);
+
+        assertThat(slices.stream().map(slice -> slice.getStart().getDayOfMonth()).collect(Collectors.toList()), is(List.of(7, 4, 1)));
+        assertThat(slices.stream().map(slice -> slice.getEnd().getDayOfMonth()).collect(Collectors.toList()), is(List.of(10, 7, 4)));
+    }
+
+    @Test
+    void shouldWriteTransactionsOfEverySliceInOrder() {
+        when(transactionDao.streamTransactions(eq(searchParams), any(ZonedDateTime.class), any(ZonedDateTime.class), anyInt(), any()))
+                .thenAnswer(invocation -> {
+                    long firstId = invocation.<ZonedDateTime>getArgument(2).getDayOfMonth() * 100L;
+                    Consumer<TransactionEntity> consumer = invocation.getArgument(4);
+                    for (long id = firstId; id > firstId - 5; id--) {
+                        consumer.accept(aTransactionFixture().withId(id).toEntity());
+                    }
+                    return 5L;
+                });
+        List<Long> writtenIds = new ArrayList<>();
+
+        long count = timeSlicedTransactionStreamer.streamTransactions(searchParams, 10, transaction -> writtenIds.add(transaction.getId()));
+
+        assertThat(count, is(15L));
+        assertThat(writtenIds, is(List.of(1000L, 999L, 998L, 997L, 996L, 700L, 699L, 698L, 697L, 696L, 400L, 399L, 398L, 397L, 396L)));
+    }
+
+    @Test
+    void shouldRethrowFailureOfASlice() {
+        when(transactionDao.streamTransactions(eq(searchParams), any(ZonedDateTime.class), any(ZonedDateTime.class), anyInt(), any()))
+                .thenThrow(new IllegalStateException("connection lost"));
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> timeSlicedTransactionStreamer.streamTransactions(searchParams, 10, transaction -> {}));
+
+        assertThat(exception.getMessage(), is("connection lost"));
+    }
+
+    @Test
+    void shouldGiveEverySliceTheQueryMapBuiltBeforeReading() {
+        List<Map<String, Object>> queryMaps = Collections.synchronizedList(new ArrayList<>());
+        when(transactionDao.streamTransactions(eq(searchParams), any(ZonedDateTime.class), any(ZonedDateTime.class), anyInt(), any()))
+                .thenAnswer(invocation -> {
+                    queryMaps.add(invocation.<TransactionSearchParams>getArgument(0).getQueryMap());
+                    return 0L;
+                });
+
+        timeSlicedTransactionStreamer.streamTransactions(searchParams, 10, transaction -> {});
+
+        assertThat(queryMaps, hasSize(3));
+        queryMaps.forEach(queryMap -> assertThat(queryMap, is(sameInstance(searchParams.getQueryMap()))));
+    }
+
+    @Test
+    void shouldStreamOnASingleConnection_whenDateRangeIsNotLongerThanASlice() {
+        searchParams.setFromDate(TO_DATE.minusDays(2).toString());
+
+        timeSlicedTransactionStreamer.streamTransactions(searchParams, 10, transaction -> {});
+
+        verify(transactionDao).streamTransactions(eq(searchParams), eq(10), any());
+        verify(transactionDao, never()).streamTransactions(any(), any(ZonedDateTime.class), any(ZonedDateTime.class), anyInt(), any());
+    }
+}
@@ -1,5 +1,6 @@
 package uk.gov.pay.ledger.transaction.service;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
@@ -10,19 +11,22 @@ import uk.gov.pay.ledger.event.entity.EventEntity;
 import uk.gov.pay.ledger.event.model.EventDigest;
 import uk.gov.pay.ledger.event.model.SalientEventType;
 import uk.gov.pay.ledger.metadatakey.dao.MetadataKeyDao;
-import uk.gov.pay.ledger.transaction.dao.TransactionDao;
 import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
 import uk.gov.pay.ledger.transaction.state.TransactionState;
 import uk.gov.pay.ledger.transactionmetadata.dao.TransactionMetadataDao;
 
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
 
-import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static uk.gov.pay.ledger.event.model.ResourceType.PAYMENT;
 import static uk.gov.pay.ledger.util.fixture.QueuePaymentEventFixture.aQueuePaymentEventFixture;
 import static uk.gov.pay.ledger.util.fixture.TransactionFixture.aTransactionFixture;
@@ -30,8 +34,6 @@ import static uk.gov.pay.ledger.util.fixture.TransactionFixture.aTransactionFixt
 @ExtendWith(MockitoExtension.class)
 class TransactionMetadataServiceTest {
 
-    @Mock
-    private TransactionDao mockTransactionDao;
     @Mock
     private TransactionMetadataDao mockTransactionMetadataDao;
     @Mock
@@ -41,13 +43,15 @@ class TransactionMetadataServiceTest {
 
     private TransactionMetadataService service;
 
+    @BeforeEach
+    void setUp() {
+        service = new TransactionMetadataService(mockMetadataKeyDao, mockTransactionMetadataDao, mockGatewayAccountMetadataService);
+    }
+
     @Test
     void shouldInsertMetadata() {
         String externalId = "transaction-id";
-        TransactionEntity transaction = aTransactionFixture().withState(TransactionState.CREATED).toEntity();
-        service = new TransactionMetadataService(mockMetadataKeyDao, mockTransactionMetadataDao, mockTransactionDao, mockGatewayAccountMetadataService);
-
-        when(mockTransactionDao.findTransactionByExternalId(externalId)).thenReturn(Optional.of(transaction));
+        TransactionEntity transaction = aTransactionFixture().withExternalId(externalId).withState(TransactionState.CREATED).toEntity();
 
         EventEntity paymentCreatedEvent = aQueuePaymentEventFixture()
                 .withResourceExternalId(externalId)
@@ -60,24 +64,35 @@ class TransactionMetadataServiceTest {
                 .withDefaultEventDataForEventType(SalientEventType.PAYMENT_CREATED.name())
                 .toEntity();
 
-        service.upsertMetadataFor(paymentCreatedEvent);
+        service.upsertMetadataFor(transaction, paymentCreatedEvent);
 
-        verify(mockMetadataKeyDao).insertIfNotExist("meta1");
-        verify(mockMetadataKeyDao).insertIfNotExist("meta2");
-        verify(mockTransactionMetadataDao).upsert(transaction.getId(), "meta1", "data1");
-        verify(mockTransactionMetadataDao).upsert(transaction.getId(), "meta2", "2");
-        verify(mockTransactionMetadataDao).upsert(transaction.getId(), "meta3", "true");
+        verify(mockMetadataKeyDao).insertAllIfNotExist(argThat(keys -> Set.copyOf(keys).equals(Set.of("meta1", "meta2", "meta3"))));
+        verify(mockTransactionMetadataDao).upsert(externalId, Map.of("meta1", "data1", "meta2", "2", "meta3", "true"));
+        verify(mockGatewayAccountMetadataService).upsertMetadataKeysForGatewayAccount(eq(transaction.getGatewayAccountId()),
+                argThat(keys -> Set.copyOf(keys).equals(Set.of("meta1", "meta2", "meta3"))));
+    }
 
-        verify(mockGatewayAccountMetadataService).upsertMetadataKeyForGatewayAccount(transaction.getGatewayAccountId(), "meta1");
-        verify(mockGatewayAccountMetadataService).upsertMetadataKeyForGatewayAccount(transaction.getGatewayAccountId(), "meta2");
-        verify(mockGatewayAccountMetadataService).upsertMetadataKeyForGatewayAccount(transaction.getGatewayAccountId(), "meta3");
+    @Test
+    void shouldOnlyInsertMetadataKeysNotAlreadyWritten() {
+        TransactionEntity transaction = aTransactionFixture().withExternalId("transaction-id").withGatewayAccountId("1").toEntity();
+        TransactionEntity transactionForAnotherAccount = aTransactionFixture().withExternalId("another-transaction-id").withGatewayAccountId("2").toEntity();
+
+        service.upsertMetadataFor(transaction, anEventWithMetadata(transaction, Map.of("meta1", "data1")));
+        service.upsertMetadataFor(transaction, anEventWithMetadata(transaction, Map.of("meta1", "data2")));
+        service.upsertMetadataFor(transactionForAnotherAccount, anEventWithMetadata(transactionForAnotherAccount, Map.of("meta1", "data3")));
+
+        verify(mockMetadataKeyDao, times(1)).insertAllIfNotExist(any());
+        verify(mockTransactionMetadataDao).upsert("transaction-id", Map.of("meta1", "data1"));
+        verify(mockTransactionMetadataDao).upsert("transaction-id", Map.of("meta1", "data2"));
+        verify(mockTransactionMetadataDao).upsert("another-transaction-id", Map.of("meta1", "data3"));
+        verify(mockGatewayAccountMetadataService).upsertMetadataKeysForGatewayAccount("1", List.of("meta1"));
+        verify(mockGatewayAccountMetadataService).upsertMetadataKeysForGatewayAccount("2", List.of("meta1"));
     }
 
     @Test
     void shouldNotTryToInsertMetadataIfIfNoExternalMetadataOnEvent() {
         String externalId = "transaction-id";
-        TransactionEntity transaction = aTransactionFixture().withState(TransactionState.STARTED).toEntity();
-        service = new TransactionMetadataService(mockMetadataKeyDao, mockTransactionMetadataDao, mockTransactionDao, mockGatewayAccountMetadataService);
+        TransactionEntity transaction = aTransactionFixture().withExternalId(externalId).withState(TransactionState.STARTED).toEntity();
 
         EventEntity paymentCreatedEvent = aQueuePaymentEventFixture()
                 .withResourceExternalId(externalId)
@@ -87,18 +102,16 @@ class TransactionMetadataServiceTest {
                 .withDefaultEventDataForEventType(SalientEventType.CAPTURE_SUBMITTED.name())
                 .toEntity();
 
-        service.upsertMetadataFor(paymentCreatedEvent);
+        service.upsertMetadataFor(transaction, paymentCreatedEvent);
 
-        verify(mockMetadataKeyDao, never()).insertIfNotExist(anyString());
-        verify(mockTransactionMetadataDao, never()).upsert(anyLong(), anyString(), anyString());
-        verify(mockGatewayAccountMetadataService, never()).upsertMetadataKeyForGatewayAccount(anyString(), anyString());
+        verifyNoInteractions(mockMetadataKeyDao, mockTransactionMetadataDao);
+        verify(mockGatewayAccountMetadataService, never()).upsertMetadataKeysForGatewayAccount(anyString(), any());
     }
 
     @Test
     void shouldReprojectFromEventDigest() {
         String externalId = "transaction-id";
-        TransactionEntity transaction = aTransactionFixture().withState(TransactionState.STARTED).toEntity();
-        service = new TransactionMetadataService(mockMetadataKeyDao, mockTransactionMetadataDao, mockTransactionDao, mockGatewayAccountMetadataService);
+        TransactionEntity transaction = aTransactionFixture().withExternalId(externalId).withState(TransactionState.STARTED).toEntity();
 
         EventEntity event = aQueuePaymentEventFixture()
                 .withResourceExternalId(externalId)
@@ -116,24 +129,16 @@ class TransactionMetadataServiceTest {
                 .toEntity();
         EventDigest paymentEventDigest = EventDigest.fromEventList(List.of(event, previousEvent));
 
-        when(mockTransactionDao.findTransactionByExternalId(externalId)).thenReturn(Optional.of(transaction));
-
-        service.reprojectFromEventDigest(paymentEventDigest);
-
-        verify(mockTransactionMetadataDao).upsert(transaction.getId(), "meta1", "data1");
-        verify(mockTransactionMetadataDao).upsert(transaction.getId(), "meta2", "2");
-        verify(mockTransactionMetadataDao).upsert(transaction.getId(), "meta3", "true");
+        service.reprojectFromEventDigest(transaction, paymentEventDigest);
 
-        verify(mockGatewayAccountMetadataService).upsertMetadataKeyForGatewayAccount(transaction.getGatewayAccountId(), "meta1");
-        verify(mockGatewayAccountMetadataService).upsertMetadataKeyForGatewayAccount(transaction.getGatewayAccountId(), "meta2");
-        verify(mockGatewayAccountMetadataService).upsertMetadataKeyForGatewayAccount(transaction.getGatewayAccountId(), "meta3");
+        verify(mockTransactionMetadataDao).upsert(externalId, Map.of("meta1", "data1", "meta2", "2", "meta3", "true"));
+        verify(mockGatewayAccountMetadataService).upsertMetadataKeysForGatewayAccount(any(), any());
     }
 
     @Test
     void shouldDoNothingIfNoExternalMetadataOnEventDigest() {
         String externalId = "transaction-id";
-        TransactionEntity transaction = aTransactionFixture().withState(TransactionState.STARTED).toEntity();
-        service = new TransactionMetadataService(mockMetadataKeyDao, mockTransactionMetadataDao, mockTransactionDao, mockGatewayAccountMetadataService);
+        TransactionEntity transaction = aTransactionFixture().withExternalId(externalId).withState(TransactionState.STARTED).toEntity();
 
         EventEntity event = aQueuePaymentEventFixture()
                 .withResourceExternalId(externalId)
@@ -141,10 +146,16 @@ class TransactionMetadataServiceTest {
 
         EventDigest paymentEventDigest = EventDigest.fromEventList(List.of(event));
 
-        when(mockTransactionDao.findTransactionByExternalId(externalId)).thenReturn(Optional.of(transaction));
+        service.reprojectFromEventDigest(transaction, paymentEventDigest);
+        verifyNoInteractions(mockMetadataKeyDao, mockTransactionMetadataDao, mockGatewayAccountMetadataService);
+    }
 
-        service.reprojectFromEventDigest(paymentEventDigest);
-        verify(mockTransactionMetadataDao, never()).upsert(anyLong(), anyString(), anyString());
-        verify(mockGatewayAccountMetadataService, never()).upsertMetadataKeyForGatewayAccount(anyString(), anyString());
+    private EventEntity anEventWithMetadata(TransactionEntity transaction, Map<String, Object> metadata) {
+        var event = aQueuePaymentEventFixture()
+                .withResourceExternalId(transaction.getExternalId())
+                .withEventType(SalientEventType.PAYMENT_CREATED.name())
+                .withResourceType(PAYMENT);
+        metadata.forEach(event::withMetadata);
+        return event.withDefaultEventDataForEventType(SalientEventType.PAYMENT_CREATED.name()).toEntity();
     }
 }
@@ -0,0 +1,132 @@
+package uk.gov.pay.ledger.transaction.service;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Ticker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.pay.ledger.app.config.ReportingConfig;
+import uk.gov.pay.ledger.transaction.dao.TransactionDao;
+import uk.gov.pay.ledger.transaction.search.common.TransactionSearchParams;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionSearchTotalsTest {
+
+    @Mock
+    private ReportingConfig reportingConfig;
+
+    @Mock
+    private TransactionDao transactionDao;
+
+    private final AtomicLong nanos = new AtomicLong();
+    private TransactionSearchTotals transactionSearchTotals;
+
+    @BeforeEach
+    void setUp() {
+        when(reportingConfig.getSearchTotalCacheExpiryInSeconds()).thenReturn(30);
+        when(reportingConfig.getSearchTotalCacheMaximumSize()).thenReturn(100);
+        when(reportingConfig.getSearchTotalEstimateThreshold()).thenReturn(1000L);
+        Ticker ticker = new Ticker() {
+            @Override
+            public long read() {
+                return nanos.get();
+            }
+        };
+        transactionSearchTotals = new TransactionSearchTotals(new MetricRegistry(), reportingConfig, ticker, transactionDao);
+    }
+
+    @Test
+    void shouldCountEachSearchOnceUntilTheTotalExpires() {
+        when(transactionDao.getTotalForSearch(any(TransactionSearchParams.class))).thenReturn(5L);
+
+        assertThat(transactionSearchTotals.getTotal(aSearch(List.of("1", "2"), "created")).getValue(), is(5L));
+        assertThat(transactionSearchTotals.getTotal(aSearch(List.of("2", "1"), "created")).getValue(), is(5L));
+        verify(transactionDao, times(1)).getTotalForSearch(any(TransactionSearchParams.class));
+
+        nanos.addAndGet(Duration.ofSeconds(31).toNanos());
+        transactionSearchTotals.getTotal(aSearch(List.of("1", "2"), "created"));
+        verify(transactionDao, times(2)).getTotalForSearch(any(TransactionSearchParams.class));
+    }
+
+    @Test
+    void shouldCountSearchesWithDifferentFilterValuesSeparately() {
+        when(transactionDao.getTotalForSearch(any(TransactionSearchParams.class))).thenReturn(5L, 3L);
+
+        assertThat(transactionSearchTotals.getTotal(aSearch(List.of("1"), "created")).getValue(), is(5L));
+        assertThat(transactionSearchTotals.getTotal(aSearch(List.of("1"), "success")).getValue(), is(3L));
+    }
+
+    @Test
+    void shouldRecountSearchesIncludingAGatewayAccountWhoseTransactionsChanged() {
+        when(transactionDao.getTotalForSearch(any(TransactionSearchParams.class))).thenReturn(5L, 1L, 9L, 6L, 10L);
+        transactionSearchTotals.getTotal(aSearch(List.of("1", "2"), "created"));
+        transactionSearchTotals.getTotal(aSearch(List.of("3"), "created"));
+        transactionSearchTotals.getTotal(aSearch(null, "created"));
+
+        transactionSearchTotals.invalidate("2");
+
+        assertThat(transactionSearchTotals.getTotal(aSearch(List.of("1", "2"), "created")).getValue(), is(6L));
+        assertThat(transactionSearchTotals.getTotal(aSearch(List.of("3"), "created")).getValue(), is(1L));
+        assertThat(transactionSearchTotals.getTotal(aSearch(null, "created")).getValue(), is(10L));
+    }
+
+    @Test
+    void shouldNotReuseTotalCountedForAQueryCreatedBeforeTheGatewayAccountChanged() {
+        when(transactionDao.getTotalForSearch(any(TransactionSearchParams.class))).thenReturn(5L, 6L);
+        Supplier<TransactionSearchTotals.Total> totalQuery = transactionSearchTotals.totalQueryFor(aSearch(List.of("1"), "created"));
+
+        transactionSearchTotals.invalidate("1");
+
+        assertThat(totalQuery.get().getValue(), is(5L));
+        assertThat(transactionSearchTotals.getTotal(aSearch(List.of("1"), "created")).getValue(), is(6L));
+    }
+
+    @Test
+    void shouldUseEstimateAboveThreshold_whenEstimateRequested() {
+        when(transactionDao.getEstimatedTotalForSearch(any(TransactionSearchParams.class))).thenReturn(Optional.of(250_000L));
+        TransactionSearchParams searchParams = aSearch(List.of("1"), "created");
+        searchParams.setEstimateTotal(true);
+
+        TransactionSearchTotals.Total total = transactionSearchTotals.getTotal(searchParams);
+
+        assertThat(total.getValue(), is(250_000L));
+        assertThat(total.isEstimated(), is(true));
+        verify(transactionDao, never()).getTotalForSearch(any(TransactionSearchParams.class));
+    }
+
+    @Test
+    void shouldCountExactly_whenEstimateIsBelowThreshold() {
+        when(transactionDao.getEstimatedTotalForSearch(any(TransactionSearchParams.class))).thenReturn(Optional.of(20L));
+        when(transactionDao.getTotalForSearch(any(TransactionSearchParams.class))).thenReturn(18L);
+        TransactionSearchParams searchParams = aSearch(List.of("1"), "created");
+        searchParams.setEstimateTotal(true);
+
+        TransactionSearchTotals.Total total = transactionSearchTotals.getTotal(searchParams);
+
+        assertThat(total.getValue(), is(18L));
+        assertThat(total.isEstimated(), is(false));
+    }
+
+    private static TransactionSearchParams aSearch(List<String> gatewayAccountIds, String state) {
+        TransactionSearchParams searchParams = new TransactionSearchParams();
+        searchParams.setAccountIds(gatewayAccountIds);
+        searchParams.setState(state);
+        return searchParams;
+    }
+}
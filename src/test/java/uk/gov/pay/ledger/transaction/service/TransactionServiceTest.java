@@ -1,6 +1,8 @@
 package uk.gov.pay.ledger.transaction.service;
 
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Ticker;
 import io.dropwizard.jackson.Jackson;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -9,11 +11,12 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.pay.ledger.app.config.ReportingConfig;
+import uk.gov.pay.ledger.common.search.SearchQueryExecutor;
 import uk.gov.pay.ledger.event.dao.EventDao;
 import uk.gov.pay.ledger.event.entity.EventEntity;
 import uk.gov.pay.ledger.event.model.ResourceType;
 import uk.gov.pay.ledger.event.model.SalientEventType;
-import uk.gov.pay.ledger.event.model.TransactionEntityFactory;
 import uk.gov.pay.ledger.transaction.dao.TransactionDao;
 import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
 import uk.gov.pay.ledger.transaction.model.CsvTransactionFactory;
@@ -21,6 +24,7 @@ import uk.gov.pay.ledger.transaction.model.TransactionEvent;
 import uk.gov.pay.ledger.transaction.model.TransactionEventResponse;
 import uk.gov.pay.ledger.transaction.model.TransactionFactory;
 import uk.gov.pay.ledger.transaction.model.TransactionSearchResponse;
+import uk.gov.pay.ledger.transaction.search.common.TransactionSearchCursor;
 import uk.gov.pay.ledger.transaction.search.common.TransactionSearchParams;
 import uk.gov.pay.ledger.transaction.search.model.TransactionView;
 import uk.gov.pay.ledger.transaction.state.TransactionState;
@@ -33,12 +37,14 @@ import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.core.UriBuilder;
 import jakarta.ws.rs.core.UriInfo;
 import java.io.IOException;
+import java.time.Duration;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
+import static com.google.common.util.concurrent.MoreExecutors.newDirectExecutorService;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -47,6 +53,7 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static uk.gov.pay.ledger.transaction.service.TransactionService.REDACTED_REFERENCE_NUMBER;
@@ -63,6 +70,8 @@ public class TransactionServiceTest {
     private EventDao mockEventDao;
     @Mock
     private UriInfo mockUriInfo;
+    @Mock
+    private ReportingConfig mockReportingConfig;
     private TransactionService transactionService;
     private String gatewayAccountId = "gateway_account_id";
     private TransactionSearchParams searchParams;
@@ -70,12 +79,17 @@ public class TransactionServiceTest {
 
     @BeforeEach
     public void setUp() {
+        lenient().when(mockReportingConfig.getSearchTotalCacheExpiryInSeconds()).thenReturn(30);
+        lenient().when(mockReportingConfig.getSearchTotalCacheMaximumSize()).thenReturn(100);
+        lenient().when(mockReportingConfig.getSearchTotalEstimateThreshold()).thenReturn(1000L);
         ObjectMapper objectMapper = Jackson.newObjectMapper();
-        TransactionEntityFactory transactionEntityFactory = new TransactionEntityFactory(objectMapper);
         TransactionFactory transactionFactory = new TransactionFactory(objectMapper);
         CsvTransactionFactory csvTransactionFactory = new CsvTransactionFactory(objectMapper);
-        transactionService = new TransactionService(mockTransactionDao, mockEventDao, transactionEntityFactory,
-                transactionFactory, csvTransactionFactory, objectMapper);
+        transactionService = new TransactionService(mockTransactionDao, mockEventDao, transactionFactory,
+                csvTransactionFactory, objectMapper,
+                new SearchQueryExecutor(newDirectExecutorService(), Duration.ofSeconds(10)),
+                new TransactionSearchTotals(new MetricRegistry(), mockReportingConfig, Ticker.systemTicker(), mockTransactionDao),
+                new TimeSlicedTransactionStreamer(newDirectExecutorService(), mockReportingConfig, mockTransactionDao));
         searchParams = new TransactionSearchParams();
         searchParams.setAccountIds(List.of(gatewayAccountId));
 
@@ -216,6 +230,46 @@ public class TransactionServiceTest {
         assertCorrectPaginationQueryParams(transactionSearchResponse);
     }
 
+    @Test
+    public void shouldSearchAfterCursorAndBuildCursorPaginationLinks() {
+        List<TransactionEntity> transactionList = TransactionFixture.aTransactionList(gatewayAccountId, 2);
+        TransactionSearchCursor cursor = TransactionSearchCursor.after(aTransactionFixture().toEntity());
+        when(mockTransactionDao.searchTransactions(any(TransactionSearchParams.class), any(TransactionSearchCursor.class))).thenReturn(transactionList);
+        when(mockTransactionDao.getTotalForSearch(any(TransactionSearchParams.class))).thenReturn(100L);
+        searchParams.setDisplaySize(2L);
+        searchParams.setCursor(cursor.encode());
+
+        TransactionSearchResponse transactionSearchResponse = transactionService.searchTransactions(searchParams, mockUriInfo);
+
+        verify(mockTransactionDao, never()).searchTransactions(any(TransactionSearchParams.class));
+        String prevCursor = TransactionSearchCursor.before(transactionList.get(0)).encode();
+        String nextCursor = TransactionSearchCursor.after(transactionList.get(1)).encode();
+        assertThat(transactionSearchResponse.getPrevCursor(), is(prevCursor));
+        assertThat(transactionSearchResponse.getNextCursor(), is(nextCursor));
+
+        PaginationBuilder paginationBuilder = transactionSearchResponse.getPaginationBuilder();
+        assertThat(paginationBuilder.getSelfLink().getHref(), containsString("cursor=" + cursor.encode()));
+        assertThat(paginationBuilder.getFirstLink().getHref(), containsString("page=1"));
+        assertThat(paginationBuilder.getPrevLink().getHref(), containsString("cursor=" + prevCursor));
+        assertThat(paginationBuilder.getNextLink().getHref(), containsString("cursor=" + nextCursor));
+        assertThat(paginationBuilder.getLastLink(), is(nullValue()));
+    }
+
+    @Test
+    public void shouldNotReturnNextCursor_whenLastPageIsShort() {
+        List<TransactionEntity> transactionList = TransactionFixture.aTransactionList(gatewayAccountId, 1);
+        when(mockTransactionDao.searchTransactions(any(TransactionSearchParams.class), any(TransactionSearchCursor.class))).thenReturn(transactionList);
+        when(mockTransactionDao.getTotalForSearch(any(TransactionSearchParams.class))).thenReturn(3L);
+        searchParams.setDisplaySize(2L);
+        searchParams.setCursor(TransactionSearchCursor.after(aTransactionFixture().toEntity()).encode());
+
+        TransactionSearchResponse transactionSearchResponse = transactionService.searchTransactions(searchParams, mockUriInfo);
+
+        assertThat(transactionSearchResponse.getNextCursor(), is(nullValue()));
+        assertThat(transactionSearchResponse.getPaginationBuilder().getNextLink(), is(nullValue()));
+        assertThat(transactionSearchResponse.getPrevCursor(), is(TransactionSearchCursor.before(transactionList.get(0)).encode()));
+    }
+
     @Test
     public void findTransactionEvents_shouldReturnTransactionEventsCorrectlyForStatusVersion1() {
         List<TransactionEntity> transactionEntityList = TransactionFixture.aTransactionList(gatewayAccountId, 1);
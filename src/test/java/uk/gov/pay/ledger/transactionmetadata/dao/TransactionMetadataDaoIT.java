@@ -39,8 +39,7 @@ public class TransactionMetadataDaoIT {
         transactionMetadataDao = new TransactionMetadataDao(rule.getJdbi());
         metadataKeyDao = rule.getJdbi().onDemand(MetadataKeyDao.class);
         dbHelper = aDatabaseTestHelper(rule.getJdbi());
-        String key = "key-1";
-        metadataKeyDao.insertIfNotExist(key);
+        metadataKeyDao.insertAllIfNotExist(List.of("key-1"));
     }
 
     @Test
@@ -49,11 +48,11 @@ public class TransactionMetadataDaoIT {
         String reference = randomAlphanumeric(15);
         TransactionEntity transaction = insertTransaction(gatewayAccountId, reference,
                 ImmutableMap.of("test-key-1", "value1"));
-        metadataKeyDao.insertIfNotExist("test-key-1");
+        metadataKeyDao.insertAllIfNotExist(List.of("test-key-1"));
         aTransactionMetadataFixture().withTransactionId(transaction.getId())
                 .withMetadataKey("test-key-1").withValue("value1").insert(rule.getJdbi());
 
-        transactionMetadataDao.upsert(transaction.getId(), "test-key-1", "value3");
+        transactionMetadataDao.upsert(transaction.getExternalId(), ImmutableMap.of("test-key-1", "value3"));
 
         List<Map<String, Object>> transactionMetadata = dbHelper.getTransactionMetadata(transaction.getId(), "test-key-1");
 
@@ -70,15 +69,29 @@ public class TransactionMetadataDaoIT {
         TransactionEntity transaction = insertTransaction(gatewayAccountId, reference,
                 ImmutableMap.of("test-key-2", "value2"));
 
-        metadataKeyDao.insertIfNotExist("test-key-2");
+        metadataKeyDao.insertAllIfNotExist(List.of("test-key-2"));
 
-        transactionMetadataDao.upsert(transaction.getId(), "test-key-2", "value2");
+        transactionMetadataDao.upsert(transaction.getExternalId(), ImmutableMap.of("test-key-2", "value2"));
 
         List<Map<String, Object>> transactionMetadata = dbHelper.getTransactionMetadata(transaction.getId(), "test-key-2");
 
         assertThat(transactionMetadata.get(0).get("value"), is("value2"));
     }
 
+    @Test
+    public void shouldUpsertAllMetadataForTransactionByExternalId() {
+        TransactionEntity transaction = insertTransaction(randomAlphanumeric(15), randomAlphanumeric(15),
+                ImmutableMap.of("test-key-3", "value3", "test-key-4", "value4"));
+        metadataKeyDao.insertAllIfNotExist(List.of("test-key-3", "test-key-4"));
+        aTransactionMetadataFixture().withTransactionId(transaction.getId())
+                .withMetadataKey("test-key-3").withValue("value1").insert(rule.getJdbi());
+
+        transactionMetadataDao.upsert(transaction.getExternalId(), ImmutableMap.of("test-key-3", "value3", "test-key-4", "value4"));
+
+        assertThat(dbHelper.getTransactionMetadata(transaction.getId(), "test-key-3").get(0).get("value"), is("value3"));
+        assertThat(dbHelper.getTransactionMetadata(transaction.getId(), "test-key-4").get(0).get("value"), is("value4"));
+    }
+
     private TransactionEntity insertTransaction(String gatewayAccountId, String reference, Map<String, Object> externalMetadata) {
         return aTransactionFixture()
                 .withState(TransactionState.CREATED)
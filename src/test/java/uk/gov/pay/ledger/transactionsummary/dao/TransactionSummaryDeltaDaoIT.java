@@ -0,0 +1,121 @@
+package uk.gov.pay.ledger.transactionsummary.dao;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import uk.gov.pay.ledger.extension.AppWithPostgresAndSqsExtension;
+import uk.gov.pay.ledger.transactionsummary.entity.TransactionSummaryDeltaEntity;
+import uk.gov.pay.ledger.util.DatabaseTestHelper;
+
+import java.util.List;
+import java.util.Map;
+
+import static java.time.LocalDate.parse;
+import static org.apache.commons.lang3.RandomStringUtils.randomAlphanumeric;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static uk.gov.pay.ledger.transaction.model.TransactionType.PAYMENT;
+import static uk.gov.pay.ledger.transaction.state.TransactionState.SUCCESS;
+import static uk.gov.pay.ledger.util.DatabaseTestHelper.aDatabaseTestHelper;
+import static uk.gov.pay.ledger.util.fixture.TransactionSummaryFixture.aTransactionSummaryFixture;
+
+class TransactionSummaryDeltaDaoIT {
+
+    @RegisterExtension
+    public static AppWithPostgresAndSqsExtension rule = new AppWithPostgresAndSqsExtension();
+
+    private TransactionSummaryDeltaDao transactionSummaryDeltaDao;
+    private DatabaseTestHelper dbHelper;
+
+    @BeforeEach
+    void setUp() {
+        transactionSummaryDeltaDao = rule.getJdbi().onDemand(TransactionSummaryDeltaDao.class);
+        dbHelper = aDatabaseTestHelper(rule.getJdbi());
+        dbHelper.truncateTransactionSummaryData();
+    }
+
+    @Test
+    void shouldFindJournalledDeltasInTheOrderTheyWereInserted() {
+        String gatewayAccountId = "account-" + randomAlphanumeric(10);
+        transactionSummaryDeltaDao.insert(List.of(
+                aDelta(gatewayAccountId, 1, 1000, 0, true),
+                aDelta(gatewayAccountId, 0, 0, 20, false)));
+
+        List<TransactionSummaryDeltaEntity> deltas = transactionSummaryDeltaDao.findOldest(10);
+
+        assertThat(deltas, hasSize(2));
+        assertThat(deltas.get(0).getGatewayAccountId(), is(gatewayAccountId));
+        assertThat(deltas.get(0).getTransactionDate(), is(parse("2018-09-22")));
+        assertThat(deltas.get(0).getState(), is(SUCCESS));
+        assertThat(deltas.get(0).getNoOfTransactions(), is(1L));
+        assertThat(deltas.get(0).getTotalAmountInPence(), is(1000L));
+        assertThat(deltas.get(0).isUpsert(), is(true));
+        assertThat(deltas.get(1).getTotalFeeInPence(), is(20L));
+        assertThat(deltas.get(1).isUpsert(), is(false));
+        assertThat(transactionSummaryDeltaDao.countEntries(), is(2L));
+    }
+
+    @Test
+    void shouldAddDeltasToExistingSummaryRowsAndCreateMissingOnes() {
+        String gatewayAccountId = "account-" + randomAlphanumeric(10);
+        String otherGatewayAccountId = "account-" + randomAlphanumeric(10);
+        aTransactionSummaryFixture()
+                .withGatewayAccountId(gatewayAccountId)
+                .withTransactionDate(parse("2018-09-22"))
+                .withType(PAYMENT)
+                .withState(SUCCESS)
+                .withAmount(1000L)
+                .withFee(77L)
+                .withNoOfTransactions(10L)
+                .insert(rule.getJdbi());
+
+        transactionSummaryDeltaDao.applyToTransactionSummary(List.of(
+                aDelta(gatewayAccountId, 2, 250, 3, true),
+                aDelta(otherGatewayAccountId, 1, 100, 0, true)));
+
+        Map<String, Object> existingRow = dbHelper.getTransactionSummary(gatewayAccountId, PAYMENT, SUCCESS,
+                parse("2018-09-22"), false, false).get(0);
+        assertThat(existingRow.get("no_of_transactions"), is(12L));
+        assertThat(existingRow.get("total_amount_in_pence"), is(1250L));
+        assertThat(existingRow.get("total_fee_in_pence"), is(80L));
+        Map<String, Object> createdRow = dbHelper.getTransactionSummary(otherGatewayAccountId, PAYMENT, SUCCESS,
+                parse("2018-09-22"), false, false).get(0);
+        assertThat(createdRow.get("no_of_transactions"), is(1L));
+        assertThat(createdRow.get("total_amount_in_pence"), is(100L));
+        assertThat(createdRow.get("total_fee_in_pence"), is(0L));
+    }
+
+    @Test
+    void shouldAddDeltasToExistingSummaryRowsOnly() {
+        String gatewayAccountId = "account-" + randomAlphanumeric(10);
+        String otherGatewayAccountId = "account-" + randomAlphanumeric(10);
+        aTransactionSummaryFixture()
+                .withGatewayAccountId(gatewayAccountId)
+                .withTransactionDate(parse("2018-09-22"))
+                .withType(PAYMENT)
+                .withState(SUCCESS)
+                .withAmount(1000L)
+                .withFee(77L)
+                .withNoOfTransactions(10L)
+                .insert(rule.getJdbi());
+
+        transactionSummaryDeltaDao.applyToExistingTransactionSummary(List.of(
+                aDelta(gatewayAccountId, -1, -250, -3, false),
+                aDelta(otherGatewayAccountId, -1, -100, 0, false)));
+
+        Map<String, Object> existingRow = dbHelper.getTransactionSummary(gatewayAccountId, PAYMENT, SUCCESS,
+                parse("2018-09-22"), false, false).get(0);
+        assertThat(existingRow.get("no_of_transactions"), is(9L));
+        assertThat(existingRow.get("total_amount_in_pence"), is(750L));
+        assertThat(existingRow.get("total_fee_in_pence"), is(74L));
+        assertThat(dbHelper.getTransactionSummary(otherGatewayAccountId, PAYMENT, SUCCESS,
+                parse("2018-09-22"), false, false), hasSize(0));
+    }
+
+    private TransactionSummaryDeltaEntity aDelta(String gatewayAccountId, long noOfTransactions, long amount, long fee,
+                                                 boolean upsert) {
+        return new TransactionSummaryDeltaEntity(null, gatewayAccountId, PAYMENT.name(), parse("2018-09-22"), SUCCESS,
+                false, false, noOfTransactions, amount, fee, upsert);
+    }
+}
@@ -0,0 +1,139 @@
+package uk.gov.pay.ledger.transactionsummary.service;
+
+import com.codahale.metrics.MetricRegistry;
+import org.jdbi.v3.core.Jdbi;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.pay.ledger.app.config.TransactionSummaryConfig;
+import uk.gov.pay.ledger.transaction.state.TransactionState;
+import uk.gov.pay.ledger.transactionsummary.dao.TransactionSummaryDeltaDao;
+import uk.gov.pay.ledger.transactionsummary.entity.TransactionSummaryDeltaEntity;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.gov.pay.ledger.transaction.state.TransactionState.ERROR_GATEWAY;
+import static uk.gov.pay.ledger.transaction.state.TransactionState.SUCCESS;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionSummaryDeltaDrainerTest {
+
+    private static final LocalDate TRANSACTION_DATE = LocalDate.parse("2024-01-01");
+
+    @Mock
+    private ScheduledExecutorService scheduledExecutorService;
+
+    @Mock
+    private TransactionSummaryConfig transactionSummaryConfig;
+
+    @Mock
+    private Jdbi jdbi;
+
+    @Mock
+    private TransactionSummaryDeltaDao transactionSummaryDeltaDao;
+
+    @Captor
+    private ArgumentCaptor<List<TransactionSummaryDeltaEntity>> deltasCaptor;
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private TransactionSummaryDeltaDrainer transactionSummaryDeltaDrainer;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionSummaryConfig.getDeltaBatchSize()).thenReturn(100);
+        transactionSummaryDeltaDrainer = new TransactionSummaryDeltaDrainer(scheduledExecutorService, metricRegistry,
+                transactionSummaryConfig, jdbi, transactionSummaryDeltaDao);
+    }
+
+    @Test
+    void shouldMergeDeltasForTheSameSummaryRowAndDeleteThemOnceApplied() {
+        when(transactionSummaryDeltaDao.findOldest(100)).thenReturn(List.of(
+                aDelta(1L, "account-2", SUCCESS, 1, 1000, 0, true),
+                aDelta(2L, "account-1", SUCCESS, 1, 500, 0, true),
+                aDelta(3L, "account-2", SUCCESS, 0, 0, 20, false),
+                aDelta(4L, "account-2", SUCCESS, -1, -1000, -20, false),
+                aDelta(5L, "account-2", ERROR_GATEWAY, 1, 1000, 0, true)));
+
+        int appliedDeltas = transactionSummaryDeltaDrainer.applyBatch(transactionSummaryDeltaDao);
+
+        assertThat(appliedDeltas, is(5));
+        verify(transactionSummaryDeltaDao, never()).applyToExistingTransactionSummary(any());
+        verify(transactionSummaryDeltaDao).applyToTransactionSummary(deltasCaptor.capture());
+        List<TransactionSummaryDeltaEntity> mergedDeltas = deltasCaptor.getValue();
+        assertThat(mergedDeltas, hasSize(3));
+        assertThat(mergedDeltas.get(0).getGatewayAccountId(), is("account-1"));
+        assertThat(mergedDeltas.get(0).getTotalAmountInPence(), is(500L));
+        assertThat(mergedDeltas.get(1).getState(), is(SUCCESS));
+        assertThat(mergedDeltas.get(1).getNoOfTransactions(), is(0L));
+        assertThat(mergedDeltas.get(1).getTotalAmountInPence(), is(0L));
+        assertThat(mergedDeltas.get(1).getTotalFeeInPence(), is(0L));
+        assertThat(mergedDeltas.get(2).getState(), is(ERROR_GATEWAY));
+        assertThat(mergedDeltas.get(2).getNoOfTransactions(), is(1L));
+        verify(transactionSummaryDeltaDao).delete(List.of(1L, 2L, 3L, 4L, 5L));
+        assertThat(metricRegistry.meter("transaction-summary-delta.applied-deltas").getCount(), is(5L));
+        assertThat(metricRegistry.meter("transaction-summary-delta.updated-rows").getCount(), is(3L));
+    }
+
+    @Test
+    void shouldOnlyApplyDeltasBeforeTheFirstUpsertOfARowToExistingRows() {
+        when(transactionSummaryDeltaDao.findOldest(100)).thenReturn(List.of(
+                aDelta(1L, "account-1", SUCCESS, -1, -1000, -20, false),
+                aDelta(2L, "account-1", SUCCESS, 1, 500, 0, true),
+                aDelta(3L, "account-1", SUCCESS, 0, 0, 10, false),
+                aDelta(4L, "account-2", SUCCESS, 0, 0, 30, false)));
+        InOrder inOrder = inOrder(transactionSummaryDeltaDao);
+
+        transactionSummaryDeltaDrainer.applyBatch(transactionSummaryDeltaDao);
+
+        inOrder.verify(transactionSummaryDeltaDao).applyToExistingTransactionSummary(deltasCaptor.capture());
+        List<TransactionSummaryDeltaEntity> updates = deltasCaptor.getValue();
+        assertThat(updates, hasSize(2));
+        assertThat(updates.get(0).getGatewayAccountId(), is("account-1"));
+        assertThat(updates.get(0).getNoOfTransactions(), is(-1L));
+        assertThat(updates.get(0).getTotalAmountInPence(), is(-1000L));
+        assertThat(updates.get(0).getTotalFeeInPence(), is(-20L));
+        assertThat(updates.get(1).getGatewayAccountId(), is("account-2"));
+        assertThat(updates.get(1).getTotalFeeInPence(), is(30L));
+        inOrder.verify(transactionSummaryDeltaDao).applyToTransactionSummary(deltasCaptor.capture());
+        List<TransactionSummaryDeltaEntity> upserts = deltasCaptor.getValue();
+        assertThat(upserts, hasSize(1));
+        assertThat(upserts.get(0).getGatewayAccountId(), is("account-1"));
+        assertThat(upserts.get(0).getNoOfTransactions(), is(1L));
+        assertThat(upserts.get(0).getTotalAmountInPence(), is(500L));
+        assertThat(upserts.get(0).getTotalFeeInPence(), is(10L));
+        assertThat(metricRegistry.meter("transaction-summary-delta.updated-rows").getCount(), is(3L));
+    }
+
+    @Test
+    void shouldNotApplyAnythingWhenTheJournalIsEmpty() {
+        when(transactionSummaryDeltaDao.findOldest(100)).thenReturn(List.of());
+
+        int appliedDeltas = transactionSummaryDeltaDrainer.applyBatch(transactionSummaryDeltaDao);
+
+        assertThat(appliedDeltas, is(0));
+        verify(transactionSummaryDeltaDao, never()).applyToExistingTransactionSummary(any());
+        verify(transactionSummaryDeltaDao, never()).applyToTransactionSummary(any());
+        verify(transactionSummaryDeltaDao, never()).delete(any());
+    }
+
+    private TransactionSummaryDeltaEntity aDelta(Long id, String gatewayAccountId, TransactionState state,
+                                                 long noOfTransactions, long amount, long fee, boolean upsert) {
+        return new TransactionSummaryDeltaEntity(id, gatewayAccountId, "PAYMENT", TRANSACTION_DATE, state, true, false,
+                noOfTransactions, amount, fee, upsert);
+    }
+}
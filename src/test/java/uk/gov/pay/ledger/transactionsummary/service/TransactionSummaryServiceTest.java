@@ -3,11 +3,15 @@ package uk.gov.pay.ledger.transactionsummary.service;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import uk.gov.pay.ledger.event.entity.EventEntity;
 import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
 import uk.gov.pay.ledger.transactionsummary.dao.TransactionSummaryDao;
+import uk.gov.pay.ledger.transactionsummary.dao.TransactionSummaryDeltaDao;
+import uk.gov.pay.ledger.transactionsummary.entity.TransactionSummaryDeltaEntity;
 import uk.gov.pay.ledger.util.fixture.EventFixture;
 
 import java.time.LocalDate;
@@ -15,6 +19,9 @@ import java.time.ZonedDateTime;
 import java.util.List;
 
 import static java.time.ZoneOffset.UTC;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -27,6 +34,7 @@ import static uk.gov.pay.ledger.event.model.SalientEventType.PAYMENT_STATUS_CORR
 import static uk.gov.pay.ledger.event.model.SalientEventType.REFUND_SUBMITTED;
 import static uk.gov.pay.ledger.event.model.SalientEventType.USER_APPROVED_FOR_CAPTURE;
 import static uk.gov.pay.ledger.transaction.state.TransactionState.CREATED;
+import static uk.gov.pay.ledger.transaction.state.TransactionState.ERROR_GATEWAY;
 import static uk.gov.pay.ledger.transaction.state.TransactionState.SUBMITTED;
 import static uk.gov.pay.ledger.transaction.state.TransactionState.SUCCESS;
 import static uk.gov.pay.ledger.util.fixture.TransactionFixture.aTransactionFixture;
@@ -37,10 +45,15 @@ public class TransactionSummaryServiceTest {
     private TransactionSummaryService transactionSummaryService;
     @Mock
     TransactionSummaryDao mockTransactionSummaryDao;
+    @Mock
+    TransactionSummaryDeltaDao mockTransactionSummaryDeltaDao;
+    @Captor
+    ArgumentCaptor<List<TransactionSummaryDeltaEntity>> deltasCaptor;
 
     @BeforeEach
     void setUp() {
-        transactionSummaryService = new TransactionSummaryService(mockTransactionSummaryDao);
+        transactionSummaryService = new TransactionSummaryService(mockTransactionSummaryDao,
+                mockTransactionSummaryDeltaDao, false);
     }
 
     @Test
@@ -293,4 +306,68 @@ public class TransactionSummaryServiceTest {
 
         verifyNoInteractions(mockTransactionSummaryDao);
     }
+
+    @Test
+    public void shouldJournalOneMergedDeltaForTheTransactionAmountAndFeeWhenWriteBehindIsEnabled() {
+        transactionSummaryService = new TransactionSummaryService(mockTransactionSummaryDao,
+                mockTransactionSummaryDeltaDao, true);
+        TransactionEntity transactionEntity = aTransactionFixture()
+                .withState(SUCCESS)
+                .withFee(10L)
+                .toEntity();
+        EventEntity paymentCreatedEvent = EventFixture.anEventFixture().withEventDate(ZonedDateTime.now())
+                .withEventType(PAYMENT_CREATED.name()).toEntity();
+        EventEntity captureSubmittedEvent = EventFixture.anEventFixture().withEventDate(ZonedDateTime.now().plusSeconds(1))
+                .withEventType(CAPTURE_SUBMITTED.name()).toEntity();
+        EventEntity captureConfirmedEvent = EventFixture.anEventFixture().withEventDate(ZonedDateTime.now().plusSeconds(2))
+                .withEventType(CAPTURE_CONFIRMED.name()).toEntity();
+
+        transactionSummaryService.projectTransactionSummary(transactionEntity, paymentCreatedEvent,
+                List.of(paymentCreatedEvent, captureSubmittedEvent, captureConfirmedEvent));
+
+        verify(mockTransactionSummaryDeltaDao).insert(deltasCaptor.capture());
+        assertThat(deltasCaptor.getValue(), hasSize(1));
+        TransactionSummaryDeltaEntity delta = deltasCaptor.getValue().get(0);
+        assertThat(delta.getGatewayAccountId(), is(transactionEntity.getGatewayAccountId()));
+        assertThat(delta.getTransactionDate(), is(LocalDate.ofInstant(transactionEntity.getCreatedDate().toInstant(), UTC)));
+        assertThat(delta.getState(), is(SUCCESS));
+        assertThat(delta.getNoOfTransactions(), is(1L));
+        assertThat(delta.getTotalAmountInPence(), is(transactionEntity.getAmount()));
+        assertThat(delta.getTotalFeeInPence(), is(10L));
+        verifyNoInteractions(mockTransactionSummaryDao);
+    }
+
+    @Test
+    public void shouldJournalADeductionFromThePreviousStateWhenWriteBehindIsEnabled() {
+        transactionSummaryService = new TransactionSummaryService(mockTransactionSummaryDao,
+                mockTransactionSummaryDeltaDao, true);
+        TransactionEntity transactionEntity = aTransactionFixture()
+                .withState(ERROR_GATEWAY)
+                .withFee(10L)
+                .toEntity();
+        EventEntity event = EventFixture.anEventFixture().withEventDate(ZonedDateTime.now())
+                .withEventType(PAYMENT_CREATED.name()).toEntity();
+        EventEntity event2 = EventFixture.anEventFixture().withEventDate(ZonedDateTime.now().plusSeconds(1))
+                .withEventType(CAPTURE_SUBMITTED.name()).toEntity();
+        EventEntity event3 = EventFixture.anEventFixture().withEventDate(ZonedDateTime.now().plusSeconds(2))
+                .withEventType(CAPTURE_ERRORED.name()).toEntity();
+
+        transactionSummaryService.projectTransactionSummary(transactionEntity, event3, List.of(event, event2, event3));
+
+        verify(mockTransactionSummaryDeltaDao).insert(deltasCaptor.capture());
+        assertThat(deltasCaptor.getValue(), hasSize(2));
+        TransactionSummaryDeltaEntity deduction = deltasCaptor.getValue().stream()
+                .filter(delta -> delta.getState() == SUCCESS).findFirst().orElseThrow();
+        assertThat(deduction.getNoOfTransactions(), is(-1L));
+        assertThat(deduction.getTotalAmountInPence(), is(-transactionEntity.getAmount()));
+        assertThat(deduction.getTotalFeeInPence(), is(-10L));
+        assertThat(deduction.isUpsert(), is(false));
+        TransactionSummaryDeltaEntity addition = deltasCaptor.getValue().stream()
+                .filter(delta -> delta.getState() == ERROR_GATEWAY).findFirst().orElseThrow();
+        assertThat(addition.getNoOfTransactions(), is(1L));
+        assertThat(addition.getTotalAmountInPence(), is(transactionEntity.getAmount()));
+        assertThat(addition.getTotalFeeInPence(), is(0L));
+        assertThat(addition.isUpsert(), is(true));
+        verifyNoInteractions(mockTransactionSummaryDao);
+    }
 }
@@ -41,7 +41,10 @@ public class DatabaseTestHelper {
                         "TRUNCATE TABLE gateway_account_metadata CASCADE;" +
                         "TRUNCATE TABLE agreement CASCADE;" +
                         "TRUNCATE TABLE payment_instrument CASCADE;" +
-                        "TRUNCATE TABLE transaction_redaction_info"
+                        "TRUNCATE TABLE transaction_redaction_info;" +
+                        "TRUNCATE TABLE event_digest_snapshot;" +
+                        "TRUNCATE TABLE event_outbox;" +
+                        "TRUNCATE TABLE csv_export_job"
         ).execute());
     }
 
@@ -50,7 +53,7 @@ public class DatabaseTestHelper {
     }
 
     public void truncateTransactionSummaryData() {
-        jdbi.withHandle(handle -> handle.createScript("TRUNCATE TABLE transaction_summary").execute());
+        jdbi.withHandle(handle -> handle.createScript("TRUNCATE TABLE transaction_summary; TRUNCATE TABLE transaction_summary_delta").execute());
     }
 
     public int getEventsCountByExternalId(String externalId) {
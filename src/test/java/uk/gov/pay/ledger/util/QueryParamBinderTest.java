@@ -0,0 +1,49 @@
+package uk.gov.pay.ledger.util;
+
+import org.junit.jupiter.api.Test;
+import uk.gov.pay.ledger.transaction.model.TransactionType;
+import uk.gov.pay.ledger.transaction.search.common.TransactionSearchParams;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class QueryParamBinderTest {
+
+    @Test
+    void shouldBindQueryStringToTheSameSearchParamsAsTheRequest() {
+        TransactionSearchParams searchParams = QueryParamBinder.bind(new TransactionSearchParams(),
+                "account_id=1&email=jane%40example.org&payment_states=success,created&transaction_type=REFUND" +
+                        "&from_date=2024-01-01T00%3A00%3A00Z&exact_reference_match=true&reference=ref%201");
+        searchParams.setAccountIds(List.of("1"));
+
+        TransactionSearchParams expected = new TransactionSearchParams();
+        expected.setAccountIds(List.of("1"));
+        expected.setEmail("jane@example.org");
+        expected.setPaymentStates(new CommaDelimitedSetParameter("success,created"));
+        expected.setTransactionType(TransactionType.REFUND);
+        expected.setFromDate("2024-01-01T00:00:00Z");
+        expected.setExactReferenceMatch(true);
+        expected.setReference("ref 1");
+        expected.setStatusVersion(2);
+
+        assertThat(searchParams.getFilterTemplates(), is(expected.getFilterTemplates()));
+        assertThat(searchParams.getQueryMap(), is(expected.getQueryMap()));
+    }
+
+    @Test
+    void shouldUseDefaultValues_whenParametersAreMissing() {
+        TransactionSearchParams searchParams = QueryParamBinder.bind(new TransactionSearchParams(), "");
+
+        assertThat(searchParams.getDisplaySize(), is(500L));
+        assertThat(searchParams.getLimitTotalSize(), is(10000L));
+    }
+
+    @Test
+    void shouldThrow_whenAValueCannotBeConverted() {
+        assertThrows(IllegalArgumentException.class,
+                () -> QueryParamBinder.bind(new TransactionSearchParams(), "transaction_type=NOT_A_TYPE"));
+    }
+}